@@ -88,7 +88,11 @@ public class BazelBuildSupport implements IBuildSupport {
         BazelWorkspaceCommandRunner bazelWorkspaceCmdRunner =
                 bazelCommandManager.getWorkspaceCommandRunner(ComponentContext.getInstance().getBazelWorkspace());
 
-        bazelWorkspaceCmdRunner.flushAspectInfoCache();
+        if (!ComponentContext.getInstance().getProjectManager().flushCaches(project.getName(),
+            bazelWorkspaceCmdRunner)) {
+            // only the package of a Bazel package project, and the packages that depend on it, need their aspects rerun
+            bazelWorkspaceCmdRunner.flushAspectInfoCache();
+        }
 
         Assert.isTrue(importer.applies(monitor));
 
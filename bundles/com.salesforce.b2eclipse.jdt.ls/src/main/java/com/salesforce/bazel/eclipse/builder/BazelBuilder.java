@@ -72,6 +72,7 @@ import com.salesforce.bazel.sdk.model.BazelWorkspace;
 import com.salesforce.bazel.sdk.project.BazelProject;
 import com.salesforce.bazel.sdk.project.BazelProjectManager;
 import com.salesforce.bazel.sdk.project.BazelProjectTargets;
+import com.salesforce.bazel.sdk.project.ProjectReferenceIndex;
 import com.salesforce.bazel.sdk.util.WorkProgressMonitor;
 
 /**
@@ -113,8 +114,10 @@ public class BazelBuilder extends IncrementalProjectBuilder {
                 IJavaProject[] allImportedProjects = javaCoreHelper.getAllBazelJavaProjects(true);
                 IProject rootWorkspaceProject = Arrays.stream(allImportedProjects)
                         .filter(p -> resourceHelper.isBazelRootProject(p.getProject())).findFirst().get().getProject();
+                ProjectReferenceIndex referenceIndex =
+                        ComponentContext.getInstance().getProjectManager().getProjectReferenceIndex();
                 Set<IProject> downstreamProjects =
-                        EclipseProjectUtils.getDownstreamProjectsOf(project, allImportedProjects);
+                        EclipseProjectUtils.getDownstreamProjectsOf(project, allImportedProjects, referenceIndex);
                 buildProjects(bazelWorkspaceCmdRunner, downstreamProjects, progressMonitor, rootWorkspaceProject,
                     monitor);
 
@@ -160,7 +163,10 @@ public class BazelBuilder extends IncrementalProjectBuilder {
 
         if (bazelWorkspaceCmdRunner == null) {
             super.clean(monitor);
-        } else {
+        } else if (!ComponentContext.getInstance().getProjectManager().flushCaches(getProject().getName(),
+            bazelWorkspaceCmdRunner)) {
+            // the root project (or a project we don't know) resets the whole workspace, otherwise only the package of
+            // the project, and the packages that depend on it, are flushed
             bazelWorkspaceCmdRunner.flushAspectInfoCache();
         }
 
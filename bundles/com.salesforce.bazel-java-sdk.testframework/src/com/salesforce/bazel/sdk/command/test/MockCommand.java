@@ -24,9 +24,12 @@
 package com.salesforce.bazel.sdk.command.test;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.mockito.Mockito;
 
@@ -47,6 +50,11 @@ public class MockCommand implements Command {
     public List<String> outputLines = new ArrayList<>();
     public List<String> errorLines = new ArrayList<>();
 
+    // where the output goes when the command runs, instead of the selected output lines
+    private OutputStream standardOutput;
+    private Consumer<String> stdoutLineConsumer;
+    private boolean outputDelivered = false;
+
     public MockCommand(List<String> commandTokens, TestOptions testOptions,
             TestBazelWorkspaceFactory testWorkspaceFactory) {
         this.commandTokens = commandTokens;
@@ -74,9 +82,38 @@ public class MockCommand implements Command {
 
     @Override
     public int run() throws IOException, InterruptedException {
+        List<String> lines = outputLines != null ? outputLines : new ArrayList<>();
+        if (standardOutput != null) {
+            StringBuilder output = new StringBuilder();
+            for (String line : lines) {
+                output.append(line).append('\n');
+            }
+            standardOutput.write(output.toString().getBytes(StandardCharsets.UTF_8));
+            outputDelivered = true;
+        } else if (stdoutLineConsumer != null) {
+            for (String line : lines) {
+                stdoutLineConsumer.accept(line);
+            }
+            outputDelivered = true;
+        }
         return 0;
     }
 
+    /**
+     * The stream the simulated output is written to when the command runs, see CommandBuilder.setStandardOutput()
+     */
+    public void setStandardOutput(OutputStream standardOutput) {
+        this.standardOutput = standardOutput;
+    }
+
+    /**
+     * The consumer the simulated output lines are passed to when the command runs, see
+     * CommandBuilder.setStdoutLineConsumer()
+     */
+    public void setStdoutLineConsumer(Consumer<String> stdoutLineConsumer) {
+        this.stdoutLineConsumer = stdoutLineConsumer;
+    }
+
     @Override
     public List<String> getSelectedErrorLines() {
         if (errorLines != null) {
@@ -97,6 +134,10 @@ public class MockCommand implements Command {
 
     @Override
     public List<String> getSelectedOutputLines() {
+        if (outputDelivered) {
+            // like a real command, the lines are not also retained
+            return new ArrayList<>();
+        }
         if (outputLines != null) {
             return outputLines;
         }
@@ -173,6 +173,10 @@ public class MockCommandBuilder extends CommandBuilder {
             mockCommand = new MockCustomCommand(args, testOptions, testWorkspaceFactory, simulatedOutputLines);
         }
 
+        // like a real command, the output goes to the stream or consumer the caller configured
+        mockCommand.setStandardOutput(stdout);
+        mockCommand.setStdoutLineConsumer(stdoutConsumer);
+
         return mockCommand;
     }
 
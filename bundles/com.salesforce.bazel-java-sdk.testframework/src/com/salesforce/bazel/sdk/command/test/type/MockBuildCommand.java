@@ -23,6 +23,10 @@
  */
 package com.salesforce.bazel.sdk.command.test.type;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -40,10 +44,12 @@ import com.salesforce.bazel.sdk.workspace.test.TestOptions;
  * Simulates a "bazel build //a/b/c" command
  */
 public class MockBuildCommand extends MockCommand {
+    private static final String TARGET_PATTERN_FILE_OPTION = "--target_pattern_file=";
+    private static final String BUILD_EVENT_JSON_FILE_OPTION = "--build_event_json_file=";
 
     public MockBuildCommand(List<String> commandTokens, TestOptions testOptions,
             TestBazelWorkspaceFactory testWorkspaceFactory) {
-        super(commandTokens, testOptions, testWorkspaceFactory);
+        super(expandTargetPatternFile(commandTokens), testOptions, testWorkspaceFactory);
 
         if (commandTokens.size() < 3) {
             // this is just 'bazel build' without a target, which is not valid, blow up here as there is something wrong in the calling code
@@ -73,9 +79,30 @@ public class MockBuildCommand extends MockCommand {
     }
 
     /**
-     * When the aspect build is run, the output lists the paths to all of the aspect files written to disk. To simulate
-     * the aspect command output, the MockBuildCommand needs to know the list of aspect file paths that are in the
-     * workspace.
+     * Large aspect builds pass the targets in a file (--target_pattern_file=path) instead of on the command line; the
+     * simulated outputs match on the target args, so put the targets back into the command tokens.
+     */
+    private static List<String> expandTargetPatternFile(List<String> commandTokens) {
+        List<String> expandedTokens = new ArrayList<>();
+        for (String token : commandTokens) {
+            if (token.startsWith(TARGET_PATTERN_FILE_OPTION)) {
+                try {
+                    File targetPatternFile = new File(token.substring(TARGET_PATTERN_FILE_OPTION.length()));
+                    expandedTokens.addAll(Files.readAllLines(targetPatternFile.toPath(), StandardCharsets.UTF_8));
+                } catch (IOException ioe) {
+                    throw new IllegalArgumentException("Could not read the target pattern file: " + token, ioe);
+                }
+            } else {
+                expandedTokens.add(token);
+            }
+        }
+        return expandedTokens;
+    }
+
+    /**
+     * When the aspect build is run, the build event file lists the paths to all of the aspect files written to disk. To
+     * simulate the aspect command output, the MockBuildCommand needs to know the list of aspect file paths that are in
+     * the workspace.
      * <p>
      * We need to use a Set of paths because the same aspect (ex. slf4j-api) will be used by multiple mock bazel
      * packages, so we need to make sure we only list each once
@@ -84,7 +111,7 @@ public class MockBuildCommand extends MockCommand {
         List<MockCommandSimulatedOutput> simulatedOutputLines = new ArrayList<>();
         // TODO this aspect code here is indirect, it should just populate out/err lines directly
         // TODO clean up "Problem adding jar to project" errors seen when running tests from Eclipse, seems to be during aspect phase
-        // stderr is a line per path to an aspect json file
+        // the simulated output is a line per path to an aspect json file, which is written to the build event file
 
         // build command looks like: bazel build --override_repository=bazeljavasdk_aspect=/tmp/bef/bazelws/bazel-workspace/tools/aspect ...
         MockCommandSimulatedOutputMatcher aspectCommandMatcher1 = new MockCommandSimulatedOutputMatcher(1, "build");
@@ -112,12 +139,47 @@ public class MockBuildCommand extends MockCommand {
             if (candidateOutput.doesMatch(commandTokens)) {
                 // the output is targeted to this command
                 outputLines = candidateOutput.outputLines;
-                errorLines = candidateOutput.errorLines;
+                writeBuildEventFile(commandTokens.get(BazelWorkspaceAspectProcessor.ASPECTCMD_TARGETLABEL_ARGINDEX),
+                    candidateOutput.errorLines);
                 break;
             }
         }
     }
 
+    /**
+     * Writes the BEP events that report the aspect files to the file passed with --build_event_json_file: a namedSet
+     * event with the files, and a targetCompleted event of the aspect that references it.
+     */
+    private void writeBuildEventFile(String target, List<String> aspectFilePaths) {
+        String bepFilePath = null;
+        for (String token : commandTokens) {
+            if (token.startsWith(BUILD_EVENT_JSON_FILE_OPTION)) {
+                bepFilePath = token.substring(BUILD_EVENT_JSON_FILE_OPTION.length());
+            }
+        }
+        if (bepFilePath == null) {
+            return;
+        }
+        List<String> fileObjects = new ArrayList<>();
+        for (String aspectFilePath : aspectFilePaths) {
+            File aspectFile = new File(aspectFilePath);
+            fileObjects.add("{\"name\":\"" + aspectFile.getName() + "\",\"uri\":\"" + aspectFile.toPath().toUri()
+                    + "\"}");
+        }
+        List<String> events = new ArrayList<>();
+        events.add("{\"id\":{\"namedSet\":{\"id\":\"0\"}},\"namedSetOfFiles\":{\"files\":["
+                + String.join(",", fileObjects) + "]}}");
+        events.add("{\"id\":{\"targetCompleted\":{\"label\":\"" + target
+                + "\",\"aspect\":\"@bazeljavasdk_aspect//:bzljavasdk_aspect.bzl%bzljavasdk_aspect\"}},"
+                + "\"completed\":{\"success\":true,\"outputGroup\":[{\"name\":\"intellij-info-generic\","
+                + "\"fileSets\":[{\"id\":\"0\"}]}]}}");
+        try {
+            Files.write(new File(bepFilePath).toPath(), events, StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            throw new IllegalArgumentException("Could not write the build event file: " + bepFilePath, ioe);
+        }
+    }
+
     void createCodeBuildCommand() {
         List<MockCommandSimulatedOutput> simulatedOutputLines = new ArrayList<>();
 
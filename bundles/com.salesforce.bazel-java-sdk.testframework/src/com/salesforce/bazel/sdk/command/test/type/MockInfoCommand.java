@@ -39,12 +39,16 @@ public class MockInfoCommand extends MockCommand {
         super(commandTokens, testOptions, testWorkspaceFactory);
 
         if (commandTokens.size() < 3) {
-            // this is just the generic 'bazel info', which is a legal bazel command but it provides a many line response
-            // we probably should not be issuing this command from BEF, we should use the more specific forms instead
-            throw new IllegalArgumentException(
-                    "The plugin issued the command 'bazel info' without a third arg. Please consider using a more specific 'bazel info xyz' command instead.");
-        }
-        if ("workspace".equals(commandTokens.get(2))) {
+            // this is the generic 'bazel info', which emits all keys in the 'key: value' form; the SDK uses it to
+            // fetch all workspace directories with a single command
+            addSimulatedOutputToCommandStdOut("INFO: Invocation ID: a6809b5e-3fb4-462e-8fcc-2c18575122e7",
+                "bazel-bin: " + testWorkspaceFactory.workspaceDescriptor.dirBazelBin.getAbsolutePath(),
+                "bazel-genfiles: " + testWorkspaceFactory.workspaceDescriptor.dirBazelBin.getAbsolutePath(),
+                "execution_root: " + testWorkspaceFactory.workspaceDescriptor.dirExecRoot.getAbsolutePath(),
+                "output_base: " + testWorkspaceFactory.workspaceDescriptor.outputBaseDirectory.getAbsolutePath(),
+                "output_path: " + testWorkspaceFactory.workspaceDescriptor.dirOutputPath.getAbsolutePath(),
+                "workspace: " + testWorkspaceFactory.workspaceDescriptor.workspaceRootDirectory.getAbsolutePath());
+        } else if ("workspace".equals(commandTokens.get(2))) {
             addSimulatedOutputToCommandStdOut("INFO: Invocation ID: a6809b5e-3fb4-462e-8fcc-2c18575122e7",
                 testWorkspaceFactory.workspaceDescriptor.workspaceRootDirectory.getAbsolutePath());
         } else if ("execution_root".equals(commandTokens.get(2))) {
@@ -76,6 +76,12 @@ public class MockQueryCommand extends MockCommand {
                     + "]. This is a bug in the mock testing framework.");
             }
 
+            if (commandTokens.contains("xml")) {
+                // --output xml, see writeXmlOutput
+                addSimulatedOutputToCommandStdOut(writeXmlOutput(queryPackage, queryPackageDescriptor));
+                return;
+            }
+
             // the query is for :* which means all targets, so iterate through the package's targets and write a line per target to stdout
             List<String> outputLines = new ArrayList<>();
             for (TestBazelTargetDescriptor target : queryPackageDescriptor.targets.values()) {
@@ -127,6 +133,47 @@ public class MockQueryCommand extends MockCommand {
         }
     }
 
+    // QUERY:
+    //    kind(rule, set(//projects/libs/javalib0:*)) --output xml
+    // RESPONSE: a rule element per target in the package, test rules use the test source files, others the main files
+    //    <rule class="java_library" location="/fake/abs/path/projects/libs/javalib0/BUILD:1:1" name="//projects/libs/javalib0:javalib0">
+    //        <list name="srcs">
+    //            <label value="//projects/libs/javalib0:source/dev/java/com/salesforce/fruit0/Apple0.java"/>
+    //        </list>
+    //        <rule-input name="//projects/libs/javalib0:source/dev/java/com/salesforce/fruit0/Apple0.java"/>
+    //    </rule>
+    private List<String> writeXmlOutput(String queryPackage, TestBazelPackageDescriptor queryPackageDescriptor) {
+        List<String> outputLines = new ArrayList<>();
+        outputLines.add("<?xml version=\"1.1\" encoding=\"UTF-8\" standalone=\"no\"?>");
+        outputLines.add("<query version=\"2\">");
+        for (TestBazelTargetDescriptor target : queryPackageDescriptor.targets.values()) {
+            List<String> sourceFiles = target.targetType.endsWith("_test")
+                    ? testWorkspaceFactory.workspaceDescriptor.createdTestSourceFilesForPackages.get(queryPackage)
+                    : testWorkspaceFactory.workspaceDescriptor.createdMainSourceFilesForPackages.get(queryPackage);
+            List<String> srcLabels = new ArrayList<>();
+            if (sourceFiles != null) {
+                for (String sourceFile : sourceFiles) {
+                    srcLabels.add(convertSourceFilePath(queryPackage, sourceFile));
+                }
+            }
+
+            outputLines.add("    <rule class=\"" + target.targetType + "\" location=\"/fake/abs/path/" + queryPackage
+                    + "/BUILD:1:1\" name=\"//" + target.targetPath + "\">");
+            outputLines.add("        <string name=\"name\" value=\"" + target.targetName + "\"/>");
+            outputLines.add("        <list name=\"srcs\">");
+            for (String srcLabel : srcLabels) {
+                outputLines.add("            <label value=\"" + srcLabel + "\"/>");
+            }
+            outputLines.add("        </list>");
+            for (String srcLabel : srcLabels) {
+                outputLines.add("        <rule-input name=\"" + srcLabel + "\"/>");
+            }
+            outputLines.add("    </rule>");
+        }
+        outputLines.add("</query>");
+        return outputLines;
+    }
+
     private String convertSourceFilePath(String queryPackage, String rawSourceFilePath) {
         // convert: projects/libs/javalib0/source/dev/java/com/salesforce/fruit0/Apple0.java
         // to:    //projects/libs/javalib0:source/dev/java/com/salesforce/fruit0/Apple0.java
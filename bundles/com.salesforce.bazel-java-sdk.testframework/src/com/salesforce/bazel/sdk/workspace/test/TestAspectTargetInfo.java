@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.workspace.test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
+import com.salesforce.bazel.sdk.model.BazelTargetKind;
+
+/**
+ * Aspect data of a target, created in memory for tests that do not need the json files written by
+ * {@link TestAspectFileCreator}.
+ */
+public class TestAspectTargetInfo extends AspectTargetInfo {
+
+    /**
+     * Creates the aspect data of a java_library target with the passed deps.
+     */
+    public static AspectTargetInfo createInfo(String label, String... deps) {
+        return new TestAspectTargetInfo(label, "java_library", deps);
+    }
+
+    /**
+     * Creates the aspect data of a target of the passed kind with the passed deps.
+     */
+    public static AspectTargetInfo createInfo(String label, BazelTargetKind kind, String... deps) {
+        return new TestAspectTargetInfo(label, kind.toString().toLowerCase(), deps);
+    }
+
+    private TestAspectTargetInfo(String label, String kind, String... deps) {
+        super(new File(""), "some/path", kind, label, Arrays.asList(deps), Collections.emptyList()); // $SLASH_OK
+    }
+}
@@ -28,6 +28,10 @@ load(
     "make_intellij_info_aspect",
 )
 
+# Version of the data emitted by this aspect. The Bazel Java SDK persists the aspect data across restarts of the
+# tool, and discards it when this version changes. Bump it whenever a change here changes the emitted data.
+BZLJAVASDK_ASPECT_VERSION = "1"
+
 EXTRA_DEPS = [
     "embed",  # From go rules (bazel only)
 ]
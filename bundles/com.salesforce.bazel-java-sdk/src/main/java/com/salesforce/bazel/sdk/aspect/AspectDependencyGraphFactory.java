@@ -33,18 +33,40 @@
  */
 package com.salesforce.bazel.sdk.aspect;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import com.salesforce.bazel.sdk.graph.BazelDependencyGraph;
 import com.salesforce.bazel.sdk.graph.BazelDependencyGraphFactory;
 import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.util.SimplePerfRecorder;
 
 /**
  * Factory that uses the set of aspect infos generated for a workspace to construct the dependency graph.
+ * <p>
+ * The edges of a large workspace are computed in parallel: the targets are partitioned, and each partition collects
+ * its edges in its own buffer, as indexes into a shared table of labels. The buffers are then concatenated in
+ * partition order and added to the graph at once (see {@link BazelDependencyGraph#addDependencies}), so the graph is
+ * the same as the one built serially.
  */
 public class AspectDependencyGraphFactory {
 
+    /**
+     * The edges are computed in parallel when there are at least this many aspect infos.
+     */
+    public static int PARALLEL_BUILD_THRESHOLD = 2000;
+
+    /**
+     * Number of aspect infos in each partition of a parallel build.
+     */
+    private static final int PARTITION_SIZE = 500;
+
     /**
      * Builds the dependency graph using the data collected by running aspects. It is typical that the list of aspects
      * covers all packages in the Workspace, but for some use cases it may be possible to use a subset of packages.
@@ -54,36 +76,71 @@ public class AspectDependencyGraphFactory {
      * edge in between two packages if any target in package A depends on any target in package B.
      */
     public static BazelDependencyGraph build(AspectTargetInfos aspects, boolean includeTarget) {
+        long startTimeMS = System.currentTimeMillis();
         BazelDependencyGraph graph = BazelDependencyGraphFactory.build("AspectDependencyGraphFactory", new HashMap<>());
 
         // TODO the stripTargetFromLabel invocations here need to be removed in order for us to solve the
         // the cyclical dependency problems tracked by https://github.com/salesforce/bazel-java-sdk/issues/23
         // the InMemoryDependencyGraph will also need to be updated to support target level edges
 
-        for (AspectTargetInfo info : aspects.getTargetInfos()) {
-            String sourcePackagePath = info.getLabelPath();
-            if (!includeTarget) {
-                sourcePackagePath = stripTargetFromLabel(sourcePackagePath);
-            }
-            List<String> depLabels = info.getDeps();
-            for (String depLabel : depLabels) {
-                if (!includeTarget) {
-                    depLabel = stripTargetFromLabel(depLabel);
-                }
+        List<AspectTargetInfo> infoList = new ArrayList<>();
+        aspects.getTargetInfos().forEach(infoList::add);
+        AspectTargetInfo[] infos = infoList.toArray(new AspectTargetInfo[0]);
+        LabelTable labelTable = new LabelTable(includeTarget);
+        EdgeBuffer[] partitions;
+        if (infos.length < PARALLEL_BUILD_THRESHOLD) {
+            partitions = new EdgeBuffer[] { collectEdges(infos, 0, infos.length, labelTable) };
+        } else {
+            EdgeBuffer[] buffers = new EdgeBuffer[((infos.length - 1) / PARTITION_SIZE) + 1];
+            // the parallel stream runs in the pool that submits it
+            AspectTargetInfoFactory.WORK_POOL.submit(() -> IntStream.range(0, buffers.length).parallel()
+                    .forEach(i -> buffers[i] = collectEdges(infos, i * PARTITION_SIZE,
+                        Math.min(infos.length, (i + 1) * PARTITION_SIZE), labelTable)))
+                    .join();
+            partitions = buffers;
+        }
 
-                if (sourcePackagePath.equals(depLabel)) {
+        int edgeCount = 0;
+        for (EdgeBuffer partition : partitions) {
+            edgeCount += partition.count;
+        }
+        int[] sources = new int[edgeCount];
+        int[] deps = new int[edgeCount];
+        int offset = 0;
+        for (EdgeBuffer partition : partitions) {
+            System.arraycopy(partition.sources, 0, sources, offset, partition.count);
+            System.arraycopy(partition.deps, 0, deps, offset, partition.count);
+            offset += partition.count;
+        }
+        graph.addDependencies(labelTable.getLabels(), sources, deps, edgeCount);
+        SimplePerfRecorder.addTime("aspect_graph_build", startTimeMS);
+        return graph;
+    }
+
+    // INTERNAL
+
+    /**
+     * Computes the edges of the aspect infos from (inclusive) to to (exclusive).
+     */
+    private static EdgeBuffer collectEdges(AspectTargetInfo[] infos, int from, int to, LabelTable labelTable) {
+        EdgeBuffer edges = new EdgeBuffer(to - from);
+        for (int i = from; i < to; i++) {
+            AspectTargetInfo info = infos[i];
+            int source = labelTable.getIndex(info.getLabelPath());
+            for (String depLabel : info.getDeps()) {
+                int dep = labelTable.getIndex(depLabel);
+                if (source == dep) {
                     // this is a intra-package dependency (a common case when targets are stripped)
                     continue;
                 }
-
-                graph.addDependency(sourcePackagePath, depLabel);
+                edges.add(source, dep);
             }
         }
-        return graph;
+        return edges;
     }
 
-    private static String stripTargetFromLabel(String labelStr) {
-        BazelLabel label = new BazelLabel(labelStr);
+    static String stripTargetFromLabel(String labelStr) {
+        BazelLabel label = BazelLabel.valueOf(labelStr);
         if (label.isExternalRepoLabel()) {
             // this is an external workspace ref, we do not change these since they are correct as-is
             // ex:  @maven//:junit_junit
@@ -92,4 +149,58 @@ public class AspectDependencyGraphFactory {
         return label.getPackagePath(true);
     }
 
+    /**
+     * The labels of the graph, shared by the partitions. Each label (package path when the targets are stripped) gets
+     * an index on first use.
+     */
+    private static final class LabelTable {
+        private final boolean includeTarget;
+        private final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+        // most deps point to a few popular targets, so the index of a label is reused rather than stripped again
+        private final Map<String, Integer> strippedIndexes;
+        private final AtomicInteger nextIndex = new AtomicInteger();
+
+        private LabelTable(boolean includeTarget) {
+            this.includeTarget = includeTarget;
+            strippedIndexes = includeTarget ? null : new ConcurrentHashMap<>();
+        }
+
+        private int getIndex(String label) {
+            if (includeTarget) {
+                return indexes.computeIfAbsent(label, l -> nextIndex.getAndIncrement());
+            }
+            return strippedIndexes.computeIfAbsent(label, l -> indexes
+                    .computeIfAbsent(stripTargetFromLabel(l), packagePath -> nextIndex.getAndIncrement()));
+        }
+
+        private String[] getLabels() {
+            String[] labels = new String[nextIndex.get()];
+            indexes.forEach((label, index) -> labels[index] = label);
+            return labels;
+        }
+    }
+
+    /**
+     * The edges computed by one partition, in the order of its aspect infos.
+     */
+    private static final class EdgeBuffer {
+        private int[] sources;
+        private int[] deps;
+        private int count = 0;
+
+        private EdgeBuffer(int infoCount) {
+            sources = new int[Math.max(16, infoCount * 4)];
+            deps = new int[sources.length];
+        }
+
+        private void add(int source, int dep) {
+            if (count == sources.length) {
+                sources = Arrays.copyOf(sources, count * 2);
+                deps = Arrays.copyOf(deps, count * 2);
+            }
+            sources[count] = source;
+            deps[count] = dep;
+            count++;
+        }
+    }
 }
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.aspect;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table of the strings (labels, paths) held by the {@link AspectTargetInfo}s of a workspace.
+ * <p>
+ * The same labels and file paths appear in the aspect data of many targets, as the dependencies of a target are listed
+ * by each of its dependents. The infos store the ids of their strings in int arrays, and expose them with read only
+ * list views, so that each distinct string is held once.
+ * <p>
+ * The table is safe for concurrent use and does not lock on lookups, the aspect files are parsed by several threads.
+ * <p>
+ * Retention: each workspace has its own table, owned by its aspect processor, which replaces the table when its
+ * aspect cache is flushed. The list views of an info reference the table they were built with, so the infos built
+ * before a flush (e.g. the last good ones) stay valid, and the old table is collected along with the last of them. A
+ * table holds at most {@link #MAX_SIZE} strings; once it is full, new strings are not interned and the infos keep
+ * them as plain strings.
+ */
+public final class AspectStringTable {
+
+    /**
+     * Id of a null string.
+     */
+    public static final int NO_ID = -1;
+
+    /**
+     * Returned by {@link #intern(String)} for a string that is not in the table when the table is full.
+     */
+    public static final int NOT_INTERNED = -2;
+
+    private static final int[] NO_IDS = new int[0];
+
+    // strings are stored in fixed size chunks, so that the table grows without copying or locking
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 1 << 15;
+
+    /**
+     * Maximum number of strings held by a table.
+     */
+    public static final int MAX_SIZE = CHUNK_SIZE * MAX_CHUNKS;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicReferenceArray<AtomicReferenceArray<String>> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final int maxSize;
+
+    public AspectStringTable() {
+        this(MAX_SIZE);
+    }
+
+    // visible for tests
+    AspectStringTable(int maxSize) {
+        this.maxSize = Math.min(maxSize, MAX_SIZE);
+    }
+
+    /**
+     * Returns the id of the string, adding it to the table if needed. Returns {@link #NO_ID} for null, and
+     * {@link #NOT_INTERNED} if the string is not in the table and the table is full.
+     */
+    public int intern(String string) {
+        if (string == null) {
+            return NO_ID;
+        }
+        Integer id = ids.get(string);
+        if (id == null) {
+            // not stored in the map if the table is full
+            id = ids.computeIfAbsent(string, this::add);
+            if (id == null) {
+                return NOT_INTERNED;
+            }
+        }
+        return id;
+    }
+
+    // stores the string under a new id, the id is published to other threads by the ids map
+    private Integer add(String string) {
+        int id = nextId.getAndIncrement();
+        if (id >= maxSize) {
+            nextId.decrementAndGet();
+            return null;
+        }
+        int chunkIndex = id >>> CHUNK_BITS;
+        AtomicReferenceArray<String> chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            chunks.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = chunks.get(chunkIndex);
+        }
+        chunk.set(id & (CHUNK_SIZE - 1), string);
+        return id;
+    }
+
+    /**
+     * Returns the ids of the strings, see {@link #intern(String)}, or null if one of them could not be interned.
+     */
+    public int[] internAll(Collection<String> strings) {
+        if ((strings == null) || strings.isEmpty()) {
+            return NO_IDS;
+        }
+        int[] stringIds = new int[strings.size()];
+        int i = 0;
+        for (String string : strings) {
+            int id = intern(string);
+            if (id == NOT_INTERNED) {
+                return null;
+            }
+            stringIds[i++] = id;
+        }
+        return stringIds;
+    }
+
+    /**
+     * Returns the string with the passed id, or null for {@link #NO_ID}.
+     */
+    public String get(int id) {
+        return id == NO_ID ? null : chunks.get(id >>> CHUNK_BITS).get(id & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * Returns the instance of the string held by the table, so that equal strings share one instance. Returns the
+     * passed string if the table is full.
+     */
+    public String canonicalize(String string) {
+        int id = intern(string);
+        return id == NOT_INTERNED ? string : get(id);
+    }
+
+    /**
+     * Returns a read only list view of the strings with the passed ids.
+     */
+    public List<String> asList(int[] stringIds) {
+        if (stringIds.length == 0) {
+            return Collections.emptyList();
+        }
+        return new StringList(this, stringIds);
+    }
+
+    /**
+     * Interns the strings, and returns a read only list view of them that holds only their ids. If the table is full,
+     * returns a read only copy of the strings instead.
+     */
+    public List<String> compact(Collection<String> strings) {
+        int[] stringIds = internAll(strings);
+        if (stringIds == null) {
+            return Collections.unmodifiableList(new ArrayList<>(strings));
+        }
+        return asList(stringIds);
+    }
+
+    /**
+     * Returns the number of strings in the table.
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    private static final class StringList extends AbstractList<String> implements RandomAccess {
+        private final AspectStringTable table;
+        private final int[] stringIds;
+
+        StringList(AspectStringTable table, int[] stringIds) {
+            this.table = table;
+            this.stringIds = stringIds;
+        }
+
+        @Override
+        public String get(int index) {
+            return table.get(stringIds[index]);
+        }
+
+        @Override
+        public int size() {
+            return stringIds.length;
+        }
+    }
+}
@@ -37,6 +37,8 @@
 package com.salesforce.bazel.sdk.aspect;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.salesforce.bazel.sdk.model.BazelLabel;
@@ -66,9 +68,14 @@ import com.salesforce.bazel.sdk.model.BazelTargetKind;
  * </pre>
  * <p>
  * See resources/bzljavasdk_aspect.bzl for the code that creates the JSON files
+ * <p>
+ * The infos of a large workspace are held for the lifetime of the tool, so their strings are shared through the
+ * {@link AspectStringTable} of the workspace, and the lists are read only views of the string ids. Infos built
+ * without a table keep plain strings.
  */
 public class AspectTargetInfo {
 
+    protected final AspectStringTable stringTable; // may be null
     protected final File aspectDataFile; // full path to the file on the file system
     protected final String workspaceRelativePath; // relative path on the filesystem within the workspace
     protected final List<String> deps;
@@ -151,7 +158,7 @@ public class AspectTargetInfo {
      * Label of the target.
      */
     public BazelLabel getLabel() {
-        return new BazelLabel(label);
+        return BazelLabel.valueOf(label);
     }
 
     /**
@@ -163,12 +170,42 @@ public class AspectTargetInfo {
 
     protected AspectTargetInfo(File aspectDataFile, String workspaceRelativePath, String kind, String label,
             List<String> deps, List<String> sources) {
+        this(null, aspectDataFile, workspaceRelativePath, kind, label, deps, sources);
+    }
+
+    /**
+     * @param stringTable
+     *            the table that holds the strings of the info, or null to keep plain strings
+     */
+    protected AspectTargetInfo(AspectStringTable stringTable, File aspectDataFile, String workspaceRelativePath,
+            String kind, String label, List<String> deps, List<String> sources) {
+        this.stringTable = stringTable;
         this.aspectDataFile = aspectDataFile;
-        this.workspaceRelativePath = workspaceRelativePath;
-        this.kind = kind;
-        this.label = label;
-        this.deps = deps;
-        this.sources = sources;
+        this.workspaceRelativePath = canonicalize(workspaceRelativePath);
+        this.kind = canonicalize(kind);
+        this.label = canonicalize(label);
+        this.deps = compact(deps);
+        this.sources = compact(sources);
+    }
+
+    /**
+     * Returns the instance of the string held by the string table of this info.
+     */
+    protected String canonicalize(String string) {
+        return stringTable == null ? string : stringTable.canonicalize(string);
+    }
+
+    /**
+     * Returns a read only list of the strings, backed by the string table of this info.
+     */
+    protected List<String> compact(List<String> strings) {
+        if (stringTable != null) {
+            return stringTable.compact(strings);
+        }
+        if ((strings == null) || strings.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(strings));
     }
 
 }
@@ -34,12 +34,20 @@
 package com.salesforce.bazel.sdk.aspect;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -47,6 +55,7 @@ import org.json.simple.parser.JSONParser;
 
 import com.salesforce.bazel.sdk.aspect.jvm.JVMAspectTargetInfoFactoryProvider;
 import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.util.SimplePerfRecorder;
 
 /**
  * Factory for AspectTargetInfo instances, using the JSON emitted from the aspect. Each rule type will have a different
@@ -57,11 +66,32 @@ public class AspectTargetInfoFactory {
     private static final LogHelper LOG = LogHelper.log(AspectTargetInfoFactory.class);
     public static final String ASPECT_FILENAME_SUFFIX = ".bzljavasdk-data.json";
 
-    protected static List<AspectTargetInfoFactoryProvider> providers = new ArrayList<>();
+    /**
+     * The providers are called concurrently by the threads that load the aspect files, so they must be thread safe.
+     */
+    protected static List<AspectTargetInfoFactoryProvider> providers = new CopyOnWriteArrayList<>();
     static {
         providers.add(new JVMAspectTargetInfoFactoryProvider());
     }
 
+    /**
+     * Aspect files are parsed in parallel when there are at least this many of them.
+     */
+    public static int PARALLEL_LOAD_THRESHOLD = 16;
+
+    /**
+     * Aspect files larger than this are memory mapped, smaller ones are read into a buffer (mapping a file has a fixed
+     * cost that is not worth paying for the typical aspect file of a few KB).
+     */
+    private static final long MEMORY_MAP_THRESHOLD_BYTES = 256 * 1024;
+
+    /**
+     * Bounded pool that parses the aspect files, and computes the edges of large dependency graphs (see
+     * AspectDependencyGraphFactory). It is separate from the common pool so that loading a large workspace does not
+     * starve other users of the common pool.
+     */
+    static final ForkJoinPool WORK_POOL = createWorkPool();
+
     /**
      * During initialization, add providers that can parse target specific json in the apsect files.
      */
@@ -75,6 +105,15 @@ public class AspectTargetInfoFactory {
      */
     public static Map<String, AspectTargetInfo> loadAspectFilePaths(List<String> aspectFilePaths)
             throws IOException, InterruptedException {
+        return loadAspectFilePaths(aspectFilePaths, new AspectStringTable());
+    }
+
+    /**
+     * Constructs a map of label -> @link AspectTargetInfo} from a list of file paths, sharing the strings of the infos
+     * through the passed table.
+     */
+    public static Map<String, AspectTargetInfo> loadAspectFilePaths(List<String> aspectFilePaths,
+            AspectStringTable stringTable) throws IOException, InterruptedException {
 
         List<File> fileList = new ArrayList<>();
         for (String aspectFilePath : aspectFilePaths) {
@@ -82,7 +121,7 @@ public class AspectTargetInfoFactory {
                 fileList.add(new File(aspectFilePath));
             }
         }
-        return loadAspectFiles(fileList);
+        return loadAspectFiles(fileList, stringTable);
     }
 
     /**
@@ -90,9 +129,31 @@ public class AspectTargetInfoFactory {
      * {@link JSONObject} and then converting that {@link JSONObject} to an {@link AspectTargetInfo} object.
      */
     public static Map<String, AspectTargetInfo> loadAspectFiles(List<File> aspectFiles) {
+        return loadAspectFiles(aspectFiles, new AspectStringTable());
+    }
+
+    /**
+     * Constructs a map of label -> {@link AspectTargetInfo} from a list of files, sharing the strings of the infos
+     * through the passed table.
+     */
+    public static Map<String, AspectTargetInfo> loadAspectFiles(List<File> aspectFiles,
+            AspectStringTable stringTable) {
+        long startTimeMS = System.currentTimeMillis();
+        AspectTargetInfo[] buildInfos = new AspectTargetInfo[aspectFiles.size()];
+        if (aspectFiles.size() < PARALLEL_LOAD_THRESHOLD) {
+            for (int i = 0; i < buildInfos.length; i++) {
+                buildInfos[i] = loadAspectFile(aspectFiles.get(i), stringTable);
+            }
+        } else {
+            // the parallel stream runs in the pool that submits it
+            WORK_POOL.submit(() -> IntStream.range(0, buildInfos.length).parallel()
+                    .forEach(i -> buildInfos[i] = loadAspectFile(aspectFiles.get(i), stringTable))).join();
+        }
+
         Map<String, AspectTargetInfo> infos = new HashMap<>();
-        for (File aspectFile : aspectFiles) {
-            AspectTargetInfo buildInfo = loadAspectFile(aspectFile);
+        for (int i = 0; i < buildInfos.length; i++) {
+            AspectTargetInfo buildInfo = buildInfos[i];
+            File aspectFile = aspectFiles.get(i);
             if (buildInfo == null) {
                 // bug in the aspect parsing code
                 LOG.error("The aspect file could not be parsed for aspect path {}", aspectFile.getAbsolutePath());
@@ -108,6 +169,8 @@ public class AspectTargetInfoFactory {
                     buildInfo.workspaceRelativePath, aspectFile.getAbsolutePath());
             }
         }
+        SimplePerfRecorder.addTime("aspect_file_load", startTimeMS);
+        LOG.info("Loaded {} aspect files in {} millis", aspectFiles.size(), System.currentTimeMillis() - startTimeMS);
         return infos;
     }
 
@@ -116,22 +179,31 @@ public class AspectTargetInfoFactory {
      * {@link JSONObject} and then converting that {@link JSONObject} to an {@link AspectTargetInfo} object.
      */
     public static AspectTargetInfo loadAspectFile(File aspectFile) {
+        return loadAspectFile(aspectFile, null);
+    }
+
+    /**
+     * Constructs an {@link AspectTargetInfo} from a file, sharing its strings through the passed table, which may be
+     * null to keep plain strings.
+     */
+    public static AspectTargetInfo loadAspectFile(File aspectFile, AspectStringTable stringTable) {
         AspectTargetInfo targetInfo = null;
         JSONParser jsonParser = new JSONParser();
 
         if (aspectFile.exists()) {
+            long startTimeNanos = System.nanoTime();
             JSONObject jsonObject = null;
             try {
-                jsonObject = (JSONObject) jsonParser.parse(new FileReader(aspectFile));
+                jsonObject = (JSONObject) jsonParser.parse(readAspectFile(aspectFile));
             } catch (Exception je) {
                 LOG.error("JSON file {} has illegal characters: {}", aspectFile.getAbsolutePath(),
                     aspectFile.getAbsolutePath());
                 throw new IllegalArgumentException(je);
             }
-            targetInfo = loadAspectFromJson(aspectFile, jsonObject, jsonParser);
+            targetInfo = loadAspectFromJson(stringTable, aspectFile, jsonObject, jsonParser);
             if (targetInfo != null) {
-                LOG.info("Loaded aspect for target {} from file {}", targetInfo.label,
-                    targetInfo.aspectDataFile.getAbsolutePath());
+                LOG.info("Loaded aspect for target {} from file {} in {} micros", targetInfo.label,
+                    targetInfo.aspectDataFile.getAbsolutePath(), (System.nanoTime() - startTimeNanos) / 1000);
             }
         } else {
             LOG.error("Aspect JSON file {} is missing.", aspectFile.getAbsolutePath());
@@ -141,7 +213,40 @@ public class AspectTargetInfoFactory {
 
     // INTERNAL
 
-    static AspectTargetInfo loadAspectFromJson(File aspectDataFile, JSONObject aspectObject, JSONParser jsonParser) {
+    /**
+     * Reads the whole aspect file with a single read into a buffer, or by mapping it if it is large, and decodes it.
+     */
+    static String readAspectFile(File aspectFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(aspectFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer;
+            // on Windows a mapped file stays locked until the buffer is collected, which would block the next build
+            if ((size > MEMORY_MAP_THRESHOLD_BYTES) && (File.separatorChar == '/')) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && (channel.read(buffer) >= 0)) {
+                    // keep reading until the buffer is full or the end of the file
+                }
+                buffer.flip();
+            }
+            return StandardCharsets.UTF_8.decode(buffer).toString();
+        }
+    }
+
+    private static ForkJoinPool createWorkPool() {
+        int parallelism = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("AspectWorker-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+    }
+
+    static AspectTargetInfo loadAspectFromJson(AspectStringTable stringTable, File aspectDataFile,
+            JSONObject aspectObject, JSONParser jsonParser) {
         AspectTargetInfo info = null;
 
         try {
@@ -157,7 +262,7 @@ public class AspectTargetInfoFactory {
             String label = loadLabel(aspectObject);
 
             for (AspectTargetInfoFactoryProvider provider : providers) {
-                info = provider.buildAspectTargetInfo(aspectDataFile, aspectObject, jsonParser,
+                info = provider.buildAspectTargetInfo(stringTable, aspectDataFile, aspectObject, jsonParser,
                     build_file_artifact_location, kind, label, deps);
                 if (info != null) {
                     break;
@@ -47,4 +47,14 @@ public interface AspectTargetInfoFactoryProvider {
     AspectTargetInfo buildAspectTargetInfo(File aspectDataFile, JSONObject jsonObject, JSONParser jsonParser,
             String workspaceRelativePath, String kind, String label, List<String> deps);
 
+    /**
+     * Builds the info, sharing its strings through the string table of the workspace. Providers that do not support
+     * string tables build the info with plain strings.
+     */
+    default AspectTargetInfo buildAspectTargetInfo(AspectStringTable stringTable, File aspectDataFile,
+            JSONObject jsonObject, JSONParser jsonParser, String workspaceRelativePath, String kind, String label,
+            List<String> deps) {
+        return buildAspectTargetInfo(aspectDataFile, jsonObject, jsonParser, workspaceRelativePath, kind, label, deps);
+    }
+
 }
@@ -0,0 +1,344 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.aspect;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.model.BazelTargetKind;
+
+/**
+ * Computes the transitive closures of a set of {@link AspectTargetInfo}s. The infos are interned to dense ids, and
+ * the closures are computed once for the whole set, in reverse topological order of the strongly connected
+ * components, as bitsets over those ids. The closure of a target is the union of the closures of its dependencies,
+ * so no target is visited more than once.
+ * <p>
+ * The sets returned by this engine are unmodifiable views over the bitsets. Targets of a package typically share
+ * most of their dependencies, and each of their closures costs one bit per target of the set instead of a hash set
+ * entry per dependency. The sets only reference their own bitset and the id table shared by all of the sets of the
+ * engine, so the engine itself can be discarded once the closures are retrieved.
+ */
+public class AspectTransitiveClosureEngine {
+    private static final LogHelper LOG = LogHelper.log(AspectTransitiveClosureEngine.class);
+
+    private final InfoTable table;
+
+    /**
+     * The targets reachable from each target, through at least one edge. A target is in its own closure only if it
+     * is part of a cycle. Targets of the same cycle share the same bitset.
+     */
+    private final BitSet[] closures;
+
+    private Set<AspectTargetInfo> all;
+
+    /**
+     * @param depNameToTargetInfo
+     *            the infos, by label. Dependencies that are not in the map are excluded from the closures, along with
+     *            their own dependencies.
+     */
+    public AspectTransitiveClosureEngine(Map<BazelLabel, AspectTargetInfo> depNameToTargetInfo) {
+        int size = depNameToTargetInfo.size();
+        AspectTargetInfo[] infos = new AspectTargetInfo[size];
+        Map<BazelLabel, Integer> ids = new HashMap<>(size * 2);
+        int id = 0;
+        for (Map.Entry<BazelLabel, AspectTargetInfo> entry : depNameToTargetInfo.entrySet()) {
+            infos[id] = entry.getValue();
+            ids.put(entry.getKey(), id);
+            id++;
+        }
+        table = new InfoTable(infos, ids);
+
+        // the dependency ids are only needed to compute the closures
+        int[][] deps = new int[size][];
+        Map<String, Integer> depIds = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            List<String> depLabels = infos[i].getDeps();
+            int[] targetDeps = new int[depLabels.size()];
+            int count = 0;
+            for (String depLabel : depLabels) {
+                Integer depId = depIds.get(depLabel);
+                if (depId == null) {
+                    depId = ids.get(BazelLabel.valueOf(depLabel));
+                    if (depId == null) {
+                        LOG.info("No AspectTargetInfo exists for " + depLabel
+                                + "; it and its descendents are excluded from analysis.");
+                        depId = -1;
+                    }
+                    depIds.put(depLabel, depId);
+                }
+                if (depId >= 0) {
+                    targetDeps[count++] = depId;
+                }
+            }
+            deps[i] = count == targetDeps.length ? targetDeps : Arrays.copyOf(targetDeps, count);
+        }
+
+        closures = new BitSet[size];
+        computeClosures(deps);
+    }
+
+    /**
+     * Returns all of the infos of the engine.
+     */
+    public Set<AspectTargetInfo> getAll() {
+        if (all == null) {
+            BitSet bits = new BitSet(table.infos.length);
+            bits.set(0, table.infos.length);
+            all = new ClosureSet(table, bits);
+        }
+        return all;
+    }
+
+    /**
+     * Returns the transitive closure of the dependencies of the passed info, which must be one of the infos of the
+     * engine. The info itself is part of its closure only if it is a java_test or java_import target.
+     */
+    public Set<AspectTargetInfo> getTransitiveClosure(AspectTargetInfo aspectTargetInfo) {
+        int id = getId(aspectTargetInfo);
+
+        // now add this aspect to the transitive closure if test or import (TODO why?)
+        boolean includeSelf = false;
+        BazelTargetKind kind = aspectTargetInfo.getKind();
+        if (kind != null) {
+            includeSelf = kind.isKind("java_test") || kind.isKind("java_import");
+        } else {
+            LOG.info("AspectInfo " + aspectTargetInfo.getLabel().getLabelPath()
+                    + " does not have an associated target kind.");
+        }
+
+        BitSet closure = closures[id];
+        if (closure.get(id) != includeSelf) {
+            closure = (BitSet) closure.clone();
+            closure.set(id, includeSelf);
+        }
+        return new ClosureSet(table, closure);
+    }
+
+    /**
+     * Returns the passed infos, which must be infos of the engine, along with the union of their transitive closures.
+     */
+    public Set<AspectTargetInfo> getTransitiveClosure(Collection<AspectTargetInfo> aspectTargetInfos) {
+        BitSet union = new BitSet(table.infos.length);
+        for (AspectTargetInfo aspectTargetInfo : aspectTargetInfos) {
+            int id = getId(aspectTargetInfo);
+            union.set(id);
+            union.or(closures[id]);
+        }
+        return new ClosureSet(table, union);
+    }
+
+    // INTERNAL
+
+    private int getId(AspectTargetInfo aspectTargetInfo) {
+        int id = table.getId(aspectTargetInfo);
+        if (id < 0) {
+            throw new IllegalArgumentException("Unknown target " + aspectTargetInfo.getLabelPath());
+        }
+        return id;
+    }
+
+    /**
+     * Tarjan's strongly connected components algorithm, iterative so that deep graphs do not overflow the stack. The
+     * components are completed in reverse topological order, so the closures of all of the dependencies of a
+     * component are known when it is completed.
+     */
+    private void computeClosures(int[][] deps) {
+        int size = deps.length;
+        int[] index = new int[size];
+        int[] lowLink = new int[size];
+        int[] component = new int[size];
+        boolean[] onStack = new boolean[size];
+        Arrays.fill(index, -1);
+
+        int[] sccStack = new int[size];
+        int sccStackSize = 0;
+        int[] callStack = new int[size];
+        int[] edgeCursor = new int[size];
+        int nextIndex = 0;
+        int nextComponent = 0;
+
+        for (int root = 0; root < size; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int callStackSize = 0;
+            callStack[callStackSize++] = root;
+            index[root] = lowLink[root] = nextIndex++;
+            sccStack[sccStackSize++] = root;
+            onStack[root] = true;
+            edgeCursor[root] = 0;
+
+            while (callStackSize > 0) {
+                int v = callStack[callStackSize - 1];
+                if (edgeCursor[v] < deps[v].length) {
+                    int w = deps[v][edgeCursor[v]++];
+                    if (index[w] < 0) {
+                        index[w] = lowLink[w] = nextIndex++;
+                        sccStack[sccStackSize++] = w;
+                        onStack[w] = true;
+                        edgeCursor[w] = 0;
+                        callStack[callStackSize++] = w;
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                    continue;
+                }
+
+                // all edges of v are done
+                callStackSize--;
+                if (callStackSize > 0) {
+                    int parent = callStack[callStackSize - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                }
+                if (lowLink[v] == index[v]) {
+                    // v is the root of a component, pop it
+                    int componentStart = sccStackSize;
+                    do {
+                        componentStart--;
+                        onStack[sccStack[componentStart]] = false;
+                        component[sccStack[componentStart]] = nextComponent;
+                    } while (sccStack[componentStart] != v);
+
+                    BitSet closure = new BitSet(size);
+                    for (int i = componentStart; i < sccStackSize; i++) {
+                        int member = sccStack[i];
+                        for (int dep : deps[member]) {
+                            closure.set(dep);
+                            if (component[dep] != nextComponent) {
+                                closure.or(closures[dep]);
+                            }
+                        }
+                    }
+                    for (int i = componentStart; i < sccStackSize; i++) {
+                        closures[sccStack[i]] = closure;
+                    }
+                    sccStackSize = componentStart;
+                    nextComponent++;
+                }
+            }
+        }
+    }
+
+    /**
+     * The interned ids of the infos of an engine. Immutable, and shared by all of the sets of the engine.
+     */
+    static final class InfoTable {
+        private final AspectTargetInfo[] infos;
+        private final Map<BazelLabel, Integer> ids;
+
+        InfoTable(AspectTargetInfo[] infos, Map<BazelLabel, Integer> ids) {
+            this.infos = infos;
+            this.ids = ids;
+        }
+
+        int size() {
+            return infos.length;
+        }
+
+        // returns the id of the info, or -1 if it is not one of the infos of the table
+        int getId(AspectTargetInfo aspectTargetInfo) {
+            String labelPath = aspectTargetInfo.getLabelPath();
+            if (labelPath == null) {
+                return -1;
+            }
+            Integer id = ids.get(BazelLabel.valueOf(labelPath));
+            return (id != null) && (infos[id] == aspectTargetInfo) ? id : -1;
+        }
+    }
+
+    /**
+     * Unmodifiable set view over a bitset of interned ids.
+     */
+    static final class ClosureSet extends AbstractSet<AspectTargetInfo> {
+        private final InfoTable table;
+        private final BitSet bits;
+        private final int size;
+
+        ClosureSet(InfoTable table, BitSet bits) {
+            this.table = table;
+            this.bits = bits;
+            size = bits.cardinality();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * The table that holds the infos of the set, shared with the other sets of the engine.
+         */
+        InfoTable getTable() {
+            return table;
+        }
+
+        /**
+         * The number of words of the bitset, the memory retained by the set on its own.
+         */
+        int getWordCount() {
+            return bits.size() / Long.SIZE;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof AspectTargetInfo)) {
+                return false;
+            }
+            int id = table.getId((AspectTargetInfo) o);
+            return (id >= 0) && bits.get(id);
+        }
+
+        @Override
+        public Iterator<AspectTargetInfo> iterator() {
+            return new Iterator<AspectTargetInfo>() {
+                private int next = bits.nextSetBit(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public AspectTargetInfo next() {
+                    if (next < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    AspectTargetInfo info = table.infos[next];
+                    next = bits.nextSetBit(next + 1);
+                    return info;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.aspect;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import com.salesforce.bazel.sdk.graph.BazelDependencyGraph;
+import com.salesforce.bazel.sdk.graph.BazelDependencyGraphFactory;
+import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+
+/**
+ * Dependency graph of a workspace that is kept current as the aspect data of its targets is computed and flushed, so
+ * that ordering, downstream project and impact queries do not rebuild the graph of the entire workspace like
+ * {@link AspectDependencyGraphFactory} does.
+ * <p>
+ * Each target contributes the edges from its package to the packages of its deps. An edge is in the graph while at
+ * least one target contributes it, so applying new aspect data for a target, or removing it, only touches the edges of
+ * that target. Listeners are notified of the labels whose deps changed, after the change has been applied.
+ * <p>
+ * This class is thread safe. Queries run under a read lock, see {@link #query(Function)}.
+ */
+public class IncrementalAspectDependencyGraph {
+    private static final LogHelper LOG = LogHelper.log(IncrementalAspectDependencyGraph.class);
+
+    /**
+     * Notified after the deps of some labels of the graph changed.
+     */
+    public interface Listener {
+
+        /**
+         * @param changedLabels
+         *            the labels of the graph (packages, or targets if the graph includes targets) whose deps changed
+         */
+        void dependenciesChanged(Set<String> changedLabels);
+    }
+
+    private final boolean includeTarget;
+    private final BazelDependencyGraph graph;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // target label -> the aspect data applied for the target
+    private final Map<String, AspectTargetInfo> appliedInfos = new HashMap<>();
+
+    // target label -> the labels of the graph the target depends on
+    private final Map<String, Set<String>> contributedDeps = new HashMap<>();
+
+    // source label of the graph -> dep label of the graph -> number of targets that contribute the edge
+    private final Map<String, Map<String, Integer>> edgeCounts = new HashMap<>();
+
+    // package path (//a/b) -> the target labels of the package that contribute edges
+    private final Map<String, Set<String>> targetsByPackage = new HashMap<>();
+
+    /**
+     * @param includeTarget
+     *            if false the graph has an edge between two packages if any target of package A depends on any target
+     *            of package B, see {@link AspectDependencyGraphFactory#build(AspectTargetInfos, boolean)}
+     */
+    public IncrementalAspectDependencyGraph(boolean includeTarget) {
+        this.includeTarget = includeTarget;
+        graph = BazelDependencyGraphFactory.build("IncrementalAspectDependencyGraph", new HashMap<>());
+    }
+
+    // UPDATES
+
+    /**
+     * Applies the aspect data of the targets, replacing the edges contributed by previous aspect data of the same
+     * targets. Aspect data that has already been applied is skipped, so the cached transitive closures of many labels
+     * can be passed cheaply even though they share most of their aspect data.
+     */
+    public void update(Iterable<AspectTargetInfo> infos) {
+        Set<String> changedLabels;
+        lock.writeLock().lock();
+        try {
+            Map<String, Map<String, Boolean>> touchedEdges = new HashMap<>();
+            for (AspectTargetInfo info : infos) {
+                String target = info.getLabelPath();
+                if ((target == null) || (appliedInfos.get(target) == info)) {
+                    continue;
+                }
+                appliedInfos.put(target, info);
+
+                String source = toGraphLabel(target);
+                Set<String> deps = new HashSet<>();
+                for (String dep : info.getDeps()) {
+                    String graphDep = toGraphLabel(dep);
+                    if (!graphDep.equals(source)) {
+                        // intra-package dependencies are not edges of the graph
+                        deps.add(graphDep);
+                    }
+                }
+                Set<String> previousDeps = contributedDeps.put(target, deps);
+                if (previousDeps == null) {
+                    targetsByPackage.computeIfAbsent(getPackagePath(target), p -> new HashSet<>()).add(target);
+                    previousDeps = Collections.emptySet();
+                }
+                for (String dep : previousDeps) {
+                    if (!deps.contains(dep)) {
+                        countEdge(source, dep, -1, touchedEdges);
+                    }
+                }
+                for (String dep : deps) {
+                    if (!previousDeps.contains(dep)) {
+                        countEdge(source, dep, 1, touchedEdges);
+                    }
+                }
+            }
+            changedLabels = applyTouchedEdges(touchedEdges);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        notifyListeners(changedLabels);
+    }
+
+    /**
+     * Removes the edges contributed by the targets, e.g. because their aspect data was flushed.
+     */
+    public void remove(Collection<String> targetLabels) {
+        Set<String> changedLabels;
+        lock.writeLock().lock();
+        try {
+            Map<String, Map<String, Boolean>> touchedEdges = new HashMap<>();
+            for (String target : targetLabels) {
+                removeTarget(target, touchedEdges);
+            }
+            changedLabels = applyTouchedEdges(touchedEdges);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        notifyListeners(changedLabels);
+    }
+
+    /**
+     * Removes the edges contributed by the targets of the package, e.g. because its BUILD file changed.
+     *
+     * @param packagePath
+     *            the package path with prefix (//a/b/c, @foo//a/b)
+     */
+    public void removePackage(String packagePath) {
+        Set<String> targets;
+        lock.readLock().lock();
+        try {
+            Set<String> packageTargets = targetsByPackage.get(packagePath);
+            targets = packageTargets == null ? Collections.emptySet() : new HashSet<>(packageTargets);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!targets.isEmpty()) {
+            remove(targets);
+        }
+    }
+
+    /**
+     * Removes all of the edges, e.g. because all of the aspect data was flushed.
+     */
+    public void clear() {
+        List<String> targets;
+        lock.readLock().lock();
+        try {
+            targets = new ArrayList<>(contributedDeps.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        remove(targets);
+    }
+
+    // QUERIES
+
+    /**
+     * Runs the query against the current graph. The graph does not change while the query runs, and the query must not
+     * change it. Queries can run concurrently.
+     */
+    public <T> T query(Function<BazelDependencyGraph, T> query) {
+        lock.readLock().lock();
+        try {
+            return query.apply(graph);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // INTERNAL
+
+    private void removeTarget(String target, Map<String, Map<String, Boolean>> touchedEdges) {
+        appliedInfos.remove(target);
+        Set<String> previousDeps = contributedDeps.remove(target);
+        if (previousDeps == null) {
+            return;
+        }
+        String packagePath = getPackagePath(target);
+        Set<String> packageTargets = targetsByPackage.get(packagePath);
+        if (packageTargets != null) {
+            packageTargets.remove(target);
+            if (packageTargets.isEmpty()) {
+                targetsByPackage.remove(packagePath);
+            }
+        }
+        String source = toGraphLabel(target);
+        for (String dep : previousDeps) {
+            countEdge(source, dep, -1, touchedEdges);
+        }
+    }
+
+    /**
+     * Counts a target that starts or stops contributing the edge, and records if the edge was in the graph before the
+     * first count of this change.
+     */
+    private void countEdge(String source, String dep, int delta, Map<String, Map<String, Boolean>> touchedEdges) {
+        Map<String, Integer> counts = edgeCounts.computeIfAbsent(source, s -> new HashMap<>());
+        int count = counts.getOrDefault(dep, 0);
+        touchedEdges.computeIfAbsent(source, s -> new HashMap<>()).putIfAbsent(dep, count > 0);
+        count += delta;
+        if (count > 0) {
+            counts.put(dep, count);
+        } else {
+            counts.remove(dep);
+            if (counts.isEmpty()) {
+                edgeCounts.remove(source);
+            }
+        }
+    }
+
+    /**
+     * Applies the edges that were added or removed by a change to the graph.
+     *
+     * @return the source labels of the changed edges
+     */
+    private Set<String> applyTouchedEdges(Map<String, Map<String, Boolean>> touchedEdges) {
+        Set<String> changedLabels = new LinkedHashSet<>();
+        // all removals are applied before the additions, which lets the graph batch them
+        for (boolean removals : new boolean[] { true, false }) {
+            for (Map.Entry<String, Map<String, Boolean>> sourceEdges : touchedEdges.entrySet()) {
+                String source = sourceEdges.getKey();
+                Map<String, Integer> counts = edgeCounts.getOrDefault(source, Collections.emptyMap());
+                for (Map.Entry<String, Boolean> edge : sourceEdges.getValue().entrySet()) {
+                    boolean wasInGraph = edge.getValue();
+                    boolean isInGraph = counts.containsKey(edge.getKey());
+                    if (removals && wasInGraph && !isInGraph) {
+                        graph.removeDependency(source, edge.getKey());
+                        changedLabels.add(source);
+                    } else if (!removals && !wasInGraph && isInGraph) {
+                        graph.addDependency(source, edge.getKey());
+                        changedLabels.add(source);
+                    }
+                }
+            }
+        }
+        return changedLabels;
+    }
+
+    private void notifyListeners(Set<String> changedLabels) {
+        if (changedLabels.isEmpty()) {
+            return;
+        }
+        Set<String> readOnlyChangedLabels = Collections.unmodifiableSet(changedLabels);
+        for (Listener listener : listeners) {
+            try {
+                listener.dependenciesChanged(readOnlyChangedLabels);
+            } catch (Exception anyE) {
+                LOG.error("Dependency graph listener failed", anyE);
+            }
+        }
+    }
+
+    private String toGraphLabel(String label) {
+        return includeTarget ? label : AspectDependencyGraphFactory.stripTargetFromLabel(label);
+    }
+
+    private static String getPackagePath(String target) {
+        return BazelLabel.valueOf(target).getPackagePath(true);
+    }
+}
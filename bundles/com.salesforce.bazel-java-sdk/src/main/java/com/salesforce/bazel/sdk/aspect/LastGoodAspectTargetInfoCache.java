@@ -0,0 +1,359 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.aspect;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+
+/**
+ * The last known good {@link AspectTargetInfo}s of each label, used when the aspect fails to run for a package (e.g.
+ * the developer introduced an error into its BUILD file). An entry is rarely read, but is kept for the whole session,
+ * so the memory it uses is bounded.
+ * <p>
+ * Each entry is weighted by the memory it retains. The entries computed by an aspect build are views over the id
+ * table of an {@link AspectTransitiveClosureEngine}, so the AspectTargetInfos of a table are counted once for all of
+ * the entries that share it, and each entry adds the words of its own bitset. Any other entry is weighted by the
+ * number of AspectTargetInfos in it. When the total weight exceeds the budget, the least recently used entries are
+ * spilled to disk: the contents of the aspect files of the entry are copied into a spill file, and are parsed again if
+ * the entry is needed. An entry that has an AspectTargetInfo that was not created from an aspect file can't be
+ * reloaded, so it is dropped instead of spilled.
+ * <p>
+ * {@link #put(BazelLabel, Set)} is called from the cache lookups of the aspect processor, so it never does file I/O:
+ * the spill files are written by a background thread. Bazel overwrites or deletes the aspect files as the workspace
+ * is built again, which is why the spill file holds a copy of their contents rather than their paths.
+ */
+public class LastGoodAspectTargetInfoCache {
+    private static final LogHelper LOG = LogHelper.log(LastGoodAspectTargetInfoCache.class);
+
+    /**
+     * Default budget of the in memory entries, as the weight of the AspectTargetInfos they retain (see the class
+     * comment). This is public so that your tool can tune it before the workspace is opened.
+     */
+    public static int DEFAULT_MAX_WEIGHT = 100000;
+
+    /**
+     * Writes the spill files of the evicted entries.
+     */
+    private static final ExecutorService SPILLER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "LastGoodAspectSpiller");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final int maxWeight;
+    private File spillDirectory;
+
+    /**
+     * label -> last good AspectTargetInfos, in access order so that the eldest entry is the least recently used
+     */
+    private final LinkedHashMap<BazelLabel, Set<AspectTargetInfo>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+
+    /**
+     * The id tables of the closure engines that are referenced by the entries in memory, with the number of entries
+     * that reference each table. The AspectTargetInfos of a table are only weighted once.
+     */
+    private final Map<AspectTransitiveClosureEngine.InfoTable, Integer> tableReferences = new HashMap<>();
+
+    /**
+     * Evicted entries that are waiting to be written to their spill file. They are still returned by get().
+     */
+    private final Map<BazelLabel, Set<AspectTargetInfo>> pendingSpills = new HashMap<>();
+
+    /**
+     * Labels whose entry is in a spill file.
+     */
+    private final Set<BazelLabel> spilledLabels = new HashSet<>();
+
+    /**
+     * Creates a cache with the {@link #DEFAULT_MAX_WEIGHT} budget, that spills to a temporary directory.
+     */
+    public LastGoodAspectTargetInfoCache() {
+        this(DEFAULT_MAX_WEIGHT, null);
+    }
+
+    /**
+     * @param maxWeight
+     *            budget of the in memory entries, as the weight of the AspectTargetInfos they retain
+     * @param spillDirectory
+     *            directory in which the evicted entries are written, if null a temporary directory is created when the
+     *            first entry is spilled
+     */
+    public LastGoodAspectTargetInfoCache(int maxWeight, File spillDirectory) {
+        this.maxWeight = maxWeight;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Returns the last good AspectTargetInfos of the label, or null if there are none. A spilled entry is parsed again
+     * from its aspect files, it is null if one of them is gone or has changed. Reading a spilled entry does file I/O,
+     * this is only called when the aspect failed to run.
+     */
+    public synchronized Set<AspectTargetInfo> get(BazelLabel label) {
+        Set<AspectTargetInfo> infos = entries.get(label);
+        if (infos == null) {
+            infos = pendingSpills.remove(label);
+            if ((infos == null) && spilledLabels.remove(label)) {
+                File spillFile = getSpillFile(label);
+                infos = readSpillFile(label, spillFile);
+                spillFile.delete();
+            }
+            if (infos != null) {
+                add(label, infos);
+            }
+        }
+        return infos;
+    }
+
+    /**
+     * Records the AspectTargetInfos of the label as its last good result. This does not do file I/O.
+     */
+    public synchronized void put(BazelLabel label, Set<AspectTargetInfo> infos) {
+        pendingSpills.remove(label);
+        if (spilledLabels.remove(label)) {
+            // deleted by the spiller, so that put() does no I/O
+            File spillFile = getSpillFile(label);
+            SPILLER.execute(() -> spillFile.delete());
+        }
+        add(label, infos);
+    }
+
+    /**
+     * Returns the number of labels that have a last good result, in memory or spilled.
+     */
+    public synchronized int size() {
+        return entries.size() + pendingSpills.size() + spilledLabels.size();
+    }
+
+    /**
+     * Returns the number of labels that have a last good result in memory.
+     */
+    public synchronized int getInMemorySize() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total weight of the entries in memory, see the class comment.
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Removes all entries, and deletes the spill files.
+     */
+    public synchronized void clear() {
+        for (BazelLabel label : spilledLabels) {
+            getSpillFile(label).delete();
+        }
+        spilledLabels.clear();
+        pendingSpills.clear();
+        entries.clear();
+        tableReferences.clear();
+        weight = 0;
+    }
+
+    /**
+     * Waits until the evicted entries have been written to their spill files.
+     */
+    public void awaitSpills() throws InterruptedException {
+        try {
+            SPILLER.submit(() -> {}).get();
+        } catch (ExecutionException unexpected) {
+            throw new IllegalStateException(unexpected.getCause());
+        }
+    }
+
+    // INTERNAL
+
+    private void add(BazelLabel label, Set<AspectTargetInfo> infos) {
+        Set<AspectTargetInfo> previous = entries.put(label, infos);
+        if (previous != null) {
+            removeWeight(previous);
+        }
+        addWeight(infos);
+
+        Iterator<Map.Entry<BazelLabel, Set<AspectTargetInfo>>> eldest = entries.entrySet().iterator();
+        while ((weight > maxWeight) && eldest.hasNext()) {
+            Map.Entry<BazelLabel, Set<AspectTargetInfo>> entry = eldest.next();
+            eldest.remove();
+            removeWeight(entry.getValue());
+            BazelLabel evictedLabel = entry.getKey();
+            pendingSpills.put(evictedLabel, entry.getValue());
+            SPILLER.execute(() -> spill(evictedLabel));
+        }
+    }
+
+    private void addWeight(Set<AspectTargetInfo> infos) {
+        if (infos instanceof AspectTransitiveClosureEngine.ClosureSet) {
+            AspectTransitiveClosureEngine.ClosureSet closure = (AspectTransitiveClosureEngine.ClosureSet) infos;
+            if (tableReferences.merge(closure.getTable(), 1, Integer::sum) == 1) {
+                weight += closure.getTable().size();
+            }
+            weight += closure.getWordCount();
+        } else {
+            weight += infos.size();
+        }
+    }
+
+    private void removeWeight(Set<AspectTargetInfo> infos) {
+        if (infos instanceof AspectTransitiveClosureEngine.ClosureSet) {
+            AspectTransitiveClosureEngine.ClosureSet closure = (AspectTransitiveClosureEngine.ClosureSet) infos;
+            if (tableReferences.merge(closure.getTable(), -1, Integer::sum) == 0) {
+                tableReferences.remove(closure.getTable());
+                weight -= closure.getTable().size();
+            }
+            weight -= closure.getWordCount();
+        } else {
+            weight -= infos.size();
+        }
+    }
+
+    // runs on the spiller thread, the spill file is written without holding the lock of the cache
+    @SuppressWarnings("unchecked")
+    private void spill(BazelLabel label) {
+        Set<AspectTargetInfo> infos;
+        File spillFile;
+        synchronized (this) {
+            infos = pendingSpills.get(label);
+            if (infos == null) {
+                // read or put again since it was evicted
+                return;
+            }
+            spillFile = getSpillFile(label);
+        }
+
+        JSONArray filesJson = new JSONArray();
+        for (AspectTargetInfo info : infos) {
+            File file = info.getAspectDataFile();
+            String contents = null;
+            if (file != null) {
+                try {
+                    contents = AspectTargetInfoFactory.readAspectFile(file);
+                } catch (IOException ioe) {
+                    LOG.info("Could not read the aspect file {} of {}", file, label);
+                }
+            }
+            if (contents == null) {
+                // not created from an aspect file, or Bazel deleted it already, so it can't be reloaded
+                LOG.info("Dropping the last good aspect data for {}, it can't be reloaded from disk.", label);
+                synchronized (this) {
+                    pendingSpills.remove(label, infos);
+                }
+                return;
+            }
+            JSONArray fileJson = new JSONArray();
+            fileJson.add(file.getPath());
+            fileJson.add(contents);
+            filesJson.add(fileJson);
+        }
+        if (spillFile == null) {
+            synchronized (this) {
+                pendingSpills.remove(label, infos);
+            }
+            return;
+        }
+
+        boolean written = false;
+        try (Writer writer = Files.newBufferedWriter(spillFile.toPath(), StandardCharsets.UTF_8)) {
+            filesJson.writeJSONString(writer);
+            written = true;
+        } catch (IOException ioe) {
+            LOG.error("Could not spill the last good aspect data for {} to {}", ioe, label,
+                spillFile.getAbsolutePath());
+        }
+        synchronized (this) {
+            if (pendingSpills.remove(label, infos) && written) {
+                spilledLabels.add(label);
+                return;
+            }
+        }
+        // failed, or the entry was read, put again or cleared while it was written
+        spillFile.delete();
+    }
+
+    private Set<AspectTargetInfo> readSpillFile(BazelLabel label, File spillFile) {
+        try (Reader reader = Files.newBufferedReader(spillFile.toPath(), StandardCharsets.UTF_8)) {
+            JSONParser jsonParser = new JSONParser();
+            JSONArray filesJson = (JSONArray) jsonParser.parse(reader);
+            Set<AspectTargetInfo> infos = new HashSet<>(filesJson.size());
+            for (Object fileObj : filesJson) {
+                JSONArray fileJson = (JSONArray) fileObj;
+                File file = new File((String) fileJson.get(0));
+                JSONObject aspectObject = (JSONObject) jsonParser.parse((String) fileJson.get(1));
+                // plain strings, a reloaded entry is small and the table of the workspace may have been replaced
+                AspectTargetInfo info =
+                        AspectTargetInfoFactory.loadAspectFromJson(null, file, aspectObject, jsonParser);
+                if (info == null) {
+                    LOG.info("Spilled last good aspect data for {} is gone, the copy of the aspect file {} can't be "
+                            + "parsed.", label, file);
+                    return null;
+                }
+                infos.add(info);
+            }
+            return Collections.unmodifiableSet(infos);
+        } catch (Exception anyE) {
+            LOG.error("Could not read the spilled last good aspect data for {} from {}", anyE, label,
+                spillFile.getAbsolutePath());
+            return null;
+        }
+    }
+
+    private File getSpillFile(BazelLabel label) {
+        if (spillDirectory == null) {
+            try {
+                spillDirectory = Files.createTempDirectory("bzljavasdk-lastgood").toFile();
+                spillDirectory.deleteOnExit();
+            } catch (IOException ioe) {
+                LOG.error("Could not create a directory to spill the last good aspect data to", ioe);
+                return null;
+            }
+        }
+        // canonical labels have a unique id for the session, so the spill file of a label is never shared
+        File spillFile = new File(spillDirectory, "lastgood-" + label.intern().getId() + ".json");
+        spillFile.deleteOnExit();
+        return spillFile;
+    }
+}
@@ -0,0 +1,519 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.aspect;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+
+/**
+ * Persists the {@link AspectTargetInfo}s computed for each label, so that they survive restarts of the tool. The aspect
+ * JSON files stay in the Bazel output base across restarts, so the cache only records which of those files belong to
+ * each label, and reloads them from there. This replaces a Bazel build of the whole workspace with the parsing of the
+ * JSON files.
+ * <p>
+ * The whole cache is discarded if the version of the aspect (BZLJAVASDK_ASPECT_VERSION in bzljavasdk_aspect.bzl) or
+ * the Bazel output base changes. An entry is discarded if the BUILD file of any of the packages of its aspect files
+ * has changed, or if one of its aspect files is gone.
+ * <p>
+ * The contents of the cache are only accessed by a background loader thread, which does all of the disk work: reading
+ * and writing the cache file, digesting the BUILD files and parsing the aspect files. Lookups return a future, updates
+ * are queued, and {@link #save()} writes the cache file once the updates have settled. Callers never wait for the disk
+ * while holding a lock.
+ */
+public class PersistentAspectTargetInfoCache {
+    private static final LogHelper LOG = LogHelper.log(PersistentAspectTargetInfoCache.class);
+
+    private static final String CACHE_FORMAT_VERSION = "1";
+
+    private static final Pattern ASPECT_VERSION_PATTERN =
+            Pattern.compile("^BZLJAVASDK_ASPECT_VERSION\\s*=\\s*\"([^\"]*)\"", Pattern.MULTILINE);
+
+    private static final String[] BUILD_FILE_NAMES = { "BUILD.bazel", "BUILD" };
+
+    /**
+     * How long {@link #save()} waits for more updates before it writes the cache file. Aspect builds complete in
+     * bursts, so this writes the file once per burst instead of once per build.
+     */
+    public static long SAVE_DELAY_MS = 2000;
+
+    /**
+     * Runs all of the work of all caches, one task at a time, so the contents of a cache need no lock.
+     */
+    private static final ScheduledExecutorService LOADER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "PersistentAspectCacheLoader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final File cacheFile;
+    private final File bazelWorkspaceRootDirectory;
+    private final String aspectVersion;
+    private final String outputBase;
+
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+
+    // CACHE CONTENTS, loaded lazily and only accessed by the LOADER thread
+
+    private boolean loaded = false;
+    private boolean dirty = false;
+
+    /**
+     * label -> the aspect files of the label (the transitive closure computed by the aspect processor)
+     */
+    private final Map<BazelLabel, List<File>> entries = new LinkedHashMap<>();
+
+    /**
+     * aspect file -> the package that owns it, null for external repositories
+     */
+    private final Map<File, String> filePackages = new HashMap<>();
+
+    /**
+     * package path -> digest of its BUILD file when the entries were written
+     */
+    private final Map<String, String> buildFileDigests = new HashMap<>();
+
+    /**
+     * Packages whose BUILD file was checked against the recorded digest in this session. Packages that are flushed by
+     * the tool are removed, so that they are checked again.
+     */
+    private final Set<String> validatedPackages = new HashSet<>();
+
+    /**
+     * aspect file -> parsed instance, so that the instances are shared between the entries
+     */
+    private final Map<File, AspectTargetInfo> loadedInfos = new HashMap<>();
+
+    private final Supplier<AspectStringTable> stringTable;
+
+    /**
+     * @param metadataDirectory
+     *            directory owned by the tool in which the cache file is written (e.g. the plugin state location)
+     * @param aspectDirectory
+     *            directory that contains bzljavasdk_aspect.bzl
+     * @param outputBase
+     *            the output base of the workspace, the persisted entries are only valid for this output base
+     * @param stringTable
+     *            supplies the current string table of the workspace, with which the aspect files are parsed
+     */
+    public PersistentAspectTargetInfoCache(File metadataDirectory, File bazelWorkspaceRootDirectory,
+            File aspectDirectory, File outputBase, Supplier<AspectStringTable> stringTable) {
+        this.stringTable = stringTable;
+        this.bazelWorkspaceRootDirectory = bazelWorkspaceRootDirectory;
+        this.outputBase = outputBase == null ? null : outputBase.getAbsolutePath();
+        String cacheName = "bazel-aspect-cache-"
+                + Integer.toHexString(bazelWorkspaceRootDirectory.getAbsolutePath().hashCode()) + ".json";
+        cacheFile = new File(metadataDirectory, cacheName);
+        aspectVersion = readAspectVersion(aspectDirectory);
+    }
+
+    /**
+     * Returns the version declared by BZLJAVASDK_ASPECT_VERSION in the bzljavasdk_aspect.bzl file of the directory, or
+     * null if the file does not declare one.
+     */
+    public static String readAspectVersion(File aspectDirectory) {
+        File aspectFile = new File(aspectDirectory, "bzljavasdk_aspect.bzl");
+        try {
+            String aspectSource = new String(Files.readAllBytes(aspectFile.toPath()), StandardCharsets.UTF_8);
+            Matcher matcher = ASPECT_VERSION_PATTERN.matcher(aspectSource);
+            if (matcher.find()) {
+                return matcher.group(1);
+            }
+        } catch (IOException ioe) {
+            LOG.warn("Could not read the aspect version from {}", aspectFile.getAbsolutePath());
+        }
+        return null;
+    }
+
+    /**
+     * Looks up the cached AspectTargetInfos of the label on the loader thread. The future completes with null if the
+     * label is not cached or the entry is no longer valid.
+     */
+    public CompletableFuture<Set<AspectTargetInfo>> get(BazelLabel label) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return lookup(label);
+            } catch (RuntimeException anyE) {
+                LOG.error("Could not read the persisted aspect data for {}", anyE, label);
+                return null;
+            }
+        }, LOADER);
+    }
+
+    /**
+     * Records the AspectTargetInfos of the label. The change is persisted by the next {@link #save()}.
+     */
+    public void put(BazelLabel label, Set<AspectTargetInfo> infos) {
+        LOADER.execute(() -> record(label, infos));
+    }
+
+    /**
+     * Removes the label from the cache. The change is persisted by the next {@link #save()}.
+     */
+    public void remove(BazelLabel label) {
+        LOADER.execute(() -> {
+            load();
+            removeEntry(label);
+        });
+    }
+
+    /**
+     * Called when the tool knows that the BUILD file of the package has changed. The package is validated again
+     * against its recorded digest on the next lookup.
+     */
+    public void invalidatePackage(String packagePath) {
+        LOADER.execute(() -> validatedPackages.remove(packagePath));
+    }
+
+    /**
+     * Removes all entries, and deletes the cache file.
+     */
+    public void clear() {
+        LOADER.execute(() -> {
+            entries.clear();
+            filePackages.clear();
+            buildFileDigests.clear();
+            validatedPackages.clear();
+            loadedInfos.clear();
+            dirty = false;
+            loaded = true;
+            if (cacheFile.exists() && !cacheFile.delete()) {
+                LOG.warn("Could not delete the aspect cache {}", cacheFile.getAbsolutePath());
+            }
+        });
+    }
+
+    /**
+     * Returns the number of cached labels. This waits for the updates that are queued.
+     */
+    public int size() {
+        return CompletableFuture.supplyAsync(() -> {
+            load();
+            return entries.size();
+        }, LOADER).join();
+    }
+
+    /**
+     * Returns the file in which the cache is persisted.
+     */
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * Writes the cache to disk in the background, if it has changed since it was loaded or last saved. The file is
+     * written after {@link #SAVE_DELAY_MS}, once for all of the saves requested in the meantime.
+     */
+    public void save() {
+        if (saveScheduled.compareAndSet(false, true)) {
+            LOADER.schedule(() -> {
+                saveScheduled.set(false);
+                write();
+            }, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the pending changes to disk now, and waits until they are written. Used on shutdown and by tests.
+     */
+    public void flush() {
+        CompletableFuture.runAsync(this::write, LOADER).join();
+    }
+
+    // INTERNAL, these run on the LOADER thread
+
+    private Set<AspectTargetInfo> lookup(BazelLabel label) {
+        load();
+        List<File> files = entries.get(label);
+        if (files == null) {
+            return null;
+        }
+
+        Set<AspectTargetInfo> infos = new HashSet<>();
+        for (File file : files) {
+            String packagePath = filePackages.get(file);
+            if ((packagePath != null) && !isPackageValid(packagePath)) {
+                LOG.info("Persisted aspect data for {} is stale, the BUILD file of {} has changed.", label,
+                    packagePath);
+                removeEntry(label);
+                return null;
+            }
+            AspectTargetInfo info = loadAspectFile(file);
+            if (info == null) {
+                LOG.info("Persisted aspect data for {} is stale, the aspect file {} is gone.", label, file);
+                removeEntry(label);
+                return null;
+            }
+            infos.add(info);
+        }
+        return Collections.unmodifiableSet(infos);
+    }
+
+    private void record(BazelLabel label, Set<AspectTargetInfo> infos) {
+        load();
+        List<File> files = new ArrayList<>(infos.size());
+        for (AspectTargetInfo info : infos) {
+            File file = info.getAspectDataFile();
+            if (file == null) {
+                // not created from an aspect file, so it can't be reloaded
+                removeEntry(label);
+                return;
+            }
+            String packagePath = getWorkspacePackagePath(info);
+            if (packagePath != null) {
+                // makes sure the recorded digest is the one of the BUILD file the info was computed from
+                isPackageValid(packagePath);
+            }
+            files.add(file);
+            filePackages.put(file, packagePath);
+            loadedInfos.put(file, info);
+        }
+        entries.put(label, files);
+        dirty = true;
+    }
+
+    private void removeEntry(BazelLabel label) {
+        if (entries.remove(label) != null) {
+            dirty = true;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write() {
+        if (!dirty || (aspectVersion == null)) {
+            return;
+        }
+
+        // the aspect files are written once, and referenced by index from the entries
+        Map<File, Integer> fileIndexes = new HashMap<>();
+        JSONArray filesJson = new JSONArray();
+        JSONObject entriesJson = new JSONObject();
+        for (Map.Entry<BazelLabel, List<File>> entry : entries.entrySet()) {
+            JSONArray entryJson = new JSONArray();
+            for (File file : entry.getValue()) {
+                Integer index = fileIndexes.get(file);
+                if (index == null) {
+                    index = filesJson.size();
+                    fileIndexes.put(file, index);
+                    JSONArray fileJson = new JSONArray();
+                    fileJson.add(file.getPath());
+                    fileJson.add(filePackages.get(file));
+                    filesJson.add(fileJson);
+                }
+                entryJson.add(index);
+            }
+            entriesJson.put(entry.getKey().getLabelPath(), entryJson);
+        }
+        JSONObject digestsJson = new JSONObject();
+        for (String packagePath : new HashSet<>(filePackages.values())) {
+            if ((packagePath != null) && buildFileDigests.containsKey(packagePath)) {
+                digestsJson.put(packagePath, buildFileDigests.get(packagePath));
+            }
+        }
+
+        JSONObject body = new JSONObject();
+        body.put("version", CACHE_FORMAT_VERSION);
+        body.put("aspect_version", aspectVersion);
+        body.put("output_base", outputBase);
+        body.put("build_digests", digestsJson);
+        body.put("files", filesJson);
+        body.put("entries", entriesJson);
+
+        // write to a temp file and move it in place, so that a crash never leaves a partial cache behind
+        try {
+            File parent = cacheFile.getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            File tempFile = new File(parent, cacheFile.getName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                body.writeJSONString(writer);
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+            LOG.info("Persisted aspect data for {} labels to {}", entries.size(), cacheFile.getAbsolutePath());
+        } catch (IOException ioe) {
+            LOG.error("Could not write the aspect cache {}", ioe, cacheFile.getAbsolutePath());
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (aspectVersion == null) {
+            LOG.warn("The aspect does not declare BZLJAVASDK_ASPECT_VERSION, aspect data will not be persisted.");
+            return;
+        }
+        if (!cacheFile.exists()) {
+            return;
+        }
+
+        long startTimeMS = System.currentTimeMillis();
+        try (Reader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+            JSONObject body = (JSONObject) new JSONParser().parse(reader);
+            if (!CACHE_FORMAT_VERSION.equals(body.get("version")) || !aspectVersion.equals(body.get("aspect_version"))
+                    || (outputBase == null) || !outputBase.equals(body.get("output_base"))) {
+                LOG.info("Aspect cache is stale (aspect version or output base changed), discarding: {}",
+                    cacheFile.getAbsolutePath());
+                dirty = true;
+                return;
+            }
+
+            JSONObject digestsJson = (JSONObject) body.get("build_digests");
+            for (Object packagePath : digestsJson.keySet()) {
+                buildFileDigests.put((String) packagePath, (String) digestsJson.get(packagePath));
+            }
+            JSONArray filesJson = (JSONArray) body.get("files");
+            List<File> files = new ArrayList<>(filesJson.size());
+            for (Object fileObj : filesJson) {
+                JSONArray fileJson = (JSONArray) fileObj;
+                File file = new File((String) fileJson.get(0));
+                files.add(file);
+                filePackages.put(file, (String) fileJson.get(1));
+            }
+            JSONObject entriesJson = (JSONObject) body.get("entries");
+            for (Object label : entriesJson.keySet()) {
+                JSONArray entryJson = (JSONArray) entriesJson.get(label);
+                List<File> entryFiles = new ArrayList<>(entryJson.size());
+                for (Object index : entryJson) {
+                    entryFiles.add(files.get(((Number) index).intValue()));
+                }
+                entries.put(BazelLabel.valueOf((String) label), entryFiles);
+            }
+            LOG.info("Loaded aspect cache with {} labels in {} millis: {}", entries.size(),
+                System.currentTimeMillis() - startTimeMS, cacheFile.getAbsolutePath());
+        } catch (Exception anyE) {
+            LOG.error("Could not read the aspect cache {}", anyE, cacheFile.getAbsolutePath());
+            entries.clear();
+            filePackages.clear();
+            buildFileDigests.clear();
+            dirty = true;
+        }
+    }
+
+    private AspectTargetInfo loadAspectFile(File file) {
+        AspectTargetInfo info = loadedInfos.get(file);
+        if ((info == null) && file.exists()) {
+            try {
+                info = AspectTargetInfoFactory.loadAspectFile(file, stringTable.get());
+            } catch (Exception anyE) {
+                LOG.error("Could not parse the persisted aspect file {}", anyE, file.getAbsolutePath());
+                info = null;
+            }
+            if (info != null) {
+                loadedInfos.put(file, info);
+            }
+        }
+        return info;
+    }
+
+    private boolean isPackageValid(String packagePath) {
+        if (validatedPackages.contains(packagePath)) {
+            return true;
+        }
+        String currentDigest = computeBuildFileDigest(packagePath);
+        boolean valid = currentDigest.equals(buildFileDigests.get(packagePath));
+        if (!valid) {
+            // drop everything that was computed from the old BUILD file, new entries are valid against the current one
+            dropEntriesOfPackage(packagePath);
+            buildFileDigests.put(packagePath, currentDigest);
+        }
+        validatedPackages.add(packagePath);
+        return valid;
+    }
+
+    private void dropEntriesOfPackage(String packagePath) {
+        entries.values().removeIf(files -> {
+            for (File file : files) {
+                if (packagePath.equals(filePackages.get(file))) {
+                    loadedInfos.remove(file);
+                    return true;
+                }
+            }
+            return false;
+        });
+        dirty = true;
+    }
+
+    private static String getWorkspacePackagePath(AspectTargetInfo info) {
+        String labelPath = info.getLabelPath();
+        if ((labelPath == null) || labelPath.startsWith(BazelLabel.BAZEL_EXTERNALREPO_AT)) {
+            // external repositories are covered by the output base
+            return null;
+        }
+        return BazelLabel.valueOf(labelPath).getPackagePath();
+    }
+
+    private String computeBuildFileDigest(String packagePath) {
+        File packageDir = new File(bazelWorkspaceRootDirectory, packagePath);
+        for (String buildFileName : BUILD_FILE_NAMES) {
+            File buildFile = new File(packageDir, buildFileName);
+            if (buildFile.isFile()) {
+                try {
+                    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                    byte[] hash = digest.digest(Files.readAllBytes(buildFile.toPath()));
+                    StringBuilder sb = new StringBuilder();
+                    for (byte b : hash) {
+                        sb.append(String.format("%02x", b));
+                    }
+                    return sb.toString();
+                } catch (IOException | NoSuchAlgorithmException anyE) {
+                    return "unreadable:" + buildFile.lastModified();
+                }
+            }
+        }
+        return "missing";
+    }
+}
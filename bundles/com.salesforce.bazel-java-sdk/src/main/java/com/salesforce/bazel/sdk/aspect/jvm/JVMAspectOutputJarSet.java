@@ -47,6 +47,12 @@ public final class JVMAspectOutputJarSet {
     private String jar; // jar
     private String srcjar; // source_jar
 
+    JVMAspectOutputJarSet(String jar, String ijar, String srcjar) {
+        this.jar = jar;
+        this.ijar = ijar;
+        this.srcjar = srcjar;
+    }
+
     public JVMAspectOutputJarSet(JSONObject arrayObj) {
         JSONObject jarObj = (JSONObject) arrayObj.get("jar");
         if (jarObj != null) {
@@ -98,6 +104,19 @@ public final class JVMAspectOutputJarSet {
         return Objects.hash(ijar, jar, srcjar);
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof JVMAspectOutputJarSet)) {
+            return false;
+        }
+        JVMAspectOutputJarSet other = (JVMAspectOutputJarSet) obj;
+        return Objects.equals(ijar, other.ijar) && Objects.equals(jar, other.jar)
+                && Objects.equals(srcjar, other.srcjar);
+    }
+
     public String getInterfaceJar() {
         return ijar;
     }
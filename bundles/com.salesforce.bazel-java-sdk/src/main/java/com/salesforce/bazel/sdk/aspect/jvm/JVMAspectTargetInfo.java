@@ -34,13 +34,17 @@
 package com.salesforce.bazel.sdk.aspect.jvm;
 
 import java.io.File;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 
+import com.salesforce.bazel.sdk.aspect.AspectStringTable;
 import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
 
 /**
@@ -64,33 +68,32 @@ import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
    "sources":["helloworld/src/main/java/helloworld/HelloWorld.java"]
 }
  * </pre>
+ * <p>
+ * The jar sets are stored as the ids of their paths in the {@link AspectStringTable}, three per set, and the lists
+ * returned by {@link #getJars()} and {@link #getGeneratedJars()} create the {@link JVMAspectOutputJarSet}s on access.
  */
 public class JVMAspectTargetInfo extends AspectTargetInfo {
     protected String mainClass;
     protected List<JVMAspectOutputJarSet> generatedJars;
     protected List<JVMAspectOutputJarSet> jars;
 
-    JVMAspectTargetInfo(File aspectDataFile, JSONObject aspectObject, JSONParser jsonParser,
-            String workspaceRelativePath, String kind, String label, List<String> deps) throws Exception {
-        super(aspectDataFile, workspaceRelativePath, kind, label, deps, null);
+    JVMAspectTargetInfo(AspectStringTable stringTable, File aspectDataFile, JSONObject aspectObject,
+            JSONParser jsonParser, String workspaceRelativePath, String kind, String label, List<String> deps)
+            throws Exception {
+        super(stringTable, aspectDataFile, workspaceRelativePath, kind, label, deps, null);
 
         JSONObject ideInfoObj = (JSONObject) aspectObject.get("java_ide_info");
         if (ideInfoObj != null) {
-            sources = loadSources(ideInfoObj);
-
-            List<JVMAspectOutputJarSet> jarsList = jsonArrayToJarArray(ideInfoObj.get("jars"), jsonParser);
-            jars = jarsList;
-
-            List<JVMAspectOutputJarSet> generatedJarsList =
-                    jsonArrayToJarArray(ideInfoObj.get("generated_jars"), jsonParser);
-            generatedJars = generatedJarsList;
+            sources = compact(loadSources(ideInfoObj));
+            jars = jsonArrayToJarArray(ideInfoObj.get("jars"));
+            generatedJars = jsonArrayToJarArray(ideInfoObj.get("generated_jars"));
 
             String mainClass = (String) ideInfoObj.get("main_class");
             this.mainClass = mainClass;
         } else {
-            sources = new ArrayList<>();
-            jars = new ArrayList<>();
-            generatedJars = new ArrayList<>();
+            sources = Collections.emptyList();
+            jars = Collections.emptyList();
+            generatedJars = Collections.emptyList();
         }
     }
 
@@ -133,22 +136,64 @@ public class JVMAspectTargetInfo extends AspectTargetInfo {
         return list;
     }
 
-    private static List<JVMAspectOutputJarSet> jsonArrayToJarArray(Object arrayObject, JSONParser jsonParser)
-            throws Exception {
-        List<JVMAspectOutputJarSet> jarList = new ArrayList<>();
-        if (arrayObject == null) {
-            return jarList;
-        }
-        if (!(arrayObject instanceof JSONArray)) {
-            return jarList;
+    private List<JVMAspectOutputJarSet> jsonArrayToJarArray(Object arrayObject) {
+        if (!(arrayObject instanceof JSONArray) || ((JSONArray) arrayObject).isEmpty()) {
+            return Collections.emptyList();
         }
 
         JSONArray array = (JSONArray) arrayObject;
+        List<JVMAspectOutputJarSet> jarSets = new ArrayList<>(array.size());
         for (Object jarSet : array) {
-            JSONObject jarSetObject = (JSONObject) jsonParser.parse(jarSet.toString());
-            jarList.add(new JVMAspectOutputJarSet(jarSetObject));
+            jarSets.add(new JVMAspectOutputJarSet((JSONObject) jarSet));
+        }
+        if (stringTable == null) {
+            return Collections.unmodifiableList(jarSets);
+        }
+
+        int[] jarIds = new int[jarSets.size() * JarSetList.COLUMNS];
+        int i = 0;
+        for (JVMAspectOutputJarSet jarSet : jarSets) {
+            jarIds[i++] = stringTable.intern(jarSet.getJar());
+            jarIds[i++] = stringTable.intern(jarSet.getInterfaceJar());
+            jarIds[i++] = stringTable.intern(jarSet.getSrcJar());
+        }
+        for (int jarId : jarIds) {
+            if (jarId == AspectStringTable.NOT_INTERNED) {
+                // the table is full
+                return Collections.unmodifiableList(jarSets);
+            }
+        }
+        return new JarSetList(stringTable, jarIds);
+    }
+
+    /**
+     * Read only view of jar sets stored as the ids of their jar, interface jar and source jar paths.
+     */
+    private static final class JarSetList extends AbstractList<JVMAspectOutputJarSet> implements RandomAccess {
+        static final int COLUMNS = 3;
+
+        private final AspectStringTable stringTable;
+        private final int[] jarIds;
+
+        JarSetList(AspectStringTable stringTable, int[] jarIds) {
+            this.stringTable = stringTable;
+            this.jarIds = jarIds;
+        }
+
+        @Override
+        public JVMAspectOutputJarSet get(int index) {
+            int row = index * COLUMNS;
+            if ((index < 0) || (row >= jarIds.length)) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return new JVMAspectOutputJarSet(stringTable.get(jarIds[row]), stringTable.get(jarIds[row + 1]),
+                    stringTable.get(jarIds[row + 2]));
+        }
+
+        @Override
+        public int size() {
+            return jarIds.length / COLUMNS;
         }
-        return jarList;
     }
 
     @Override
@@ -39,6 +39,7 @@ import java.util.List;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 
+import com.salesforce.bazel.sdk.aspect.AspectStringTable;
 import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
 import com.salesforce.bazel.sdk.aspect.AspectTargetInfoFactoryProvider;
 import com.salesforce.bazel.sdk.logging.LogHelper;
@@ -52,14 +53,22 @@ public class JVMAspectTargetInfoFactoryProvider implements AspectTargetInfoFacto
     @Override
     public AspectTargetInfo buildAspectTargetInfo(File aspectDataFile, JSONObject jsonObject, JSONParser jsonParser,
             String workspaceRelativePath, String kind, String label, List<String> deps) {
+        return buildAspectTargetInfo(null, aspectDataFile, jsonObject, jsonParser, workspaceRelativePath, kind, label,
+            deps);
+    }
+
+    @Override
+    public AspectTargetInfo buildAspectTargetInfo(AspectStringTable stringTable, File aspectDataFile,
+            JSONObject jsonObject, JSONParser jsonParser, String workspaceRelativePath, String kind, String label,
+            List<String> deps) {
         JVMAspectTargetInfo info = null;
 
         // TODO verify kind is a JVM rule type; but be careful to allow open ended (like scala, etc) as JVM support evolves
 
         try {
 
-            info = new JVMAspectTargetInfo(aspectDataFile, jsonObject, jsonParser, workspaceRelativePath, kind, label,
-                    deps);
+            info = new JVMAspectTargetInfo(stringTable, aspectDataFile, jsonObject, jsonParser, workspaceRelativePath,
+                    kind, label, deps);
         } catch (Exception anyE) {
             LOG.error("Error creating the JVMAspectTargetInfo for path [{}] label [{}] kind [{}] from json {}", anyE,
                 workspaceRelativePath, label, kind, jsonObject);
@@ -324,6 +324,26 @@ public class BEPEvent {
         return fileUri;
     }
 
+    /**
+     * Parses json properties of the following pattern, which reference named sets of files (see
+     * {@link BEPNamedSetEvent}). [ { "id": "0" }, { "id": "1" } ]
+     */
+    protected List<String> decodeFileSetIdsFromJsonObject(Object array) {
+        List<String> ids = new ArrayList<>();
+
+        if (array != null) {
+            JSONArray jsonArray = (JSONArray) array;
+            for (int i = 0; i < jsonArray.size(); i++) {
+                String id = decodeStringFromJsonObject(((JSONObject) jsonArray.get(i)).get("id"));
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+        }
+
+        return ids;
+    }
+
     // TOSTRING
 
     @Override
@@ -47,11 +47,21 @@ import org.json.simple.JSONObject;
 public class BEPNamedSetEvent extends BEPEvent {
     public static final String NAME = "namedSet";
 
+    private String id;
     private final List<BEPFileUri> files = new ArrayList<>();
+    private List<String> fileSets = new ArrayList<>();
 
     public BEPNamedSetEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
 
+        JSONObject idDetail = (JSONObject) eventObj.get("id");
+        if (idDetail != null) {
+            JSONObject setId = (JSONObject) idDetail.get(NAME);
+            if (setId != null) {
+                id = decodeStringFromJsonObject(setId.get("id"));
+            }
+        }
+
         JSONObject setDetail = (JSONObject) eventObj.get("namedSetOfFiles");
         if (setDetail != null) {
             parseDetails(setDetail);
@@ -60,10 +70,27 @@ public class BEPNamedSetEvent extends BEPEvent {
 
     // GETTERS
 
+    /**
+     * The id of this set, which is referenced by other sets and by the output groups of completed targets.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * The files directly in this set. The set also contains the files of the nested sets, see {@link #getFileSets()}.
+     */
     public List<BEPFileUri> getFiles() {
         return files;
     }
 
+    /**
+     * The ids of the nested sets.
+     */
+    public List<String> getFileSets() {
+        return fileSets;
+    }
+
     // PARSER
 
     /**
@@ -71,7 +98,7 @@ public class BEPNamedSetEvent extends BEPEvent {
      * "uri":"file:///private/var/tmp/_bazel_mbenioff/8fc74f66fda297c82a847368ee50d6a4/execroot/myrepo/bazel-out/darwin-fastbuild/bin/foo/bar/mylib.jar",
      * "pathPrefix":[ "bazel-out", "darwin-fastbuild", "bin" ] }, { "name":"foo/bar/mylib2.jar",
      * "uri":"file:///private/var/tmp/_bazel_mbenioff/8fc74f66fda297c82a847368ee50d6a4/execroot/myrepo/bazel-out/darwin-fastbuild/bin/foo/bar/mylib2.jar",
-     * "pathPrefix":[ "bazel-out", "darwin-fastbuild", "bin" ] } ] }
+     * "pathPrefix":[ "bazel-out", "darwin-fastbuild", "bin" ] } ], "fileSets":[ { "id":"1" } ] }
      */
 
     private void parseDetails(JSONObject setDetail) {
@@ -84,13 +111,15 @@ public class BEPNamedSetEvent extends BEPEvent {
                 }
             }
         }
+        fileSets = decodeFileSetIdsFromJsonObject(setDetail.get("fileSets"));
     }
 
     // TOSTRING
 
     @Override
     public String toString() {
-        return "BEPNamedSetOfFilesEvent [files=" + files + ", index=" + index + ", eventType=" + eventType
-                + ", isProcessed=" + isProcessed + ", isLastMessage=" + isLastMessage + ", isError=" + isError + "]";
+        return "BEPNamedSetOfFilesEvent [id=" + id + ", files=" + files + ", fileSets=" + fileSets + ", index=" + index
+                + ", eventType=" + eventType + ", isProcessed=" + isProcessed + ", isLastMessage=" + isLastMessage
+                + ", isError=" + isError + "]";
     }
 }
@@ -34,7 +34,10 @@
 package com.salesforce.bazel.sdk.bep.event;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -46,15 +49,22 @@ public class BEPTargetCompletedEvent extends BEPEvent {
 
     public static final String NAME = "targetCompleted";
 
+    private String label;
+    private String aspect;
     private String failureMessage;
     private String failureSpawnCode;
     private int failureSpawnExitCode;
     private boolean success = false;
     private final List<BEPFileUri> importantOutput = new ArrayList<>();
+    private final Map<String, List<String>> outputGroups = new LinkedHashMap<>();
 
     public BEPTargetCompletedEvent(String rawEvent, int index, JSONObject eventObj) {
         super(NAME, rawEvent, index, eventObj);
 
+        JSONObject idDetail = (JSONObject) eventObj.get("id");
+        if (idDetail != null) {
+            parseId((JSONObject) idDetail.get(NAME));
+        }
         JSONObject completedDetail = (JSONObject) eventObj.get("completed");
         if (completedDetail != null) {
             parseDetails(completedDetail);
@@ -63,6 +73,21 @@ public class BEPTargetCompletedEvent extends BEPEvent {
 
     // GETTERS
 
+    /**
+     * The label of the completed target (e.g. //foo:foo).
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * If this event reports the completion of an aspect applied to the target, the aspect (e.g.
+     * {@literal @}myaspect//:aspect.bzl%myaspect), otherwise null.
+     */
+    public String getAspect() {
+        return aspect;
+    }
+
     public String getFailureMessage() {
         return failureMessage;
     }
@@ -87,9 +112,34 @@ public class BEPTargetCompletedEvent extends BEPEvent {
         return importantOutput;
     }
 
+    /**
+     * Returns the ids of the named sets of files (see {@link BEPNamedSetEvent}) that hold the outputs of the passed
+     * output group, or an empty list if the target did not produce that output group.
+     */
+    public List<String> getOutputGroupFileSets(String outputGroupName) {
+        List<String> fileSets = outputGroups.get(outputGroupName);
+        return fileSets != null ? fileSets : Collections.emptyList();
+    }
+
+    /**
+     * Returns the names of the output groups produced by the target.
+     */
+    public List<String> getOutputGroupNames() {
+        return new ArrayList<>(outputGroups.keySet());
+    }
+
     // PARSER
 
     /*
+    ID:
+      "id": {
+        "targetCompleted": {
+          "label": "//foo:foo",
+          "configuration": { "id": "63cc040ed2b86a512099924e698df6e0b9848625e6ca33d9556c5993dccbc2fb" },
+          "aspect": "@myaspect//:aspect.bzl%myaspect"
+        }
+      }
+
     FAILURE:
       "completed": {
        "failureDetail": {
@@ -105,6 +155,12 @@ public class BEPTargetCompletedEvent extends BEPEvent {
     SUCCESS:
       "completed": {
           "success": true,
+          "outputGroup": [
+            {
+              "name": "default",
+              "fileSets": [ { "id": "2" } ]
+            }
+          ],
           "importantOutput": [
            {
                "name": "foo/foo.jar",
@@ -124,6 +180,13 @@ public class BEPTargetCompletedEvent extends BEPEvent {
      }
      */
 
+    void parseId(JSONObject targetId) {
+        if (targetId != null) {
+            label = decodeStringFromJsonObject(targetId.get("label"));
+            aspect = decodeStringFromJsonObject(targetId.get("aspect"));
+        }
+    }
+
     void parseDetails(JSONObject completedDetail) {
 
         // FAILURE
@@ -149,16 +212,25 @@ public class BEPTargetCompletedEvent extends BEPEvent {
                 }
             }
         }
+        JSONArray outputGroupArray = (JSONArray) completedDetail.get("outputGroup");
+        if (outputGroupArray != null) {
+            for (int i = 0; i < outputGroupArray.size(); i++) {
+                JSONObject outputGroupObj = (JSONObject) outputGroupArray.get(i);
+                String name = decodeStringFromJsonObject(outputGroupObj.get("name"));
+                outputGroups.put(name, decodeFileSetIdsFromJsonObject(outputGroupObj.get("fileSets")));
+            }
+        }
     }
 
     // TOSTRING
 
     @Override
     public String toString() {
-        return "BEPTargetCompletedEvent [failureMessage=" + failureMessage + ", failureSpawnCode=" + failureSpawnCode
-                + ", failureSpawnExitCode=" + failureSpawnExitCode + ", success=" + success + ", importantOutput="
-                + importantOutput + ", index=" + index + ", eventType=" + eventType + ", isProcessed=" + isProcessed
-                + ", isLastMessage=" + isLastMessage + ", isError=" + isError + "]";
+        return "BEPTargetCompletedEvent [label=" + label + ", aspect=" + aspect + ", failureMessage=" + failureMessage
+                + ", failureSpawnCode=" + failureSpawnCode + ", failureSpawnExitCode=" + failureSpawnExitCode
+                + ", success=" + success + ", importantOutput=" + importantOutput + ", outputGroups=" + outputGroups
+                + ", index=" + index + ", eventType=" + eventType + ", isProcessed=" + isProcessed + ", isLastMessage="
+                + isLastMessage + ", isError=" + isError + "]";
     }
 
 }
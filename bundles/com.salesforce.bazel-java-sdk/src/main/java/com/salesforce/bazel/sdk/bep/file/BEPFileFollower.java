@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.bep.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+import com.salesforce.bazel.sdk.bep.BazelBuildEventTypeManager;
+import com.salesforce.bazel.sdk.bep.event.BEPEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPStartedEvent;
+import com.salesforce.bazel.sdk.logging.LogHelper;
+
+/**
+ * Follows a BEP json file while Bazel writes it, so that the events of a build (e.g. the targets as they complete) are
+ * seen before the build finishes. Each call to {@link #poll()} parses the complete lines appended since the previous
+ * call, and passes their events to the consumer. A line that Bazel is still writing is parsed by the next poll.
+ * <p>
+ * Unlike {@link BEPFileParser}, the file is never read twice, so the events collected by the follower can be used once
+ * the build is done (see {@link #getContents()}) instead of parsing the whole file again.
+ */
+public class BEPFileFollower {
+    static final LogHelper LOG = LogHelper.log(BEPFileFollower.class);
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final File bepFile;
+    private final Consumer<BEPEvent> eventConsumer;
+    private final BEPFileContents contents = new BEPFileContents();
+
+    // the offset of the first byte that has not been read yet
+    private long offset = 0;
+    // the bytes of the line that Bazel is still writing
+    private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+
+    /**
+     * @param eventConsumer
+     *            receives the events in the order of the file, on the thread that calls {@link #poll()}
+     */
+    public BEPFileFollower(File bepFile, Consumer<BEPEvent> eventConsumer) {
+        this.bepFile = bepFile;
+        this.eventConsumer = eventConsumer;
+    }
+
+    /**
+     * Parses the lines appended to the file since the previous poll.
+     *
+     * @return the number of events that were read
+     */
+    public synchronized int poll() {
+        if (!bepFile.exists()) {
+            return 0;
+        }
+        int eventCount = 0;
+        try (FileChannel channel = FileChannel.open(bepFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < offset) {
+                // Bazel truncated the file, this is another build
+                LOG.info("BEP file {} was truncated, following it from the start.", bepFile.getAbsolutePath());
+                offset = 0;
+                partialLine.reset();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            int read;
+            while ((read = channel.read(buffer, offset)) > 0) {
+                offset += read;
+                byte[] bytes = buffer.array();
+                int lineStart = 0;
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] == '\n') {
+                        partialLine.write(bytes, lineStart, i - lineStart);
+                        eventCount += parseLine(new String(partialLine.toByteArray(), StandardCharsets.UTF_8));
+                        partialLine.reset();
+                        lineStart = i + 1;
+                    }
+                }
+                partialLine.write(bytes, lineStart, read - lineStart);
+                buffer.clear();
+            }
+        } catch (IOException ioe) {
+            LOG.error("Could not read the BEP file {}", ioe, bepFile.getAbsolutePath());
+        }
+        return eventCount;
+    }
+
+    /**
+     * The events read so far. Call {@link #poll()} after the build finished to read the last ones.
+     */
+    public synchronized BEPFileContents getContents() {
+        return contents;
+    }
+
+    // INTERNAL
+
+    private int parseLine(String line) {
+        if (line.trim().isEmpty()) {
+            return 0;
+        }
+        BEPEvent event = BazelBuildEventTypeManager.parseEvent(line, contents.events.size());
+        if (event == null) {
+            return 0;
+        }
+        contents.events.add(event);
+        if (event instanceof BEPStartedEvent) {
+            contents.startedEvent = (BEPStartedEvent) event;
+        }
+        if (event.isLastMessage()) {
+            contents.hasLastEvent = true;
+        }
+        eventConsumer.accept(event);
+        return 1;
+    }
+}
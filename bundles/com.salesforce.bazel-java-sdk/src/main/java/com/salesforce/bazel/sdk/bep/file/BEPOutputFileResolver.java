@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.bep.file;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.salesforce.bazel.sdk.bep.event.BEPEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPFileUri;
+import com.salesforce.bazel.sdk.bep.event.BEPNamedSetEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPTargetCompletedEvent;
+import com.salesforce.bazel.sdk.logging.LogHelper;
+
+/**
+ * Resolves the output files of the targets completed in a BEP json file.
+ * <p>
+ * BEP does not list the outputs of a target in its targetCompleted event. The event references named sets of files by
+ * id for each output group, and the sets are reported in separate namedSet events and may nest other sets. Sets are
+ * shared by the targets that produce the same files, so they are reported only once.
+ */
+public class BEPOutputFileResolver {
+    static final LogHelper LOG = LogHelper.log(BEPOutputFileResolver.class);
+
+    private final Map<String, BEPNamedSetEvent> namedSets = new HashMap<>();
+    private final List<BEPTargetCompletedEvent> completedTargets = new ArrayList<>();
+
+    public BEPOutputFileResolver(BEPFileContents contents) {
+        for (BEPEvent event : contents.events) {
+            if (event instanceof BEPNamedSetEvent) {
+                BEPNamedSetEvent namedSet = (BEPNamedSetEvent) event;
+                namedSets.put(namedSet.getId(), namedSet);
+            } else if (event instanceof BEPTargetCompletedEvent) {
+                completedTargets.add((BEPTargetCompletedEvent) event);
+            }
+        }
+    }
+
+    /**
+     * The targetCompleted events of the file, in the order in which the targets completed. If aspects were applied,
+     * there is one event for each target and aspect.
+     */
+    public List<BEPTargetCompletedEvent> getCompletedTargets() {
+        return completedTargets;
+    }
+
+    /**
+     * Returns the files of the passed output group of the completed target, including the files of the nested sets.
+     */
+    public List<BEPFileUri> getOutputFiles(BEPTargetCompletedEvent completedTarget, String outputGroupName) {
+        List<BEPFileUri> files = new ArrayList<>();
+        Set<String> visitedSets = new HashSet<>();
+        Deque<String> pendingSets = new ArrayDeque<>(completedTarget.getOutputGroupFileSets(outputGroupName));
+        while (!pendingSets.isEmpty()) {
+            String setId = pendingSets.pop();
+            if (!visitedSets.add(setId)) {
+                continue;
+            }
+            BEPNamedSetEvent namedSet = namedSets.get(setId);
+            if (namedSet == null) {
+                // Bazel reports a set before the events that reference it, so the file is incomplete
+                LOG.warn("The named set of files [{}] of target {} is missing from the BEP file.", setId,
+                    completedTarget.getLabel());
+                continue;
+            }
+            files.addAll(namedSet.getFiles());
+            pendingSets.addAll(namedSet.getFileSets());
+        }
+        return files;
+    }
+}
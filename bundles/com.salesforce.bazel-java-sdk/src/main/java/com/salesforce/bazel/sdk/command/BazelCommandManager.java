@@ -123,6 +123,22 @@ public class BazelCommandManager {
         return workspaceCommandRunner;
     }
 
+    /**
+     * Forgets the {@link BazelWorkspaceCommandRunner} of the given Bazel workspace, and stops its workspace lane.
+     * Called when the workspace is removed or replaced, a later call to
+     * {@link #getWorkspaceCommandRunner(BazelWorkspace)} creates a new runner.
+     */
+    public void disposeWorkspaceCommandRunner(BazelWorkspace bazelWorkspace) {
+        if (bazelWorkspace == null) {
+            return;
+        }
+        BazelWorkspaceCommandRunner workspaceCommandRunner =
+                workspaceCommandRunners.remove(bazelWorkspace.getBazelWorkspaceRootDirectory());
+        if (workspaceCommandRunner != null) {
+            workspaceCommandRunner.dispose();
+        }
+    }
+
     // BAZEL EXECUTABLE
 
     /**
@@ -0,0 +1,254 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.command;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.salesforce.bazel.sdk.logging.LogHelper;
+
+/**
+ * Schedules Bazel operations for a single workspace. Callers submit requests and receive a {@link CompletableFuture}
+ * for the result.
+ * <p>
+ * Bazel only runs one command at a time per output base, so all requests that actually invoke Bazel are executed on a
+ * single worker thread (the workspace lane). Two features keep callers from queueing behind each other needlessly:
+ * <ul>
+ * <li>Coalescing: if a request with the same key is already queued or running, the caller receives the in-flight
+ * future instead of scheduling a second identical Bazel invocation.</li>
+ * <li>Cache reads: {@link #read(String, Supplier, BazelCommandRequest)} consults a cache lookup on the calling thread
+ * first, and only schedules work on the lane if the lookup misses. Cache hits never wait for a running build.</li>
+ * </ul>
+ * Requests submitted from the worker thread itself (e.g. a scheduled operation that calls back into the runner) are
+ * executed inline, to avoid deadlocking the single lane.
+ */
+public class BazelCommandScheduler {
+    private static final LogHelper LOG = LogHelper.log(BazelCommandScheduler.class);
+
+    private static final AtomicInteger schedulerCount = new AtomicInteger();
+
+    /**
+     * A unit of work that runs one or more Bazel commands.
+     */
+    @FunctionalInterface
+    public interface BazelCommandRequest<T> {
+        T execute() throws IOException, InterruptedException, BazelCommandLineToolConfigurationException;
+    }
+
+    private final ExecutorService lane;
+    private volatile Thread laneThread;
+
+    /**
+     * Requests that are queued or running, by request key.
+     */
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    // stats, useful for logging and tests
+    private final AtomicInteger numberCoalesced = new AtomicInteger();
+    private final AtomicInteger numberCacheReads = new AtomicInteger();
+
+    public BazelCommandScheduler(String name) {
+        String threadName = "BazelCommandScheduler-" + name + "-" + schedulerCount.incrementAndGet();
+        lane = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            laneThread = t;
+            return t;
+        });
+    }
+
+    /**
+     * Schedules the request on the workspace lane. If a request with the same key is already in flight, the returned
+     * future is the one of the in-flight request and the passed request is discarded.
+     *
+     * @param requestKey
+     *            identifies the operation and all of its inputs; two requests with equal keys must produce the same
+     *            result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(String requestKey, BazelCommandRequest<T> request) {
+        if (Thread.currentThread() == laneThread) {
+            // re-entrant call from a scheduled request, run it inline
+            return runInline(request);
+        }
+
+        CompletableFuture<T> newFuture = new CompletableFuture<>();
+        CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(requestKey, newFuture);
+        if (existing != null) {
+            numberCoalesced.incrementAndGet();
+            LOG.info("Coalesced request with in-flight request: {}", requestKey);
+            return existing;
+        }
+
+        try {
+            lane.execute(() -> {
+                T result = null;
+                Throwable failure = null;
+                try {
+                    result = request.execute();
+                } catch (Throwable anyT) {
+                    failure = anyT;
+                } finally {
+                    // no longer pending once the callers are released, see getPendingCount()
+                    inFlight.remove(requestKey, newFuture);
+                }
+                if (failure == null) {
+                    newFuture.complete(result);
+                } else {
+                    newFuture.completeExceptionally(failure);
+                }
+            });
+        } catch (RuntimeException rejected) {
+            inFlight.remove(requestKey, newFuture);
+            newFuture.completeExceptionally(rejected);
+        }
+        return newFuture;
+    }
+
+    /**
+     * Returns the cached value if the cache lookup produces one, without touching the workspace lane. Otherwise the
+     * loader is scheduled with {@link #submit(String, BazelCommandRequest)}.
+     *
+     * @param cacheLookup
+     *            must be safe to call from any thread, and returns null on a cache miss
+     */
+    public <T> CompletableFuture<T> read(String requestKey, Supplier<T> cacheLookup, BazelCommandRequest<T> loader) {
+        T cached = cacheLookup.get();
+        if (cached != null) {
+            numberCacheReads.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+        return submit(requestKey, loader);
+    }
+
+    /**
+     * Variant of {@link #read(String, Supplier, BazelCommandRequest)} for caches that look up their values
+     * asynchronously, e.g. from disk. The loader is only scheduled once the lookup completes with a miss, so the lookup
+     * never occupies the workspace lane.
+     *
+     * @param cacheLookup
+     *            must be safe to call from any thread, and completes with null on a cache miss
+     */
+    public <T> CompletableFuture<T> readAsync(String requestKey, Supplier<CompletableFuture<T>> cacheLookup,
+            BazelCommandRequest<T> loader) {
+        if (Thread.currentThread() == laneThread) {
+            // the loader would run inline anyway
+            return read(requestKey, () -> cacheLookup.get().join(), loader);
+        }
+        return cacheLookup.get().thenCompose(cached -> {
+            if (cached != null) {
+                numberCacheReads.incrementAndGet();
+                return CompletableFuture.completedFuture(cached);
+            }
+            return submit(requestKey, loader);
+        });
+    }
+
+    /**
+     * Blocks until the future completes, and unwraps the failure into the checked exceptions thrown by the synchronous
+     * command APIs.
+     */
+    public static <T> T await(CompletableFuture<T> future)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        try {
+            return future.get();
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof BazelCommandLineToolConfigurationException) {
+                throw (BazelCommandLineToolConfigurationException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Number of requests that are queued or running on the workspace lane. Background work (e.g. warming up caches)
+     * checks this to yield to the requests of the user.
+     */
+    public int getPendingCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Number of requests that were satisfied by an in-flight request with the same key.
+     */
+    public int getNumberCoalesced() {
+        return numberCoalesced.get();
+    }
+
+    /**
+     * Number of reads that were satisfied by the cache lookup, without scheduling work.
+     */
+    public int getNumberCacheReads() {
+        return numberCacheReads.get();
+    }
+
+    /**
+     * Stops accepting new requests. Requests already queued are still executed.
+     */
+    public void shutdown() {
+        lane.shutdown();
+    }
+
+    // INTERNAL
+
+    private static <T> CompletableFuture<T> runInline(BazelCommandRequest<T> request) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(request.execute());
+        } catch (Throwable anyT) {
+            future.completeExceptionally(anyT);
+        }
+        return future;
+    }
+}
@@ -40,16 +40,23 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
 import com.salesforce.bazel.sdk.aspect.BazelAspectLocation;
+import com.salesforce.bazel.sdk.aspect.IncrementalAspectDependencyGraph;
 import com.salesforce.bazel.sdk.command.internal.BazelCommandExecutor;
 import com.salesforce.bazel.sdk.command.internal.BazelQueryHelper;
 import com.salesforce.bazel.sdk.command.internal.BazelVersionChecker;
@@ -104,6 +111,13 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      */
     private File bazelBinDirectory;
 
+    /**
+     * The key/value pairs emitted by <i>bazel info</i> with no key argument. Fetched once, and used to compute the
+     * workspace directories above without running a Bazel command for each. Callers share the pending future while
+     * the command runs on the workspace lane, so no lock is held while waiting for it.
+     */
+    private final AtomicReference<CompletableFuture<Map<String, String>>> bazelInfo = new AtomicReference<>();
+
     // GLOBAL CONFIG
 
     /**
@@ -140,19 +154,17 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
     private final BazelVersionChecker bazelVersionChecker;
 
     /**
-     * These arguments are added to all "bazel build" commands that run for the purpose of building code. These may be
-     * workspace specific.
+     * Schedules the Bazel operations of this workspace. Identical in-flight requests are coalesced, and cache reads do
+     * not wait for running commands.
      */
-    private List<String> buildOptions = Collections.emptyList();
-
-    // CACHES
+    private final BazelCommandScheduler commandScheduler;
+    private final AtomicLong streamedQueryCount = new AtomicLong();
 
     /**
-     * This is to cache the last query and return the query result without actually computing it. This is required
-     * because computeUnresolvedPath tries to compute the bazel query multiple time
+     * These arguments are added to all "bazel build" commands that run for the purpose of building code. These may be
+     * workspace specific.
      */
-    private String query;
-    private List<String> queryResults;
+    private List<String> buildOptions = Collections.emptyList();
 
     // CTORS
 
@@ -164,12 +176,13 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
 
         this.commandBuilder = commandBuilder;
         bazelCommandExecutor = new BazelCommandExecutor(bazelExecutable, commandBuilder);
-        bazelVersionChecker = new BazelVersionChecker(this.commandBuilder);
+        bazelVersionChecker = new BazelVersionChecker(bazelCommandExecutor);
 
         // these operations are not available without a workspace, and are nulled out
         bazelWorkspaceRootDirectory = null;
         aspectHelper = null;
         bazelQueryHelper = null;
+        commandScheduler = null;
     }
 
     /**
@@ -186,8 +199,9 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
         bazelCommandExecutor = new BazelCommandExecutor(bazelExecutable, commandBuilder);
 
         aspectHelper = new BazelWorkspaceAspectProcessor(this, aspectLocation, bazelCommandExecutor);
-        bazelVersionChecker = new BazelVersionChecker(this.commandBuilder);
+        bazelVersionChecker = new BazelVersionChecker(bazelCommandExecutor);
         bazelQueryHelper = new BazelQueryHelper(bazelCommandExecutor);
+        commandScheduler = new BazelCommandScheduler(bazelWorkspaceRoot.getName());
     }
 
     // WORKSPACE CONFIG
@@ -205,55 +219,63 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      */
     @Override
     public File computeBazelWorkspaceExecRoot() {
-
         if (bazelExecRootDirectory == null) {
-            try {
-                List<String> argBuilder = new ArrayList<>();
-                argBuilder.add("info");
-                argBuilder.add("execution_root");
-
-                List<String> outputLines = bazelCommandExecutor.runBazelAndGetOutputLines(bazelWorkspaceRootDirectory,
-                    null, argBuilder, t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
-                outputLines = BazelCommandExecutor.stripInfoLines(outputLines);
-                bazelExecRootDirectory = new File(String.join("", outputLines));
-                bazelExecRootDirectory = getCanonicalFileSafely(bazelExecRootDirectory);
-            } catch (Exception anyE) {
-                throw new IllegalStateException(anyE);
-            }
+            bazelExecRootDirectory = getBazelInfoDirectory("execution_root");
         }
         return bazelExecRootDirectory;
     }
 
     /**
-     * Returns the list of targets for the given bazel query
+     * Returns the list of targets for the given bazel query. The results are cached by query expression, and are reused
+     * until the BUILD file of one of the packages named by the query changes or the package is flushed. The result of a
+     * query that follows dependencies (deps(), tests(), rdeps(), ...) or uses a recursive pattern is also discarded
+     * when one of the BUILD or .bzl files reported by buildfiles() for it changes.
      *
      * @param query
      *            is a String with the bazel query
      */
     @Override
     public List<String> computeBazelQuery(String query) {
-
-        if ((this.query != null) && this.query.equals(query)) {
-            return queryResults;
+        try {
+            return BazelCommandScheduler.await(commandScheduler.read("query " + query,
+                () -> bazelQueryHelper.getCachedQueryResult(query),
+                () -> bazelQueryHelper.runCachedQuery(bazelWorkspaceRootDirectory, query)));
+        } catch (IOException | InterruptedException | BazelCommandLineToolConfigurationException e) {
+            throw new IllegalStateException(e);
         }
+    }
 
-        List<String> results = new ArrayList<>();
+    /**
+     * Runs the given bazel query and passes each output line to the consumer as it is produced, without holding the
+     * whole result in memory. The consumer is called from the thread that reads the output of the query, and the query
+     * is scheduled like the other commands of the workspace. A cached result (see {@link #computeBazelQuery(String)})
+     * is replayed if available, but a streamed result is not cached.
+     *
+     * @param query
+     *            is a String with the bazel query
+     */
+    @Override
+    public void computeBazelQuery(String query, Consumer<String> lineConsumer) {
+        List<String> cachedLines = bazelQueryHelper.getCachedQueryResult(query);
+        if (cachedLines != null) {
+            cachedLines.forEach(lineConsumer);
+            return;
+        }
+        // the consumer is an input of the request, so streamed queries are never coalesced
+        String requestKey = "query-stream-" + streamedQueryCount.incrementAndGet() + " " + query;
         try {
-            List<String> argBuilder = new ArrayList<>();
-            argBuilder.add("query");
-            argBuilder.add(query);
-
-            results = bazelCommandExecutor.runBazelAndGetOutputLines(bazelWorkspaceRootDirectory, null, argBuilder,
-                t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
+            BazelCommandScheduler.await(commandScheduler.submit(requestKey, () -> {
+                List<String> argBuilder = new ArrayList<>();
+                argBuilder.add("query");
+                argBuilder.add(query);
 
+                bazelCommandExecutor.runBazelAndConsumeOutputLines(bazelWorkspaceRootDirectory, null, argBuilder,
+                    t -> t, lineConsumer, BazelCommandExecutor.TIMEOUT_INFINITE);
+                return null;
+            }));
         } catch (IOException | InterruptedException | BazelCommandLineToolConfigurationException e) {
             throw new IllegalStateException(e);
         }
-        //update cached values
-        this.query = query;
-        queryResults = results;
-
-        return results;
     }
 
     /**
@@ -263,19 +285,7 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
     @Override
     public File computeBazelWorkspaceOutputBase() {
         if (bazelOutputBaseDirectory == null) {
-            try {
-                List<String> argBuilder = new ArrayList<>();
-                argBuilder.add("info");
-                argBuilder.add("output_base");
-
-                List<String> outputLines = bazelCommandExecutor.runBazelAndGetOutputLines(bazelWorkspaceRootDirectory,
-                    null, argBuilder, t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
-                outputLines = BazelCommandExecutor.stripInfoLines(outputLines);
-                bazelOutputBaseDirectory = new File(String.join("", outputLines));
-                bazelOutputBaseDirectory = getCanonicalFileSafely(bazelOutputBaseDirectory);
-            } catch (Exception anyE) {
-                throw new IllegalStateException(anyE);
-            }
+            bazelOutputBaseDirectory = getBazelInfoDirectory("output_base");
         }
         return bazelOutputBaseDirectory;
     }
@@ -287,43 +297,81 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
     @Override
     public File computeBazelWorkspaceBin() {
         if (bazelBinDirectory == null) {
-            try {
-                List<String> argBuilder = new ArrayList<>();
-                argBuilder.add("info");
-                argBuilder.add("bazel-bin");
-
-                List<String> outputLines = bazelCommandExecutor.runBazelAndGetOutputLines(bazelWorkspaceRootDirectory,
-                    null, argBuilder, t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
-                outputLines = BazelCommandExecutor.stripInfoLines(outputLines);
-                bazelBinDirectory = new File(String.join("", outputLines));
-                bazelBinDirectory = getCanonicalFileSafely(bazelBinDirectory);
-            } catch (Exception anyE) {
-                throw new IllegalStateException(anyE);
-            }
+            bazelBinDirectory = getBazelInfoDirectory("bazel-bin");
         }
         return bazelBinDirectory;
     }
 
     /**
-     * Returns the explicitly set options in the workspace config files (.bazelrc et al). This gathers the data from the
-     * announce_rc option in Bazel.
+     * Runs <i>bazel info</i> without a key, and returns all of the key/value pairs it emits (execution_root,
+     * output_base, bazel-bin, etc). This always runs Bazel; the compute methods above use a cached copy.
      */
-    @Override
-    public void populateBazelWorkspaceCommandOptions(BazelWorkspaceCommandOptions commandOptions) {
+    public Map<String, String> computeBazelInfo() {
         try {
+            return BazelCommandScheduler.await(submitBazelInfo());
+        } catch (Exception anyE) {
+            throw new IllegalStateException(anyE);
+        }
+    }
+
+    private CompletableFuture<Map<String, String>> submitBazelInfo() {
+        return commandScheduler.submit("info", () -> {
             List<String> argBuilder = new ArrayList<>();
-            // to get the options, the verb could be info, build, test etc but 'test' gives us the most coverage of the contexts for options
-            argBuilder.add("test");
-            argBuilder.add("--announce_rc");
+            argBuilder.add("info");
+
+            List<String> outputLines = bazelCommandExecutor.runBazelAndGetOutputLines(bazelWorkspaceRootDirectory,
+                null, argBuilder, t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
+            outputLines = BazelCommandExecutor.stripInfoLines(outputLines);
+            return parseBazelInfoLines(outputLines);
+        });
+    }
+
+    /**
+     * Parses the output of <i>bazel info</i>, which is one <i>key: value</i> pair per line.
+     */
+    public static Map<String, String> parseBazelInfoLines(List<String> outputLines) {
+        Map<String, String> info = new TreeMap<>();
+        for (String line : outputLines) {
+            int separatorIndex = line.indexOf(": ");
+            if (separatorIndex <= 0) {
+                continue;
+            }
+            // the trim() is essential here, on Windows, otherwise we end up with a trailing carriage return
+            info.put(line.substring(0, separatorIndex).trim(), line.substring(separatorIndex + 2).trim());
+        }
+        return info;
+    }
 
-            List<String> outputLines = bazelCommandExecutor.runBazelAndGetErrorLines(bazelWorkspaceRootDirectory, null,
-                argBuilder, t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
-            commandOptions.parseOptionsFromOutput(outputLines);
+    /**
+     * Runs a <i>bazel test --announce_rc</i> command and returns the stderr lines, which list the explicitly set
+     * options in the workspace config files (.bazelrc et al).
+     */
+    public List<String> computeBazelAnnounceRcLines() {
+        try {
+            return BazelCommandScheduler.await(commandScheduler.submit("test --announce_rc", () -> {
+                List<String> argBuilder = new ArrayList<>();
+                // to get the options, the verb could be info, build, test etc but 'test' gives us the most coverage
+                // of the contexts for options
+                argBuilder.add("test");
+                argBuilder.add("--announce_rc");
+
+                return bazelCommandExecutor.runBazelAndGetErrorLines(bazelWorkspaceRootDirectory, null, argBuilder,
+                    t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
+            }));
         } catch (Exception anyE) {
             throw new IllegalStateException(anyE);
         }
     }
 
+    /**
+     * Returns the explicitly set options in the workspace config files (.bazelrc et al). This gathers the data from the
+     * announce_rc option in Bazel.
+     */
+    @Override
+    public void populateBazelWorkspaceCommandOptions(BazelWorkspaceCommandOptions commandOptions) {
+        commandOptions.parseOptionsFromOutput(computeBazelAnnounceRcLines());
+    }
+
     /**
      * These arguments are added to all "bazel build" commands that run for the purpose of building code.
      */
@@ -366,25 +414,45 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      * @param labels
      *            the labels to query
      */
-    public synchronized Collection<BazelBuildFile> queryBazelTargetsInBuildFile(Collection<BazelLabel> labels)
+    public Collection<BazelBuildFile> queryBazelTargetsInBuildFile(Collection<BazelLabel> labels)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
-        return bazelQueryHelper.queryBazelTargetsInBuildFile(bazelWorkspaceRootDirectory, labels);
+        return BazelCommandScheduler.await(queryBazelTargetsInBuildFileAsync(labels));
+    }
+
+    /**
+     * Async variant of {@link #queryBazelTargetsInBuildFile(Collection)}. If all packages are already cached, the
+     * returned future is already complete.
+     */
+    public CompletableFuture<Collection<BazelBuildFile>> queryBazelTargetsInBuildFileAsync(
+            Collection<BazelLabel> labels) {
+        String requestKey = "query-buildfiles " + toRequestKeyToken(labels);
+        return commandScheduler.read(requestKey, () -> bazelQueryHelper.getCachedBuildFiles(labels),
+            () -> bazelQueryHelper.queryBazelTargetsInBuildFile(bazelWorkspaceRootDirectory, labels));
     }
 
     /**
      * Returns the list of source files that are used to build a target. Uses Bazel Query to build the list.
      */
-    public synchronized Collection<String> querySourceFilesForTarget(File bazelWorkspaceRootDirectory,
-            BazelLabel bazelLabel)
+    public Collection<String> querySourceFilesForTarget(File bazelWorkspaceRootDirectory, BazelLabel bazelLabel)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
-        return bazelQueryHelper.querySourceFilesForTarget(bazelWorkspaceRootDirectory, bazelLabel);
+        return BazelCommandScheduler.await(querySourceFilesForTargetAsync(bazelWorkspaceRootDirectory, bazelLabel));
+    }
+
+    /**
+     * Async variant of {@link #querySourceFilesForTarget(File, BazelLabel)}.
+     */
+    public CompletableFuture<Collection<String>> querySourceFilesForTargetAsync(File bazelWorkspaceRootDirectory,
+            BazelLabel bazelLabel) {
+        String requestKey = "query-sources " + bazelWorkspaceRootDirectory + " " + bazelLabel;
+        return commandScheduler.submit(requestKey,
+            () -> bazelQueryHelper.querySourceFilesForTarget(bazelWorkspaceRootDirectory, bazelLabel));
     }
 
     /**
      * @param bazelPackageName
      *            the label path that identifies the package where the BUILD file lives (//projects/libs/foo)
      */
-    public synchronized void flushQueryCache(BazelLabel bazelPackageLabel) {
+    public void flushQueryCache(BazelLabel bazelPackageLabel) {
         bazelQueryHelper.flushCache(bazelPackageLabel);
     }
 
@@ -397,9 +465,11 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      * @throws BazelCommandLineToolConfigurationException
      */
     @Deprecated
-    public synchronized List<String> listBazelTargetsInBuildFiles(WorkProgressMonitor progressMonitor,
-            File... directories) throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
-        return bazelQueryHelper.listBazelTargetsInBuildFiles(bazelWorkspaceRootDirectory, progressMonitor, directories);
+    public List<String> listBazelTargetsInBuildFiles(WorkProgressMonitor progressMonitor, File... directories)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        String requestKey = "query-targets " + toRequestKeyToken(Arrays.asList(directories));
+        return BazelCommandScheduler.await(commandScheduler.submit(requestKey, () -> bazelQueryHelper
+                .listBazelTargetsInBuildFiles(bazelWorkspaceRootDirectory, progressMonitor, directories)));
     }
 
     /**
@@ -407,7 +477,7 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      *
      * @return a List of error details, this list is empty if the build was successful
      */
-    public synchronized List<BazelProblem> runBazelBuild(Set<String> bazelTargets, List<String> extraArgs)
+    public List<BazelProblem> runBazelBuild(Set<String> bazelTargets, List<String> extraArgs)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
         return runBazelBuild(bazelTargets, extraArgs, null);
     }
@@ -417,13 +487,34 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      *
      * @return a List of error details, this list is empty if the build was successful
      */
-    public synchronized List<BazelProblem> runBazelBuild(Set<String> bazelTargets, List<String> extraArgs,
+    public List<BazelProblem> runBazelBuild(Set<String> bazelTargets, List<String> extraArgs,
+            WorkProgressMonitor progressMonitor)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        return BazelCommandScheduler.await(runBazelBuildAsync(bazelTargets, extraArgs, progressMonitor));
+    }
+
+    /**
+     * Async variant of {@link #runBazelBuild(Set, List, WorkProgressMonitor)}. If an identical build (same targets and
+     * args) is already queued or running, the caller shares its result. In that case the progress monitor of the first
+     * caller is the one that receives progress.
+     */
+    public CompletableFuture<List<BazelProblem>> runBazelBuildAsync(Set<String> bazelTargets, List<String> extraArgs,
+            WorkProgressMonitor progressMonitor) {
+        List<String> buildArgs = new ArrayList<>();
+        buildArgs.addAll(buildOptions);
+        buildArgs.addAll(extraArgs);
+        String requestKey = "build " + String.join(" ", buildArgs) + " -- " + toRequestKeyToken(bazelTargets);
+
+        return commandScheduler.submit(requestKey,
+            () -> runBazelBuildInternal(bazelTargets, buildArgs, progressMonitor));
+    }
+
+    private List<BazelProblem> runBazelBuildInternal(Set<String> bazelTargets, List<String> buildArgs,
             WorkProgressMonitor progressMonitor)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
         List<String> extraArgsList = new ArrayList<String>();
         extraArgsList.add("build");
-        extraArgsList.addAll(buildOptions);
-        extraArgsList.addAll(extraArgs);
+        extraArgsList.addAll(buildArgs);
         extraArgsList.add("--");
         extraArgsList.addAll(bazelTargets);
 
@@ -458,16 +549,16 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      *
      * @throws BazelCommandLineToolConfigurationException
      */
-    public synchronized Map<BazelLabel, Set<AspectTargetInfo>> getAspectTargetInfoForPackages(
+    public Map<BazelLabel, Set<AspectTargetInfo>> getAspectTargetInfoForPackages(
             Collection<BazelPackageLocation> targetPackages, String caller)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
         List<BazelLabel> targetLabels = new ArrayList<>();
         for (BazelPackageLocation pkg : targetPackages) {
             String target = pkg.getBazelPackageFSRelativePath() + ":*";
-            targetLabels.add(new BazelLabel(target));
+            targetLabels.add(BazelLabel.valueOf(target));
         }
 
-        return aspectHelper.getAspectTargetInfos(targetLabels, caller);
+        return BazelCommandScheduler.await(getAspectTargetInfosAsync(targetLabels, caller));
     }
 
     /**
@@ -487,46 +578,69 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      * @return Mapping of the requested label to its AspectTargetInfo instances
      * @throws BazelCommandLineToolConfigurationException
      */
-    public synchronized Map<BazelLabel, Set<AspectTargetInfo>> getAspectTargetInfos(Collection<String> targetLabels,
+    public Map<BazelLabel, Set<AspectTargetInfo>> getAspectTargetInfos(Collection<String> targetLabels,
             String caller) throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
 
-        Collection<BazelLabel> labels = targetLabels.stream().map(BazelLabel::new).collect(Collectors.toList());
-        return aspectHelper.getAspectTargetInfos(labels, caller);
+        Collection<BazelLabel> labels = targetLabels.stream().map(BazelLabel::valueOf).collect(Collectors.toList());
+        return BazelCommandScheduler.await(getAspectTargetInfosAsync(labels, caller));
+    }
+
+    /**
+     * Async variant of {@link #getAspectTargetInfos(Collection, String)}. If all labels are already in the aspect
+     * cache, the returned future is already complete and no Bazel command is scheduled. Labels that are only in the
+     * persistent aspect cache are loaded from disk before deciding whether the aspect needs to run.
+     */
+    public CompletableFuture<Map<BazelLabel, Set<AspectTargetInfo>>> getAspectTargetInfosAsync(
+            Collection<BazelLabel> labels, String caller) {
+        String requestKey = "aspect " + toRequestKeyToken(labels);
+        return commandScheduler.readAsync(requestKey, () -> aspectHelper.getCachedAspectTargetInfosAsync(labels),
+            () -> aspectHelper.getAspectTargetInfos(labels, caller));
     }
 
     /**
      * Clear the entire AspectTargetInfo cache. This flushes the dependency graph for the workspace.
      */
-    public synchronized void flushAspectInfoCache() {
+    public void flushAspectInfoCache() {
         aspectHelper.flushAspectInfoCache();
     }
 
     /**
      * Clear the AspectTargetInfo cache for the passed target. This flushes the dependency graph for that target.
      */
-    public synchronized void flushAspectInfoCache(String target) {
-        aspectHelper.flushAspectInfoCache(new BazelLabel(target));
+    public void flushAspectInfoCache(String target) {
+        aspectHelper.flushAspectInfoCache(BazelLabel.valueOf(target));
     }
 
     /**
      * Clear the AspectTargetInfo cache for the passed targets. This flushes the dependency graph for those targets.
      */
-    public synchronized void flushAspectInfoCache(Set<String> targets) {
-        Set<BazelLabel> labels = targets.stream().map(BazelLabel::new).collect(Collectors.toSet());
+    public void flushAspectInfoCache(Set<String> targets) {
+        Set<BazelLabel> labels = targets.stream().map(BazelLabel::valueOf).collect(Collectors.toSet());
         aspectHelper.flushAspectInfoCache(labels);
     }
 
     /**
-     * Clear the AspectTargetInfo cache for the passed package. This flushes the dependency graph for any target that
-     * contains the package name.
+     * Clear the AspectTargetInfo cache for the passed package. This flushes the targets of the package, and the cached
+     * targets of other packages that depend on it. Prefer this to {@link #flushAspectInfoCache()} when a BUILD file
+     * changes, the aspects of the rest of the workspace do not need to run again.
+     *
+     * @return the package paths of the flushed targets
      */
-    public synchronized Set<String> flushAspectInfoCacheForPackage(String packageName) {
-        BazelLabel packageLabel = new BazelLabel(packageName);
+    public Set<String> flushAspectInfoCacheForPackage(String packageName) {
+        BazelLabel packageLabel = BazelLabel.valueOf(packageName);
         Set<BazelLabel> flushedPackages = aspectHelper.flushAspectInfoCacheForPackage(packageLabel);
         LOG.info("Flushed aspect cache for package: " + packageLabel);
         return flushedPackages.stream().map(BazelLabel::getPackagePath).collect(Collectors.toSet());
     }
 
+    /**
+     * The dependency graph of the workspace, kept current as aspect data is computed and flushed. Prefer it to building
+     * a graph from aspect data with AspectDependencyGraphFactory.
+     */
+    public IncrementalAspectDependencyGraph getDependencyGraph() {
+        return aspectHelper == null ? null : aspectHelper.getDependencyGraph();
+    }
+
     /**
      * Access to the low level aspect collaborator. Visible for tests.
      */
@@ -534,6 +648,23 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
         return aspectHelper;
     }
 
+    /**
+     * Access to the scheduler that runs the Bazel operations of this workspace. Visible for tests.
+     */
+    public BazelCommandScheduler getBazelCommandScheduler() {
+        return commandScheduler;
+    }
+
+    /**
+     * Stops the workspace lane of this runner, once it is no longer used (e.g. the workspace was removed or replaced).
+     * Operations already queued still complete, new operations fail.
+     */
+    public void dispose() {
+        if (commandScheduler != null) {
+            commandScheduler.shutdown();
+        }
+    }
+
     // CUSTOM OPERATIONS
 
     /**
@@ -562,11 +693,13 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      */
     public void runBazelClean(WorkProgressMonitor progressMonitor) {
         try {
-            List<String> argBuilder = new ArrayList<>();
-            argBuilder.add("clean");
+            BazelCommandScheduler.await(commandScheduler.submit("clean", () -> {
+                List<String> argBuilder = new ArrayList<>();
+                argBuilder.add("clean");
 
-            bazelCommandExecutor.runBazelAndGetOutputLines(bazelWorkspaceRootDirectory, progressMonitor, argBuilder,
-                t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
+                return bazelCommandExecutor.runBazelAndGetOutputLines(bazelWorkspaceRootDirectory, progressMonitor,
+                    argBuilder, t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
+            }));
         } catch (IOException | InterruptedException | BazelCommandLineToolConfigurationException e) {
             LOG.error("Exception running Bazel clean.", e);
         }
@@ -578,22 +711,37 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
      * @throws BazelCommandLineToolConfigurationException
      */
     public void runBazelVersionCheck() throws BazelCommandLineToolConfigurationException {
-        bazelVersionChecker.runBazelVersionCheck(bazelExecutable, bazelWorkspaceRootDirectory);
+        if (commandScheduler == null) {
+            // the global runner has no workspace lane
+            bazelVersionChecker.runBazelVersionCheck(bazelExecutable, bazelWorkspaceRootDirectory);
+            return;
+        }
+        try {
+            BazelCommandScheduler.await(commandScheduler.submit("version-check " + bazelExecutable, () -> {
+                bazelVersionChecker.runBazelVersionCheck(bazelExecutable, bazelWorkspaceRootDirectory);
+                return null;
+            }));
+        } catch (IOException | InterruptedException e) {
+            throw new BazelCommandLineToolConfigurationException.BazelNotFoundException(
+                    bazelExecutable.getAbsolutePath());
+        }
     }
 
-    public File getBazelGeneratedFilesFolder() {
-        try {
-            List<String> argBuilder = new ArrayList<>();
-            argBuilder.add("info");
-            argBuilder.add("bazel-genfiles");
+    /**
+     * Returns the version of the configured bazel binary as {major, minor, patch}, or null if it could not be
+     * determined. Runs <i>bazel version</i> the first time it is called for an executable.
+     */
+    public int[] getBazelVersion()
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        return bazelVersionChecker.getBazelVersion(bazelExecutable, bazelWorkspaceRootDirectory);
+    }
 
-            List<String> outputLines = bazelCommandExecutor.runBazelAndGetOutputLines(bazelWorkspaceRootDirectory, null,
-                argBuilder, t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
-            outputLines = BazelCommandExecutor.stripInfoLines(outputLines);
-            return new File(String.join("", outputLines));
-        } catch (Exception exc) {
-            throw new IllegalStateException(exc);
+    public File getBazelGeneratedFilesFolder() {
+        String genfiles = getBazelInfo().get("bazel-genfiles");
+        if (genfiles == null) {
+            throw new IllegalStateException("bazel info did not return the bazel-genfiles location");
         }
+        return new File(genfiles);
     }
 
     public String getProjectOutputPath(BazelLabel bazelLabel) {
@@ -625,6 +773,36 @@ public class BazelWorkspaceCommandRunner implements BazelWorkspaceMetadataStrate
         }
     }
 
+    private Map<String, String> getBazelInfo() {
+        CompletableFuture<Map<String, String>> info = bazelInfo.get();
+        if (info == null) {
+            CompletableFuture<Map<String, String>> submitted = submitBazelInfo();
+            info = bazelInfo.compareAndSet(null, submitted) ? submitted : bazelInfo.get();
+        }
+        try {
+            return BazelCommandScheduler.await(info);
+        } catch (Exception anyE) {
+            // not memoized, the next call runs bazel info again
+            bazelInfo.compareAndSet(info, null);
+            throw new IllegalStateException(anyE);
+        }
+    }
+
+    private File getBazelInfoDirectory(String key) {
+        String path = getBazelInfo().get(key);
+        if (path == null) {
+            throw new IllegalStateException("bazel info did not return a value for " + key);
+        }
+        return getCanonicalFileSafely(new File(path));
+    }
+
+    /**
+     * Builds a stable token for a collection of labels/targets, for use in scheduler request keys.
+     */
+    private static String toRequestKeyToken(Collection<?> labelsOrTargets) {
+        return labelsOrTargets.stream().map(Object::toString).sorted().collect(Collectors.joining(" "));
+    }
+
     /**
      * Resolve softlinks and other abstractions in the workspace paths.
      */
@@ -25,6 +25,7 @@ package com.salesforce.bazel.sdk.command;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 /**
@@ -40,6 +41,24 @@ public interface Command {
      */
     int run() throws IOException, InterruptedException;
 
+    /**
+     * Starts the command represented by this instance, and returns a future that completes with the exit code of the
+     * command. Canceling the future abandons the command. This method should not be called twice on the same object,
+     * nor combined with run().
+     * <p>
+     * The default implementation runs the command synchronously.
+     */
+    default CompletableFuture<Integer> runAsync() throws IOException {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        try {
+            result.complete(run());
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(interrupted);
+        }
+        return result;
+    }
+
     /**
      * Returns the list of lines selected from the standard error stream. Lines printed to the standard error stream by
      * the executed command can be filtered to be added to that list.
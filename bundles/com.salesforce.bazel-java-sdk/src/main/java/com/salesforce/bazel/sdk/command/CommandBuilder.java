@@ -29,6 +29,7 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import com.salesforce.bazel.sdk.console.CommandConsoleFactory;
@@ -54,6 +55,7 @@ public abstract class CommandBuilder {
     protected OutputStream stderr = null;
     protected Function<String, String> stdoutSelector;
     protected Function<String, String> stderrSelector;
+    protected Consumer<String> stdoutConsumer;
     protected final CommandConsoleFactory consoleFactory;
     protected WorkProgressMonitor progressMonitor;
     protected long timeoutMS;
@@ -74,10 +76,11 @@ public abstract class CommandBuilder {
         this.stderr = null;
         this.stdoutSelector = null;
         this.stderrSelector = null;
+        this.stdoutConsumer = null;
         this.progressMonitor = null;
 
-        // TODO make Bazel command timeout configurable
-        this.timeoutMS = 100000; // default timeout
+        // commands only time out when a timeout is set explicitly, launched apps and tests can run for a long time
+        this.timeoutMS = 0;
     }
 
     /**
@@ -158,6 +161,17 @@ public abstract class CommandBuilder {
         return this;
     }
 
+    /**
+     * Set a consumer that is passed the lines selected from the standard output stream as they are produced, instead of
+     * storing them in the list returned by {@link Command#getSelectedOutputLines()}. Use this for commands with very
+     * large output, so that the output does not have to be held in memory. The consumer is called from the thread that
+     * reads the output of the program.
+     */
+    public CommandBuilder setStdoutLineConsumer(Consumer<String> consumer) {
+        this.stdoutConsumer = consumer;
+        return this;
+    }
+
     /**
      * Set a selector to accumulate lines that are selected from the standard error stream.
      *
@@ -181,7 +195,8 @@ public abstract class CommandBuilder {
     }
 
     /**
-     * Provide an optional timeout for the command (in milliseconds).
+     * Provide an optional timeout for the command (in milliseconds). The process tree is destroyed when the timeout
+     * expires. By default, and for a value of 0, the command never times out. The timeout is reset after each build.
      */
     public CommandBuilder setTimeout(long timeoutMS) {
         this.timeoutMS = timeoutMS;
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.internal;
+
+/**
+ * Chooses the number of targets to pass to each aspect build. Every Bazel invocation pays a fixed overhead (client
+ * startup, loading, analysis setup) before it starts on the targets, so batches should be large enough to amortize
+ * it, but small enough that the aspect files of a batch can be parsed while the next batch runs, and that progress is
+ * reported along the way.
+ * <p>
+ * The sizer models the duration of a batch as <i>overhead + size * perTarget</i>, and estimates both terms from the
+ * two most recent batches of different sizes. Until it has such a pair it grows the batch size geometrically.
+ */
+class AspectBatchSizer {
+
+    static final int INITIAL_BATCH_SIZE = 25;
+    static final int MIN_BATCH_SIZE = 10;
+    static final int MAX_BATCH_SIZE = 2000;
+
+    /**
+     * The batch size is chosen so that the fixed overhead is at most this fraction of the duration of a batch.
+     */
+    static final double TARGET_OVERHEAD_FRACTION = 0.1;
+
+    /**
+     * Upper bound for the duration of a batch, so that the pipeline and the progress reporting stay responsive.
+     */
+    static final long TARGET_BATCH_DURATION_MS = 120000;
+
+    /**
+     * A batch grows by at most this factor, as the estimates are noisy (the Bazel analysis cache warms up).
+     */
+    static final int MAX_GROWTH_FACTOR = 4;
+
+    private int batchSize;
+
+    private int previousSize = -1;
+    private long previousElapsedMS = -1;
+
+    private double overheadMS = -1;
+    private double perTargetMS = -1;
+
+    AspectBatchSizer() {
+        this(INITIAL_BATCH_SIZE);
+    }
+
+    AspectBatchSizer(int initialBatchSize) {
+        batchSize = initialBatchSize;
+    }
+
+    /**
+     * The number of targets to pass to the next aspect build.
+     */
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Estimated fixed overhead of an invocation, or -1 if it is not known yet.
+     */
+    double getOverheadMS() {
+        return overheadMS;
+    }
+
+    /**
+     * Records the duration of an aspect build, and adapts the size of the next batch.
+     */
+    void recordBatch(int size, long elapsedMS) {
+        if ((previousSize > 0) && (previousSize != size)) {
+            double slope = (double) (elapsedMS - previousElapsedMS) / (size - previousSize);
+            if (slope > 0) {
+                perTargetMS = slope;
+                overheadMS = Math.max(0, elapsedMS - (slope * size));
+            }
+        }
+        previousSize = size;
+        previousElapsedMS = elapsedMS;
+
+        int nextSize;
+        if ((overheadMS < 0) || (perTargetMS <= 0)) {
+            // no model yet, grow until we observe a batch of a different size
+            nextSize = size * 2;
+        } else {
+            // large enough that the overhead is a small fraction of the batch
+            double amortized = ((1 - TARGET_OVERHEAD_FRACTION) * overheadMS) / (TARGET_OVERHEAD_FRACTION * perTargetMS);
+            // small enough to keep the pipeline moving
+            double bounded = (TARGET_BATCH_DURATION_MS - overheadMS) / perTargetMS;
+            nextSize = (int) Math.min(amortized, bounded);
+        }
+        nextSize = Math.min(nextSize, size * MAX_GROWTH_FACTOR);
+        batchSize = Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, nextSize));
+    }
+}
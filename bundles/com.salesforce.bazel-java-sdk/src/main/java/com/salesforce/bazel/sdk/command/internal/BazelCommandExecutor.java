@@ -38,8 +38,12 @@ package com.salesforce.bazel.sdk.command.internal;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import com.salesforce.bazel.sdk.command.BazelCommandLineToolConfigurationException;
@@ -58,6 +62,14 @@ public class BazelCommandExecutor {
     private final CommandBuilder commandBuilder;
     public static final long TIMEOUT_INFINITE = 0L;
 
+    /**
+     * Decodes the stdout of a command, see {@link BazelCommandExecutor#runBazelAndParseOutput}.
+     */
+    @FunctionalInterface
+    public interface OutputParser {
+        void parse(InputStream output) throws IOException;
+    }
+
     public BazelCommandExecutor(File bazelExecutable, CommandBuilder commandBuilder) {
         this.bazelExecutable = bazelExecutable;
         this.commandBuilder = commandBuilder;
@@ -77,6 +89,77 @@ public class BazelCommandExecutor {
         return command.getSelectedOutputLines();
     }
 
+    /**
+     * Runs the command and passes the selected stdout lines to the consumer as they are produced, so that commands with
+     * very large output (e.g. queries over //...) can be processed with constant memory. The consumer is called from
+     * the thread that reads the output of the command. Returns the exit code of the command.
+     */
+    public synchronized int runBazelAndConsumeOutputLines(File workingDirectory, WorkProgressMonitor progressMonitor,
+            List<String> args, Function<String, String> selector, Consumer<String> lineConsumer, long timeoutMS)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+
+        CommandBuilder builder =
+                getConfiguredCommandBuilder(ConsoleType.WORKSPACE, workingDirectory, progressMonitor, args, timeoutMS);
+        Command command = builder.setStdoutLineSelector(selector).setStdoutLineConsumer(lineConsumer).build();
+        int exitCode = command.run();
+        if (exitCode != 0) {
+            LOG.error("Command [{}] failed with this exit code: {}", args, exitCode);
+        }
+        return exitCode;
+    }
+
+    /**
+     * Runs the command and passes its stdout to the parser as a stream, for structured output (e.g. query --output xml)
+     * that must be decoded as a whole rather than line by line. The parser runs on the calling thread while the command
+     * is running, so the output is never held in memory. Returns the exit code of the command.
+     */
+    public synchronized int runBazelAndParseOutput(File workingDirectory, WorkProgressMonitor progressMonitor,
+            List<String> args, OutputParser parser, long timeoutMS)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+
+        CommandOutputPipe pipe = new CommandOutputPipe();
+        CommandBuilder builder =
+                getConfiguredCommandBuilder(ConsoleType.WORKSPACE, workingDirectory, progressMonitor, args, timeoutMS);
+        Command command = builder.setStandardOutput(pipe.getOutputStream()).build();
+        CompletableFuture<Integer> execution = command.runAsync();
+        execution.whenComplete((exitCode, failure) -> {
+            try {
+                pipe.getOutputStream().close();
+            } catch (IOException ignore) {}
+        });
+
+        InputStream output = pipe.getInputStream();
+        try {
+            parser.parse(output);
+
+            // the parser may stop at the end of the document, drain whatever follows so the command can complete
+            byte[] remainder = new byte[8192];
+            while (output.read(remainder) != -1) {
+                // discard
+            }
+        } catch (IOException | RuntimeException parseE) {
+            // abandon the command, nobody is reading its output anymore
+            pipe.discard();
+            execution.cancel(true);
+            throw parseE;
+        }
+
+        int exitCode;
+        try {
+            exitCode = execution.get();
+        } catch (ExecutionException executionFailure) {
+            Throwable cause = executionFailure.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalStateException("Command [" + args + "] failed", cause);
+        }
+        if (exitCode != 0) {
+            LOG.error("Command [{}] failed with this exit code: {}", args, exitCode);
+        }
+        return exitCode;
+    }
+
     public synchronized List<String> runBazelAndGetOuputLines(ConsoleType consoleType, File workingDirectory,
             WorkProgressMonitor progressMonitor, List<String> args, Function<String, String> selector, long timeoutMS)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
@@ -93,6 +176,22 @@ public class BazelCommandExecutor {
         return new ArrayList<>();
     }
 
+    /**
+     * Runs a Bazel executable that may differ from the one of this executor, e.g. to check the version of an executable
+     * before it is configured. Like the other commands, it is built with the shared CommandBuilder under the lock of
+     * this executor. Returns the selected stdout lines, or null if the command failed.
+     */
+    public synchronized List<String> runExecutableAndGetOutputLines(File executable, File workingDirectory,
+            List<String> args, Function<String, String> selector) throws IOException, InterruptedException {
+
+        Command command = commandBuilder.setConsoleName(null).setDirectory(workingDirectory)
+                .addArguments(executable.getAbsolutePath()).addArguments(args).setStdoutLineSelector(selector).build();
+        if (command.run() != 0) {
+            return null;
+        }
+        return command.getSelectedOutputLines();
+    }
+
     // WHEN INTERESTING OUTPUT IS ON STDERR...
 
     public synchronized List<String> runBazelAndGetErrorLines(File directory, WorkProgressMonitor progressMonitor,
@@ -121,6 +220,25 @@ public class BazelCommandExecutor {
         return new ArrayList<>();
     }
 
+    // WHEN INTERESTING OUTPUT IS WRITTEN TO A FILE...
+
+    /**
+     * Runs the command for the files it writes (e.g. --build_event_json_file), its output only goes to the console.
+     * Returns the exit code of the command.
+     */
+    public synchronized int runBazel(ConsoleType consoleType, File directory, WorkProgressMonitor progressMonitor,
+            List<String> args, long timeoutMS)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+
+        CommandBuilder builder = getConfiguredCommandBuilder(consoleType, directory, progressMonitor, args, timeoutMS);
+        Command command = builder.build();
+        int exitCode = command.run();
+        if (exitCode != 0) {
+            LOG.error("Command [{}] failed with this exit code: {}", args, exitCode);
+        }
+        return exitCode;
+    }
+
     // HELPERS
 
     /**
@@ -34,9 +34,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import com.salesforce.bazel.sdk.command.BazelCommandLineToolConfigurationException;
+import com.salesforce.bazel.sdk.command.internal.BazelQueryXmlOutputParser.QueryRule;
 import com.salesforce.bazel.sdk.logging.LogHelper;
 import com.salesforce.bazel.sdk.model.BazelBuildFile;
 import com.salesforce.bazel.sdk.model.BazelLabel;
@@ -57,7 +61,22 @@ public class BazelQueryHelper {
      */
     private final BazelCommandExecutor bazelCommandExecutor;
 
-    private final Map<BazelLabel, BazelBuildFile> buildFileCache = new HashMap<>();
+    /**
+     * Cache of the queried BUILD files, by package label. This is a concurrent map so that cache lookups can be done
+     * without waiting for a running query.
+     */
+    private final Map<BazelLabel, BazelBuildFile> buildFileCache = new ConcurrentHashMap<>();
+
+    /**
+     * Cache of the results of arbitrary queries, by query expression.
+     */
+    private final BazelQueryResultCache queryResultCache = new BazelQueryResultCache();
+
+    private final BazelQueryXmlOutputParser xmlOutputParser = new BazelQueryXmlOutputParser();
+
+    // /abs/path/projects/libs/apple/BUILD:1:1: source file //projects/libs/apple:BUILD
+    private static final Pattern BUILDFILE_LOCATION_PATTERN =
+            Pattern.compile("^(.*?)(?::\\d+)*: source file (\\S+)$");
 
     public BazelQueryHelper(BazelCommandExecutor bazelCommandExecutor) {
         this.bazelCommandExecutor = bazelCommandExecutor;
@@ -119,6 +138,25 @@ public class BazelQueryHelper {
         return buildFiles;
     }
 
+    /**
+     * Returns the cached BUILD files for the packages of the passed labels, or null if any of the packages is not in
+     * the cache. This does not run Bazel, and is safe to call while another query is running.
+     */
+    public Collection<BazelBuildFile> getCachedBuildFiles(Collection<BazelLabel> bazelLabels) {
+        if (bazelLabels.isEmpty()) {
+            return null;
+        }
+        Collection<BazelBuildFile> buildFiles = new HashSet<>();
+        for (BazelLabel pack : BazelLabelUtil.groupByPackage(bazelLabels).keySet()) {
+            BazelBuildFile buildFile = buildFileCache.get(pack);
+            if (buildFile == null) {
+                return null;
+            }
+            buildFiles.add(buildFile);
+        }
+        return buildFiles;
+    }
+
     /**
      * Returns the list of source files that are used to build a target. Uses Bazel Query to build the list.
      */
@@ -130,12 +168,58 @@ public class BazelQueryHelper {
         return sourceFilePaths;
     }
 
+    /**
+     * Returns the unmodifiable output lines of the query. The result is cached by query expression, and is reused until
+     * one of the packages named by the query changes. For a query that follows dependencies or uses a recursive
+     * pattern, a buildfiles() query records the BUILD and .bzl files the result depends on, and the result is reused
+     * until one of them changes as well. It is not cached if those files could not be computed.
+     */
+    public List<String> runCachedQuery(File bazelWorkspaceRootDirectory, String query)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        List<String> resultLines = queryResultCache.get(query);
+        if (resultLines != null) {
+            LOG.info("Query cache hit: {}", query);
+            return resultLines;
+        }
+
+        List<String> argBuilder = new ArrayList<>();
+        argBuilder.add("query");
+        argBuilder.add(query);
+        List<String> loadedLines = new ArrayList<>();
+        int exitCode = bazelCommandExecutor.runBazelAndConsumeOutputLines(bazelWorkspaceRootDirectory, null,
+            argBuilder, t -> t, loadedLines::add, BazelCommandExecutor.TIMEOUT_INFINITE);
+
+        if (exitCode == 0) {
+            if (!BazelQueryResultCache.hasTransitiveDependencies(query)) {
+                return queryResultCache.put(bazelWorkspaceRootDirectory, query, loadedLines);
+            }
+            Map<File, String> buildFiles = runBuildFilesQuery(query, bazelWorkspaceRootDirectory);
+            if (buildFiles != null) {
+                return queryResultCache.put(bazelWorkspaceRootDirectory, query, loadedLines, buildFiles);
+            }
+        }
+        return Collections.unmodifiableList(loadedLines);
+    }
+
+    /**
+     * Returns the cached output lines of the query, or null if the query is not cached or is stale. This does not run
+     * Bazel.
+     */
+    public List<String> getCachedQueryResult(String query) {
+        return queryResultCache.get(query);
+    }
+
+    public BazelQueryResultCache getQueryResultCache() {
+        return queryResultCache;
+    }
+
     public void flushCache(BazelLabel bazelPackageName) {
         BazelLabel pack = bazelPackageName.getPackageLabel();
         BazelBuildFile previousValue = buildFileCache.remove(pack);
         if (previousValue != null) {
             LOG.info("Build file cache flush, package " + pack);
         }
+        queryResultCache.invalidate(pack);
     }
 
     // Internals
@@ -146,48 +230,39 @@ public class BazelQueryHelper {
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
         String labels = bazelLabels.stream().map(BazelLabel::getLabelPath).collect(Collectors.joining(" "));
 
-        // bazel query 'kind(rule, [label]:*)' --output label_kind
+        // bazel query 'kind(rule, set([label]:*))' --output xml --noimplicit_deps
+        // a single invocation gives us the kind, srcs, direct deps and inputs of every rule
 
         List<String> argBuilder = new ArrayList<>();
         argBuilder.add("query");
         argBuilder.add("kind(rule, set(" + labels + "))");
         argBuilder.add("--output");
-        argBuilder.add("label_kind");
-        List<String> resultLines = bazelCommandExecutor.runBazelAndGetOutputLines(bazelWorkspaceRootDirectory, null,
-            argBuilder, t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
-
-        // Sample Output:  (format: rule_type 'rule' label)
-        // java_binary rule //projects/libs/apple/apple-api:apple-main
-        // java_test rule //projects/libs/apple/apple-api:apple-api-test2
-        // java_library rule //projects/libs/apple/apple-api:apple-api
-
-        Map<BazelLabel, String> labelToRuleType = new HashMap<>();
-        for (String resultLine : resultLines) {
-            String[] tokens = resultLine.split(" ");
-            if (tokens.length != 3) {
-                continue;
-            }
-            String ruleType = tokens[0];
-            String targetLabel = tokens[2];
-            labelToRuleType.put(new BazelLabel(targetLabel), ruleType);
-        }
+        argBuilder.add("xml");
+        argBuilder.add("--noimplicit_deps");
+
+        // the output is decoded while the query is running, the raw output is never held in memory
+        Map<BazelLabel, QueryRule> labelToRule = new HashMap<>();
+        bazelCommandExecutor.runBazelAndParseOutput(bazelWorkspaceRootDirectory, null, argBuilder,
+            output -> xmlOutputParser.parse(output, rule -> labelToRule.put(BazelLabel.valueOf(rule.label), rule)),
+            BazelCommandExecutor.TIMEOUT_INFINITE);
 
         Set<BazelLabel> unprocessed = new HashSet<>(BazelLabelUtil.groupByPackage(bazelLabels).keySet());
 
-        Map<BazelLabel, Collection<BazelLabel>> packageToLabel =
-                BazelLabelUtil.groupByPackage(labelToRuleType.keySet());
+        Map<BazelLabel, Collection<BazelLabel>> packageToLabel = BazelLabelUtil.groupByPackage(labelToRule.keySet());
 
         Collection<BazelBuildFile> buildFiles = new HashSet<>();
         for (BazelLabel pack : packageToLabel.keySet()) {
             BazelBuildFile buildFile = new BazelBuildFile(pack.getLabelPath());
+            for (BazelLabel target : packageToLabel.get(pack)) {
+                QueryRule rule = Objects.requireNonNull(labelToRule.get(target));
+                buildFile.addTarget(rule.ruleClass, target.getLabelPath(), rule.getLabelAttribute("srcs"),
+                    rule.getLabelAttribute("deps"));
+                buildFile.addRuleInputs(rule.ruleInputs);
+            }
             buildFileCache.put(pack, buildFile);
             LOG.info("Build file cache put, package: " + pack);
             buildFiles.add(buildFile);
             unprocessed.remove(pack);
-            for (BazelLabel target : packageToLabel.get(pack)) {
-                String ruleType = Objects.requireNonNull(labelToRuleType.get(target));
-                buildFile.addTarget(ruleType, target.getLabelPath());
-            }
         }
 
         // some packages may not have any targets - they need to be accounted for
@@ -200,6 +275,39 @@ public class BazelQueryHelper {
         return buildFiles;
     }
 
+    // runs buildfiles() over the query, returns the BUILD and .bzl files the query depends on mapped to their labels,
+    // or null if that could not be computed
+    private Map<File, String> runBuildFilesQuery(String query, File bazelWorkspaceRootDirectory)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+
+        // bazel query 'buildfiles(tests(//apple-api/...))' --output location
+
+        List<String> argBuilder = new ArrayList<>();
+        argBuilder.add("query");
+        argBuilder.add("buildfiles(" + query + ")");
+        argBuilder.add("--output");
+        argBuilder.add("location");
+
+        // Sample Output:
+        // /home/joe/ws/apple-api/BUILD:1:1: source file //apple-api:BUILD
+        // /home/joe/ws/tools/java.bzl:1:1: source file //tools:java.bzl
+
+        Map<File, String> buildFiles = new HashMap<>();
+        int exitCode = bazelCommandExecutor.runBazelAndConsumeOutputLines(bazelWorkspaceRootDirectory, null,
+            argBuilder, t -> t, resultLine -> {
+                Matcher matcher = BUILDFILE_LOCATION_PATTERN.matcher(resultLine.trim());
+                if (matcher.matches()) {
+                    buildFiles.put(new File(matcher.group(1)), matcher.group(2));
+                }
+            }, BazelCommandExecutor.TIMEOUT_INFINITE);
+
+        if ((exitCode != 0) || buildFiles.isEmpty()) {
+            LOG.info("Could not compute the BUILD files of the query, the result will not be cached: {}", query);
+            return null;
+        }
+        return buildFiles;
+    }
+
     // runs label query and populates cache, returns loaded BazelBuildFile instances
     private Collection<String> runSourceFileQuery(BazelLabel bazelLabel, File bazelWorkspaceRootDirectory)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
@@ -210,8 +318,6 @@ public class BazelQueryHelper {
         List<String> argBuilder = new ArrayList<>();
         argBuilder.add("query");
         argBuilder.add("kind('source file', deps(" + bazelLabel + "))");
-        List<String> resultLines = bazelCommandExecutor.runBazelAndGetOutputLines(bazelWorkspaceRootDirectory, null,
-            argBuilder, t -> t, BazelCommandExecutor.TIMEOUT_INFINITE);
 
         // Sample Output:  (notice the cruft we don't want)
         // @local_jdk//:bin/javap
@@ -222,23 +328,24 @@ public class BazelQueryHelper {
         // //apple-api:BUILD
 
         Set<String> sourceFilePaths = new HashSet<>();
-        for (String resultLine : resultLines) {
-            resultLine = resultLine.trim();
-            if (!resultLine.startsWith(BazelLabel.BAZEL_ROOT_SLASHES)) {
-                // this isn't a source file
-                continue;
-            }
-            // we only want the path after the colon
-            //  //apple-api:source/dev/demo/apple/api/AppleOrchard.java => source/dev/demo/apple/api/AppleOrchard.java
-            int colonIndex = resultLine.indexOf(":");
-            if (colonIndex != -1) {
-                String sourcePath = resultLine.substring(colonIndex + 1);
-                if (!BazelBuildFile.isBuildFile(sourcePath)) {
-                    sourceFilePaths.add(sourcePath);
-                    LOG.info("  {}", sourcePath);
+        bazelCommandExecutor.runBazelAndConsumeOutputLines(bazelWorkspaceRootDirectory, null, argBuilder, t -> t,
+            rawLine -> {
+                String resultLine = rawLine.trim();
+                if (!resultLine.startsWith(BazelLabel.BAZEL_ROOT_SLASHES)) {
+                    // this isn't a source file
+                    return;
                 }
-            }
-        }
+                // we only want the path after the colon
+                //  //apple-api:source/dev/demo/apple/api/AppleOrchard.java => source/dev/demo/apple/api/AppleOrchard.java
+                int colonIndex = resultLine.indexOf(":");
+                if (colonIndex != -1) {
+                    String sourcePath = resultLine.substring(colonIndex + 1);
+                    if (!BazelBuildFile.isBuildFile(sourcePath)) {
+                        sourceFilePaths.add(sourcePath);
+                        LOG.info("  {}", sourcePath);
+                    }
+                }
+            }, BazelCommandExecutor.TIMEOUT_INFINITE);
         return sourceFilePaths;
     }
 
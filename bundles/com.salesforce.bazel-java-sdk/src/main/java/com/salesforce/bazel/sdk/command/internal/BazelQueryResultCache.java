@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+
+/**
+ * LRU cache of bazel query results, keyed by the query expression.
+ * <p>
+ * Each entry is keyed for invalidation on the target patterns that appear in the query expression: //a:* and //a:b
+ * depend on package //a, //a/... depends on //a and every package below it. This does not depend on the packages that
+ * happened to produce results, so a target added to a package that is currently empty is seen as well. The BUILD files
+ * of the non-recursive packages are also stamped (size and modification time) when the result is stored, and the entry
+ * is discarded on lookup as soon as one of them has changed.
+ * <p>
+ * The result of a query that follows dependencies (deps(), rdeps(), tests(), ...) or uses a recursive pattern also
+ * depends on packages and .bzl files it does not name. For those queries, the caller passes the BUILD and .bzl files
+ * computed by the buildfiles() query function, which are stamped and keyed for invalidation as well (see
+ * {@link #hasTransitiveDependencies(String)}).
+ */
+public class BazelQueryResultCache {
+    private static final LogHelper LOG = LogHelper.log(BazelQueryResultCache.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+
+    // @repo//path/to/package:target, the target part is optional
+    private static final Pattern TARGET_PATTERN =
+            Pattern.compile("((?:@[\\w.-]*)?//[^\\s:(),'\"]*)(:[^\\s(),'\"]*)?");
+
+    private static final String RECURSIVE_SUFFIX = "/" + BazelLabel.BAZEL_WILDCARD_ALLPACKAGES;
+
+    private static final String[] BUILD_FILE_NAMES = { "BUILD", "BUILD.bazel" };
+
+    // query functions whose result depends on packages that are not named by the query
+    private static final Pattern TRANSITIVE_FUNCTION_PATTERN = Pattern.compile("\\b(deps|rdeps|allrdeps|tests|allpaths"
+            + "|somepath|siblings|visible|labels|buildfiles|loadfiles|rbuildfiles)\\s*\\(");
+
+    private final Map<String, Entry> entries;
+
+    private int numberCacheHits = 0;
+    private int numberCacheMisses = 0;
+
+    public BazelQueryResultCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public BazelQueryResultCache(int maxEntries) {
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached, unmodifiable result lines of the query, or null if the query is not cached or the BUILD file
+     * of one of its packages has changed since.
+     */
+    public synchronized List<String> get(String query) {
+        Entry entry = entries.get(query);
+        if (entry == null) {
+            numberCacheMisses++;
+            return null;
+        }
+        if (!entry.isCurrent()) {
+            LOG.info("Query cache entry is stale, a BUILD file changed: {}", query);
+            entries.remove(query);
+            numberCacheMisses++;
+            return null;
+        }
+        numberCacheHits++;
+        return entry.resultLines;
+    }
+
+    /**
+     * Returns true if the result of the query depends on BUILD or .bzl files that are not named by its target patterns,
+     * in which case the files computed by buildfiles() must be passed to {@link #put(File, String, List, Map)}.
+     */
+    public static boolean hasTransitiveDependencies(String query) {
+        return query.contains(BazelLabel.BAZEL_WILDCARD_ALLPACKAGES)
+                || TRANSITIVE_FUNCTION_PATTERN.matcher(query).find();
+    }
+
+    /**
+     * Caches the result lines of a query that only depends on the packages it names, and returns them as the
+     * unmodifiable list that later hits return.
+     *
+     * @param bazelWorkspaceRootDirectory
+     *            the workspace the query ran in, used to locate the BUILD files of the packages of the query
+     */
+    public List<String> put(File bazelWorkspaceRootDirectory, String query, List<String> resultLines) {
+        return put(bazelWorkspaceRootDirectory, query, resultLines, Collections.emptyMap());
+    }
+
+    /**
+     * Caches the result lines of the query, and returns them as the unmodifiable list that later hits return.
+     *
+     * @param bazelWorkspaceRootDirectory
+     *            the workspace the query ran in, used to locate the BUILD files of the packages of the query
+     * @param buildFiles
+     *            the BUILD and .bzl files the result was computed from (as reported by buildfiles()), mapped to the
+     *            label of the file
+     */
+    public synchronized List<String> put(File bazelWorkspaceRootDirectory, String query, List<String> resultLines,
+            Map<File, String> buildFiles) {
+        Collection<String> packages = new HashSet<>();
+        Collection<String> recursivePackages = new HashSet<>();
+        Matcher matcher = TARGET_PATTERN.matcher(query);
+        while (matcher.find()) {
+            String packagePath = matcher.group(1);
+            if (packagePath.endsWith(RECURSIVE_SUFFIX)) {
+                // //a/... becomes //a/ and //... becomes //
+                recursivePackages.add(packagePath.substring(0,
+                    packagePath.length() - BazelLabel.BAZEL_WILDCARD_ALLPACKAGES.length()));
+            } else {
+                packages.add(packagePath);
+            }
+        }
+
+        Map<File, long[]> stamps = new HashMap<>();
+        for (String packagePath : packages) {
+            if (packagePath.startsWith(BazelLabel.BAZEL_ROOT_SLASHES)) {
+                File packageDir = new File(bazelWorkspaceRootDirectory,
+                        packagePath.substring(BazelLabel.BAZEL_ROOT_SLASHES.length()));
+                for (String buildFileName : BUILD_FILE_NAMES) {
+                    File buildFile = new File(packageDir, buildFileName);
+                    stamps.put(buildFile, stamp(buildFile));
+                }
+            }
+        }
+        for (Map.Entry<File, String> buildFile : buildFiles.entrySet()) {
+            stamps.put(buildFile.getKey(), stamp(buildFile.getKey()));
+            String fileLabel = buildFile.getValue();
+            int colonIndex = fileLabel.indexOf(BazelLabel.BAZEL_COLON);
+            packages.add(colonIndex == -1 ? fileLabel : fileLabel.substring(0, colonIndex));
+        }
+
+        List<String> cachedLines = Collections.unmodifiableList(new ArrayList<>(resultLines));
+        entries.put(query, new Entry(cachedLines, stamps, packages, recursivePackages));
+        return cachedLines;
+    }
+
+    /**
+     * Discards the entries whose query names the passed package or depends on one of its files, or whose query has a
+     * recursive target pattern (//...) that covers it. Entries for queries without any target pattern are discarded as
+     * well, since their packages are unknown.
+     */
+    public synchronized void invalidate(BazelLabel bazelPackageLabel) {
+        String packagePath = bazelPackageLabel.getPackagePath(true);
+        Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().getValue().dependsOn(packagePath)) {
+                iter.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int getNumberCacheHits() {
+        return numberCacheHits;
+    }
+
+    public synchronized int getNumberCacheMisses() {
+        return numberCacheMisses;
+    }
+
+    // INTERNAL
+
+    // cheap change detection, a missing file has a modification time of 0
+    private static long[] stamp(File file) {
+        return new long[] { file.lastModified(), file.length() };
+    }
+
+    private static class Entry {
+        final List<String> resultLines;
+        final Map<File, long[]> buildFileStamps;
+        final Collection<String> packages;
+        // package paths with a trailing slash, e.g. //a/ for //a/...
+        final Collection<String> recursivePackages;
+
+        Entry(List<String> resultLines, Map<File, long[]> buildFileStamps, Collection<String> packages,
+                Collection<String> recursivePackages) {
+            this.resultLines = resultLines;
+            this.buildFileStamps = buildFileStamps;
+            this.packages = packages;
+            this.recursivePackages = recursivePackages;
+        }
+
+        boolean isCurrent() {
+            for (Map.Entry<File, long[]> buildFileStamp : buildFileStamps.entrySet()) {
+                if (!Arrays.equals(stamp(buildFileStamp.getKey()), buildFileStamp.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean dependsOn(String packagePath) {
+            if (packages.isEmpty() && recursivePackages.isEmpty()) {
+                return true;
+            }
+            if (packages.contains(packagePath)) {
+                return true;
+            }
+            String packagePrefix = packagePath + "/";
+            for (String recursivePackage : recursivePackages) {
+                if (packagePrefix.startsWith(recursivePackage)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming parser for the output of <i>bazel query --output xml</i>. The document is decoded with a pull parser as it
+ * is read, and each rule is passed to the consumer as soon as its element is closed, so the whole document is never
+ * held in memory.
+ * <p>
+ * Sample output:
+ *
+ * <pre>
+ * &lt;query version="2"&gt;
+ *   &lt;rule class="java_library" location="/ws/apple-api/BUILD:1:13" name="//apple-api:apple-api"&gt;
+ *     &lt;string name="name" value="apple-api"/&gt;
+ *     &lt;list name="srcs"&gt;
+ *       &lt;label value="//apple-api:src/main/java/demo/apple/api/Apple.java"/&gt;
+ *     &lt;/list&gt;
+ *     &lt;list name="deps"&gt;
+ *       &lt;label value="//fruit-api:fruit-api"/&gt;
+ *     &lt;/list&gt;
+ *     &lt;rule-input name="//apple-api:src/main/java/demo/apple/api/Apple.java"/&gt;
+ *     &lt;rule-input name="//fruit-api:fruit-api"/&gt;
+ *   &lt;/rule&gt;
+ * &lt;/query&gt;
+ * </pre>
+ */
+public class BazelQueryXmlOutputParser {
+
+    /**
+     * A rule found in the query output.
+     */
+    public static class QueryRule {
+        public final String ruleClass;
+        public final String label;
+
+        /**
+         * Label valued attributes (single labels and lists of labels), by attribute name.
+         */
+        public final Map<String, List<String>> labelAttributes = new LinkedHashMap<>();
+
+        /**
+         * All direct inputs of the rule, including the ones from implicit attributes.
+         */
+        public final List<String> ruleInputs = new ArrayList<>();
+
+        QueryRule(String ruleClass, String label) {
+            this.ruleClass = ruleClass;
+            this.label = label;
+        }
+
+        public List<String> getLabelAttribute(String attributeName) {
+            List<String> labels = labelAttributes.get(attributeName);
+            return labels == null ? new ArrayList<>() : labels;
+        }
+    }
+
+    private final XMLInputFactory xmlInputFactory;
+
+    public BazelQueryXmlOutputParser() {
+        xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Parses the query output, and passes each rule to the consumer. An empty input is treated as an empty result.
+     */
+    public void parse(InputStream queryOutput, Consumer<QueryRule> ruleConsumer) throws IOException {
+        PushbackInputStream input = new PushbackInputStream(queryOutput);
+        int firstByte = input.read();
+        if (firstByte == -1) {
+            return;
+        }
+        input.unread(firstByte);
+
+        XMLStreamReader reader = null;
+        try {
+            reader = xmlInputFactory.createXMLStreamReader(input);
+            QueryRule rule = null;
+            String listName = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String element = reader.getLocalName();
+                    if ("rule".equals(element)) {
+                        rule = new QueryRule(reader.getAttributeValue(null, "class"),
+                                reader.getAttributeValue(null, "name"));
+                    } else if (rule == null) {
+                        // source files, generated files, package groups are not of interest
+                        continue;
+                    } else if ("list".equals(element)) {
+                        listName = reader.getAttributeValue(null, "name");
+                    } else if ("label".equals(element)) {
+                        // either an entry of a label list, or a single label attribute
+                        String attributeName = listName != null ? listName : reader.getAttributeValue(null, "name");
+                        String value = reader.getAttributeValue(null, "value");
+                        if ((attributeName != null) && (value != null)) {
+                            rule.labelAttributes.computeIfAbsent(attributeName, k -> new ArrayList<>()).add(value);
+                        }
+                    } else if ("rule-input".equals(element)) {
+                        rule.ruleInputs.add(reader.getAttributeValue(null, "name"));
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String element = reader.getLocalName();
+                    if ("rule".equals(element) && (rule != null)) {
+                        ruleConsumer.accept(rule);
+                        rule = null;
+                    } else if ("list".equals(element)) {
+                        listName = null;
+                    }
+                }
+            }
+        } catch (XMLStreamException xmlE) {
+            throw new IOException("Failed to parse the xml output of bazel query", xmlE);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignore) {}
+            }
+        }
+    }
+}
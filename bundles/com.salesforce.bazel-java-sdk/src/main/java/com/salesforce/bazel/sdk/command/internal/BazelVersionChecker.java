@@ -25,13 +25,14 @@ package com.salesforce.bazel.sdk.command.internal;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.salesforce.bazel.sdk.command.BazelCommandLineToolConfigurationException;
-import com.salesforce.bazel.sdk.command.Command;
-import com.salesforce.bazel.sdk.command.CommandBuilder;
 
 /**
  * Utility class that checks the version of the Bazel executable to make sure it is in supported range.
@@ -39,10 +40,10 @@ import com.salesforce.bazel.sdk.command.CommandBuilder;
 public class BazelVersionChecker {
 
     /**
-     * Builder for Bazel commands, which may be a ShellCommandBuilder (for real Eclipse use) or a MockCommandBuilder
-     * (for simulations during functional tests).
+     * Runs the bazel version commands. The CommandBuilder is shared with the other commands of the workspace, so the
+     * commands are built under the lock of the executor.
      */
-    private CommandBuilder commandBuilder;
+    private final BazelCommandExecutor bazelCommandExecutor;
 
     /**
      * Minimum bazel version needed to work with this plugin (currently 1.0.0)
@@ -50,11 +51,24 @@ public class BazelVersionChecker {
     public static final String MINIMUM_BAZEL_VERSION_STR = "1.0.0";
     public static final int[] MINIMUM_BAZEL_VERSION = { 1, 0, 0 };
 
+    /**
+     * Minimum bazel version that supports passing the targets of a command in a file (--target_pattern_file)
+     */
+    public static final int[] TARGET_PATTERN_FILE_BAZEL_VERSION = { 4, 2, 0 };
+
     // matcher for a 3 digit version string, should not need to change
     private static final Pattern VERSION_PATTERN = Pattern.compile("^([0-9]+)\\.([0-9]+)\\.([0-9]+)([^0-9].*)?$");
 
-    public BazelVersionChecker(CommandBuilder commandBuilder) {
-        this.commandBuilder = commandBuilder;
+    // marks an executable whose version could not be determined
+    private static final int[] UNKNOWN_VERSION = {};
+
+    /**
+     * Versions detected by getBazelVersion(), by executable path.
+     */
+    private final Map<String, int[]> detectedVersions = new ConcurrentHashMap<>();
+
+    public BazelVersionChecker(BazelCommandExecutor bazelCommandExecutor) {
+        this.bazelCommandExecutor = bazelCommandExecutor;
     }
 
     /**
@@ -76,52 +90,88 @@ public class BazelVersionChecker {
             throw new BazelCommandLineToolConfigurationException.BazelNotExecutableException(
                     bazelExecutable.getAbsolutePath());
         }
-        File execDir = bazelWorkspaceRootDirectory;
-        if (execDir == null || !execDir.exists()) {
-            // for getting version, we don't need an actual bazel workspace
-            String tmpdir = System.getProperty("java.io.tmpdir");
-            execDir = new File(tmpdir);
-        }
+        String version;
         try {
-            Command command = commandBuilder.setConsoleName(null).setDirectory(bazelWorkspaceRootDirectory)
-                    .addArguments(bazelExecutable.getAbsolutePath(), "version")
-                    .setStdoutLineSelector((s) -> s.startsWith("Build label:") ? s.substring(13) : null).build();
-            if (command.run() != 0) {
-                throw new BazelCommandLineToolConfigurationException.BazelNotExecutableException(
-                        bazelExecutable.getAbsolutePath());
-            }
-            List<String> resultLines = command.getSelectedOutputLines();
-            if (resultLines.size() == 0) {
-                throw new BazelCommandLineToolConfigurationException.BazelTooOldException("unknown",
-                        MINIMUM_BAZEL_VERSION_STR, bazelExecutable.getAbsolutePath());
-            }
-            String version = "unknown";
-            Matcher versionMatcher = null;
-            for (String resultLine : resultLines) {
-                if (resultLine.startsWith("Build label")) {
-                    version = resultLine.substring(13);
-                    versionMatcher = VERSION_PATTERN.matcher(version);
-                    break;
-                } else if (VERSION_PATTERN.matcher(resultLine).matches()) {
-                    version = resultLine;
-                    versionMatcher = VERSION_PATTERN.matcher(resultLine);
-                    break;
-                }
-            }
-            if (versionMatcher == null || !versionMatcher.matches()) {
-                throw new BazelCommandLineToolConfigurationException.BazelTooOldException(version,
-                        MINIMUM_BAZEL_VERSION_STR, bazelExecutable.getAbsolutePath());
-            }
-            int[] versionNumbers = { Integer.parseInt(versionMatcher.group(1)),
-                    Integer.parseInt(versionMatcher.group(2)), Integer.parseInt(versionMatcher.group(3)) };
-            if (compareVersion(versionNumbers, MINIMUM_BAZEL_VERSION) < 0) {
-                throw new BazelCommandLineToolConfigurationException.BazelTooOldException(version,
-                        MINIMUM_BAZEL_VERSION_STR, bazelExecutable.getAbsolutePath());
-            }
+            version = runBazelVersion(bazelExecutable, bazelWorkspaceRootDirectory);
         } catch (IOException | InterruptedException e) {
             throw new BazelCommandLineToolConfigurationException.BazelNotFoundException(
                     bazelExecutable.getAbsolutePath());
         }
+        int[] versionNumbers = parseVersion(version);
+        if (versionNumbers == null) {
+            throw new BazelCommandLineToolConfigurationException.BazelTooOldException(
+                    version == null ? "unknown" : version, MINIMUM_BAZEL_VERSION_STR,
+                    bazelExecutable.getAbsolutePath());
+        }
+        detectedVersions.put(bazelExecutable.getAbsolutePath(), versionNumbers);
+        if (compareVersion(versionNumbers, MINIMUM_BAZEL_VERSION) < 0) {
+            throw new BazelCommandLineToolConfigurationException.BazelTooOldException(version,
+                    MINIMUM_BAZEL_VERSION_STR, bazelExecutable.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns the version of the bazel binary as {major, minor, patch}, or null if it could not be determined (for
+     * example for a development build of Bazel). The version is computed once per executable path.
+     *
+     * @param bazelExecutable
+     *            the Bazel executable
+     * @param bazelWorkspaceRootDirectory
+     *            optional directory in which to run the bazel command
+     */
+    public int[] getBazelVersion(File bazelExecutable, File bazelWorkspaceRootDirectory)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        String key = bazelExecutable.getAbsolutePath();
+        int[] versionNumbers = detectedVersions.get(key);
+        if (versionNumbers == null) {
+            versionNumbers = parseVersion(runBazelVersion(bazelExecutable, bazelWorkspaceRootDirectory));
+            if (versionNumbers == null) {
+                versionNumbers = UNKNOWN_VERSION;
+            }
+            detectedVersions.put(key, versionNumbers);
+        }
+        return versionNumbers == UNKNOWN_VERSION ? null : versionNumbers;
+    }
+
+    /**
+     * Returns true if the version (as returned by {@link #getBazelVersion(File, File)}) is the same or newer than the
+     * passed minimum version.
+     */
+    public static boolean isVersionAtLeast(int[] version, int[] minimumVersion) {
+        return (version != null) && (compareVersion(version, minimumVersion) >= 0);
+    }
+
+    // runs bazel version, and returns the version string, or null if the output has no version
+    private String runBazelVersion(File bazelExecutable, File bazelWorkspaceRootDirectory)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        List<String> outputLines = bazelCommandExecutor.runExecutableAndGetOutputLines(bazelExecutable,
+            bazelWorkspaceRootDirectory, Collections.singletonList("version"),
+            (s) -> s.startsWith("Build label:") ? s.substring(13) : null);
+        if (outputLines == null) {
+            throw new BazelCommandLineToolConfigurationException.BazelNotExecutableException(
+                    bazelExecutable.getAbsolutePath());
+        }
+        for (String resultLine : outputLines) {
+            if (resultLine.startsWith("Build label")) {
+                return resultLine.substring(13);
+            } else if (VERSION_PATTERN.matcher(resultLine).matches()) {
+                return resultLine;
+            }
+        }
+        return null;
+    }
+
+    // returns {major, minor, patch} of the version string, or null if it is not a 3 digit version
+    private static int[] parseVersion(String version) {
+        if (version == null) {
+            return null;
+        }
+        Matcher versionMatcher = VERSION_PATTERN.matcher(version);
+        if (!versionMatcher.matches()) {
+            return null;
+        }
+        return new int[] { Integer.parseInt(versionMatcher.group(1)), Integer.parseInt(versionMatcher.group(2)),
+                Integer.parseInt(versionMatcher.group(3)) };
     }
 
     private static int compareVersion(int[] version1, int[] version2) {
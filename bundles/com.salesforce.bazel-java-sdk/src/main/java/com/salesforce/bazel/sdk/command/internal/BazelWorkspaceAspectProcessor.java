@@ -25,27 +25,48 @@ package com.salesforce.bazel.sdk.command.internal;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.salesforce.bazel.sdk.aspect.AspectStringTable;
 import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
 import com.salesforce.bazel.sdk.aspect.AspectTargetInfoFactory;
+import com.salesforce.bazel.sdk.aspect.AspectTransitiveClosureEngine;
 import com.salesforce.bazel.sdk.aspect.BazelAspectLocation;
+import com.salesforce.bazel.sdk.aspect.IncrementalAspectDependencyGraph;
+import com.salesforce.bazel.sdk.aspect.LastGoodAspectTargetInfoCache;
+import com.salesforce.bazel.sdk.aspect.PersistentAspectTargetInfoCache;
+import com.salesforce.bazel.sdk.bep.event.BEPEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPFileUri;
+import com.salesforce.bazel.sdk.bep.event.BEPTargetCompletedEvent;
+import com.salesforce.bazel.sdk.bep.file.BEPFileContents;
+import com.salesforce.bazel.sdk.bep.file.BEPFileFollower;
+import com.salesforce.bazel.sdk.bep.file.BEPOutputFileResolver;
 import com.salesforce.bazel.sdk.command.BazelCommandLineToolConfigurationException;
 import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
 import com.salesforce.bazel.sdk.logging.LogHelper;
 import com.salesforce.bazel.sdk.model.BazelLabel;
-import com.salesforce.bazel.sdk.model.BazelTargetKind;
 
 /**
  * Manages running, collecting, and caching all of the build info aspects for a specific workspace.
@@ -57,6 +78,7 @@ public class BazelWorkspaceAspectProcessor {
 
     private final BazelWorkspaceCommandRunner bazelWorkspaceCommandRunner;
     private final BazelCommandExecutor bazelCommandExecutor;
+    private final BazelAspectLocation aspectLocation;
 
     /**
      * These arguments are added to all "bazel build" commands that run for aspect processing. This is public so that
@@ -68,26 +90,109 @@ public class BazelWorkspaceAspectProcessor {
      * Cache of the Aspect data for each target. key=String target (//a/b/c) value=Set<AspectTargetInfo> data that came
      * from running the aspect.
      *
-     * This cache includes wildcard (//a/b/c:*) targets and concrete targets.
+     * This cache includes wildcard (//a/b/c:*) targets and concrete targets. It is a concurrent map so that
+     * {@link #getCachedAspectTargetInfos(Collection)} can read it while an aspect build is running.
      */
-    final Map<BazelLabel, Set<AspectTargetInfo>> aspectInfoCache_current = new HashMap<>();
+    final Map<BazelLabel, Set<AspectTargetInfo>> aspectInfoCache_current = new ConcurrentHashMap<>();
 
     /**
      * Cache of the Aspect data for each target. key=String target (//a/b/c) value=AspectTargetInfo data that came from
-     * running the aspect. This cache is never cleared and is used for cases in which the developer introduces a compile
-     * error into the package, such that the Aspect will fail to run.
+     * running the aspect. This cache is not flushed and is used for cases in which the developer introduces a compile
+     * error into the package, such that the Aspect will fail to run. It has a memory budget, the entries over the
+     * budget are spilled to disk and parsed again when they are needed.
      */
-    final Map<BazelLabel, Set<AspectTargetInfo>> aspectInfoCache_lastgood = new HashMap<>();
+    final LastGoodAspectTargetInfoCache aspectInfoCache_lastgood = new LastGoodAspectTargetInfoCache();
+
+    /**
+     * Optional cache of the Aspect data that survives restarts of the tool, see {@link #enablePersistentCache}. It
+     * backs aspectInfoCache_current, misses in the current cache are looked up here before running Bazel.
+     */
+    volatile PersistentAspectTargetInfoCache aspectInfoCache_persistent;
+
+    /**
+     * Holds the strings of the AspectTargetInfos of the workspace. It is replaced by {@link #flushAspectInfoCache()},
+     * so that the strings of the flushed infos are released along with the last of those infos.
+     */
+    private volatile AspectStringTable stringTable = new AspectStringTable();
+
+    /**
+     * Reverse dependency index of aspectInfoCache_current. key=package path with prefix (//a/b/c, @foo//a/b) value=the
+     * cached labels whose AspectTargetInfos include a target of that package. The AspectTargetInfos of a label are its
+     * transitive closure, so these are all of the cached labels that are affected by a change to the BUILD file of the
+     * package. It may reference labels that have since been flushed.
+     */
+    final Map<String, Set<BazelLabel>> aspectInfoCache_dependents = new ConcurrentHashMap<>();
+
+    /**
+     * Package level dependency graph of the workspace, kept current with aspectInfoCache_current: the targets of cached
+     * AspectTargetInfos are applied to it, and flushes remove the targets of the flushed packages.
+     */
+    final IncrementalAspectDependencyGraph dependencyGraph = new IncrementalAspectDependencyGraph(false);
+
+    /**
+     * The labels whose Aspect data is being computed. A request for a label that is in flight waits for the pending
+     * result instead of running the Aspect again.
+     */
+    final Map<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> aspectInfoCache_inflight =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Incremented by each flush. An aspect build that was running while the cache was flushed still returns its results
+     * to its callers, but does not cache them because they may be stale.
+     */
+    private final AtomicLong cacheGeneration = new AtomicLong();
+
+    /**
+     * Held while the Aspect runs in Bazel. Cache lookups and flushes never take it, so they are not blocked by a long
+     * running aspect build.
+     */
+    private final Object buildLock = new Object();
 
     /**
      * Tracks the number of cache hits for getAspectTargetInfos() invocations.
      */
-    int numberCacheHits = 0;
+    final AtomicInteger numberCacheHits = new AtomicInteger();
+
+    /**
+     * Adapts the number of targets passed to each aspect build to the observed overhead of the Bazel invocations.
+     */
+    final AspectBatchSizer batchSizer = new AspectBatchSizer();
+
+    /**
+     * When the labels of a batch exceed this many chars, they are passed to Bazel with --target_pattern_file (Bazel
+     * 4.2 and later) instead of on the command line. Older versions of Bazel split the batch into several invocations
+     * that stay within this limit.
+     */
+    public static int MAX_TARGET_ARGS_LENGTH = 8000;
+
+    /**
+     * Parses the aspect files of a batch while the next batch is running in Bazel.
+     */
+    private static final ExecutorService ASPECT_FILE_LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "AspectFileLoader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * How often the BEP file of a running aspect build is read to report the targets that completed.
+     */
+    public static long BEP_POLL_INTERVAL_MS = 1000;
+
+    /**
+     * Follows the BEP files of the running aspect builds, see {@link #runAspectBuild(File, List, File)}.
+     */
+    private static final ScheduledExecutorService BEP_FOLLOWER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "AspectBuildProgress");
+        t.setDaemon(true);
+        return t;
+    });
 
     // CTORS
 
     // if you change or reorder the aspectOptions args below, you will need to update these
-    // indices because our test framework looks for args by index
+    // indices because our test framework looks for args by index (the --build_event_json_file arg
+    // of each command follows the aspectOptions)
     public static final int ASPECTCMD_EXTERNALREPO_ARGINDEX = 2;
     public static final int ASPECTCMD_TARGETLABEL_ARGINDEX = 11;
 
@@ -95,6 +200,7 @@ public class BazelWorkspaceAspectProcessor {
             BazelAspectLocation aspectLocation, BazelCommandExecutor bazelCommandExecutor) {
         this.bazelWorkspaceCommandRunner = bazelWorkspaceCommandRunner;
         this.bazelCommandExecutor = bazelCommandExecutor;
+        this.aspectLocation = aspectLocation;
 
         aspectOptions = null;
         if (aspectLocation != null) {
@@ -106,7 +212,6 @@ public class BazelWorkspaceAspectProcessor {
                 "--output_groups=intellij-info-generic,intellij-info-java-direct-deps,intellij-resolve-java-direct-deps");
             aspectOptions.add("--nobuild_event_binary_file_path_conversion");
             aspectOptions.add("--noexperimental_run_validations");
-            aspectOptions.add("--experimental_show_artifacts");
             aspectOptions.add("--curses=no");
             aspectOptions.add("--progress_in_terminal_title=no");
         }
@@ -120,6 +225,32 @@ public class BazelWorkspaceAspectProcessor {
         this.aspectOptions = aspectOptions;
     }
 
+    /**
+     * Persists the Aspect data in the passed metadata directory, so that it is reused after a restart of the tool
+     * instead of running the Aspect again. The persisted data is validated against the BUILD files of the packages, the
+     * version of the aspect and the output base of the workspace.
+     *
+     * @param metadataDirectory
+     *            directory owned by the tool in which the cache file is written (e.g. the plugin state location)
+     * @param outputBase
+     *            the output base of the workspace, resolved by the caller so that the cache never runs Bazel
+     */
+    public synchronized void enablePersistentCache(File metadataDirectory, File outputBase) {
+        if (aspectLocation == null) {
+            return;
+        }
+        aspectInfoCache_persistent = new PersistentAspectTargetInfoCache(metadataDirectory,
+                bazelWorkspaceCommandRunner.getBazelWorkspaceRootDirectory(), aspectLocation.getAspectDirectory(),
+                outputBase, this::getStringTable);
+    }
+
+    /**
+     * Returns the table that holds the strings of the AspectTargetInfos loaded since the last full flush.
+     */
+    public AspectStringTable getStringTable() {
+        return stringTable;
+    }
+
     /**
      * Runs the analysis of the given list of targets using the build information Bazel Aspect and returns a map of
      * {@link AspectTargetInfo}-s (key is the label of the target) containing the parsed form of the JSON file created
@@ -128,108 +259,363 @@ public class BazelWorkspaceAspectProcessor {
      * This method caches its results and won't recompute a previously computed version unless
      * {@link #flushAspectInfoCache()} has been called in between.
      * <p>
+     * Cached targets are returned without taking a lock. If the Aspect of a target is already running for another
+     * caller, this call waits for that result instead of running the Aspect again. Only the remaining targets are
+     * built, one aspect build at a time.
+     * <p>
      * TODO it would be worthwhile to evaluate whether Aspects are the best way to get build info, as we could otherwise
      * use Bazel Query here as well.
      *
      * @throws BazelCommandLineToolConfigurationException
      */
-    public synchronized Map<BazelLabel, Set<AspectTargetInfo>> getAspectTargetInfos(Collection<BazelLabel> targets,
-            String caller) throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+    public Map<BazelLabel, Set<AspectTargetInfo>> getAspectTargetInfos(Collection<BazelLabel> targets, String caller)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+
+        Map<BazelLabel, Set<AspectTargetInfo>> foundMap = new HashMap<>();
+        Map<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> pendingMap = new LinkedHashMap<>();
+        Map<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> ownedMap = new LinkedHashMap<>();
+        for (BazelLabel target : targets) {
+            if (foundMap.containsKey(target) || pendingMap.containsKey(target)) {
+                continue;
+            }
+            Set<AspectTargetInfo> aspectInfos = lookupCache(target);
+            if (aspectInfos != null) {
+                LOG.info("Aspect data found in cache for: " + target + getLogStr(target, caller));
+                foundMap.put(target, aspectInfos);
+                numberCacheHits.incrementAndGet();
+                continue;
+            }
+            CompletableFuture<Set<AspectTargetInfo>> future = new CompletableFuture<>();
+            CompletableFuture<Set<AspectTargetInfo>> inflight = aspectInfoCache_inflight.putIfAbsent(target, future);
+            if (inflight == null) {
+                ownedMap.put(target, future);
+                pendingMap.put(target, future);
+            } else {
+                LOG.info("Aspect data is being computed for: " + target + getLogStr(target, caller));
+                pendingMap.put(target, inflight);
+            }
+        }
 
+        if (!ownedMap.isEmpty()) {
+            loadTargetInfos(ownedMap, caller);
+        }
+        for (Map.Entry<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> pending : pendingMap.entrySet()) {
+            Set<AspectTargetInfo> aspectInfos = awaitPending(pending.getValue());
+            if (aspectInfos != null) {
+                foundMap.put(pending.getKey(), aspectInfos);
+            }
+        }
+
+        // the results are returned in the order of the requested targets
         Map<BazelLabel, Set<AspectTargetInfo>> resultMap = new LinkedHashMap<>();
-        Collection<BazelLabel> cacheMisses = populateFromCache(targets, resultMap, caller);
-        if (!cacheMisses.isEmpty()) {
-            loadTargetInfos(cacheMisses, resultMap, caller);
+        for (BazelLabel target : targets) {
+            Set<AspectTargetInfo> aspectInfos = foundMap.get(target);
+            if (aspectInfos != null) {
+                resultMap.put(target, aspectInfos);
+            }
         }
         return resultMap;
     }
 
+    /**
+     * Returns the cached {@link AspectTargetInfo}s for the passed targets, or null if any of them is not in the cache.
+     * This never runs Bazel and does not wait for an aspect build in progress.
+     */
+    public Map<BazelLabel, Set<AspectTargetInfo>> getCachedAspectTargetInfos(Collection<BazelLabel> targets) {
+        Map<BazelLabel, Set<AspectTargetInfo>> resultMap = new LinkedHashMap<>();
+        for (BazelLabel target : targets) {
+            Set<AspectTargetInfo> aspectInfos = lookupCache(target);
+            if (aspectInfos == null) {
+                return null;
+            }
+            resultMap.put(target, aspectInfos);
+        }
+        return resultMap;
+    }
+
+    /**
+     * Async variant of {@link #getCachedAspectTargetInfos(Collection)} that also looks up the targets that are not in
+     * the current cache in the persistent cache. The persisted data is loaded on the loader thread of the persistent
+     * cache and added to the current cache. The future completes with null if any of the targets is not cached. This
+     * never runs Bazel.
+     */
+    public CompletableFuture<Map<BazelLabel, Set<AspectTargetInfo>>> getCachedAspectTargetInfosAsync(
+            Collection<BazelLabel> targets) {
+        PersistentAspectTargetInfoCache persistentCache = aspectInfoCache_persistent;
+        long generation = cacheGeneration.get();
+        Map<BazelLabel, Set<AspectTargetInfo>> cachedMap = new HashMap<>();
+        Map<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> lookups = new LinkedHashMap<>();
+        for (BazelLabel target : targets) {
+            Set<AspectTargetInfo> aspectInfos = lookupCache(target);
+            if (aspectInfos != null) {
+                cachedMap.put(target, aspectInfos);
+            } else if (persistentCache == null) {
+                return CompletableFuture.completedFuture(null);
+            } else if (!lookups.containsKey(target)) {
+                lookups.put(target, persistentCache.get(target));
+            }
+        }
+
+        return CompletableFuture.allOf(lookups.values().toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            boolean allCached = true;
+            for (Map.Entry<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> lookup : lookups.entrySet()) {
+                Set<AspectTargetInfo> aspectInfos = lookup.getValue().join();
+                if (aspectInfos == null) {
+                    allCached = false;
+                } else {
+                    // the hits are kept even if another target misses, so that only the misses are built
+                    adoptPersistedTargetInfos(lookup.getKey(), aspectInfos, generation);
+                    cachedMap.put(lookup.getKey(), aspectInfos);
+                }
+            }
+            if (!allCached) {
+                return null;
+            }
+            Map<BazelLabel, Set<AspectTargetInfo>> resultMap = new LinkedHashMap<>();
+            for (BazelLabel target : targets) {
+                resultMap.put(target, cachedMap.get(target));
+            }
+            return resultMap;
+        });
+    }
+
+    /**
+     * The dependency graph of the workspace, built from the cached Aspect data. It changes as Aspect data is computed
+     * and flushed, listeners of the graph are notified of the changes.
+     */
+    public IncrementalAspectDependencyGraph getDependencyGraph() {
+        return dependencyGraph;
+    }
+
     /**
      * Clear the entire AspectTargetInfo cache. This flushes the dependency graph for the workspace.
      */
-    public synchronized void flushAspectInfoCache() {
+    public void flushAspectInfoCache() {
+        cacheGeneration.incrementAndGet();
+        aspectInfoCache_inflight.clear();
         aspectInfoCache_current.clear();
+        aspectInfoCache_dependents.clear();
+        dependencyGraph.clear();
+        stringTable = new AspectStringTable();
+        PersistentAspectTargetInfoCache persistentCache = aspectInfoCache_persistent;
+        if (persistentCache != null) {
+            persistentCache.clear();
+        }
     }
 
     /**
      * Clear the AspectTargetInfo cache for the passed target. This flushes the dependency graph for those target.
      */
-    public synchronized void flushAspectInfoCache(BazelLabel target) {
-        // the target may not even be in cache, that is ok, just try to remove it from both current and wildcard caches
-        // if the target exists in either it will get flushed
-        aspectInfoCache_current.remove(target);
+    public void flushAspectInfoCache(BazelLabel target) {
+        flushAspectInfoCache(Collections.singleton(target));
     }
 
     /**
      * Clear the AspectTargetInfo cache for the passed targets. This flushes the dependency graph for those targets.
      */
-    public synchronized void flushAspectInfoCache(Set<BazelLabel> targets) {
+    public void flushAspectInfoCache(Set<BazelLabel> targets) {
+        cacheGeneration.incrementAndGet();
+        PersistentAspectTargetInfoCache persistentCache = aspectInfoCache_persistent;
         for (BazelLabel target : targets) {
+            // a pending build of the target may have read the stale BUILD file, so later requests run it again
+            aspectInfoCache_inflight.remove(target);
             // the target may not even be in cache, that is ok, just try to remove it from both current and wildcard caches
             // if the target exists in either it will get flushed
             aspectInfoCache_current.remove(target);
+            if (persistentCache != null) {
+                persistentCache.remove(target);
+            }
+            if (target.isConcrete() && !target.isDefaultTarget()) {
+                dependencyGraph.remove(Collections.singleton(target.getLabelPath()));
+            } else {
+                // wildcards, and //a/b which the aspect data names //a/b:b
+                dependencyGraph.removePackage(target.getPackagePath(true));
+            }
         }
     }
 
     /**
-     * Clear the AspectTargetInfo cache for the passed package. This flushes the dependency graph for any target that
-     * contains the package name.
+     * Clear the AspectTargetInfo cache for the passed package. This flushes the targets of the package, and the targets
+     * of other packages that depend on it, directly or transitively. Their aspects are run again when they are next
+     * requested; the rest of the cache is kept.
+     *
+     * @return the flushed targets
      */
-    public synchronized Set<BazelLabel> flushAspectInfoCacheForPackage(BazelLabel bazelPackage) {
+    public Set<BazelLabel> flushAspectInfoCacheForPackage(BazelLabel bazelPackage) {
         Set<BazelLabel> flushedTargets = new LinkedHashSet<>();
+        String packagePath = bazelPackage.getPackagePath(true);
+        cacheGeneration.incrementAndGet();
+        // we cannot tell which of the pending builds read the BUILD file, so later requests run all of them again
+        aspectInfoCache_inflight.clear();
 
         // the target may not even be in cache, that is ok, just try to remove it from both current and wildcard caches
         // if the target exists in either it will get flushed
         Iterator<BazelLabel> iter = aspectInfoCache_current.keySet().iterator();
         while (iter.hasNext()) {
             BazelLabel key = iter.next();
-            if (key.getPackagePath().equals(bazelPackage.getPackagePath())) {
+            if (key.getPackagePath(true).equals(packagePath)) {
                 flushedTargets.add(key);
                 iter.remove();
             }
         }
+
+        // the cached closures that include a target of the package are stale too
+        Set<BazelLabel> dependents = aspectInfoCache_dependents.remove(packagePath);
+        if (dependents != null) {
+            for (BazelLabel dependent : dependents) {
+                if (aspectInfoCache_current.remove(dependent) != null) {
+                    flushedTargets.add(dependent);
+                }
+            }
+            LOG.info("Flushed {} cached targets that depend on package {}", flushedTargets.size(), packagePath);
+        }
+        // the targets of the other packages keep their edges, their BUILD files did not change
+        dependencyGraph.removePackage(packagePath);
+        PersistentAspectTargetInfoCache persistentCache = aspectInfoCache_persistent;
+        if (persistentCache != null) {
+            // the persisted entries of the package are dropped once its BUILD file is found to have changed
+            persistentCache.invalidatePackage(bazelPackage.getPackagePath());
+            for (BazelLabel flushedTarget : flushedTargets) {
+                persistentCache.remove(flushedTarget);
+            }
+        }
         return flushedTargets;
     }
 
     // INTERNALS
 
     /**
-     * Populates the specified resultMap from cache. Returns the cache misses.
+     * Looks up the Aspect data of the target in the current cache. This does not take a lock of this processor and
+     * never touches the disk, persisted data is brought into the current cache by
+     * {@link #hydrateFromPersistentCache(Collection, Map)} and {@link #getCachedAspectTargetInfosAsync(Collection)}.
+     */
+    private Set<AspectTargetInfo> lookupCache(BazelLabel target) {
+        return aspectInfoCache_current.get(target);
+    }
+
+    /**
+     * Looks up the targets in the persistent cache, and adds the persisted data to the current cache. The lookups run
+     * on the loader thread of the persistent cache, this waits for them without holding a lock of this processor.
+     *
+     * @return the targets that are not persisted
      */
-    private synchronized Collection<BazelLabel> populateFromCache(Collection<BazelLabel> labels,
-            Map<BazelLabel, Set<AspectTargetInfo>> resultMap, String caller) {
-        List<BazelLabel> cacheMisses = new ArrayList<>();
-        for (BazelLabel target : labels) {
-            String logstr = getLogStr(target, caller);
-            Set<AspectTargetInfo> aspectInfos = aspectInfoCache_current.get(target);
+    private List<BazelLabel> hydrateFromPersistentCache(Collection<BazelLabel> targets,
+            Map<BazelLabel, Set<AspectTargetInfo>> resultMap) {
+        PersistentAspectTargetInfoCache persistentCache = aspectInfoCache_persistent;
+        if (persistentCache == null) {
+            return new ArrayList<>(targets);
+        }
+        long generation = cacheGeneration.get();
+        Map<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> lookups = new LinkedHashMap<>();
+        for (BazelLabel target : targets) {
+            lookups.put(target, persistentCache.get(target));
+        }
+        List<BazelLabel> misses = new ArrayList<>();
+        for (Map.Entry<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> lookup : lookups.entrySet()) {
+            Set<AspectTargetInfo> aspectInfos = lookup.getValue().join();
             if (aspectInfos == null) {
-                LOG.info("Aspect data not found in cache for: " + target + logstr);
-                cacheMisses.add(target);
+                misses.add(lookup.getKey());
             } else {
-                LOG.info("Aspect data found in cache for: " + target + logstr);
-                resultMap.put(target, aspectInfos);
-                numberCacheHits++;
+                adoptPersistedTargetInfos(lookup.getKey(), aspectInfos, generation);
+                resultMap.put(lookup.getKey(), aspectInfos);
+            }
+        }
+        return misses;
+    }
+
+    /**
+     * Adds the Aspect data loaded from the persistent cache to the current cache, unless the cache was flushed since
+     * the lookup started.
+     */
+    private void adoptPersistedTargetInfos(BazelLabel target, Set<AspectTargetInfo> aspectInfos, long generation) {
+        LOG.info("Aspect data found in persistent cache for: " + target);
+        aspectInfoCache_lastgood.put(target, aspectInfos);
+        putAspectInfoCache(target, aspectInfos, generation);
+        numberCacheHits.incrementAndGet();
+    }
+
+    /**
+     * Computes the Aspect data of the targets owned by this request, and completes their futures. The targets are
+     * first looked up in the persistent cache. The current cache is checked again once the build lock is held, as a
+     * previous build may have computed some of the targets in the meantime.
+     */
+    private void loadTargetInfos(Map<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> ownedMap, String caller)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        Map<BazelLabel, Set<AspectTargetInfo>> resultMap = new HashMap<>();
+        try {
+            List<BazelLabel> unpersisted = hydrateFromPersistentCache(ownedMap.keySet(), resultMap);
+            synchronized (buildLock) {
+                List<BazelLabel> cacheMisses = new ArrayList<>();
+                for (BazelLabel target : unpersisted) {
+                    Set<AspectTargetInfo> aspectInfos = lookupCache(target);
+                    if (aspectInfos == null) {
+                        LOG.info("Aspect data not found in cache for: " + target + getLogStr(target, caller));
+                        cacheMisses.add(target);
+                    } else {
+                        LOG.info("Aspect data found in cache for: " + target + getLogStr(target, caller));
+                        resultMap.put(target, aspectInfos);
+                        numberCacheHits.incrementAndGet();
+                    }
+                }
+                if (!cacheMisses.isEmpty()) {
+                    loadTargetInfos(cacheMisses, resultMap, caller);
+                }
+            }
+            for (Map.Entry<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> owned : ownedMap.entrySet()) {
+                owned.getValue().complete(resultMap.get(owned.getKey()));
+            }
+        } catch (Throwable anyT) {
+            for (CompletableFuture<Set<AspectTargetInfo>> future : ownedMap.values()) {
+                future.completeExceptionally(anyT);
             }
+            throw anyT;
+        } finally {
+            for (Map.Entry<BazelLabel, CompletableFuture<Set<AspectTargetInfo>>> owned : ownedMap.entrySet()) {
+                aspectInfoCache_inflight.remove(owned.getKey(), owned.getValue());
+            }
+        }
+    }
+
+    /**
+     * Waits for the Aspect data being computed by this or another request.
+     */
+    private static Set<AspectTargetInfo> awaitPending(CompletableFuture<Set<AspectTargetInfo>> pending)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        try {
+            return pending.get();
+        } catch (ExecutionException failure) {
+            Throwable cause = failure.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof BazelCommandLineToolConfigurationException) {
+                throw (BazelCommandLineToolConfigurationException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Failed computing the aspect data.", cause);
         }
-        return cacheMisses;
     }
 
-    private synchronized void loadTargetInfos(Collection<BazelLabel> cacheMisses,
+    private void loadTargetInfos(Collection<BazelLabel> cacheMisses,
             Map<BazelLabel, Set<AspectTargetInfo>> resultMap, String caller)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
 
+        long generation = cacheGeneration.get();
         LOG.info("Starting generation of Aspect files for " + cacheMisses.size() + " packages.");
-        List<String> discoveredAspectFilePaths = generateAspectTargetInfoFiles(cacheMisses);
+        Map<BazelLabel, AspectTargetInfo> aspectInfos = generateAndLoadAspectTargetInfos(cacheMisses);
         LOG.info("Finished generation of Aspect files for " + cacheMisses.size() + " packages.");
 
-        Map<BazelLabel, AspectTargetInfo> aspectInfos = loadAspectFilePaths(discoveredAspectFilePaths);
-
         if (aspectInfos.isEmpty()) {
             // We were not able to load any aspects, this generally indicates some sort of error condition;
             // it could be because the user introduced a compile error in it and the Aspect wont run.
             // In this case use the last known good result of the Aspect for that target and hope for the best. The lastgood cache is never
-            // cleared, so if the Aspect ran correctly at least once since the IDE started it should be here (but possibly out of date depending
-            // on what changes were introduced along with the compile error)
+            // flushed, so if the Aspect ran correctly at least once since the IDE started it should be here, in memory or spilled to disk
+            // (but possibly out of date depending on what changes were introduced along with the compile error)
             for (BazelLabel label : cacheMisses) {
                 Set<AspectTargetInfo> lastgood = aspectInfoCache_lastgood.get(label);
                 if (lastgood == null) {
@@ -239,21 +625,30 @@ public class BazelWorkspaceAspectProcessor {
                 }
             }
         } else {
+            // the closures of all of the loaded targets are computed once, and shared by the requested labels
+            AspectTransitiveClosureEngine closureEngine = new AspectTransitiveClosureEngine(aspectInfos);
             Map<BazelLabel, Set<AspectTargetInfo>> owningLabelToAspectInfos = new HashMap<>();
             for (BazelLabel label : cacheMisses) {
-                Map<BazelLabel, Set<AspectTargetInfo>> m = assignAspectsToOwningLabel(label, aspectInfos);
+                Map<BazelLabel, Set<AspectTargetInfo>> m =
+                        assignAspectsToOwningLabel(label, aspectInfos, closureEngine);
                 owningLabelToAspectInfos.putAll(m);
             }
+            PersistentAspectTargetInfoCache persistentCache = aspectInfoCache_persistent;
             for (BazelLabel label : owningLabelToAspectInfos.keySet()) {
                 Set<AspectTargetInfo> infos = owningLabelToAspectInfos.get(label);
-                aspectInfoCache_current.put(label, infos);
                 aspectInfoCache_lastgood.put(label, infos);
+                if (putAspectInfoCache(label, infos, generation) && (persistentCache != null)) {
+                    persistentCache.put(label, infos);
+                }
                 LOG.info("Aspect data loaded for target: " + label + getLogStr(label, caller));
             }
+            if (persistentCache != null) {
+                persistentCache.save();
+            }
             for (BazelLabel label : cacheMisses) {
-                // since we just populated the caches above, we should now find results
+                // since we just computed the closures above, we should now find results
                 // this could be done in the loop above, but this is good sanity
-                Set<AspectTargetInfo> atis = aspectInfoCache_current.get(label);
+                Set<AspectTargetInfo> atis = owningLabelToAspectInfos.get(label);
                 if (atis == null) {
                     LOG.error("Aspect execution failed (single) for target: " + label + getLogStr(label, caller));
                     atis = Collections.emptySet();
@@ -263,6 +658,34 @@ public class BazelWorkspaceAspectProcessor {
         }
     }
 
+    /**
+     * Caches the AspectTargetInfos of the label, and indexes the label under the package of each of them. Nothing is
+     * cached if the cache was flushed since the passed generation, as the infos may then be stale.
+     *
+     * @return true if the infos were cached
+     */
+    private boolean putAspectInfoCache(BazelLabel label, Set<AspectTargetInfo> infos, long generation) {
+        if (cacheGeneration.get() != generation) {
+            return false;
+        }
+        // the label is indexed first, so that a concurrent flush of one of the packages finds it
+        for (AspectTargetInfo info : infos) {
+            String labelPath = info.getLabelPath();
+            if (labelPath != null) {
+                String packagePath = BazelLabel.valueOf(labelPath).getPackagePath(true);
+                aspectInfoCache_dependents.computeIfAbsent(packagePath, p -> ConcurrentHashMap.newKeySet()).add(label);
+            }
+        }
+        aspectInfoCache_current.put(label, infos);
+        if (cacheGeneration.get() != generation) {
+            // a flush raced with the put, it may have missed the entry
+            aspectInfoCache_current.remove(label, infos);
+            return false;
+        }
+        dependencyGraph.update(infos);
+        return true;
+    }
+
     /**
      * This method creates and returns a mapping of a Label to the AspectTargetInfo (ATI) instances belonging to that
      * Label. These ATI instances are the transitive closure of ATIs referenced by the mapped Label.
@@ -280,163 +703,284 @@ public class BazelWorkspaceAspectProcessor {
      * For example, with ATIs for these targets: //a/b/c:t1 and //a/b/c:t2 and a requestingLabel of //a/b/c:*, this
      * method returns:
      *
-     * //a/b/c:* -> all specified ATIs //a/b/c:t1 -> transitive closure of ATIs for t1 //a/b/c:t2 -> transitive closure
-     * of ATIs for t2
+     * //a/b/c:* -> t1, t2 and their transitive closures //a/b/c:t1 -> transitive closure of ATIs for t1 //a/b/c:t2 ->
+     * transitive closure of ATIs for t2
+     * <p>
+     * A recursive wildcard label (//a/b/...) is mapped to all specified ATIs.
      */
     private static Map<BazelLabel, Set<AspectTargetInfo>> assignAspectsToOwningLabel(BazelLabel requestingLabel,
-            Map<BazelLabel, AspectTargetInfo> depNameToTargetInfo) {
+            Map<BazelLabel, AspectTargetInfo> depNameToTargetInfo, AspectTransitiveClosureEngine closureEngine) {
         Map<BazelLabel, Set<AspectTargetInfo>> transitivesClosures = new HashMap<>();
+        List<AspectTargetInfo> packageTargets = new ArrayList<>();
 
         // find starting point, based on target - this is trivial, but we also support wildcard
         // targets (so that we can run a single bazal build cmd and get all aspects)
         for (AspectTargetInfo ati : depNameToTargetInfo.values()) {
-            BazelLabel currentLabel = new BazelLabel(ati.getLabelPath());
+            BazelLabel currentLabel = BazelLabel.valueOf(ati.getLabelPath());
             if (requestingLabel.isConcrete()) {
                 if (requestingLabel.equals(currentLabel)) {
-                    Set<AspectTargetInfo> allDeps = getTransitiveClosure(ati, depNameToTargetInfo);
-                    transitivesClosures.put(new BazelLabel(ati.getLabelPath()), allDeps);
+                    Set<AspectTargetInfo> allDeps = closureEngine.getTransitiveClosure(ati);
+                    transitivesClosures.put(BazelLabel.valueOf(ati.getLabelPath()), allDeps);
                 }
             } else {
                 // all targets in the requested package qualify
                 if (currentLabel.getPackagePath().equals(requestingLabel.getPackagePath())) {
-                    Set<AspectTargetInfo> allDeps = getTransitiveClosure(ati, depNameToTargetInfo);
-                    transitivesClosures.put(new BazelLabel(ati.getLabelPath()), allDeps);
+                    Set<AspectTargetInfo> allDeps = closureEngine.getTransitiveClosure(ati);
+                    transitivesClosures.put(BazelLabel.valueOf(ati.getLabelPath()), allDeps);
+                    packageTargets.add(ati);
                 }
             }
         }
 
         if (!requestingLabel.isConcrete()) {
-            // also return a mapping of wildcard target -> all AspectTargetInfo instances
-            transitivesClosures.put(requestingLabel, new HashSet<>(depNameToTargetInfo.values()));
+            // also return a mapping of wildcard target -> the targets of the package and their closures; the specified
+            // ATIs may have been loaded by a batch that covered other packages too
+            if (requestingLabel.getLabelPath().endsWith(BazelLabel.BAZEL_WILDCARD_ALLPACKAGES)) {
+                transitivesClosures.put(requestingLabel, closureEngine.getAll());
+            } else {
+                transitivesClosures.put(requestingLabel, closureEngine.getTransitiveClosure(packageTargets));
+            }
         }
 
         return transitivesClosures;
 
     }
 
-    private static Set<AspectTargetInfo> getTransitiveClosure(AspectTargetInfo aspectTargetInfo,
-            Map<BazelLabel, AspectTargetInfo> depNameToTargetInfo) {
-        Set<AspectTargetInfo> allDeps = new HashSet<>();
-        List<AspectTargetInfo> queue = new ArrayList<>();
-        Set<String> skippedLabels = new HashSet<>();
-        Set<String> visitedLabels = new HashSet<>();
-        queue.add(aspectTargetInfo);
-        while (!queue.isEmpty()) {
-            AspectTargetInfo ati = queue.remove(0);
-
-            String thisLabel = ati.getLabelPath();
-            if (visitedLabels.contains(thisLabel)) {
-                // we have already visited this dependency (through another path) just skip it
-                continue;
-            }
-            visitedLabels.add(thisLabel);
+    /**
+     * Runs the Aspect for the list of passed targets, and loads the output artifacts created by the Aspects.
+     * <p>
+     * The targets are built in batches, and the aspect files of each batch are parsed in the background while the
+     * next batch runs in Bazel. The size of the batches adapts to the observed overhead of each Bazel invocation, see
+     * {@link AspectBatchSizer}.
+     *
+     * @throws BazelCommandLineToolConfigurationException
+     */
+    private Map<BazelLabel, AspectTargetInfo> generateAndLoadAspectTargetInfos(
+            Collection<BazelLabel> targets)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("Parameter [targets] cannot be empty.");
+        }
+        File bazelWorkspaceRootDirectory = bazelWorkspaceCommandRunner.getBazelWorkspaceRootDirectory();
+
+        List<BazelLabel> targetsList = new ArrayList<>(targets);
+        int totalTargets = targetsList.size();
+        int currentTargetIndex = 0;
+        List<CompletableFuture<Map<BazelLabel, AspectTargetInfo>>> loadedBatches = new ArrayList<>();
+
+        // run the aspect generation for the target labels, we want to minimize the number of bazel invocations
+        // because there is a few seconds of overhead for each invocation, but we still run batches so that the
+        // aspect files of a batch are parsed while the next one runs, and so we get progress log messages
+        try {
+            while (currentTargetIndex < totalTargets) {
+                int startTargetIndex = currentTargetIndex;
+                currentTargetIndex = Math.min(totalTargets, startTargetIndex + batchSizer.getBatchSize());
+                List<BazelLabel> batch = targetsList.subList(startTargetIndex, currentTargetIndex);
+
+                LOG.info("Running command to generate aspect file for labels indexed [" + startTargetIndex
+                        + "] through [" + currentTargetIndex + "] out of the total [" + totalTargets + "]");
+                long startTimeMS = System.currentTimeMillis();
+                List<String> aspectFilePaths = generateAspectTargetInfoFiles(bazelWorkspaceRootDirectory, batch);
+                batchSizer.recordBatch(batch.size(), System.currentTimeMillis() - startTimeMS);
 
-            if (ati != aspectTargetInfo) {
-                allDeps.add(ati);
+                AspectStringTable batchStringTable = stringTable;
+                loadedBatches.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return loadAspectFilePaths(aspectFilePaths, batchStringTable);
+                    } catch (IOException | InterruptedException anyE) {
+                        throw new CompletionException(anyE);
+                    }
+                }, ASPECT_FILE_LOADER));
             }
-            List<String> depLabels = ati.getDeps();
-            for (String label : depLabels) {
-                if (skippedLabels.contains(label)) {
-                    // this is a dep that is not something we work with, so we ignore it
-                    continue;
-                }
-                if (visitedLabels.contains(label)) {
-                    // we have already visited this dependency (through another path) just skip it
-                    continue;
-                }
+        } catch (IOException | InterruptedException | BazelCommandLineToolConfigurationException | RuntimeException e) {
+            loadedBatches.forEach(f -> f.cancel(true));
+            throw e;
+        }
 
-                BazelLabel depLabel = new BazelLabel(label);
-                AspectTargetInfo dep = depNameToTargetInfo.get(depLabel);
-                if (dep == null) {
-                    LOG.info("No AspectTargetInfo exists for " + label
-                            + "; it and its descendents are excluded from analysis.");
-                    skippedLabels.add(label);
-                } else {
-                    queue.add(dep);
+        Map<BazelLabel, AspectTargetInfo> aspectInfos = new HashMap<>();
+        for (CompletableFuture<Map<BazelLabel, AspectTargetInfo>> loadedBatch : loadedBatches) {
+            try {
+                aspectInfos.putAll(loadedBatch.get());
+            } catch (ExecutionException failure) {
+                Throwable cause = failure.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
                 }
+                throw new IllegalStateException("Failed loading the aspect files.", cause);
             }
         }
+        return aspectInfos;
+    }
 
-        // now add this aspect to the transitive closure if test or import (TODO why?)
-        BazelTargetKind kind = aspectTargetInfo.getKind();
-        if (kind != null) {
-            if (kind.isKind("java_test")) {
-                allDeps.add(aspectTargetInfo);
-            } else if (kind.isKind("java_import")) {
-                allDeps.add(aspectTargetInfo);
+    /**
+     * Runs the Aspect for the passed batch of targets. Returns the list of file paths to the output artifacts created
+     * by the Aspects.
+     * <p>
+     * The command line has a length limit (notably 32K chars on Windows), so the labels of a large batch are passed in
+     * a --target_pattern_file, or are split over several Bazel invocations when Bazel is older than 4.2 and does not
+     * support that option.
+     */
+    private List<String> generateAspectTargetInfoFiles(File bazelWorkspaceRootDirectory, List<BazelLabel> batch)
+            throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
+        int argsLength = 0;
+        for (BazelLabel label : batch) {
+            argsLength += label.getLabelPath().length() + 1;
+        }
+        if (argsLength <= MAX_TARGET_ARGS_LENGTH) {
+            return runAspectBuild(bazelWorkspaceRootDirectory, batch, null);
+        }
+
+        if (BazelVersionChecker.isVersionAtLeast(bazelWorkspaceCommandRunner.getBazelVersion(),
+            BazelVersionChecker.TARGET_PATTERN_FILE_BAZEL_VERSION)) {
+            File targetPatternFile = writeTargetPatternFile(batch);
+            try {
+                return runAspectBuild(bazelWorkspaceRootDirectory, batch, targetPatternFile);
+            } finally {
+                targetPatternFile.delete();
             }
-        } else {
-            kind = aspectTargetInfo.getKind();
-            LOG.info("AspectInfo " + aspectTargetInfo.getLabel().getLabelPath()
-                + " does not have an associated target kind.");
         }
 
-        return Collections.unmodifiableSet(allDeps);
+        // the same file is reported by each invocation that builds it
+        Set<String> aspectFilePaths = new LinkedHashSet<>();
+        int startIndex = 0;
+        while (startIndex < batch.size()) {
+            // each invocation gets at least one label
+            int endIndex = startIndex + 1;
+            int chunkLength = batch.get(startIndex).getLabelPath().length() + 1;
+            while ((endIndex < batch.size())
+                    && ((chunkLength + batch.get(endIndex).getLabelPath().length() + 1) <= MAX_TARGET_ARGS_LENGTH)) {
+                chunkLength += batch.get(endIndex).getLabelPath().length() + 1;
+                endIndex++;
+            }
+            aspectFilePaths.addAll(
+                runAspectBuild(bazelWorkspaceRootDirectory, batch.subList(startIndex, endIndex), null));
+            startIndex = endIndex;
+        }
+        return new ArrayList<>(aspectFilePaths);
     }
 
     /**
-     * Runs the Aspect for the list of passed targets. Returns the list of file paths to the output artifacts created by
-     * the Aspects.
-     *
-     * @throws BazelCommandLineToolConfigurationException
+     * Runs a single aspect build over the targets, which are passed in the targetPatternFile if it is not null.
+     * <p>
+     * The output artifacts are read from the Build Event Protocol file written by the build, see
+     * {@link #readAspectFilePaths(BEPFileContents)}. The file is followed while the build runs, and the targets are
+     * logged as they complete (and fail), so that the progress of a long aspect build is visible.
      */
-    private synchronized List<String> generateAspectTargetInfoFiles(Collection<BazelLabel> targets)
+    private List<String> runAspectBuild(File bazelWorkspaceRootDirectory, List<BazelLabel> targets,
+            File targetPatternFile)
             throws IOException, InterruptedException, BazelCommandLineToolConfigurationException {
-        if (targets.isEmpty()) {
-            throw new IllegalArgumentException("Parameter [targets] cannot be empty.");
+        List<String> args = new ArrayList<>();
+        args.add("build");
+        args.addAll(aspectOptions);
+
+        File bepFile = File.createTempFile("bzljavasdk_aspect_bep", ".json");
+        bepFile.deleteOnExit();
+        args.add("--build_event_json_file=" + bepFile.getAbsolutePath());
+
+        if (targetPatternFile != null) {
+            args.add("--target_pattern_file=" + targetPatternFile.getAbsolutePath());
+        } else {
+            for (BazelLabel label : targets) {
+                args.add(label.toString());
+            }
         }
-        File bazelWorkspaceRootDirectory = bazelWorkspaceCommandRunner.getBazelWorkspaceRootDirectory();
 
-        BazelLabel[] targetsArray = targets.toArray(new BazelLabel[] {});
-        int lastValidTargetIndex = targets.size() - 1;
-        int currentTargetIndex = 0;
-        List<String> listOfGeneratedFilePaths = new ArrayList<>();
+        AspectBuildProgress progress = new AspectBuildProgress(targets.size());
+        BEPFileFollower bepFollower = new BEPFileFollower(bepFile, progress::eventRead);
+        ScheduledFuture<?> bepPoller = BEP_FOLLOWER.scheduleWithFixedDelay(() -> {
+            if (bepFollower.poll() > 0) {
+                progress.log();
+            }
+        }, BEP_POLL_INTERVAL_MS, BEP_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        try {
+            // with -k the build continues past the failed targets, so the outputs of the others are still used
+            bazelCommandExecutor.runBazel(ConsoleType.WORKSPACE, bazelWorkspaceRootDirectory, null, args,
+                BazelCommandExecutor.TIMEOUT_INFINITE);
+            bepPoller.cancel(false);
+            // the events written after the last poll
+            bepFollower.poll();
+            return readAspectFilePaths(bepFollower.getContents());
+        } finally {
+            bepPoller.cancel(false);
+            bepFile.delete();
+        }
+    }
 
-        // run the aspect generation for the target labels, we want to minimize the number of bazel invocations
-        // because there is a few seconds of overhead for each invocation, but we only do 25 at a time so we get
-        // progress log messages along the way
-        while (currentTargetIndex <= lastValidTargetIndex) {
-            int startTargetIndex = currentTargetIndex;
-            List<String> args = new ArrayList<>();
-            args.add("build");
-            args.addAll(aspectOptions);
-            for (int i = 0; i < 25; i++) {
-                if (currentTargetIndex > lastValidTargetIndex) {
-                    break;
-                }
-                String label = targetsArray[currentTargetIndex].toString();
-                currentTargetIndex++;
-                args.add(label);
-            }
-
-            // Strip out the artifact list, keeping the xyz.bzljavasdk-data.json files (located in subdirs in the bazel-out path)
-            // Line must start with >>> and end with the aspect file suffix
-            LOG.info("Running command to generate aspect file for labels indexed [" + startTargetIndex + "] through ["
-                    + (startTargetIndex + 25) + "] out of the total [" + (lastValidTargetIndex + 1) + "]");
-            Function<String, String> filter = (t) -> {
-                LOG.info("Aspect output line: " + t);
-                String r = null;
-                if (t.startsWith(">>>")) {
-                    if (t.endsWith(AspectTargetInfoFactory.ASPECT_FILENAME_SUFFIX)) {
-                        LOG.info("  Aspect output (json file): {}", t);
-                        r = t.substring(3);
-                    } else {
-                        LOG.info("  Aspect output (ignored): {}", t);
-                        r = null;
+    /**
+     * Reads the paths of the aspect files (xyz.bzljavasdk-data.json) from the BEP events of an aspect build. The files
+     * are resolved from the output groups of the completed targets; the targets that failed have no files.
+     */
+    static List<String> readAspectFilePaths(BEPFileContents bepContents) {
+        BEPOutputFileResolver outputFileResolver = new BEPOutputFileResolver(bepContents);
+
+        // the same file is reported by each output group (and target) that includes it
+        Set<String> aspectFilePaths = new LinkedHashSet<>();
+        int failedTargets = 0;
+        for (BEPTargetCompletedEvent completedTarget : outputFileResolver.getCompletedTargets()) {
+            if (!completedTarget.isSuccess()) {
+                failedTargets++;
+                continue;
+            }
+            for (String outputGroupName : completedTarget.getOutputGroupNames()) {
+                for (BEPFileUri outputFile : outputFileResolver.getOutputFiles(completedTarget, outputGroupName)) {
+                    String path = outputFile.getFile().getPath();
+                    if (path.endsWith(AspectTargetInfoFactory.ASPECT_FILENAME_SUFFIX)) {
+                        aspectFilePaths.add(path);
                     }
-                } else {
-                    LOG.info("  Aspect output (ignored): {}", t);
-                    r = null;
                 }
-                return r;
-            };
+            }
+        }
+        LOG.info("Aspect build completed {} targets ({} failed) with {} aspect files.",
+            outputFileResolver.getCompletedTargets().size(), failedTargets, aspectFilePaths.size());
+        return new ArrayList<>(aspectFilePaths);
+    }
 
-            List<String> partialListOfGeneratedFilePaths =
-                    bazelCommandExecutor.runBazelAndGetErrorLines(ConsoleType.WORKSPACE, bazelWorkspaceRootDirectory,
-                        null, args, filter, BazelCommandExecutor.TIMEOUT_INFINITE);
-            listOfGeneratedFilePaths.addAll(partialListOfGeneratedFilePaths);
+    /**
+     * Progress of a running aspect build, from the targetCompleted events of its BEP file. The failures are logged as
+     * soon as they are read.
+     */
+    private static class AspectBuildProgress {
+        private final int requestedTargets;
+        private int completedTargets;
+        private int failedTargets;
+        private String lastCompletedLabel;
+
+        AspectBuildProgress(int requestedTargets) {
+            this.requestedTargets = requestedTargets;
+        }
+
+        synchronized void eventRead(BEPEvent event) {
+            if (!(event instanceof BEPTargetCompletedEvent)) {
+                return;
+            }
+            BEPTargetCompletedEvent completedTarget = (BEPTargetCompletedEvent) event;
+            completedTargets++;
+            lastCompletedLabel = completedTarget.getLabel();
+            if (!completedTarget.isSuccess()) {
+                failedTargets++;
+                LOG.error("Aspect execution failed for target {}: {}", completedTarget.getLabel(),
+                    completedTarget.getFailureMessage());
+            }
+        }
+
+        synchronized void log() {
+            LOG.info("Aspect build in progress for {} requested targets: {} targets completed ({} failed), last {}",
+                requestedTargets, completedTargets, failedTargets, lastCompletedLabel);
         }
-        return listOfGeneratedFilePaths;
+    }
+
+    private static File writeTargetPatternFile(List<BazelLabel> batch) throws IOException {
+        File targetPatternFile = File.createTempFile("bzljavasdk_targets", ".txt");
+        targetPatternFile.deleteOnExit();
+        List<String> lines = new ArrayList<>(batch.size());
+        for (BazelLabel label : batch) {
+            lines.add(label.getLabelPath());
+        }
+        Files.write(targetPatternFile.toPath(), lines, StandardCharsets.UTF_8);
+        return targetPatternFile;
     }
 
     private static String getLogStr(BazelLabel target, String caller) {
@@ -445,6 +989,11 @@ public class BazelWorkspaceAspectProcessor {
 
     public static Map<BazelLabel, AspectTargetInfo> loadAspectFilePaths(List<String> aspectFilePaths)
             throws IOException, InterruptedException {
+        return loadAspectFilePaths(aspectFilePaths, new AspectStringTable());
+    }
+
+    public static Map<BazelLabel, AspectTargetInfo> loadAspectFilePaths(List<String> aspectFilePaths,
+            AspectStringTable stringTable) throws IOException, InterruptedException {
         Map<BazelLabel, AspectTargetInfo> bzToAtis = new HashMap<>();
 
         if (aspectFilePaths.size() == 0) {
@@ -454,7 +1003,8 @@ public class BazelWorkspaceAspectProcessor {
             return bzToAtis;
         }
 
-        Map<String, AspectTargetInfo> lToAtis = AspectTargetInfoFactory.loadAspectFilePaths(aspectFilePaths);
+        Map<String, AspectTargetInfo> lToAtis =
+                AspectTargetInfoFactory.loadAspectFilePaths(aspectFilePaths, stringTable);
         if (lToAtis.isEmpty()) {
             LOG.error("No aspect files were parsed successfully. Aspect file list size: " + aspectFilePaths.size());
             return bzToAtis;
@@ -467,7 +1017,7 @@ public class BazelWorkspaceAspectProcessor {
                 continue;
             }
             AspectTargetInfo value = e.getValue();
-            bzToAtis.put(new BazelLabel(key), value);
+            bzToAtis.put(BazelLabel.valueOf(key), value);
             LOG.info("Aspect for {} loaded successfully.", key);
         }
         return bzToAtis;
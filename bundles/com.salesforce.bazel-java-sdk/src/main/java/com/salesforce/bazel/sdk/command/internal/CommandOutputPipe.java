@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands the output of a running command from the thread that reads it from the process to a thread that decodes it.
+ * Unlike the java.io piped streams, this does not depend on the lifetime of the threads on either side, which are
+ * pooled.
+ * <p>
+ * The queue is bounded, so a slow reader applies back pressure to the command rather than buffering all of its output.
+ */
+class CommandOutputPipe {
+    private static final int MAX_QUEUED_CHUNKS = 64;
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>(MAX_QUEUED_CHUNKS);
+    private volatile boolean discarded = false;
+
+    private final OutputStream outputStream = new OutputStream() {
+        private boolean closed = false;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if ((len == 0) || discarded) {
+                return;
+            }
+            enqueue(Arrays.copyOfRange(b, off, off + len));
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                enqueue(END_OF_STREAM);
+            }
+        }
+    };
+
+    private final InputStream inputStream = new InputStream() {
+        private byte[] chunk = null;
+        private int position = 0;
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int read = read(b, 0, 1);
+            return read == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if ((chunk == null) || (position == chunk.length)) {
+                if (chunk == END_OF_STREAM) {
+                    return -1;
+                }
+                try {
+                    chunk = chunks.take();
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for command output");
+                }
+                position = 0;
+                if (chunk == END_OF_STREAM) {
+                    return -1;
+                }
+            }
+            int count = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, count);
+            position += count;
+            return count;
+        }
+    };
+
+    /**
+     * The stream the command writes its output to. It must be closed once the command has completed.
+     */
+    OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * The stream the output of the command is read from.
+     */
+    InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Drops the queued output, and any output that is written afterwards. Called when the reader gives up, so that the
+     * writer never blocks on a full queue.
+     */
+    void discard() {
+        discarded = true;
+        chunks.clear();
+    }
+
+    private void enqueue(byte[] chunk) throws IOException {
+        try {
+            while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (discarded) {
+                    return;
+                }
+            }
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while handing off command output");
+        }
+    }
+}
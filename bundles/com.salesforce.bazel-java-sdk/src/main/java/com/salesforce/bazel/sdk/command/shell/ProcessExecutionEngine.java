@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.command.shell;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.util.WorkProgressMonitor;
+
+/**
+ * Shared engine that runs the processes started by ShellCommand. The stdout/stderr pumps run on a shared pool (virtual
+ * threads when the JVM supports them, otherwise a cached pool of daemon threads), and completion is driven by
+ * {@link Process#onExit()} instead of blocking a thread in {@link Process#waitFor()}.
+ * <p>
+ * A single watchdog thread polls the progress monitors and timeouts of the running processes. When a monitor is
+ * canceled, the timeout expires, or the returned future is canceled, the whole process tree is destroyed.
+ */
+public final class ProcessExecutionEngine {
+    private static final LogHelper LOG = LogHelper.log(ProcessExecutionEngine.class);
+
+    /**
+     * How often the watchdog checks the progress monitor and timeout of a running process.
+     */
+    private static final long WATCHDOG_INTERVAL_MS = 250;
+
+    /**
+     * After the process exits, the time we wait for the pumps to drain. The pipes can be held open by a descendant
+     * that outlived the process, in which case we stop waiting for the rest of the output.
+     */
+    private static final long PUMP_DRAIN_GRACE_MS = 5000;
+
+    /**
+     * After asking the process tree to terminate, the time we wait before killing it forcibly. The Bazel client uses
+     * this time to tell the server to abandon the command.
+     */
+    private static final long DESTROY_GRACE_MS = 2000;
+
+    private static final ProcessExecutionEngine DEFAULT = new ProcessExecutionEngine();
+
+    private final ExecutorService pumpExecutor;
+    private final ScheduledExecutorService watchdog;
+
+    ProcessExecutionEngine() {
+        pumpExecutor = createPumpExecutor();
+        watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "CommandWatchdog");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Returns the engine shared by all commands.
+     */
+    public static ProcessExecutionEngine getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Pumps the output of the started process into the passed streams, and returns a future that completes with the
+     * exit code once the process has exited and its output has been pumped.
+     *
+     * @param progressMonitor
+     *            optional; if it is canceled the process tree is destroyed
+     * @param timeoutMS
+     *            if greater than 0, the process tree is destroyed once the timeout expires
+     */
+    public CompletableFuture<Integer> execute(Process process, OutputStream stdout, OutputStream stderr,
+            WorkProgressMonitor progressMonitor, long timeoutMS) {
+        Pump stdoutPump = new Pump(process.getInputStream(), stdout);
+        Pump stderrPump = new Pump(process.getErrorStream(), stderr);
+        CompletableFuture<Void> pumps = CompletableFuture.allOf(stdoutPump.start(), stderrPump.start());
+
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        process.onExit().thenCompose(p -> pumps.handle((ignored, failure) -> true)
+                .completeOnTimeout(false, PUMP_DRAIN_GRACE_MS, TimeUnit.MILLISECONDS)).thenAccept(drained -> {
+                    if (!drained) {
+                        // the streams are closed by the caller once the result completes, the pumps must not write to
+                        // them anymore
+                        LOG.warn("The output of pid {} is still open after it exited, ignoring the rest of it",
+                            process.pid());
+                        stdoutPump.stop();
+                        stderrPump.stop();
+                    }
+                }).whenComplete((ignored, failure) -> {
+                    if (failure != null) {
+                        result.completeExceptionally(failure);
+                    } else {
+                        result.complete(process.exitValue());
+                    }
+                });
+
+        AtomicBoolean destroyed = new AtomicBoolean();
+        ScheduledFuture<?> watch = null;
+        if ((progressMonitor != null) || (timeoutMS > 0)) {
+            long deadline = timeoutMS > 0 ? System.currentTimeMillis() + timeoutMS : Long.MAX_VALUE;
+            watch = watchdog.scheduleWithFixedDelay(() -> {
+                if (!process.isAlive() || destroyed.get()) {
+                    return;
+                }
+                if ((progressMonitor != null) && progressMonitor.isCanceled()) {
+                    LOG.info("Command was canceled, destroying process tree of pid {}", process.pid());
+                    destroyProcessTree(process, destroyed);
+                } else if (System.currentTimeMillis() > deadline) {
+                    LOG.warn("Command timed out after {} millis, destroying process tree of pid {}", timeoutMS,
+                        process.pid());
+                    destroyProcessTree(process, destroyed);
+                }
+            }, WATCHDOG_INTERVAL_MS, WATCHDOG_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+
+        ScheduledFuture<?> finalWatch = watch;
+        result.whenComplete((exitCode, failure) -> {
+            if (finalWatch != null) {
+                finalWatch.cancel(false);
+            }
+            if (result.isCancelled()) {
+                // the caller abandoned the command
+                LOG.info("Command was abandoned, destroying process tree of pid {}", process.pid());
+                destroyProcessTree(process, destroyed);
+            }
+        });
+        return result;
+    }
+
+    // INTERNAL
+
+    /**
+     * Destroys the process and all of its descendants. The tree is first asked to terminate, and is killed forcibly if
+     * it is still alive after a short grace period.
+     */
+    private void destroyProcessTree(Process process, AtomicBoolean destroyed) {
+        if (!destroyed.compareAndSet(false, true)) {
+            return;
+        }
+        // the descendants must be collected before the parent dies, otherwise they are reparented and lost
+        List<ProcessHandle> descendants = process.descendants().collect(Collectors.toList());
+        descendants.forEach(ProcessHandle::destroy);
+        process.destroy();
+        watchdog.schedule(() -> {
+            descendants.forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }, DESTROY_GRACE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static ExecutorService createPumpExecutor() {
+        try {
+            // virtual threads are ideal for blocking pipe reads, but are not available in all of our supported JVMs
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException notAvailable) {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "CommandStreamPump-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Copies a stream of the process to an output stream, until the end of the stream or until it is stopped.
+     */
+    private final class Pump {
+        private final InputStream inputStream;
+        private final OutputStream outputStream;
+        private boolean stopped = false; // guarded by this
+
+        private Pump(InputStream inputStream, OutputStream outputStream) {
+            this.inputStream = inputStream;
+            this.outputStream = outputStream;
+        }
+
+        private CompletableFuture<Void> start() {
+            return CompletableFuture.runAsync(() -> {
+                byte[] buffer = new byte[8192];
+                int read;
+                try (InputStream in = inputStream) {
+                    while ((read = in.read(buffer)) > 0) {
+                        synchronized (this) {
+                            if (stopped) {
+                                return;
+                            }
+                            if (outputStream != null) {
+                                outputStream.write(buffer, 0, read);
+                            }
+                        }
+                    }
+                } catch (Exception ex) {
+                    if (!isStopped()) {
+                        LOG.error("Error writing command stream to the channel.", ex);
+                    }
+                    // we simply terminate the pump on exceptions
+                }
+            }, pumpExecutor);
+        }
+
+        /**
+         * Stops the pump. Once this method returns the pump does not write to the output stream anymore; a write that
+         * is in progress completes first.
+         */
+        private void stop() {
+            synchronized (this) {
+                stopped = true;
+            }
+            // unblock the read if the platform supports closing a stream that is being read, the pump exits either way
+            pumpExecutor.execute(() -> {
+                try {
+                    inputStream.close();
+                } catch (Exception ignore) {}
+            });
+        }
+
+        private synchronized boolean isStopped() {
+            return stopped;
+        }
+    }
+}
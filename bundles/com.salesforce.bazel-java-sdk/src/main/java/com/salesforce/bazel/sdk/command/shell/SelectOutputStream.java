@@ -36,27 +36,49 @@
 
 package com.salesforce.bazel.sdk.command.shell;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
  * A wrapper output stream to output part of the result to a given output and extracting the other part with a selector
- * function. The other part is return as a list of string.
+ * function. The other part is return as a list of string, or pushed to a consumer as each line completes.
+ * <p>
+ * Output is processed in bulk: lines are split on the raw bytes (a newline byte never occurs inside a multi-byte UTF-8
+ * sequence) and each line is decoded to a String at most once. Lines that are complete within a written chunk are
+ * decoded directly from the caller's buffer, and only a trailing partial line is copied. Unselected lines are written
+ * to the output as bytes and are not retained.
  */
 public class SelectOutputStream extends OutputStream {
 
     private final OutputStream output;
     private final Function<String, String> selector;
+    private final Consumer<String> selectedLineConsumer;
+    private final int retainedLineLimit;
     private boolean closed = false;
-    private final List<String> lines = new LinkedList<>();
-    private final List<String> outputLines = new LinkedList<>();
-    private final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+    /**
+     * Selected lines, only used if there is no selectedLineConsumer.
+     */
+    private final List<String> lines = new ArrayList<>();
+
+    /**
+     * The most recent lines (selected or not), bounded by retainedLineLimit. Used for diagnostics.
+     */
+    private final Deque<String> retainedLines;
+
+    /**
+     * Bytes of a line that has not been terminated yet.
+     */
+    private byte[] pending = new byte[256];
+    private int pendingLength = 0;
 
     /**
      * Create a SelectOutputStream. <code>output<code> is the output stream where non-selected lines
@@ -70,40 +92,72 @@ public class SelectOutputStream extends OutputStream {
      * will be discarded. If <code>selector</code> is null, all lines will be considered as unselected.
      */
     public SelectOutputStream(OutputStream output, Function<String, String> selector) {
+        this(output, selector, null, 0);
+    }
+
+    /**
+     * Create a SelectOutputStream that pushes lines instead of retaining them.
+     *
+     * @param selectedLineConsumer
+     *            if not null, selected lines are passed to this consumer as soon as they complete, and are not stored
+     *            in the lines buffer
+     * @param retainedLineLimit
+     *            the number of most recent lines (selected or not) to keep for {@link #getRetainedLines()}, 0 to keep
+     *            none
+     */
+    public SelectOutputStream(OutputStream output, Function<String, String> selector,
+            Consumer<String> selectedLineConsumer, int retainedLineLimit) {
         super();
         this.output = output;
         this.selector = selector;
+        this.selectedLineConsumer = selectedLineConsumer;
+        this.retainedLineLimit = retainedLineLimit;
+        retainedLines = retainedLineLimit > 0 ? new ArrayDeque<>() : null;
     }
 
     @Override
     public void write(int b) throws IOException {
-        if (closed) {
-            throw new IllegalStateException("Attempted to write on a closed stream");
-        }
-        byte b0 = (byte) b;
-        if (b0 == '\n') {
-            select(true);
+        checkOpen();
+        if (isPassThrough()) {
+            // never buffered, so single bytes and chunks reach the output in the order they were written
+            if (output != null) {
+                output.write(b);
+            }
+        } else if ((byte) b == '\n') {
+            selectPending(true);
         } else {
-            stream.write(b);
+            appendPending(new byte[] { (byte) b }, 0, 1);
         }
     }
 
-    private void select(boolean appendNewLine) throws UnsupportedEncodingException, IOException {
-        String line = null;
-        if (selector != null) {
-            line = selector.apply(stream.toString(StandardCharsets.UTF_8.name()));
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkOpen();
+        if (isPassThrough()) {
+            // nothing to inspect, pass the bytes straight through
+            if (output != null) {
+                output.write(b, off, len);
+            }
+            return;
         }
 
-        if (line != null) {
-            lines.add(line);
-        } else if (output != null) {
-            if (appendNewLine) {
-                stream.write('\n');
+        int end = off + len;
+        int lineStart = off;
+        for (int i = off; i < end; i++) {
+            if (b[i] != '\n') {
+                continue;
+            }
+            if (pendingLength > 0) {
+                appendPending(b, lineStart, i - lineStart);
+                selectPending(true);
+            } else {
+                select(b, lineStart, i - lineStart, true);
             }
-            output.write(stream.toByteArray());
-            outputLines.add(stream.toString(StandardCharsets.UTF_8.name()));
+            lineStart = i + 1;
+        }
+        if (lineStart < end) {
+            appendPending(b, lineStart, end - lineStart);
         }
-        stream.reset();
     }
 
     @Override
@@ -112,21 +166,89 @@ public class SelectOutputStream extends OutputStream {
             throw new IllegalStateException("Attempted to close a closed stream");
         }
         super.close();
-        select(false);
+        if (pendingLength > 0) {
+            // the output did not end with a newline
+            selectPending(false);
+        }
         closed = true;
     }
 
     /**
-     * Returns the list of selected lines.
+     * Returns the list of selected lines. This list is empty if a selected line consumer was provided.
      */
     List<String> getLines() {
         return lines;
     }
 
     /**
-     * Returns the list of output lines.
+     * Returns the most recent lines (selected and unselected), up to the retained line limit.
      */
-    List<String> getOutputLines() {
-        return outputLines;
+    List<String> getRetainedLines() {
+        if (retainedLines == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(retainedLines);
+    }
+
+    // INTERNAL
+
+    /**
+     * Returns true if the lines do not need to be inspected, all bytes go to the output as written.
+     */
+    private boolean isPassThrough() {
+        return (selector == null) && (retainedLines == null);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Attempted to write on a closed stream");
+        }
+    }
+
+    private void appendPending(byte[] b, int off, int len) {
+        if ((pendingLength + len) > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + len));
+        }
+        System.arraycopy(b, off, pending, pendingLength, len);
+        pendingLength += len;
+    }
+
+    private void selectPending(boolean newLine) throws IOException {
+        if (newLine) {
+            // put the terminating newline after the line, as it is in a caller's buffer
+            if (pendingLength == pending.length) {
+                pending = Arrays.copyOf(pending, pending.length * 2);
+            }
+            pending[pendingLength] = '\n';
+        }
+        select(pending, 0, pendingLength, newLine);
+        pendingLength = 0;
+    }
+
+    /**
+     * Processes one line. If newLine is true, the line was terminated by a newline, which is found in b[off + len].
+     */
+    private void select(byte[] b, int off, int len, boolean newLine) throws IOException {
+        String line = null;
+        if ((selector != null) || (retainedLines != null)) {
+            line = new String(b, off, len, StandardCharsets.UTF_8);
+        }
+        if (retainedLines != null) {
+            if (retainedLines.size() >= retainedLineLimit) {
+                retainedLines.removeFirst();
+            }
+            retainedLines.addLast(line);
+        }
+
+        String selected = selector != null ? selector.apply(line) : null;
+        if (selected != null) {
+            if (selectedLineConsumer != null) {
+                selectedLineConsumer.accept(selected);
+            } else {
+                lines.add(selected);
+            }
+        } else if (output != null) {
+            output.write(b, off, newLine ? len + 1 : len);
+        }
     }
 }
@@ -38,11 +38,14 @@ package com.salesforce.bazel.sdk.command.shell;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import com.salesforce.bazel.sdk.command.BazelProcessBuilder;
@@ -75,21 +78,27 @@ public final class ShellCommand implements Command {
      */
     public static int LOG_LEVEL_FOR_STDOUTERR = LoggerFacade.DEBUG;
 
+    /**
+     * When stdout/stderr lines are logged (see LOG_LEVEL_FOR_STDOUTERR), only the most recent lines of each stream are
+     * kept for the log, to bound the memory used by commands with very large output.
+     */
+    public static int MAX_LOGGED_LINES_FOR_STDOUTERR = 1000;
+
     private final File directory;
     private final List<String> args;
     private final SelectOutputStream stdout;
     private final SelectOutputStream stderr;
     private final WorkProgressMonitor progressMonitor;
 
-    // TODO ShellCommand timeouts are not usable; if a command times out subsequent commands hang, etc.
-    // https://github.com/salesforce/bazel-eclipse/issues/191
+    // enforced by the ProcessExecutionEngine watchdog, 0 means no timeout
     private long timeoutMS = 0;
 
     private boolean executed = false;
+    private CompletableFuture<Integer> execution;
 
     ShellCommand(CommandConsole console, File directory, List<String> args, Function<String, String> stdoutSelector,
-            Function<String, String> stderrSelector, OutputStream stdout, OutputStream stderr,
-            WorkProgressMonitor progressMonitor, long timeoutMS) {
+            Function<String, String> stderrSelector, Consumer<String> stdoutConsumer, OutputStream stdout,
+            OutputStream stderr, WorkProgressMonitor progressMonitor, long timeoutMS) {
         this.directory = directory;
         this.args = args;
         if (console != null) {
@@ -100,8 +109,9 @@ public final class ShellCommand implements Command {
                 stderr = console.createErrorStream();
             }
         }
-        this.stderr = new SelectOutputStream(stderr, stderrSelector);
-        this.stdout = new SelectOutputStream(stdout, stdoutSelector);
+        int retainedLineLimit = LOG.getLevel() <= LOG_LEVEL_FOR_STDOUTERR ? MAX_LOGGED_LINES_FOR_STDOUTERR : 0;
+        this.stderr = new SelectOutputStream(stderr, stderrSelector, null, retainedLineLimit);
+        this.stdout = new SelectOutputStream(stdout, stdoutSelector, stdoutConsumer, retainedLineLimit);
         this.progressMonitor = progressMonitor;
         this.timeoutMS = timeoutMS;
 
@@ -125,11 +135,35 @@ public final class ShellCommand implements Command {
     /**
      * Executes the command represented by this instance, and return the exit code of the command. This method should
      * not be called twice on the same object.
-     *
-     * @throws CoreException
+     * <p>
+     * If the calling thread is interrupted while waiting, the process tree of the command is destroyed.
      */
     @Override
     public int run() throws IOException, InterruptedException {
+        CompletableFuture<Integer> result = runAsync();
+        try {
+            return result.get();
+        } catch (InterruptedException interrupted) {
+            result.cancel(true);
+            execution.cancel(true);
+            throw interrupted;
+        } catch (ExecutionException executionFailure) {
+            Throwable cause = executionFailure.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalStateException("Command failed: " + args, cause);
+        }
+    }
+
+    /**
+     * Starts the command represented by this instance, and returns a future that completes with the exit code of the
+     * command once it has exited and its output has been consumed. The process is pumped and watched by the shared
+     * {@link ProcessExecutionEngine}; canceling the progress monitor, or exceeding the timeout, destroys the process
+     * tree.
+     */
+    @Override
+    public CompletableFuture<Integer> runAsync() throws IOException {
         if (executed) {
             throw new IllegalStateException("This command has already been run.");
         }
@@ -149,63 +183,55 @@ public final class ShellCommand implements Command {
         if (progressMonitor != null) {
             progressMonitor.worked(1);
         }
-        String command = "";
-        for (String arg : args) {
-            command = command + arg + " ";
-        }
+        String command = String.join(" ", args);
         LOG.info("Executing command (timeout = {}): {}", timeoutMS, command);
         long startTimeMS = System.currentTimeMillis();
-        boolean success = false;
 
-        try {
-            Thread err = copyStream(process.getErrorStream(), stderr);
-            Thread out = copyStream(process.getInputStream(), stdout);
-            int exitCode = process.waitFor();
-            if (err != null) {
-                err.join(timeoutMS);
+        execution = ProcessExecutionEngine.getDefault().execute(process, stdout, stderr, progressMonitor, timeoutMS);
+        return execution.handle((exitCode, failure) -> {
+            finish(command, startTimeMS, (failure == null) && (exitCode == 0));
+            if (failure != null) {
+                throw failure instanceof CompletionException ? (CompletionException) failure
+                        : new CompletionException(failure);
             }
-            if (out != null) {
-                out.join(timeoutMS);
-            }
-            success = exitCode == 0;
             return exitCode;
-        } catch (InterruptedException interrupted) {
-            throw interrupted;
-        } finally {
-            closeQuietly(stderr);
-            closeQuietly(stdout);
-            if (args.size() > 1) {
-                // arg 1 typically has the more interesting command token
-                SimplePerfRecorder.addTime("commmand_" + args.get(1), startTimeMS);
-            } else {
-                SimplePerfRecorder.addTime("commmand_" + args.get(0), startTimeMS);
-            }
+        });
+    }
+
+    private void finish(String command, long startTimeMS, boolean success) {
+        closeQuietly(stderr);
+        closeQuietly(stdout);
+        if (args.size() > 1) {
+            // arg 1 typically has the more interesting command token
+            SimplePerfRecorder.addTime("commmand_" + args.get(1), startTimeMS);
+        } else {
+            SimplePerfRecorder.addTime("commmand_" + args.get(0), startTimeMS);
+        }
 
-            // report results to console
-            long elapsedTimeMS = System.currentTimeMillis() - startTimeMS;
-            LOG.info("Finished command ({} millis) (success={}): {}", elapsedTimeMS, success, command);
+        // report results to console
+        long elapsedTimeMS = System.currentTimeMillis() - startTimeMS;
+        LOG.info("Finished command ({} millis) (success={}): {}", elapsedTimeMS, success, command);
 
-            if (LOG.getLevel() <= LOG_LEVEL_FOR_STDOUTERR) {
-                StringBuffer stdoutBuffer = new StringBuffer();
-                for (String line : stdout.getLines()) {
-                    if (!line.trim().isEmpty()) {
-                        stdoutBuffer.append("  >> ");
-                        stdoutBuffer.append(line);
-                        stdoutBuffer.append("\n");
-                    }
+        if (LOG.getLevel() <= LOG_LEVEL_FOR_STDOUTERR) {
+            StringBuffer stdoutBuffer = new StringBuffer();
+            for (String line : stdout.getRetainedLines()) {
+                if (!line.trim().isEmpty()) {
+                    stdoutBuffer.append("  >> ");
+                    stdoutBuffer.append(line);
+                    stdoutBuffer.append("\n");
                 }
-                LOG.log(LOG_LEVEL_FOR_STDOUTERR, "\n  >> stdout:\n{}", stdoutBuffer);
+            }
+            LOG.log(LOG_LEVEL_FOR_STDOUTERR, "\n  >> stdout:\n{}", stdoutBuffer);
 
-                StringBuffer stderrBuffer = new StringBuffer();
-                for (String line : stderr.getLines()) {
-                    if (!line.trim().isEmpty()) {
-                        stderrBuffer.append("  >> ");
-                        stderrBuffer.append(line);
-                        stderrBuffer.append("\n");
-                    }
+            StringBuffer stderrBuffer = new StringBuffer();
+            for (String line : stderr.getRetainedLines()) {
+                if (!line.trim().isEmpty()) {
+                    stderrBuffer.append("  >> ");
+                    stderrBuffer.append(line);
+                    stderrBuffer.append("\n");
                 }
-                LOG.log(LOG_LEVEL_FOR_STDOUTERR, "\n  >> stderr:\n{}", stderrBuffer);
             }
+            LOG.log(LOG_LEVEL_FOR_STDOUTERR, "\n  >> stderr:\n{}", stderrBuffer);
         }
     }
 
@@ -215,40 +241,6 @@ public final class ShellCommand implements Command {
         } catch (Exception ignore) {}
     }
 
-    private static class CopyStreamRunnable implements Runnable {
-        private final InputStream inputStream;
-        private final OutputStream outputStream;
-
-        CopyStreamRunnable(InputStream inputStream, OutputStream outputStream) {
-            this.inputStream = inputStream;
-            this.outputStream = outputStream;
-        }
-
-        @Override
-        public void run() {
-            byte[] buffer = new byte[4096];
-            int read;
-            try {
-                while ((read = inputStream.read(buffer)) > 0) {
-                    outputStream.write(buffer, 0, read);
-                }
-            } catch (Exception ex) {
-                LOG.error("Error writing command stream to the channel.", ex);
-                // we simply terminate the thread on exceptions
-            }
-        }
-    }
-
-    // Launch a thread to copy all data from inputStream to outputStream
-    private static Thread copyStream(InputStream inputStream, OutputStream outputStream) {
-        if (outputStream != null) {
-            Thread t = new Thread(new CopyStreamRunnable(inputStream, outputStream), "CopyStream");
-            t.start();
-            return t;
-        }
-        return null;
-    }
-
     /**
      * Returns the list of lines selected from the standard error stream. Lines printed to the standard error stream by
      * the executed command can be filtered to be added to that list.
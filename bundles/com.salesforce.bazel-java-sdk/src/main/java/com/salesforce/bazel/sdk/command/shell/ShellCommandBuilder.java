@@ -52,8 +52,8 @@ public class ShellCommandBuilder extends CommandBuilder {
         CommandConsole console = consoleName == null ? null : consoleFactory.get(consoleName,
             "Running " + String.join(" ", args) + " from " + directory.toString());
 
-        ShellCommand command = new ShellCommand(console, directory, args, stdoutSelector, stderrSelector, stdout,
-                stderr, progressMonitor, timeoutMS);
+        ShellCommand command = new ShellCommand(console, directory, args, stdoutSelector, stderrSelector,
+                stdoutConsumer, stdout, stderr, progressMonitor, timeoutMS);
 
         return command;
     }
@@ -55,6 +55,53 @@ public abstract class BazelDependencyGraph {
      */
     public abstract void addDependency(String sourceLabel, String depLabel);
 
+    /**
+     * Makes the dependencies labels[sourceIndexes[i]] -> labels[depIndexes[i]] for i < count, in that order. This is
+     * the same as calling {@link #addDependency(String, String)} for each of them, but graph implementations can add a
+     * large number of dependencies at once more efficiently.
+     *
+     * @param labels
+     *            the labels of the dependencies
+     * @param sourceIndexes
+     *            index in labels of the source of each dependency
+     * @param depIndexes
+     *            index in labels of the depended-on label of each dependency
+     * @param count
+     *            the number of dependencies
+     */
+    public void addDependencies(String[] labels, int[] sourceIndexes, int[] depIndexes, int count) {
+        for (int i = 0; i < count; i++) {
+            addDependency(labels[sourceIndexes[i]], labels[depIndexes[i]]);
+        }
+    }
+
+    /**
+     * Removes the dependency from source -> dep, for graphs that are kept current as the workspace changes. Nothing
+     * happens if the graph does not have the dependency.
+     *
+     * @param sourceLabel
+     *            the label for the source package (e.g. //a/b/c or //a/b/c:d)
+     * @param depLabel
+     *            the label for the depended-on package (e.g. //foo or //foo:bar)
+     * @throws UnsupportedOperationException
+     *             if the graph can only grow, which is the default
+     */
+    public void removeDependency(String sourceLabel, String depLabel) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support removing dependencies");
+    }
+
+    /**
+     * Builds an index that answers isDependency() for workspace dependencies without traversing the graph. It is
+     * opt-in, for callers that will ask isDependency() for many pairs of workspace labels of a graph that no longer
+     * changes. Call this after the graph has been filled in, the index is discarded by the next call to
+     * addDependency() or removeDependency().
+     * <p>
+     * The index only answers the isDependency() calls made with the same followExternalTransitives value (the variants
+     * without that parameter follow the external transitives). By default there is no index, and isDependency()
+     * traverses the graph.
+     */
+    public void buildReachabilityIndex(boolean followExternalTransitives) {}
+
     // LOOKUPS
 
     /**
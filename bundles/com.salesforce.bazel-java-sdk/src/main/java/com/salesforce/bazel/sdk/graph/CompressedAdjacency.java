@@ -0,0 +1,453 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.graph;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Storage of the edges of a dependency graph. A workspace graph can have 50,000+ labels and hundreds of thousands of
+ * edges, which as maps of sets of strings costs a hash node per edge (twice, for the forward and reverse maps). This
+ * class instead gives each label an int id, and stores the edges in compressed sparse row (CSR) form:
+ * <ul>
+ * <li>the deps of the label with id i are depTargets[depOffsets[i]] to depTargets[depOffsets[i + 1] - 1], sorted and
+ * without duplicates
+ * <li>the labels that use the label with id i are found the same way in usedByOffsets/usedByTargets
+ * </ul>
+ * CSR arrays can't be appended to, so added and removed edges are collected in pending lists, and merged into the
+ * arrays on the next read. Building a graph with N edges followed by reads therefore merges once, in O(N log D) time
+ * where D is the largest number of deps of a label. Labels keep their id when all of their edges are removed.
+ * <p>
+ * This class is not thread safe for writes, but concurrent reads are safe once edges have stopped being added.
+ */
+final class CompressedAdjacency {
+    static final int NO_ID = -1;
+
+    private static final int[] NO_EDGES = new int[0];
+
+    // label <-> id
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] labels = new String[64];
+    private int labelCount = 0;
+
+    // edges added since the last merge
+    private int[] pendingSources = NO_EDGES;
+    private int[] pendingDeps = NO_EDGES;
+    private int pendingCount = 0;
+
+    // edges removed since the last merge, as (source << 32 | dep), applied before the pending edges
+    private final Set<Long> pendingRemovals = new HashSet<>();
+
+    // merged edges, the offset arrays have labelCount + 1 entries after a merge
+    private int[] depOffsets = new int[] { 0 };
+    private int[] depTargets = NO_EDGES;
+    private int[] usedByOffsets = new int[] { 0 };
+    private int[] usedByTargets = NO_EDGES;
+    private volatile boolean merged = true;
+
+    // WRITES
+
+    /**
+     * Adds the edge source -> dep. Adding an edge twice has no effect.
+     */
+    void addEdge(String sourceLabel, String depLabel) {
+        int source = intern(sourceLabel);
+        int dep = intern(depLabel);
+        if (pendingCount == pendingSources.length) {
+            int capacity = Math.max(256, pendingCount * 2);
+            pendingSources = Arrays.copyOf(pendingSources, capacity);
+            pendingDeps = Arrays.copyOf(pendingDeps, capacity);
+        }
+        // an edge removed and added again before the merge is kept
+        if (!pendingRemovals.isEmpty()) {
+            pendingRemovals.remove(edgeKey(source, dep));
+        }
+        pendingSources[pendingCount] = source;
+        pendingDeps[pendingCount] = dep;
+        pendingCount++;
+        merged = false;
+    }
+
+    /**
+     * Adds the edges edgeLabels[sources[i]] -> edgeLabels[deps[i]] for i < edgeCount, and merges them into the CSR
+     * arrays. Each label is interned once, in the order of its first edge, so the ids are the same as if the edges were
+     * added one at a time with addEdge().
+     */
+    void addEdges(String[] edgeLabels, int[] sources, int[] deps, int edgeCount) {
+        int[] localIds = new int[edgeLabels.length];
+        Arrays.fill(localIds, NO_ID);
+        if (pendingCount + edgeCount > pendingSources.length) {
+            pendingSources = Arrays.copyOf(pendingSources, pendingCount + edgeCount);
+            pendingDeps = Arrays.copyOf(pendingDeps, pendingCount + edgeCount);
+        }
+        for (int i = 0; i < edgeCount; i++) {
+            int source = localIds[sources[i]];
+            if (source == NO_ID) {
+                source = localIds[sources[i]] = intern(edgeLabels[sources[i]]);
+            }
+            int dep = localIds[deps[i]];
+            if (dep == NO_ID) {
+                dep = localIds[deps[i]] = intern(edgeLabels[deps[i]]);
+            }
+            // an edge removed and added again before the merge is kept
+            if (!pendingRemovals.isEmpty()) {
+                pendingRemovals.remove(edgeKey(source, dep));
+            }
+            pendingSources[pendingCount] = source;
+            pendingDeps[pendingCount] = dep;
+            pendingCount++;
+        }
+        merged = false;
+        mergePending();
+    }
+
+    /**
+     * Removes the edge source -> dep, if it exists.
+     */
+    void removeEdge(String sourceLabel, String depLabel) {
+        int source = getId(sourceLabel);
+        int dep = getId(depLabel);
+        if ((source == NO_ID) || (dep == NO_ID)) {
+            return;
+        }
+        if (pendingCount > 0) {
+            // the removal applies to the edges added before it
+            mergePending();
+        }
+        pendingRemovals.add(edgeKey(source, dep));
+        merged = false;
+    }
+
+    // READS
+
+    int getLabelCount() {
+        return labelCount;
+    }
+
+    /**
+     * Returns the id of the label, or NO_ID if the label is not in the graph.
+     */
+    int getId(Object label) {
+        Integer id = ids.get(label);
+        return id == null ? NO_ID : id;
+    }
+
+    String getLabel(int id) {
+        return labels[id];
+    }
+
+    /**
+     * Returns the CSR offsets of the forward edges, see the class comment. The array must not be modified.
+     */
+    int[] getDepOffsets() {
+        merge();
+        return depOffsets;
+    }
+
+    /**
+     * Returns the CSR targets of the forward edges, see the class comment. The array must not be modified.
+     */
+    int[] getDepTargets() {
+        merge();
+        return depTargets;
+    }
+
+    int getDepCount(int id) {
+        merge();
+        return depOffsets[id + 1] - depOffsets[id];
+    }
+
+    int getUsedByCount(int id) {
+        merge();
+        return usedByOffsets[id + 1] - usedByOffsets[id];
+    }
+
+    boolean hasEdge(int source, int dep) {
+        merge();
+        return Arrays.binarySearch(depTargets, depOffsets[source], depOffsets[source + 1], dep) >= 0;
+    }
+
+    /**
+     * Returns a read only map view of the edges: label -> deps when forward is true, label -> labels that use it
+     * otherwise. Labels without such edges are not in the map. The view reflects edges that are added later, and
+     * iterates in label order.
+     */
+    Map<String, Set<String>> asMap(boolean forward) {
+        return new AdjacencyMap(forward);
+    }
+
+    // INTERNAL
+
+    private int intern(String label) {
+        Integer id = ids.get(label);
+        if (id == null) {
+            id = labelCount;
+            if (labelCount == labels.length) {
+                labels = Arrays.copyOf(labels, labelCount * 2);
+            }
+            labels[labelCount++] = label;
+            ids.put(label, id);
+        }
+        return id;
+    }
+
+    private void merge() {
+        if (!merged) {
+            mergePending();
+        }
+    }
+
+    /**
+     * Merges the pending edges into the CSR arrays, with a counting sort by source followed by a sort of each row.
+     */
+    private synchronized void mergePending() {
+        if (merged) {
+            return;
+        }
+        int[] offsets = new int[labelCount + 1];
+        int mergedLabelCount = depOffsets.length - 1;
+        for (int id = 0; id < mergedLabelCount; id++) {
+            for (int e = depOffsets[id]; e < depOffsets[id + 1]; e++) {
+                if (!isRemoved(id, depTargets[e])) {
+                    offsets[id + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            offsets[pendingSources[i] + 1]++;
+        }
+        for (int id = 0; id < labelCount; id++) {
+            offsets[id + 1] += offsets[id];
+        }
+        int[] targets = new int[offsets[labelCount]];
+        int[] next = Arrays.copyOf(offsets, labelCount);
+        for (int id = 0; id < mergedLabelCount; id++) {
+            for (int e = depOffsets[id]; e < depOffsets[id + 1]; e++) {
+                if (!isRemoved(id, depTargets[e])) {
+                    targets[next[id]++] = depTargets[e];
+                }
+            }
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            targets[next[pendingSources[i]]++] = pendingDeps[i];
+        }
+
+        // sort each row and drop the duplicates, compacting the rows towards the start of the array
+        int write = 0;
+        for (int id = 0; id < labelCount; id++) {
+            int start = offsets[id];
+            int end = offsets[id + 1];
+            Arrays.sort(targets, start, end);
+            offsets[id] = write;
+            for (int e = start; e < end; e++) {
+                if (e == start || targets[e] != targets[e - 1]) {
+                    targets[write++] = targets[e];
+                }
+            }
+        }
+        offsets[labelCount] = write;
+        if (write < targets.length) {
+            targets = Arrays.copyOf(targets, write);
+        }
+
+        // the reverse edges, iterating the sources in id order keeps each row sorted
+        int[] reverseOffsets = new int[labelCount + 1];
+        for (int target : targets) {
+            reverseOffsets[target + 1]++;
+        }
+        for (int id = 0; id < labelCount; id++) {
+            reverseOffsets[id + 1] += reverseOffsets[id];
+        }
+        int[] reverseTargets = new int[targets.length];
+        next = Arrays.copyOf(reverseOffsets, labelCount);
+        for (int id = 0; id < labelCount; id++) {
+            for (int e = offsets[id]; e < offsets[id + 1]; e++) {
+                reverseTargets[next[targets[e]]++] = id;
+            }
+        }
+
+        depOffsets = offsets;
+        depTargets = targets;
+        usedByOffsets = reverseOffsets;
+        usedByTargets = reverseTargets;
+        pendingSources = NO_EDGES;
+        pendingDeps = NO_EDGES;
+        pendingCount = 0;
+        pendingRemovals.clear();
+        merged = true;
+    }
+
+    private boolean isRemoved(int source, int dep) {
+        return !pendingRemovals.isEmpty() && pendingRemovals.contains(edgeKey(source, dep));
+    }
+
+    private static long edgeKey(int source, int dep) {
+        return ((long) source << 32) | dep;
+    }
+
+    /**
+     * Read only view of one direction of the edges, keyed by label.
+     */
+    private final class AdjacencyMap extends AbstractMap<String, Set<String>> {
+        private final boolean forward;
+
+        AdjacencyMap(boolean forward) {
+            this.forward = forward;
+        }
+
+        private int getCount(int id) {
+            return forward ? getDepCount(id) : getUsedByCount(id);
+        }
+
+        @Override
+        public Set<String> get(Object key) {
+            int id = getId(key);
+            if (id == NO_ID || getCount(id) == 0) {
+                return null;
+            }
+            return new Row(forward, id);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            int id = getId(key);
+            return id != NO_ID && getCount(id) > 0;
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (int id = 0; id < labelCount; id++) {
+                if (getCount(id) > 0) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public Set<Map.Entry<String, Set<String>>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Set<String>>>() {
+                @Override
+                public Iterator<Map.Entry<String, Set<String>>> iterator() {
+                    // snapshot of the labels that have edges, in label order
+                    int[] keys = new int[AdjacencyMap.this.size()];
+                    int keyCount = 0;
+                    for (int id = 0; id < labelCount; id++) {
+                        if (getCount(id) > 0) {
+                            keys[keyCount++] = id;
+                        }
+                    }
+                    Integer[] sortedKeys = new Integer[keyCount];
+                    for (int i = 0; i < keyCount; i++) {
+                        sortedKeys[i] = keys[i];
+                    }
+                    Arrays.sort(sortedKeys, (a, b) -> labels[a].compareTo(labels[b]));
+
+                    return new Iterator<Map.Entry<String, Set<String>>>() {
+                        private int index = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < sortedKeys.length;
+                        }
+
+                        @Override
+                        public Map.Entry<String, Set<String>> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int id = sortedKeys[index++];
+                            return new AbstractMap.SimpleImmutableEntry<>(labels[id], new Row(forward, id));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return AdjacencyMap.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Read only view of the deps (or users) of one label.
+     */
+    private final class Row extends AbstractSet<String> {
+        private final boolean forward;
+        private final int id;
+
+        Row(boolean forward, int id) {
+            this.forward = forward;
+            this.id = id;
+        }
+
+        @Override
+        public int size() {
+            return forward ? getDepCount(id) : getUsedByCount(id);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            int other = getId(o);
+            if (other == NO_ID) {
+                return false;
+            }
+            return forward ? hasEdge(id, other) : hasEdge(other, id);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            merge();
+            int[] offsets = forward ? depOffsets : usedByOffsets;
+            int[] targets = forward ? depTargets : usedByTargets;
+            int start = offsets[id];
+            int end = offsets[id + 1];
+            return new Iterator<String>() {
+                private int e = start;
+
+                @Override
+                public boolean hasNext() {
+                    return e < end;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return labels[targets[e++]];
+                }
+            };
+        }
+    }
+}
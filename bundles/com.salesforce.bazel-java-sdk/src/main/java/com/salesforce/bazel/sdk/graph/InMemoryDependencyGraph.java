@@ -33,14 +33,13 @@
  */
 package com.salesforce.bazel.sdk.graph;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 
 import com.salesforce.bazel.sdk.logging.LogHelper;
 import com.salesforce.bazel.sdk.model.BazelLabel;
@@ -57,6 +56,10 @@ import com.salesforce.bazel.sdk.model.BazelPackageLocation;
  * <li>starting with all the root nodes
  * <li>starting with all the leaf nodes
  * <li>random access lookup of graph information with the package label
+ * </ul>
+ * <p>
+ * The edges are stored by int label ids in compressed arrays (see CompressedAdjacency), which keeps graphs of 50,000+
+ * labels compact. The maps and label sets returned by the accessors are read only views of those arrays.
  * <p>
  * Terminology:
  * <p>
@@ -77,29 +80,30 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
 
     private static final LogHelper LOG = LogHelper.log(InMemoryDependencyGraph.class);
 
-    // lookup maps
+    // main journal, the edges keyed by int label ids
+
+    final CompressedAdjacency adjacency = new CompressedAdjacency();
+
+    // lookup views, computed on first use and discarded by addDependency()/removeDependency()
+
+    // DEPENDS ON map in which the key is a label, and the value is the set of dependencies
+    final Map<String, Set<String>> dependsOnMap = adjacency.asMap(true);
+    // USED BY map in which the key is a label, and the value is the set of label that depend on the label
+    final Map<String, Set<String>> usedByMap = adjacency.asMap(false);
 
     // ROOT list of all labels that do not appear on the right side of any dependency relationship
-    Set<String> rootLabels = new LinkedHashSet<>();
+    Set<String> rootLabels;
 
     // LEAF list of all labels that do not appear on the left side of any dependency relationship
-    Set<String> leafLabels = new LinkedHashSet<>();
+    Set<String> leafLabels;
 
     // LEAF IGNORES EXTERNALS list of all labels that do not appear on the left side of any dependency relationship,
     //   not considering any dependencies that refer to an external dep (e.g. @maven//:com_salesforce_foo)
-    Set<String> leafLabelsIgnoreExternals = new LinkedHashSet<>();
-
-    // SOURCES all labels that appear on the left side of a dependency relationship
-    Set<String> allSourceLabels = new HashSet<>();
-    // DEPS all labels that appear on the right side of a dependency relationship
-    Set<String> allDepLabels = new HashSet<>();
-
-    // main journals
+    Set<String> leafLabelsIgnoreExternals;
 
-    // DEPENDS ON map in which the key is a label, and the value is the set of dependencies
-    Map<String, Set<String>> dependsOnMap = new TreeMap<>();
-    // USED BY map in which the key is a label, and the value is the set of label that depend on the label
-    Map<String, Set<String>> usedByMap = new TreeMap<>();
+    // REACHABILITY optional indexes that answer isDependency() without a traversal, discarded by graph changes
+    DependencyReachabilityIndex reachabilityIndex;
+    DependencyReachabilityIndex reachabilityIndexIgnoreExternalTransitives;
 
     /**
      * Callers should use the factories to construct the graph.
@@ -120,55 +124,72 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
      */
     @Override
     public void addDependency(String sourceLabel, String depLabel) {
-        allDepLabels.add(depLabel);
-        allSourceLabels.add(sourceLabel);
-        boolean isDepAnExternal = depLabel.startsWith(BazelLabel.BAZEL_EXTERNALREPO_AT);
         LOG.debug("{} depends on {}", sourceLabel, depLabel);
+        adjacency.addEdge(sourceLabel, depLabel);
+        discardComputedState();
+    }
 
-        // remove dep as a candidate root
-        rootLabels.remove(depLabel);
-        // remove source as a candidate leaf
-        leafLabels.remove(sourceLabel);
-        // but be aware we sometimes what leaves without regard to external deps (e.g. maven downloaded deps)
-        if (!isDepAnExternal) {
-            // only if the dep is a local target, then we also remove the sourceLabel from second set
-            leafLabelsIgnoreExternals.remove(sourceLabel);
-        }
-        // if the source label is not (yet) a dep anywhere, add it to the root label list
-        if (!allDepLabels.contains(sourceLabel)) {
-            rootLabels.add(sourceLabel);
-        }
+    /**
+     * Makes the dependencies labels[sourceIndexes[i]] -> labels[depIndexes[i]] for i < count. The edges are added to
+     * the compressed arrays in one pass, which is much faster than calling addDependency() for each of them.
+     */
+    @Override
+    public void addDependencies(String[] labels, int[] sourceIndexes, int[] depIndexes, int count) {
+        LOG.debug("Adding {} dependencies between {} labels", count, labels.length);
+        adjacency.addEdges(labels, sourceIndexes, depIndexes, count);
+        discardComputedState();
+    }
 
-        // if the dest label is not (yet) a source anywhere, add it to the leaf label lists
-        if (!allSourceLabels.contains(depLabel)) {
-            leafLabels.add(depLabel);
-            if (!isDepAnExternal) {
-                // but only add to this list if the dep is not an external dep
-                leafLabelsIgnoreExternals.add(depLabel);
-            }
-        }
+    /**
+     * Removes the dependency from source -> dep, for graphs that are kept current as the workspace changes. Nothing
+     * happens if the graph does not have the dependency.
+     *
+     * @param sourceLabel
+     *            the label for the source package (e.g. //a/b/c or //a/b/c:d)
+     * @param depLabel
+     *            the label for the depended-on package (e.g. //foo or //foo:bar)
+     */
+    @Override
+    public void removeDependency(String sourceLabel, String depLabel) {
+        LOG.debug("{} no longer depends on {}", sourceLabel, depLabel);
+        adjacency.removeEdge(sourceLabel, depLabel);
+        discardComputedState();
+    }
 
-        Set<String> sourceDeps = dependsOnMap.get(sourceLabel);
-        if (sourceDeps == null) {
-            sourceDeps = new HashSet<>();
-            dependsOnMap.put(sourceLabel, sourceDeps);
-        }
-        sourceDeps.add(depLabel);
+    private void discardComputedState() {
+        rootLabels = null;
+        leafLabels = null;
+        leafLabelsIgnoreExternals = null;
+        reachabilityIndex = null;
+        reachabilityIndexIgnoreExternalTransitives = null;
+    }
 
-        Set<String> usedbySources = usedByMap.get(depLabel);
-        if (usedbySources == null) {
-            usedbySources = new HashSet<>();
-            usedByMap.put(depLabel, usedbySources);
+    /**
+     * Builds an index that answers isDependency() for workspace dependencies without traversing the graph. The index is
+     * opt-in: it pays off for a caller that asks isDependency() for many pairs of workspace labels of a graph that no
+     * longer changes (e.g. a tool that checks the selected packages of an import against each other), and it replaces
+     * the depCache memo such callers would otherwise build. Call this after the graph has been filled in, the index is
+     * discarded by the next call to addDependency() or removeDependency(). Dependencies on external labels are still
+     * found by traversing the graph. See DependencyReachabilityIndex for the memory cost.
+     * <p>
+     * The index only answers the isDependency() calls made with the same followExternalTransitives value (the variants
+     * without that parameter follow the external transitives).
+     */
+    @Override
+    public void buildReachabilityIndex(boolean followExternalTransitives) {
+        DependencyReachabilityIndex index = new DependencyReachabilityIndex(adjacency, followExternalTransitives);
+        if (followExternalTransitives) {
+            reachabilityIndex = index;
+        } else {
+            reachabilityIndexIgnoreExternalTransitives = index;
         }
-        usedbySources.add(sourceLabel);
-
     }
 
     // ACCESSORS
 
     /**
      * Provides a map for tracking forward deps. The key is the label as a string, and the value is the set of
-     * dependencies (as labels) for the source.
+     * dependencies (as labels) for the source. The map is a read only view of the graph.
      */
     @Override
     public Map<String, Set<String>> getDependsOnMap() {
@@ -177,7 +198,7 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
 
     /**
      * Provides a map for tracking reverse deps. The key is the label as a string, and the value is the set of sources
-     * (as labels) that depend on the label.
+     * (as labels) that depend on the label. The map is a read only view of the graph.
      */
     @Override
     public Map<String, Set<String>> getUsedByMap() {
@@ -190,7 +211,18 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
      */
     @Override
     public Set<String> getRootLabels() {
-        return rootLabels;
+        Set<String> labels = rootLabels;
+        if (labels == null) {
+            labels = new LinkedHashSet<>();
+            for (int id = 0; id < adjacency.getLabelCount(); id++) {
+                if (adjacency.getUsedByCount(id) == 0 && adjacency.getDepCount(id) > 0) {
+                    labels.add(adjacency.getLabel(id));
+                }
+            }
+            labels = Collections.unmodifiableSet(labels);
+            rootLabels = labels;
+        }
+        return labels;
     }
 
     /**
@@ -200,7 +232,18 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
      */
     @Override
     public Set<String> getLeafLabels() {
-        return leafLabels;
+        Set<String> labels = leafLabels;
+        if (labels == null) {
+            labels = new LinkedHashSet<>();
+            for (int id = 0; id < adjacency.getLabelCount(); id++) {
+                if (adjacency.getDepCount(id) == 0 && adjacency.getUsedByCount(id) > 0) {
+                    labels.add(adjacency.getLabel(id));
+                }
+            }
+            labels = Collections.unmodifiableSet(labels);
+            leafLabels = labels;
+        }
+        return labels;
     }
 
     /**
@@ -213,10 +256,31 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
      */
     @Override
     public Set<String> getLeafLabels(boolean ignoreExternals) {
-        if (ignoreExternals) {
-            return leafLabelsIgnoreExternals;
+        if (!ignoreExternals) {
+            return getLeafLabels();
+        }
+        Set<String> labels = leafLabelsIgnoreExternals;
+        if (labels == null) {
+            labels = new LinkedHashSet<>();
+            int[] depOffsets = adjacency.getDepOffsets();
+            int[] depTargets = adjacency.getDepTargets();
+            for (int id = 0; id < adjacency.getLabelCount(); id++) {
+                String label = adjacency.getLabel(id);
+                if (adjacency.getUsedByCount(id) == 0 || isExternal(label)) {
+                    continue;
+                }
+                boolean hasLocalDep = false;
+                for (int e = depOffsets[id]; e < depOffsets[id + 1] && !hasLocalDep; e++) {
+                    hasLocalDep = !isExternal(adjacency.getLabel(depTargets[e]));
+                }
+                if (!hasLocalDep) {
+                    labels.add(label);
+                }
+            }
+            labels = Collections.unmodifiableSet(labels);
+            leafLabelsIgnoreExternals = labels;
         }
-        return leafLabels;
+        return labels;
     }
 
     // ANALYSIS
@@ -254,59 +318,20 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
      * Since this method is mostly used to order packages within the active Bazel workspace, you most often will not
      * want to navigate into the dependency graph of the external dependencies (e.g. maven) while building the
      * dependency graph. Pass false to followExternalTransitives to trigger this performance optimization.
+     * <p>
+     * Packages that reference each other (see the CAVEAT on this class) can't be ordered by dependency, they are kept
+     * together in the order they were passed, and a warning is logged.
      */
     @Override
     public List<BazelPackageLocation> orderLabels(List<BazelPackageLocation> selectedLabels,
             boolean followExternalTransitives) {
-        LinkedList<BazelPackageLocation> orderedLabels = null;
-
         /*
-         * This is a simple algorithm. It is based on the idea that this method will be used in cases
-         * in which the dependency graph can be HUGE (100,000+ edges, 10,000+ nodes) and COMPLEX (lots of overlap
-         * of trees). And the user is likely working on a small subset of that graph.
-         * For example, an IDE user wants to import a handful of related packages from a monorepo in which
-         * hundreds/thousands of packages live, and most of the dependency graph is not reachable by the
-         * imported packages. It still works if the selectedLabels reach most/all of the graph, it just is
-         * not the most efficient solution in those cases.
+         * This method is used in cases in which the dependency graph can be HUGE (100,000+ edges, 10,000+ nodes) and
+         * COMPLEX (lots of overlap of trees), and the selection can be a few thousand packages (e.g. an IDE user
+         * importing most of a monorepo). The ordering therefore makes one pass over the label names, and only visits
+         * the edges that are reachable from the selected labels, see PackageOrdering.
          */
-
-        Map<String, Boolean> depCache = new HashMap<>();
-        for (int i = 0; i < selectedLabels.size(); i++) {
-            /*
-             * Why do we do the ordering more than once? There are cases in which a single pass, or even two,
-             * will not be correct. Since we cache isDep() decisions (the expensive part) multiple passes are
-             * a cheap operation, so just do it as many times as there are elements in the selected array.
-             * In all known cases the answer will be correct. But this is not guaranteed. If you find a use case
-             * where this approach is not good enough, we will need to implement a more powerful solution.
-             */
-
-            orderedLabels = new LinkedList<>();
-            for (BazelPackageLocation currentLabel : selectedLabels) {
-                int currentIndex = 0;
-                boolean inserted = false;
-                for (BazelPackageLocation priorInsertedLabel : orderedLabels) {
-                    if (isDependency(priorInsertedLabel.getBazelPackageName(), currentLabel.getBazelPackageName(),
-                        depCache, followExternalTransitives)) {
-                        // the label is a dependency of an item already in the list, we need to insert
-                        orderedLabels.add(currentIndex, currentLabel);
-                        inserted = true;
-                        break;
-                    }
-                    currentIndex++;
-                }
-                if (!inserted) {
-                    // none of the previously seen labels depends on the current label, so just add it to the end
-                    orderedLabels.add(currentLabel);
-                }
-            }
-            selectedLabels = orderedLabels;
-        }
-
-        // just a reminder that the cache gets cleared to free up possibly a lot of memory if the graph is huge and the
-        // ordering required traversing a lot of it
-        depCache = null;
-
-        return orderedLabels;
+        return new PackageOrdering(adjacency, followExternalTransitives).order(selectedLabels);
     }
 
     /**
@@ -319,7 +344,10 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
      */
     @Override
     public boolean isDependency(String label, String possibleDependency) {
-        boolean isDep = isDependencyRecur(label, possibleDependency, null, new HashSet<>(), true);
+        if ((reachabilityIndex != null) && reachabilityIndex.covers(possibleDependency)) {
+            return reachabilityIndex.isDependency(label, possibleDependency);
+        }
+        boolean isDep = isDependencyById(label, possibleDependency, null, true);
         return isDep;
     }
 
@@ -335,7 +363,10 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
      */
     @Override
     public boolean isDependency(String label, String possibleDependency, Map<String, Boolean> depCache) {
-        boolean isDep = isDependencyRecur(label, possibleDependency, depCache, new HashSet<>(), true);
+        if ((reachabilityIndex != null) && reachabilityIndex.covers(possibleDependency)) {
+            return reachabilityIndex.isDependency(label, possibleDependency);
+        }
+        boolean isDep = isDependencyById(label, possibleDependency, depCache, true);
         return isDep;
     }
 
@@ -356,52 +387,66 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
     @Override
     public boolean isDependency(String label, String possibleDependency, Map<String, Boolean> depCache,
             boolean followExternalTransitives) {
-        boolean isDep =
-                isDependencyRecur(label, possibleDependency, depCache, new HashSet<>(), followExternalTransitives);
+        DependencyReachabilityIndex index =
+                followExternalTransitives ? reachabilityIndex : reachabilityIndexIgnoreExternalTransitives;
+        if ((index != null) && index.covers(possibleDependency)) {
+            return index.isDependency(label, possibleDependency);
+        }
+        boolean isDep = isDependencyById(label, possibleDependency, depCache, followExternalTransitives);
         return isDep;
     }
 
-    private boolean isDependencyRecur(String label, String possibleDependency, Map<String, Boolean> depCache,
-            Set<String> processedLabels, boolean followExternalTransitives) {
-        if (!followExternalTransitives && label.startsWith(BazelLabel.BAZEL_EXTERNALREPO_AT)) {
+    private boolean isDependencyById(String label, String possibleDependency, Map<String, Boolean> depCache,
+            boolean followExternalTransitives) {
+        int labelId = adjacency.getId(label);
+        int possibleDependencyId = adjacency.getId(possibleDependency);
+        if (labelId == CompressedAdjacency.NO_ID || possibleDependencyId == CompressedAdjacency.NO_ID) {
+            // one of the labels is not in the graph
+            return false;
+        }
+        return isDependencyRecur(labelId, possibleDependencyId, depCache, new BitSet(adjacency.getLabelCount()),
+            followExternalTransitives);
+    }
+
+    private boolean isDependencyRecur(int label, int possibleDependency, Map<String, Boolean> depCache,
+            BitSet processedLabels, boolean followExternalTransitives) {
+        if (!followExternalTransitives && isExternal(adjacency.getLabel(label))) {
             return false;
         }
 
         String cacheKey = null;
         if (depCache != null) {
-            cacheKey = label + "~" + possibleDependency;
+            cacheKey = adjacency.getLabel(label) + "~" + adjacency.getLabel(possibleDependency);
             Boolean cacheValue = depCache.get(cacheKey);
             if (cacheValue != null) {
                 return cacheValue;
             }
         }
 
-        if (processedLabels.contains(label)) {
+        if (processedLabels.get(label)) {
             StringBuffer pathStr = new StringBuffer();
-            for (String entry : processedLabels) {
+            for (int entry = processedLabels.nextSetBit(0); entry >= 0; entry = processedLabels.nextSetBit(entry + 1)) {
                 if (pathStr.length() > 0) {
                     pathStr.append(" => ");
                 }
-                pathStr.append(entry);
+                pathStr.append(adjacency.getLabel(entry));
             }
-            LOG.warn("Breaking out of an infinite loop while computing dependency path for label [" + label
-                    + "] to candidate dependency [" + possibleDependency + "] with path [" + pathStr
+            LOG.warn("Breaking out of an infinite loop while computing dependency path for label ["
+                    + adjacency.getLabel(label) + "] to candidate dependency [" + adjacency.getLabel(possibleDependency)
+                    + "] with path [" + pathStr
                     + "]. This is probably not a bug, but a case where two Bazel packages reference each other. "
                     + "There is a way for that to happen that is legal in Bazel, but for this dependency graph implementation "
                     + "this is not supported. This path will not be installed in the graph, which may cause problems for other operations.");
             return dependencyResponse(false, depCache, cacheKey);
         }
-        processedLabels.add(label);
-
-        Set<String> dependencies = dependsOnMap.get(label);
-
-        if (dependencies == null) {
-            // this could be an external label, like @somejar, in which case we will not have any dep information
-            return dependencyResponse(false, depCache, cacheKey);
-        }
-
-        for (String dependency : dependencies) {
-            if (dependency.equals(possibleDependency)) {
+        processedLabels.set(label);
+
+        // an external label, like @somejar, will not have any dep information
+        int[] depOffsets = adjacency.getDepOffsets();
+        int[] depTargets = adjacency.getDepTargets();
+        for (int e = depOffsets[label]; e < depOffsets[label + 1]; e++) {
+            int dependency = depTargets[e];
+            if (dependency == possibleDependency) {
                 return dependencyResponse(true, depCache, cacheKey);
             }
             if (isDependencyRecur(dependency, possibleDependency, depCache, processedLabels,
@@ -418,4 +463,8 @@ public class InMemoryDependencyGraph extends BazelDependencyGraph {
         }
         return retval;
     }
+
+    private static boolean isExternal(String label) {
+        return label.startsWith(BazelLabel.BAZEL_EXTERNALREPO_AT);
+    }
 }
@@ -0,0 +1,279 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.model.BazelPackageLocation;
+
+/**
+ * Orders packages such that no package comes before a package it depends on, directly or through packages that are
+ * not being ordered:
+ * <ul>
+ * <li>the labels are grouped by package, which is a single pass over the label names
+ * <li>the edges of the packages that are reachable from the selected packages are condensed to package level edges
+ * (//a/b:c => //d/e:f becomes //a/b => //d/e), the edges of the rest of the graph are not visited
+ * <li>packages that reference each other (a cycle, which Bazel allows between targets of different packages) are
+ * grouped with {@link StronglyConnectedComponents}, and ordered as one
+ * <li>the resulting acyclic graph of groups is ordered with Kahn's algorithm, taking the ready group with the lowest
+ * selection index first so that packages that do not depend on each other keep the passed order
+ * </ul>
+ */
+final class PackageOrdering {
+    private static final LogHelper LOG = LogHelper.log(PackageOrdering.class);
+
+    private final CompressedAdjacency adjacency;
+    private final boolean followExternalTransitives;
+
+    /**
+     * @param adjacency
+     *            the label edges of the graph
+     * @param followExternalTransitives
+     *            if false, the dependencies of external labels (e.g. @maven//:foo) are not followed
+     */
+    PackageOrdering(CompressedAdjacency adjacency, boolean followExternalTransitives) {
+        this.adjacency = adjacency;
+        this.followExternalTransitives = followExternalTransitives;
+    }
+
+    /**
+     * Returns the passed locations, ordered such that no location comes before any location it depends on. Locations
+     * that do not depend on each other, and packages that reference each other, are kept in the passed order.
+     */
+    List<BazelPackageLocation> order(List<BazelPackageLocation> selectedLabels) {
+        int[] labelDepOffsets = adjacency.getDepOffsets();
+        int[] labelDepTargets = adjacency.getDepTargets();
+        int labelCount = labelDepOffsets.length - 1;
+
+        // the selected packages get the first ids, in the passed order, so a package id is also its selection index
+        Map<String, Integer> packageIds = new HashMap<>();
+        List<String> packages = new ArrayList<>();
+        List<List<BazelPackageLocation>> selectedByPackage = new ArrayList<>();
+        for (BazelPackageLocation location : selectedLabels) {
+            int id = getId(location.getBazelPackageName(), packageIds, packages);
+            if (id == selectedByPackage.size()) {
+                selectedByPackage.add(new ArrayList<>(1));
+            }
+            selectedByPackage.get(id).add(location);
+        }
+        int selectedCount = selectedByPackage.size();
+
+        // label id -> package id, and package id -> its labels in CSR form (see CompressedAdjacency)
+        int[] labelPackages = new int[labelCount];
+        for (int label = 0; label < labelCount; label++) {
+            labelPackages[label] = getId(toPackage(adjacency.getLabel(label)), packageIds, packages);
+        }
+        int packageCount = packages.size();
+        int[][] packageLabels = toCompressed(packageCount, labelPackages, null, labelCount);
+
+        // package level edges of the packages reachable from the selected packages, duplicates are harmless
+        IntPairs packageEdges = new IntPairs();
+        boolean[] reached = new boolean[packageCount];
+        int[] queue = new int[packageCount];
+        int queueTail = 0;
+        for (int id = 0; id < selectedCount; id++) {
+            reached[id] = true;
+            queue[queueTail++] = id;
+        }
+        for (int queueHead = 0; queueHead < queueTail; queueHead++) {
+            int id = queue[queueHead];
+            for (int l = packageLabels[0][id]; l < packageLabels[0][id + 1]; l++) {
+                int label = packageLabels[1][l];
+                if (!followExternalTransitives
+                        && adjacency.getLabel(label).startsWith(BazelLabel.BAZEL_EXTERNALREPO_AT)) {
+                    continue;
+                }
+                for (int e = labelDepOffsets[label]; e < labelDepOffsets[label + 1]; e++) {
+                    int dep = labelPackages[labelDepTargets[e]];
+                    if (dep == id) {
+                        continue;
+                    }
+                    packageEdges.add(id, dep);
+                    if (!reached[dep]) {
+                        reached[dep] = true;
+                        queue[queueTail++] = dep;
+                    }
+                }
+            }
+        }
+        int[][] packageDeps = toCompressed(packageCount, packageEdges.first, packageEdges.second, packageEdges.size);
+
+        // group the packages that reference each other
+        List<Integer> selectedPackages = new ArrayList<>(selectedCount);
+        for (int id = 0; id < selectedCount; id++) {
+            selectedPackages.add(id);
+        }
+        int[] components = new int[packageCount];
+        int componentCount = StronglyConnectedComponents.find(packageDeps[0], packageDeps[1], selectedPackages,
+                components);
+
+        // component -> its packages, the components that depend on it, and the number of components it depends on
+        IntPairs memberPairs = new IntPairs();
+        IntPairs dependentPairs = new IntPairs();
+        int[] remainingDependencies = new int[componentCount];
+        for (int q = 0; q < queueTail; q++) {
+            int id = queue[q];
+            int component = components[id];
+            memberPairs.add(component, id);
+            for (int e = packageDeps[0][id]; e < packageDeps[0][id + 1]; e++) {
+                int depComponent = components[packageDeps[1][e]];
+                if (depComponent != component) {
+                    dependentPairs.add(depComponent, component);
+                    remainingDependencies[component]++;
+                }
+            }
+        }
+        int[][] members = toCompressed(componentCount, memberPairs.first, memberPairs.second, memberPairs.size);
+        int[][] dependents = toCompressed(componentCount, dependentPairs.first, dependentPairs.second,
+                dependentPairs.size);
+
+        // the lowest selection index of the members of each component, components without selected packages go first
+        // since they only unblock others
+        int[] priorities = new int[componentCount];
+        Arrays.fill(priorities, -1);
+        for (int id = 0; id < selectedCount; id++) {
+            int component = components[id];
+            if (priorities[component] == -1) {
+                priorities[component] = id;
+            }
+        }
+
+        // Kahn's algorithm, a component is ready once all of the components it depends on have been ordered
+        PriorityQueue<Integer> ready = new PriorityQueue<>(
+                (c1, c2) -> priorities[c1] != priorities[c2] ? Integer.compare(priorities[c1], priorities[c2])
+                        : Integer.compare(c1, c2));
+        for (int c = 0; c < componentCount; c++) {
+            if (remainingDependencies[c] == 0) {
+                ready.add(c);
+            }
+        }
+        List<BazelPackageLocation> orderedLabels = new ArrayList<>(selectedLabels.size());
+        while (!ready.isEmpty()) {
+            int component = ready.poll();
+            addSelectedMembers(Arrays.copyOfRange(members[1], members[0][component], members[0][component + 1]),
+                    selectedCount, selectedByPackage, packages, orderedLabels);
+            for (int d = dependents[0][component]; d < dependents[0][component + 1]; d++) {
+                int dependent = dependents[1][d];
+                if (--remainingDependencies[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        return orderedLabels;
+    }
+
+    // INTERNAL
+
+    private void addSelectedMembers(int[] members, int selectedCount,
+            List<List<BazelPackageLocation>> selectedByPackage, List<String> packages,
+            List<BazelPackageLocation> orderedLabels) {
+        if (members.length == 1) {
+            if (members[0] < selectedCount) {
+                orderedLabels.addAll(selectedByPackage.get(members[0]));
+            }
+            return;
+        }
+
+        // packages that reference each other, there is no correct order so keep the passed one
+        Arrays.sort(members);
+        List<String> cyclicPackages = new ArrayList<>();
+        for (int i = 0; i < members.length && members[i] < selectedCount; i++) {
+            orderedLabels.addAll(selectedByPackage.get(members[i]));
+            cyclicPackages.add(packages.get(members[i]));
+        }
+        if (!cyclicPackages.isEmpty()) {
+            LOG.warn("Packages {} reference each other (with {} packages in the cycle). This is legal in Bazel when "
+                    + "targets of different packages depend on each other, but it means they can't be ordered by "
+                    + "dependency.", cyclicPackages, members.length);
+        }
+    }
+
+    private static int getId(String packageName, Map<String, Integer> packageIds, List<String> packages) {
+        Integer id = packageIds.get(packageName);
+        if (id == null) {
+            id = packages.size();
+            packageIds.put(packageName, id);
+            packages.add(packageName);
+        }
+        return id;
+    }
+
+    /**
+     * Sorts pairs (from, to) by from into CSR form: { offsets, values }. When values is null the index of the pair is
+     * used as its value.
+     */
+    private static int[][] toCompressed(int fromCount, int[] from, int[] to, int size) {
+        int[] offsets = new int[fromCount + 1];
+        for (int i = 0; i < size; i++) {
+            offsets[from[i] + 1]++;
+        }
+        for (int i = 0; i < fromCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] values = new int[size];
+        int[] next = Arrays.copyOf(offsets, fromCount);
+        for (int i = 0; i < size; i++) {
+            values[next[from[i]]++] = to == null ? i : to[i];
+        }
+        return new int[][] { offsets, values };
+    }
+
+    /**
+     * Strips the target from a label of the workspace (//a/b:c => //a/b). External labels are kept as is, they
+     * identify an external dependency (@maven//:junit_junit).
+     */
+    private static String toPackage(String label) {
+        if (label.startsWith(BazelLabel.BAZEL_EXTERNALREPO_AT)) {
+            return label;
+        }
+        int colon = label.indexOf(BazelLabel.BAZEL_COLON);
+        return colon == -1 ? label : label.substring(0, colon);
+    }
+
+    /**
+     * Growable pairs of ints, avoids boxing the edges of large graphs.
+     */
+    private static final class IntPairs {
+        int[] first = new int[16];
+        int[] second = new int[16];
+        int size;
+
+        void add(int a, int b) {
+            if (size == first.length) {
+                first = Arrays.copyOf(first, size * 2);
+                second = Arrays.copyOf(second, size * 2);
+            }
+            first[size] = a;
+            second[size] = b;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.graph;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Tarjan's strongly connected components algorithm over a graph of int node ids. Bazel allows packages to reference
+ * each other (//a/b:foo => //a/c:bar => //a/b:fooz), so the package graphs are not always acyclic. Grouping the nodes
+ * of each cycle into a component yields an acyclic graph of components.
+ * <p>
+ * Components are numbered such that a component is numbered after all of the components it depends on.
+ */
+final class StronglyConnectedComponents {
+
+    private StronglyConnectedComponents() {}
+
+    /**
+     * Finds the components of the nodes reachable from the passed start nodes. The algorithm is iterative so that deep
+     * graphs do not overflow the stack.
+     *
+     * @param offsets
+     *            the deps of node i are targets[offsets[i]] to targets[offsets[i + 1] - 1]
+     * @param targets
+     *            the ids of the nodes depended on, see {@link CompressedAdjacency}
+     * @param startNodes
+     *            the nodes to start from, pass null to visit every node
+     * @param components
+     *            filled with node id -> component number, -1 for the nodes that are not reachable from the start nodes
+     * @return the number of components
+     */
+    static int find(int[] offsets, int[] targets, Iterable<Integer> startNodes, int[] components) {
+        int size = offsets.length - 1;
+        Arrays.fill(components, -1);
+        int[] index = new int[size];
+        Arrays.fill(index, -1);
+        int[] lowLink = new int[size];
+        boolean[] onStack = new boolean[size];
+        int[] stack = new int[size];
+        int stackSize = 0;
+        int[] callStack = new int[size];
+        int[] nextEdge = new int[size];
+        int nextIndex = 0;
+        int componentCount = 0;
+
+        int nextStart = 0;
+        Iterator<Integer> starts = startNodes == null ? null : startNodes.iterator();
+        while (starts == null ? nextStart < size : starts.hasNext()) {
+            int start = starts == null ? nextStart++ : starts.next();
+            if (index[start] != -1) {
+                continue;
+            }
+            int callDepth = 0;
+            callStack[callDepth++] = start;
+            nextEdge[start] = offsets[start];
+            index[start] = lowLink[start] = nextIndex++;
+            stack[stackSize++] = start;
+            onStack[start] = true;
+
+            while (callDepth > 0) {
+                int node = callStack[callDepth - 1];
+                if (nextEdge[node] < offsets[node + 1]) {
+                    int dep = targets[nextEdge[node]++];
+                    if (index[dep] == -1) {
+                        index[dep] = lowLink[dep] = nextIndex++;
+                        stack[stackSize++] = dep;
+                        onStack[dep] = true;
+                        nextEdge[dep] = offsets[dep];
+                        callStack[callDepth++] = dep;
+                    } else if (onStack[dep]) {
+                        lowLink[node] = Math.min(lowLink[node], index[dep]);
+                    }
+                    continue;
+                }
+
+                callDepth--;
+                if (lowLink[node] == index[node]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        components[member] = componentCount;
+                    } while (member != node);
+                    componentCount++;
+                }
+                if (callDepth > 0) {
+                    int caller = callStack[callDepth - 1];
+                    lowLink[caller] = Math.min(lowLink[caller], lowLink[node]);
+                }
+            }
+        }
+        return componentCount;
+    }
+}
@@ -86,7 +86,8 @@ public class JvmClasspathAspectStrategy extends JvmClasspathStrategy {
         try {
             Map<BazelLabel, Set<AspectTargetInfo>> targetLabelToAspectTargetInfos =
                     bazelWorkspaceCmdRunner.getAspectTargetInfos(request.actualActivatedTargets, "getClasspathEntries");
-            Set<AspectTargetInfo> targetInfos = targetLabelToAspectTargetInfos.get(new BazelLabel(request.targetLabel));
+            Set<AspectTargetInfo> targetInfos =
+                    targetLabelToAspectTargetInfos.get(BazelLabel.valueOf(request.targetLabel));
 
             if (targetInfos == null) {
                 logger.warn("Failed to inspect target: " + request.targetLabel + ", skipping");
@@ -38,6 +38,8 @@ package com.salesforce.bazel.sdk.model;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -70,6 +72,25 @@ public class BazelBuildFile {
 
     private final Set<String> allTargets = new TreeSet<>();
 
+    /**
+     * Maps the String target label to the labels listed in its srcs attribute. Only populated if the BUILD file was
+     * loaded with structured query output.
+     */
+    private final Map<String, Set<String>> targetToSrcsMap = new TreeMap<>();
+
+    /**
+     * Maps the String target label to the labels listed in its deps attribute. Only populated if the BUILD file was
+     * loaded with structured query output.
+     */
+    private final Map<String, Set<String>> targetToDepsMap = new TreeMap<>();
+
+    /**
+     * Labels of the files of this package that are direct inputs of its rules (srcs, resources, data, etc), e.g.
+     * //projects/libs/foo:src/main/java/com/foo/Foo.java. Only populated if the BUILD file was loaded with structured
+     * query output.
+     */
+    private final Set<String> inputFiles = new TreeSet<>();
+
     public static boolean isBuildFile(Path candidatePath) {
         return BazelConstants.BUILD_FILE_NAMES.contains(candidatePath.getFileName().toString());
     }
@@ -110,6 +131,27 @@ public class BazelBuildFile {
 
     }
 
+    /**
+     * Adds a target along with its srcs and direct deps, as found in structured query output.
+     */
+    public void addTarget(String ruleType, String targetLabel, Collection<String> srcs, Collection<String> deps) {
+        addTarget(ruleType, targetLabel);
+        targetToSrcsMap.put(targetLabel, new TreeSet<>(srcs));
+        targetToDepsMap.put(targetLabel, new TreeSet<>(deps));
+    }
+
+    /**
+     * Records the direct inputs of a rule of this package. Inputs that are not files of this package are ignored.
+     */
+    public void addRuleInputs(Collection<String> inputLabels) {
+        String packagePrefix = label + BazelLabel.BAZEL_COLON;
+        for (String inputLabel : inputLabels) {
+            if (inputLabel.startsWith(packagePrefix) && !isBuildFile(inputLabel.substring(packagePrefix.length()))) {
+                inputFiles.add(inputLabel);
+            }
+        }
+    }
+
     public String getLabel() {
         return label;
     }
@@ -129,4 +171,36 @@ public class BazelBuildFile {
     public Set<String> getAllTargetLabels() {
         return allTargets;
     }
+
+    /**
+     * Returns the labels listed in the srcs attribute of the target, or an empty set if not known.
+     */
+    public Set<String> getSrcsForTarget(String targetLabel) {
+        Set<String> srcs = targetToSrcsMap.get(targetLabel);
+        return srcs == null ? Collections.emptySet() : srcs;
+    }
+
+    /**
+     * Returns the labels listed in the deps attribute of the target, or an empty set if not known.
+     */
+    public Set<String> getDepsForTarget(String targetLabel) {
+        Set<String> deps = targetToDepsMap.get(targetLabel);
+        return deps == null ? Collections.emptySet() : deps;
+    }
+
+    /**
+     * Returns the package relative paths of the files of this package that are inputs to its rules (e.g.
+     * src/main/java/com/foo/Foo.java). Labels of the rules of this package are not included. Generated files may be
+     * included, the caller needs to check whether the file exists.
+     */
+    public Set<String> getInputFilePaths() {
+        Set<String> paths = new TreeSet<>();
+        int prefixLength = label.length() + BazelLabel.BAZEL_COLON.length();
+        for (String inputFile : inputFiles) {
+            if (!allTargets.contains(inputFile)) {
+                paths.add(inputFile.substring(prefixLength));
+            }
+        }
+        return paths;
+    }
 }
\ No newline at end of file
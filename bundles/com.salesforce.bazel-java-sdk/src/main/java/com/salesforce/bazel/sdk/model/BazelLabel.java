@@ -39,6 +39,10 @@ import com.salesforce.bazel.sdk.path.FSPathHelper;
  * Answers to everything you've always wanted to ask a Bazel Label.
  * </p>
  * Pass this around in code instead of String primitives.
+ * <p>
+ * Prefer {@link #valueOf(String)} over the constructors in code that creates many labels. It returns the canonical
+ * instance of the label from a shared pool, which has a dense integer id (see {@link #getId()}) that can be used to
+ * index arrays and bitsets.
  */
 public class BazelLabel {
 
@@ -87,6 +91,24 @@ public class BazelLabel {
     // for @foo//a/b/c this will be foo
     private final String repositoryName;
 
+    // components computed once, the label is immutable
+    private final String packagePath;
+    private final String packageName;
+    private final String targetName;
+    private final boolean concrete;
+    private final int hash;
+
+    // dense id assigned by the label pool to the canonical instances, NO_ID otherwise
+    private final int id;
+
+    // the canonical label of the package, computed on first use
+    private BazelLabel packageLabel;
+
+    /**
+     * Id of the labels that were not obtained from {@link #valueOf(String)}.
+     */
+    public static final int NO_ID = -1;
+
     // CTORS
 
     /**
@@ -112,6 +134,28 @@ public class BazelLabel {
         }
         localLabelPart = BazelLabel.makeLabelPathRelative(labelPathStr);
         fullLabel = getFullLabelPath(repositoryName, localLabelPart);
+
+        packagePath = computePackagePath(localLabelPart);
+        packageName = computePackageName(packagePath);
+        concrete = computeConcrete(localLabelPart);
+        targetName = computeTargetName(localLabelPart, concrete, packageName);
+        hash = fullLabel.hashCode();
+        id = NO_ID;
+    }
+
+    /**
+     * Creates the canonical copy of a parsed label, see {@link BazelLabelPool}.
+     */
+    BazelLabel(BazelLabel parsed, int id) {
+        fullLabel = parsed.fullLabel;
+        localLabelPart = parsed.localLabelPart;
+        repositoryName = parsed.repositoryName;
+        packagePath = parsed.packagePath;
+        packageName = parsed.packageName;
+        targetName = parsed.targetName;
+        concrete = parsed.concrete;
+        hash = parsed.hash;
+        this.id = id;
     }
 
     /**
@@ -122,6 +166,50 @@ public class BazelLabel {
         this(sanitizePackagePath(packagePath) + BazelLabel.BAZEL_COLON + sanitizeTargetName(targetName));
     }
 
+    // INTERNING
+
+    /**
+     * Returns the canonical instance of the label. Labels that are equal are the same instance, and the string is only
+     * parsed the first time it is seen.
+     * <p>
+     * Throws an IllegalArgumentException is the label string does not parse correctly.
+     */
+    public static BazelLabel valueOf(String labelPathStr) {
+        return BazelLabelPool.DEFAULT.intern(labelPathStr);
+    }
+
+    /**
+     * Returns the canonical instance of the label for the Bazel package path and the target name. For example: "a/b/c"
+     * and "my-target-name" becomes //a/b/c:my-target-name.
+     */
+    public static BazelLabel valueOf(String packagePath, String targetName) {
+        return valueOf(sanitizePackagePath(packagePath) + BazelLabel.BAZEL_COLON + sanitizeTargetName(targetName));
+    }
+
+    /**
+     * Returns the canonical instance of this label, which is this instance if it was obtained from
+     * {@link #valueOf(String)}.
+     */
+    public BazelLabel intern() {
+        return id != NO_ID ? this : BazelLabelPool.DEFAULT.intern(this);
+    }
+
+    /**
+     * Returns the id of the canonical instance of this label. The ids are dense, starting at 0, in the order in which
+     * the labels were first interned. Labels that were created with a constructor have the id {@link #NO_ID}, see
+     * {@link #intern()}.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the canonical label with the passed id, or null if no label has the id.
+     */
+    public static BazelLabel getById(int id) {
+        return BazelLabelPool.DEFAULT.get(id);
+    }
+
     // PATH OPERATIONS
 
     /**
@@ -143,19 +231,6 @@ public class BazelLabel {
      * @return the package path of this label
      */
     public String getPackagePath() {
-        String packagePath = localLabelPart;
-        int i = packagePath.lastIndexOf(BazelLabel.BAZEL_WILDCARD_ALLPACKAGES);
-        if (i != -1) {
-            packagePath = packagePath.substring(0, i);
-            if (packagePath.endsWith(BazelLabel.BAZEL_SLASH)) {
-                packagePath = packagePath.substring(0, packagePath.length() - 1);
-            }
-        } else {
-            i = localLabelPart.lastIndexOf(BazelLabel.BAZEL_COLON);
-            if (i != -1) {
-                packagePath = packagePath.substring(0, i);
-            }
-        }
         return packagePath;
     }
 
@@ -196,7 +271,11 @@ public class BazelLabel {
      * @return the package path of this label
      */
     public BazelLabel getPackageLabel() {
-        return new BazelLabel(getPackagePath(true));
+        BazelLabel result = packageLabel;
+        if (result == null) {
+            result = packageLabel = valueOf(getPackagePath(true));
+        }
+        return result;
     }
 
     /**
@@ -208,16 +287,7 @@ public class BazelLabel {
      * @return the package name of this label
      */
     public String getPackageName() {
-        String result = getPackagePath();
-        int i = result.lastIndexOf(BazelLabel.BAZEL_SLASH);
-        if (i != -1) {
-            result = result.substring(i + 1);
-        }
-        i = result.lastIndexOf(BazelLabel.BAZEL_COLON);
-        if (i != -1) {
-            result = result.substring(0, i);
-        }
-        return result;
+        return packageName;
     }
 
     /**
@@ -229,16 +299,7 @@ public class BazelLabel {
      * @return the target name this label refers to, null if this label uses "..." syntax.
      */
     public String getTargetName() {
-        if (localLabelPart.endsWith(BazelLabel.BAZEL_WILDCARD_ALLPACKAGES)) {
-            // TODO why does * get a free pass here?
-            return null;
-        }
-        if (isDefaultTarget()) {
-            return getPackageName();
-        } else {
-            int colonIndex = localLabelPart.lastIndexOf(BazelLabel.BAZEL_COLON);
-            return localLabelPart.substring(colonIndex + 1);
-        }
+        return targetName;
     }
 
     /**
@@ -313,11 +374,7 @@ public class BazelLabel {
      * @return true if this instance points to the package default target, false otherwise
      */
     public boolean isDefaultTarget() {
-        if (!isConcrete()) {
-            return false;
-        }
-        int i = localLabelPart.lastIndexOf(BazelLabel.BAZEL_COLON);
-        return i == -1;
+        return isDefaultTarget(localLabelPart, concrete);
     }
 
     /**
@@ -327,16 +384,14 @@ public class BazelLabel {
      * @return true if this instance represents a concrete label, false otherwise
      */
     public boolean isConcrete() {
-        return !(this.localLabelPart.endsWith(BazelLabel.BAZEL_WILDCARD_ALLTARGETS)
-                || this.localLabelPart.endsWith(BazelLabel.BAZEL_WILDCARD_ALLTARGETS_STAR)
-                || this.localLabelPart.endsWith(BazelLabel.BAZEL_WILDCARD_ALLPACKAGES));
+        return concrete;
     }
 
     // MISC OPERATIONS
 
     @Override
     public int hashCode() {
-        return fullLabel.hashCode();
+        return hash;
     }
 
     @Override
@@ -346,7 +401,11 @@ public class BazelLabel {
         }
         if (other instanceof BazelLabel) {
             BazelLabel o = (BazelLabel) other;
-            return fullLabel.equals(o.fullLabel);
+            if ((id != NO_ID) && (o.id != NO_ID)) {
+                // canonical instances are only equal to themselves
+                return false;
+            }
+            return (hash == o.hash) && fullLabel.equals(o.fullLabel);
         }
         return false;
     }
@@ -399,6 +458,58 @@ public class BazelLabel {
 
     // PRIVATE STATIC HELPERS
 
+    private static String computePackagePath(String localLabelPart) {
+        String packagePath = localLabelPart;
+        int i = packagePath.lastIndexOf(BazelLabel.BAZEL_WILDCARD_ALLPACKAGES);
+        if (i != -1) {
+            packagePath = packagePath.substring(0, i);
+            if (packagePath.endsWith(BazelLabel.BAZEL_SLASH)) {
+                packagePath = packagePath.substring(0, packagePath.length() - 1);
+            }
+        } else {
+            i = localLabelPart.lastIndexOf(BazelLabel.BAZEL_COLON);
+            if (i != -1) {
+                packagePath = packagePath.substring(0, i);
+            }
+        }
+        return packagePath;
+    }
+
+    private static String computePackageName(String packagePath) {
+        String result = packagePath;
+        int i = result.lastIndexOf(BazelLabel.BAZEL_SLASH);
+        if (i != -1) {
+            result = result.substring(i + 1);
+        }
+        i = result.lastIndexOf(BazelLabel.BAZEL_COLON);
+        if (i != -1) {
+            result = result.substring(0, i);
+        }
+        return result;
+    }
+
+    private static boolean computeConcrete(String localLabelPart) {
+        return !(localLabelPart.endsWith(BazelLabel.BAZEL_WILDCARD_ALLTARGETS)
+                || localLabelPart.endsWith(BazelLabel.BAZEL_WILDCARD_ALLTARGETS_STAR)
+                || localLabelPart.endsWith(BazelLabel.BAZEL_WILDCARD_ALLPACKAGES));
+    }
+
+    private static boolean isDefaultTarget(String localLabelPart, boolean concrete) {
+        return concrete && (localLabelPart.lastIndexOf(BazelLabel.BAZEL_COLON) == -1);
+    }
+
+    private static String computeTargetName(String localLabelPart, boolean concrete, String packageName) {
+        if (localLabelPart.endsWith(BazelLabel.BAZEL_WILDCARD_ALLPACKAGES)) {
+            // TODO why does * get a free pass here?
+            return null;
+        }
+        if (isDefaultTarget(localLabelPart, concrete)) {
+            return packageName;
+        }
+        int colonIndex = localLabelPart.lastIndexOf(BazelLabel.BAZEL_COLON);
+        return localLabelPart.substring(colonIndex + 1);
+    }
+
     /**
      * Converts the label path to the relative label path.
      * <p>
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool of the canonical {@link BazelLabel} instances, see {@link BazelLabel#valueOf(String)}.
+ * <p>
+ * Lookups of known label strings are lock free. The pool is never cleared: the labels of a workspace are a bounded
+ * set, and the ids handed out must stay valid for the lifetime of the data structures that use them.
+ */
+final class BazelLabelPool {
+
+    static final BazelLabelPool DEFAULT = new BazelLabelPool();
+
+    // label strings, as passed by the callers, to the canonical labels
+    private final Map<String, BazelLabel> byLabelString = new ConcurrentHashMap<>();
+
+    // full label paths to the canonical labels, guarded by this
+    private final Map<String, BazelLabel> byFullLabel = new HashMap<>();
+
+    // canonical labels by id, the array is replaced when it grows
+    private volatile BazelLabel[] byId = new BazelLabel[1024];
+    private int size; // guarded by this
+
+    BazelLabelPool() {}
+
+    BazelLabel intern(String labelPathStr) {
+        if (labelPathStr == null) {
+            // the map does not support null keys, let the parser produce the usual error
+            return new BazelLabel(labelPathStr);
+        }
+        BazelLabel label = byLabelString.get(labelPathStr);
+        if (label == null) {
+            label = intern(new BazelLabel(labelPathStr));
+            byLabelString.putIfAbsent(labelPathStr, label);
+        }
+        return label;
+    }
+
+    synchronized BazelLabel intern(BazelLabel parsed) {
+        BazelLabel canonical = byFullLabel.get(parsed.getLabelPath());
+        if (canonical == null) {
+            BazelLabel[] labels = byId;
+            if (size == labels.length) {
+                labels = Arrays.copyOf(labels, size * 2);
+            }
+            canonical = new BazelLabel(parsed, size);
+            labels[size++] = canonical;
+            byId = labels;
+            byFullLabel.put(canonical.getLabelPath(), canonical);
+            byLabelString.putIfAbsent(canonical.getLabelPath(), canonical);
+        }
+        return canonical;
+    }
+
+    BazelLabel get(int id) {
+        BazelLabel[] labels = byId;
+        return (id >= 0) && (id < labels.length) ? labels[id] : null;
+    }
+}
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandOptions;
 import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
@@ -168,14 +169,31 @@ public class BazelWorkspace {
 
     public List<String> getTargetsForBazelQuery(String query) {
         List<String> results = new ArrayList<String>();
-        for (String line : metadataStrategy.computeBazelQuery(query)) {
+        List<String> lines = metadataStrategy.computeBazelQuery(query);
+        if (lines != null) {
+            for (String line : lines) {
+                if (line.startsWith(BazelLabel.BAZEL_ROOT_SLASHES)) {
+                    // the trim() is essential here, on Windows, otherwise we end up with a trailing
+                    // /r character which is a carriage return
+                    results.add(line.trim());
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs the query and passes each resulting target to the consumer as it is produced, so that large results can be
+     * processed without collecting them first.
+     */
+    public void getTargetsForBazelQuery(String query, Consumer<String> targetConsumer) {
+        metadataStrategy.computeBazelQuery(query, line -> {
             if (line.startsWith(BazelLabel.BAZEL_ROOT_SLASHES)) {
                 // the trim() is essential here, on Windows, otherwise we end up with a trailing
                 // /r character which is a carriage return
-                results.add(line.trim());
+                targetConsumer.accept(line.trim());
             }
-        }
-        return results;
+        });
     }
 
     public File getBazelBinDirectory() {
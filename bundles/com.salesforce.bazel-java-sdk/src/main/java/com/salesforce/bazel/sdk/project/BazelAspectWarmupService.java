@@ -0,0 +1,380 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.project;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.salesforce.bazel.sdk.aspect.AspectTargetInfos;
+import com.salesforce.bazel.sdk.aspect.IncrementalAspectDependencyGraph;
+import com.salesforce.bazel.sdk.command.BazelCommandLineToolConfigurationException;
+import com.salesforce.bazel.sdk.command.BazelCommandScheduler;
+import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
+import com.salesforce.bazel.sdk.command.internal.BazelWorkspaceAspectProcessor;
+import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.model.BazelPackageLocation;
+import com.salesforce.bazel.sdk.util.WorkProgressMonitor;
+import com.salesforce.bazel.sdk.workspace.ProjectOrderResolver;
+
+/**
+ * Computes the aspect data of the imported projects in the background, so that the first classpath computation of a
+ * project (e.g. when an editor is opened) is served from the aspect cache instead of waiting for a Bazel build.
+ * <p>
+ * The projects are warmed up in dependency order (upstream projects first), as computed by the
+ * {@link ProjectOrderResolver} from the aspect data that is already cached. The tool raises the priority of projects
+ * that the user is working with, see {@link #prioritize(String, int)}.
+ * <p>
+ * The service does not own a thread, the tool calls {@link #run(WorkProgressMonitor)} from a background job of its
+ * own. The warm-up yields to other requests scheduled on the workspace (e.g. builds started by the user), and stops
+ * when canceled. The tool calls {@link #dispose()} when it replaces the service (e.g. the workspace changed).
+ */
+public class BazelAspectWarmupService {
+    private static final LogHelper LOG = LogHelper.log(BazelAspectWarmupService.class);
+
+    // PRIORITIES, higher priorities are warmed up first
+
+    public static final int PRIORITY_DEPENDENCY_ORDER = 0;
+    public static final int PRIORITY_RECENTLY_BUILT = 1;
+    public static final int PRIORITY_OPEN_EDITOR = 2;
+
+    /**
+     * Number of projects computed by a single aspect build. Small batches let requests of the user run sooner.
+     */
+    public static int WARMUP_BATCH_SIZE = 4;
+
+    /**
+     * How long the warm-up waits before it checks again whether the workspace is busy with other requests.
+     */
+    public static long YIELD_WAIT_MS = 250;
+
+    /**
+     * Minimum number of batches between two orderings of the pending projects, since each aspect build reveals
+     * dependencies and ordering is linear in the size of the known graph. A change seen before the first batch is
+     * applied right away.
+     */
+    public static int REORDER_INTERVAL_BATCHES = 8;
+
+    private final BazelProjectManager projectManager;
+    private final BazelWorkspaceCommandRunner commandRunner;
+    private final ProjectOrderResolver orderResolver;
+    private final IncrementalAspectDependencyGraph.Listener dependencyGraphListener = changedLabels -> {
+        orderStale = true;
+    };
+
+    /**
+     * project name -> pending warm-up of the project
+     */
+    private final Map<String, PendingProject> pendingProjects = new HashMap<>();
+    private int nextOrder = 0;
+    private volatile boolean canceled = false;
+    // set when the dependency graph changed after the pending projects were ordered
+    private volatile boolean orderStale = false;
+
+    // stats, useful for logging and tests
+    private int numberWarmedUp = 0;
+
+    private static class PendingProject {
+        final BazelProject project;
+        final int order;
+        int priority;
+
+        PendingProject(BazelProject project, int order, int priority) {
+            this.project = project;
+            this.order = order;
+            this.priority = priority;
+        }
+
+        boolean isBefore(PendingProject other) {
+            if (priority != other.priority) {
+                return priority > other.priority;
+            }
+            return order < other.order;
+        }
+    }
+
+    public BazelAspectWarmupService(BazelProjectManager projectManager, BazelWorkspaceCommandRunner commandRunner,
+            ProjectOrderResolver orderResolver) {
+        this.projectManager = projectManager;
+        this.commandRunner = commandRunner;
+        this.orderResolver = orderResolver;
+
+        // the aspect builds of the warm-up reveal dependencies, the projects still pending are ordered again
+        commandRunner.getBazelWorkspaceAspectHelper().getDependencyGraph().addListener(dependencyGraphListener);
+    }
+
+    /**
+     * Adds the projects to the warm-up, in dependency order. Projects that are already pending keep their position.
+     */
+    public void enqueue(Collection<BazelProject> projects) {
+        orderStale = false;
+        List<BazelProject> orderedProjects = computeProjectOrder(projects);
+        synchronized (this) {
+            canceled = false;
+            for (BazelProject project : orderedProjects) {
+                if (!pendingProjects.containsKey(project.name)) {
+                    pendingProjects.put(project.name,
+                        new PendingProject(project, nextOrder++, PRIORITY_DEPENDENCY_ORDER));
+                }
+            }
+        }
+    }
+
+    /**
+     * Raises the priority of the project, and adds it to the warm-up if it is not pending (e.g. its aspect data was
+     * flushed since it was warmed up). The priority of a pending project is never lowered.
+     *
+     * @return false if the project is not known by the project manager
+     */
+    public synchronized boolean prioritize(String projectName, int priority) {
+        PendingProject pending = pendingProjects.get(projectName);
+        if (pending == null) {
+            BazelProject project = projectManager.getProject(projectName);
+            if (project == null) {
+                return false;
+            }
+            pendingProjects.put(projectName, new PendingProject(project, nextOrder++, priority));
+        } else if (priority > pending.priority) {
+            pending.priority = priority;
+        }
+        canceled = false;
+        return true;
+    }
+
+    /**
+     * Stops the warm-up after the aspect build that is running, if any. The pending projects stay pending, a later call
+     * to {@link #run(WorkProgressMonitor)} resumes the warm-up.
+     */
+    public void cancel() {
+        canceled = true;
+    }
+
+    /**
+     * Stops the warm-up and drops the pending projects, and stops listening to the dependency graph of the workspace.
+     * The service must not be used afterwards.
+     */
+    public void dispose() {
+        cancel();
+        commandRunner.getBazelWorkspaceAspectHelper().getDependencyGraph().removeListener(dependencyGraphListener);
+        synchronized (this) {
+            pendingProjects.clear();
+        }
+    }
+
+    /**
+     * Returns the number of projects waiting to be warmed up.
+     */
+    public synchronized int getPendingCount() {
+        return pendingProjects.size();
+    }
+
+    /**
+     * Returns the number of projects whose aspect data was computed by the warm-up.
+     */
+    public synchronized int getNumberWarmedUp() {
+        return numberWarmedUp;
+    }
+
+    /**
+     * Warms up the pending projects, highest priority first, until none is left or the warm-up is canceled. This runs
+     * the aspect builds on the calling thread.
+     *
+     * @return the number of projects whose aspect data was computed
+     */
+    public int run(WorkProgressMonitor progressMonitor) throws InterruptedException {
+        int warmedUp = 0;
+        int batchesSinceReorder = REORDER_INTERVAL_BATCHES;
+        while (!isCanceled(progressMonitor)) {
+            if (!yieldToPendingRequests(progressMonitor)) {
+                break;
+            }
+            if (orderStale && (batchesSinceReorder >= REORDER_INTERVAL_BATCHES)) {
+                reorderPendingProjects();
+                batchesSinceReorder = 0;
+            }
+            batchesSinceReorder++;
+            List<BazelProject> batch = nextBatch();
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            Map<BazelLabel, BazelProject> labels = getTargetLabels(batch);
+            BazelWorkspaceAspectProcessor aspectProcessor = commandRunner.getBazelWorkspaceAspectHelper();
+            if (labels.isEmpty() || (aspectProcessor.getCachedAspectTargetInfos(labels.keySet()) != null)) {
+                continue;
+            }
+            progressMonitor.subTask("Computing Bazel aspects for " + batch.size() + " projects");
+            try {
+                // scheduled like any other request, so that it never runs concurrently with a build of the user
+                BazelCommandScheduler.await(commandRunner.getAspectTargetInfosAsync(labels.keySet(), "warmup"));
+                warmedUp += batch.size();
+                synchronized (this) {
+                    numberWarmedUp += batch.size();
+                }
+            } catch (IOException | RuntimeException anyE) {
+                // the projects are computed on demand instead
+                LOG.warn("Could not warm up the aspect data of {}: {}", labels.values().stream()
+                        .map(project -> project.name).distinct().collect(Collectors.toList()), anyE.getMessage());
+            } catch (BazelCommandLineToolConfigurationException configE) {
+                LOG.warn("Aspect warm-up stopped, Bazel is not configured correctly: {}", configE.getMessage());
+                break;
+            }
+            progressMonitor.worked(batch.size());
+        }
+        return warmedUp;
+    }
+
+    // INTERNAL
+
+    private boolean isCanceled(WorkProgressMonitor progressMonitor) {
+        return canceled || progressMonitor.isCanceled();
+    }
+
+    /**
+     * Waits while other requests are queued or running on the workspace, so that the warm-up never delays them by more
+     * than one batch. Returns false if the warm-up was canceled while waiting.
+     */
+    private boolean yieldToPendingRequests(WorkProgressMonitor progressMonitor) throws InterruptedException {
+        while (commandRunner.getBazelCommandScheduler().getPendingCount() > 0) {
+            if (isCanceled(progressMonitor)) {
+                return false;
+            }
+            Thread.sleep(YIELD_WAIT_MS);
+        }
+        return !isCanceled(progressMonitor);
+    }
+
+    /**
+     * Orders the pending projects again after the dependency graph changed. Priorities are kept, only the dependency
+     * order within a priority changes.
+     */
+    private void reorderPendingProjects() {
+        orderStale = false;
+        List<PendingProject> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(pendingProjects.values());
+        }
+        if (pending.size() < 2) {
+            return;
+        }
+        pending.sort((a, b) -> Integer.compare(a.order, b.order));
+        List<BazelProject> projects = pending.stream().map(p -> p.project).collect(Collectors.toList());
+        List<BazelProject> orderedProjects = computeProjectOrder(projects);
+        synchronized (this) {
+            for (BazelProject project : orderedProjects) {
+                PendingProject previous = pendingProjects.get(project.name);
+                if (previous != null) {
+                    pendingProjects.put(project.name, new PendingProject(project, nextOrder++, previous.priority));
+                }
+            }
+        }
+    }
+
+    private synchronized List<BazelProject> nextBatch() {
+        List<PendingProject> batch = new ArrayList<>(WARMUP_BATCH_SIZE);
+        while ((batch.size() < WARMUP_BATCH_SIZE) && (batch.size() < pendingProjects.size())) {
+            PendingProject next = null;
+            for (PendingProject pending : pendingProjects.values()) {
+                if (!batch.contains(pending) && ((next == null) || pending.isBefore(next))) {
+                    next = pending;
+                }
+            }
+            batch.add(next);
+        }
+        List<BazelProject> projects = new ArrayList<>(batch.size());
+        for (PendingProject pending : batch) {
+            pendingProjects.remove(pending.project.name);
+            projects.add(pending.project);
+        }
+        return projects;
+    }
+
+    private Map<BazelLabel, BazelProject> getTargetLabels(Collection<BazelProject> projects) {
+        Map<BazelLabel, BazelProject> labels = new HashMap<>();
+        for (BazelProject project : projects) {
+            BazelProjectTargets targets = projectManager.getConfiguredBazelTargets(project, true);
+            if (targets == null) {
+                continue;
+            }
+            for (String target : targets.getConfiguredTargets()) {
+                labels.put(BazelLabel.valueOf(target), project);
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Orders the projects such that no project comes before the projects it depends on. Only the dependencies known
+     * from the cached aspect data are considered, otherwise the passed order is kept. The aspect processor applies all
+     * cached aspect data to its dependency graph, so the graph is queried directly.
+     */
+    private List<BazelProject> computeProjectOrder(Collection<BazelProject> projects) {
+        File workspaceRoot = commandRunner.getBazelWorkspaceRootDirectory();
+        BazelWorkspaceAspectProcessor aspectProcessor = commandRunner.getBazelWorkspaceAspectHelper();
+        IncrementalAspectDependencyGraph dependencyGraph = aspectProcessor.getDependencyGraph();
+        if (dependencyGraph.query(graph -> graph.getDependsOnMap().isEmpty())) {
+            // cold start, the aspect data of the projects is not cached yet
+            LOG.info("No dependencies are known yet, warming up {} projects in the passed order.", projects.size());
+            return new ArrayList<>(projects);
+        }
+
+        Map<String, BazelProject> packageToProject = new HashMap<>();
+        List<BazelPackageLocation> packageLocations = new ArrayList<>();
+        List<BazelProject> unorderedProjects = new ArrayList<>();
+        for (BazelProject project : projects) {
+            String packageLabel = projectManager.getBazelLabelForProject(project);
+            if (packageLabel == null) {
+                unorderedProjects.add(project);
+                continue;
+            }
+            BazelPackageLocation location =
+                    new ProjectViewPackageLocation(workspaceRoot, BazelLabel.valueOf(packageLabel).getPackagePath());
+            packageToProject.put(location.getBazelPackageName(), project);
+            packageLocations.add(location);
+        }
+
+        List<BazelProject> orderedProjects = new ArrayList<>(projects.size());
+        BazelPackageLocation rootPackage = new ProjectViewPackageLocation(workspaceRoot, "");
+        for (BazelPackageLocation location : orderResolver.computePackageOrder(rootPackage, packageLocations,
+            AspectTargetInfos.EMPTY, dependencyGraph)) {
+            BazelProject project = packageToProject.remove(location.getBazelPackageName());
+            if (project != null) {
+                orderedProjects.add(project);
+            }
+        }
+        // projects the resolver did not order, keeping the passed order
+        for (BazelProject project : projects) {
+            if (packageToProject.containsValue(project) || unorderedProjects.contains(project)) {
+                orderedProjects.add(project);
+            }
+        }
+        return orderedProjects;
+    }
+}
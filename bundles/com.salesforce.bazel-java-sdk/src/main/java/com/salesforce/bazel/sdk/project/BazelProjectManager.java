@@ -53,6 +53,7 @@ import com.salesforce.bazel.sdk.model.BazelWorkspace;
 public abstract class BazelProjectManager {
 
     private final Map<String, BazelProject> projectMap = new TreeMap<>();
+    private final ProjectReferenceIndex projectReferenceIndex = new ProjectReferenceIndex();
     private final LogHelper logger;
 
     public BazelProjectManager() {
@@ -76,6 +77,13 @@ public abstract class BazelProjectManager {
         return projectMap.values();
     }
 
+    /**
+     * The references between the projects, kept current by the implementations of setProjectReferences().
+     */
+    public ProjectReferenceIndex getProjectReferenceIndex() {
+        return projectReferenceIndex;
+    }
+
     /**
      * Runs a build with the passed targets and returns true if no errors are returned.
      */
@@ -122,6 +130,8 @@ public abstract class BazelProjectManager {
      * Creates a project reference between this project and a set of other projects. References are used by IDE code
      * refactoring among other things. The direction of reference goes from this->updatedRefList If this project no
      * longer uses another project, removing it from the list will eliminate the project reference.
+     * <p>
+     * Implementations must record the references in the {@link #getProjectReferenceIndex() project reference index}.
      */
     public abstract void setProjectReferences(BazelProject thisProject, List<BazelProject> updatedRefList);
 
@@ -162,12 +172,22 @@ public abstract class BazelProjectManager {
             String bazelProjectPackage, List<BazelLabel> bazelTargets, List<String> bazelBuildFlags);
 
     /**
-     * Clears all backing caches for the specified project
+     * Clears all backing caches for the specified project. The cached aspect data of the projects that depend on it is
+     * flushed too.
+     *
+     * @return false if the project is not a known Bazel package project, in which case nothing is flushed
      */
-    public void flushCaches(String projectName, BazelWorkspaceCommandRunner cmdRunner) {
+    public boolean flushCaches(String projectName, BazelWorkspaceCommandRunner cmdRunner) {
         BazelProject bazelProject = getProject(projectName);
+        if (bazelProject == null) {
+            return false;
+        }
         String packageLabel = getBazelLabelForProject(bazelProject);
+        if (packageLabel == null) {
+            return false;
+        }
         cmdRunner.flushAspectInfoCacheForPackage(packageLabel);
         cmdRunner.flushQueryCache(new BazelLabel(packageLabel));
+        return true;
     }
 }
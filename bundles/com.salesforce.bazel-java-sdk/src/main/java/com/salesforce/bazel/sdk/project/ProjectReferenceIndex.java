@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.project;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Index of the references between projects, in both directions. A project references the projects it depends on, see
+ * {@link BazelProjectManager#setProjectReferences(BazelProject, java.util.List)}.
+ * <p>
+ * The index answers which projects depend on a project, directly or transitively, in time proportional to the size of
+ * the answer, rather than by scanning the references of every project at each level of the walk.
+ * <p>
+ * This class is thread safe.
+ */
+public class ProjectReferenceIndex {
+
+    // project name -> names of the projects it references
+    private final Map<String, Set<String>> referencedProjects = new HashMap<>();
+
+    // project name -> names of the projects that reference it
+    private final Map<String, Set<String>> referencingProjects = new HashMap<>();
+
+    /**
+     * Replaces the references of the project.
+     */
+    public synchronized void setReferences(String projectName, Collection<String> referencedProjectNames) {
+        Set<String> updatedRefs = new LinkedHashSet<>(referencedProjectNames);
+        Set<String> previousRefs = referencedProjects.put(projectName, updatedRefs);
+        if (previousRefs == null) {
+            previousRefs = Collections.emptySet();
+        }
+        for (String ref : previousRefs) {
+            if (!updatedRefs.contains(ref)) {
+                Set<String> referencing = referencingProjects.get(ref);
+                referencing.remove(projectName);
+                if (referencing.isEmpty()) {
+                    referencingProjects.remove(ref);
+                }
+            }
+        }
+        for (String ref : updatedRefs) {
+            if (!previousRefs.contains(ref)) {
+                referencingProjects.computeIfAbsent(ref, r -> new LinkedHashSet<>()).add(projectName);
+            }
+        }
+    }
+
+    /**
+     * Removes the references of the project, e.g. because it was deleted. References to the project from other projects
+     * are kept until their references are set again.
+     */
+    public synchronized void removeProject(String projectName) {
+        setReferences(projectName, Collections.emptySet());
+        referencedProjects.remove(projectName);
+    }
+
+    /**
+     * Returns true if the references of the project have been set.
+     */
+    public synchronized boolean hasReferences(String projectName) {
+        return referencedProjects.containsKey(projectName);
+    }
+
+    /**
+     * Returns the names of the projects that depend on the project, including transitives, nearest first.
+     */
+    public Set<String> getDownstreamProjects(String projectName) {
+        return getDownstreamProjects(projectName, name -> true);
+    }
+
+    /**
+     * Returns the names of the projects that depend on the project, including transitives, nearest first. The walk
+     * does not go through projects that are not accepted by the filter (e.g. projects that no longer exist).
+     */
+    public synchronized Set<String> getDownstreamProjects(String projectName, Predicate<String> filter) {
+        Set<String> downstreamProjects = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(projectName);
+        while (!queue.isEmpty()) {
+            Set<String> referencing = referencingProjects.get(queue.poll());
+            if (referencing == null) {
+                continue;
+            }
+            for (String downstream : referencing) {
+                if (filter.test(downstream) && downstreamProjects.add(downstream)) {
+                    queue.add(downstream);
+                }
+            }
+        }
+        return downstreamProjects;
+    }
+}
@@ -24,14 +24,17 @@
 package com.salesforce.bazel.sdk.project.structure;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
 import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.model.BazelBuildFile;
 import com.salesforce.bazel.sdk.model.BazelLabel;
 import com.salesforce.bazel.sdk.model.BazelPackageLocation;
 import com.salesforce.bazel.sdk.model.BazelSourceFile;
@@ -68,9 +71,7 @@ public class BazelQueryProjectStructureStrategy extends ProjectStructureStrategy
         File workspaceRootDir = bazelWorkspace.getBazelWorkspaceRootDirectory();
         String packageRelPath = packageNode.getBazelPackageFSRelativePath();
         File packageDir = new File(workspaceRootDir, packageRelPath); // TODO move this to the PackageLocation api
-
-        String labelPath = packageRelPath.replaceAll(FSPathHelper.WINDOWS_BACKSLASH_REGEX, "/");
-        BazelLabel packageLabel = new BazelLabel(labelPath, BazelLabel.BAZEL_WILDCARD_ALLTARGETS_STAR);
+        BazelLabel packageLabel = getPackageLabel(packageNode);
 
         // execute the expensive query, this will take a few seconds to run at least
         Collection<String> queryResults = runBazelQueryForSourceFiles(workspaceRootDir, packageLabel, commandRunner);
@@ -80,8 +81,47 @@ public class BazelQueryProjectStructureStrategy extends ProjectStructureStrategy
         return structure;
     }
 
+    /**
+     * Analyzes all of the packages with a single Bazel query, kind(rule, set(//a:* //b:* ...)), and partitions the
+     * results per package locally. The query results are cached per package, so the analysis of each package does not
+     * run Bazel again.
+     */
+    @Override
+    public Map<BazelPackageLocation, ProjectStructure> doStructureAnalysis(BazelWorkspace bazelWorkspace,
+            Collection<BazelPackageLocation> packageNodes, BazelWorkspaceCommandRunner commandRunner) {
+        if (packageNodes.size() > 1) {
+            List<BazelLabel> packageLabels = new ArrayList<>();
+            for (BazelPackageLocation packageNode : packageNodes) {
+                packageLabels.add(getPackageLabel(packageNode));
+            }
+            prefetchBazelQueryForSourceFiles(packageLabels, commandRunner);
+        }
+        return super.doStructureAnalysis(bazelWorkspace, packageNodes, commandRunner);
+    }
+
     // INTERNALS
 
+    protected BazelLabel getPackageLabel(BazelPackageLocation packageNode) {
+        String labelPath = packageNode.getBazelPackageFSRelativePath().replaceAll(FSPathHelper.WINDOWS_BACKSLASH_REGEX,
+            "/");
+        return BazelLabel.valueOf(labelPath, BazelLabel.BAZEL_WILDCARD_ALLTARGETS_STAR);
+    }
+
+    /**
+     * Runs the query for the source files of all of the packages at once, which populates the cache used by
+     * {@link #runBazelQueryForSourceFiles(File, BazelLabel, BazelWorkspaceCommandRunner)}.
+     */
+    protected void prefetchBazelQueryForSourceFiles(List<BazelLabel> packageLabels,
+            BazelWorkspaceCommandRunner commandRunner) {
+        try {
+            LOG.info("Querying {} packages for source files.", packageLabels.size());
+            commandRunner.queryBazelTargetsInBuildFile(packageLabels);
+        } catch (Exception anyE) {
+            // each package will be queried on its own
+            LOG.error("Failed querying {} packages for source files.", anyE, packageLabels.size());
+        }
+    }
+
     protected ProjectStructure processQueryResults(String packageRelPath, File packageDir, BazelLabel packageLabel,
             Collection<String> queryResults) {
         ProjectStructure structure = new ProjectStructure();
@@ -185,11 +225,20 @@ public class BazelQueryProjectStructureStrategy extends ProjectStructureStrategy
         return false;
     }
 
+    /**
+     * Returns the package relative paths of the files used by the rules of the package. These come from the structured
+     * query of the BUILD file (kinds, srcs, deps and inputs in one invocation), which is cached and shared with the
+     * target loading of the import.
+     */
     protected Collection<String> runBazelQueryForSourceFiles(File workspaceRootDir, BazelLabel packageLabel,
             BazelWorkspaceCommandRunner commandRunner) {
         Collection<String> results = null;
         try {
-            results = commandRunner.querySourceFilesForTarget(workspaceRootDir, packageLabel);
+            results = new ArrayList<>();
+            for (BazelBuildFile buildFile : commandRunner
+                    .queryBazelTargetsInBuildFile(Collections.singletonList(packageLabel))) {
+                results.addAll(buildFile.getInputFilePaths());
+            }
         } catch (Exception anyE) {
             LOG.error("Failed querying package [{}] for source files.", anyE, packageLabel);
         }
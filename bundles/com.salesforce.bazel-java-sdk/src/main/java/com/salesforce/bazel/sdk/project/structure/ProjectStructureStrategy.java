@@ -24,7 +24,10 @@
 package com.salesforce.bazel.sdk.project.structure;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
 import com.salesforce.bazel.sdk.lang.jvm.MavenProjectStructureStrategy;
@@ -85,6 +88,37 @@ public abstract class ProjectStructureStrategy {
         return result;
     }
 
+    /**
+     * Determines the structure of many packages at once. Each strategy is given all of the packages that the previous
+     * strategies did not recognize, so that strategies that run Bazel can analyze them with a single invocation.
+     *
+     * @return the structure of each package, packages that no strategy recognized are not in the map
+     */
+    public static Map<BazelPackageLocation, ProjectStructure> determineProjectStructures(BazelWorkspace bazelWorkspace,
+            Collection<BazelPackageLocation> packageNodes, BazelWorkspaceCommandRunner commandRunner) {
+        Map<BazelPackageLocation, ProjectStructure> results = new LinkedHashMap<>();
+        List<BazelPackageLocation> remaining = new ArrayList<>(packageNodes);
+
+        for (ProjectStructureStrategy strategy : ProjectStructureStrategy.projectStructureStrategies) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            if (strategy.enabled) {
+                Map<BazelPackageLocation, ProjectStructure> strategyResults =
+                        strategy.doStructureAnalysis(bazelWorkspace, remaining, commandRunner);
+                for (Map.Entry<BazelPackageLocation, ProjectStructure> result : strategyResults.entrySet()) {
+                    if (result.getValue() != null) {
+                        LOG.info("Package {} file layout was processed by the {}",
+                            result.getKey().getBazelPackageFSRelativePath(), strategy.getClass().getName());
+                        results.put(result.getKey(), result.getValue());
+                        remaining.remove(result.getKey());
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
     // INSTANCES
 
     /**
@@ -114,4 +148,22 @@ public abstract class ProjectStructureStrategy {
      */
     public abstract ProjectStructure doStructureAnalysis(BazelWorkspace bazelWorkspace,
             BazelPackageLocation packageNode, BazelWorkspaceCommandRunner commandRunner);
+
+    /**
+     * Inspect many projects and determine the structure of each. The default implementation analyzes the projects one
+     * at a time, strategies that run Bazel should override this to analyze all of them with a single invocation.
+     *
+     * @return the structure of each package this strategy recognized, the other packages are not in the map
+     */
+    public Map<BazelPackageLocation, ProjectStructure> doStructureAnalysis(BazelWorkspace bazelWorkspace,
+            Collection<BazelPackageLocation> packageNodes, BazelWorkspaceCommandRunner commandRunner) {
+        Map<BazelPackageLocation, ProjectStructure> results = new LinkedHashMap<>();
+        for (BazelPackageLocation packageNode : packageNodes) {
+            ProjectStructure structure = doStructureAnalysis(bazelWorkspace, packageNode, commandRunner);
+            if (structure != null) {
+                results.put(packageNode, structure);
+            }
+        }
+        return results;
+    }
 }
@@ -35,6 +35,7 @@ package com.salesforce.bazel.sdk.workspace;
 
 import java.io.File;
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandOptions;
 
@@ -69,4 +70,16 @@ public interface BazelWorkspaceMetadataStrategy {
      * Return the result of the bazel query
      */
     List<String> computeBazelQuery(String query);
+
+    /**
+     * Passes each line of the result of the bazel query to the consumer. Implementations that run Bazel should stream
+     * the lines as they are produced, so that large query results are not held in memory. The default implementation
+     * iterates over the result of {@link #computeBazelQuery(String)}.
+     */
+    default void computeBazelQuery(String query, Consumer<String> lineConsumer) {
+        List<String> lines = computeBazelQuery(query);
+        if (lines != null) {
+            lines.forEach(lineConsumer);
+        }
+    }
 }
@@ -0,0 +1,304 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+package com.salesforce.bazel.sdk.workspace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandOptions;
+import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
+import com.salesforce.bazel.sdk.logging.LogHelper;
+
+/**
+ * BazelWorkspaceMetadataStrategy that fetches all workspace metadata with a single <i>bazel info</i> command (plus one
+ * <i>bazel test --announce_rc</i> for the command options), and persists the result to disk. The persisted snapshot is
+ * reused across restarts of the tool until the fingerprint of the workspace configuration changes.
+ * <p>
+ * The fingerprint covers the WORKSPACE file, the .bazelrc files (workspace and user home), .bazelversion, and the
+ * path/size/timestamp of the Bazel executable. Files imported from a .bazelrc are not covered; call
+ * {@link #invalidate()} if you know those have changed.
+ * <p>
+ * Queries are not part of the snapshot, and are delegated to the command runner.
+ */
+public class PersistentBazelWorkspaceMetadataStrategy implements BazelWorkspaceMetadataStrategy {
+    private static final LogHelper LOG = LogHelper.log(PersistentBazelWorkspaceMetadataStrategy.class);
+
+    private static final String SNAPSHOT_FORMAT_VERSION = "1";
+
+    /**
+     * Files in the workspace root directory that feed into the fingerprint.
+     */
+    private static final String[] FINGERPRINT_WORKSPACE_FILES =
+            { "WORKSPACE", "WORKSPACE.bazel", ".bazelrc", "user.bazelrc", ".bazelversion" };
+
+    private final BazelWorkspaceCommandRunner commandRunner;
+    private final File bazelWorkspaceRootDirectory;
+    private final File snapshotFile;
+
+    // SNAPSHOT, loaded lazily
+
+    private boolean snapshotLoaded = false;
+    private String fingerprint;
+    private Map<String, String> info;
+    private List<String> announceRcLines;
+
+    /**
+     * @param metadataDirectory
+     *            directory owned by the tool in which the snapshot file is written (e.g. the plugin state location)
+     */
+    public PersistentBazelWorkspaceMetadataStrategy(BazelWorkspaceCommandRunner commandRunner,
+            File bazelWorkspaceRootDirectory, File metadataDirectory) {
+        this.commandRunner = commandRunner;
+        this.bazelWorkspaceRootDirectory = bazelWorkspaceRootDirectory;
+        String snapshotName = "bazel-workspace-metadata-"
+                + Integer.toHexString(bazelWorkspaceRootDirectory.getAbsolutePath().hashCode()) + ".json";
+        snapshotFile = new File(metadataDirectory, snapshotName);
+    }
+
+    // BazelWorkspaceMetadataStrategy
+
+    @Override
+    public File computeBazelWorkspaceExecRoot() {
+        return getInfoDirectory("execution_root");
+    }
+
+    @Override
+    public File computeBazelWorkspaceOutputBase() {
+        return getInfoDirectory("output_base");
+    }
+
+    @Override
+    public File computeBazelWorkspaceBin() {
+        return getInfoDirectory("bazel-bin");
+    }
+
+    @Override
+    public synchronized void populateBazelWorkspaceCommandOptions(BazelWorkspaceCommandOptions commandOptions) {
+        loadSnapshot();
+        if (announceRcLines == null) {
+            announceRcLines = commandRunner.computeBazelAnnounceRcLines();
+            saveSnapshot();
+        }
+        commandOptions.parseOptionsFromOutput(announceRcLines);
+    }
+
+    @Override
+    public List<String> computeBazelQuery(String query) {
+        return commandRunner.computeBazelQuery(query);
+    }
+
+    @Override
+    public void computeBazelQuery(String query, Consumer<String> lineConsumer) {
+        commandRunner.computeBazelQuery(query, lineConsumer);
+    }
+
+    // SNAPSHOT
+
+    /**
+     * Discards the in-memory and persisted snapshot. The next call will run Bazel again.
+     */
+    public synchronized void invalidate() {
+        info = null;
+        announceRcLines = null;
+        fingerprint = null;
+        snapshotLoaded = true;
+        if (snapshotFile.exists() && !snapshotFile.delete()) {
+            LOG.warn("Could not delete the workspace metadata snapshot {}", snapshotFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns the file in which the snapshot is persisted.
+     */
+    public File getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * Computes the fingerprint of the inputs that can change the output of <i>bazel info</i> and the announced rc
+     * options.
+     */
+    public String computeFingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+
+        digest.update(bazelWorkspaceRootDirectory.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        for (String name : FINGERPRINT_WORKSPACE_FILES) {
+            addFileToDigest(digest, new File(bazelWorkspaceRootDirectory, name));
+        }
+        addFileToDigest(digest, new File(System.getProperty("user.home"), ".bazelrc"));
+
+        try {
+            File bazelExecutable = new File(BazelWorkspaceCommandRunner.getBazelExecutablePath());
+            String executableStamp = bazelExecutable.getAbsolutePath() + ":" + bazelExecutable.length() + ":"
+                    + bazelExecutable.lastModified();
+            digest.update(executableStamp.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception anyE) {
+            // executable not configured yet, the snapshot will be refreshed once it is
+            digest.update("no-bazel-executable".getBytes(StandardCharsets.UTF_8));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    // INTERNAL
+
+    private synchronized File getInfoDirectory(String key) {
+        loadSnapshot();
+        if (info == null) {
+            info = commandRunner.computeBazelInfo();
+            saveSnapshot();
+        }
+        String path = info.get(key);
+        if (path == null) {
+            throw new IllegalStateException("bazel info did not return a value for " + key);
+        }
+        File directory = new File(path);
+        try {
+            directory = directory.getCanonicalFile();
+        } catch (IOException ioe) {
+            LOG.error("Error locating path on file system: [{}]", ioe, directory.getAbsolutePath());
+        }
+        return directory;
+    }
+
+    private void loadSnapshot() {
+        if (snapshotLoaded) {
+            return;
+        }
+        snapshotLoaded = true;
+        fingerprint = computeFingerprint();
+        if (!snapshotFile.exists()) {
+            return;
+        }
+
+        try (Reader reader = Files.newBufferedReader(snapshotFile.toPath(), StandardCharsets.UTF_8)) {
+            JSONObject body = (JSONObject) new JSONParser().parse(reader);
+            if (!SNAPSHOT_FORMAT_VERSION.equals(body.get("version"))
+                    || !fingerprint.equals(body.get("fingerprint"))) {
+                LOG.info("Workspace metadata snapshot is stale, it will be recomputed: {}",
+                    snapshotFile.getAbsolutePath());
+                return;
+            }
+            JSONObject infoJson = (JSONObject) body.get("info");
+            if (infoJson != null) {
+                info = new TreeMap<>();
+                for (Object key : infoJson.keySet()) {
+                    info.put((String) key, (String) infoJson.get(key));
+                }
+            }
+            JSONArray announceRcJson = (JSONArray) body.get("announce_rc");
+            if (announceRcJson != null) {
+                announceRcLines = new ArrayList<>();
+                for (Object line : announceRcJson) {
+                    announceRcLines.add((String) line);
+                }
+            }
+            LOG.info("Loaded workspace metadata snapshot: {}", snapshotFile.getAbsolutePath());
+        } catch (Exception anyE) {
+            LOG.error("Could not read the workspace metadata snapshot {}", anyE, snapshotFile.getAbsolutePath());
+            info = null;
+            announceRcLines = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void saveSnapshot() {
+        JSONObject body = new JSONObject();
+        body.put("version", SNAPSHOT_FORMAT_VERSION);
+        body.put("fingerprint", fingerprint);
+        if (info != null) {
+            JSONObject infoJson = new JSONObject();
+            infoJson.putAll(info);
+            body.put("info", infoJson);
+        }
+        if (announceRcLines != null) {
+            JSONArray announceRcJson = new JSONArray();
+            announceRcJson.addAll(announceRcLines);
+            body.put("announce_rc", announceRcJson);
+        }
+
+        // write to a temp file and move it in place, so that a crash never leaves a partial snapshot behind
+        try {
+            File parent = snapshotFile.getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            File tempFile = new File(parent, snapshotFile.getName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                body.writeJSONString(writer);
+            }
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ioe) {
+            LOG.error("Could not write the workspace metadata snapshot {}", ioe, snapshotFile.getAbsolutePath());
+        }
+    }
+
+    private static void addFileToDigest(MessageDigest digest, File file) {
+        digest.update(file.getName().getBytes(StandardCharsets.UTF_8));
+        if (file.isFile()) {
+            try {
+                digest.update(Files.readAllBytes(file.toPath()));
+            } catch (IOException ioe) {
+                digest.update(("unreadable:" + file.lastModified()).getBytes(StandardCharsets.UTF_8));
+            }
+        } else {
+            digest.update("missing".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
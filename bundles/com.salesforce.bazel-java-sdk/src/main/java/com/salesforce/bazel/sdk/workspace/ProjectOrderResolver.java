@@ -36,6 +36,7 @@ package com.salesforce.bazel.sdk.workspace;
 import java.util.List;
 
 import com.salesforce.bazel.sdk.aspect.AspectTargetInfos;
+import com.salesforce.bazel.sdk.aspect.IncrementalAspectDependencyGraph;
 import com.salesforce.bazel.sdk.model.BazelPackageLocation;
 
 /**
@@ -56,4 +57,16 @@ public interface ProjectOrderResolver {
      */
     Iterable<BazelPackageLocation> computePackageOrder(BazelPackageLocation rootPackage,
             List<BazelPackageLocation> selectedPackages, AspectTargetInfos aspects);
+
+    /**
+     * Orders the packages selected such that no package is listed before any of packages that it depends on, using the
+     * long lived dependency graph of the workspace (see BazelWorkspaceCommandRunner.getDependencyGraph()) instead of
+     * building a graph from the passed aspects. The aspects are applied to the graph first. Resolvers that do not
+     * support the graph ignore it.
+     */
+    default Iterable<BazelPackageLocation> computePackageOrder(BazelPackageLocation rootPackage,
+            List<BazelPackageLocation> selectedPackages, AspectTargetInfos aspects,
+            IncrementalAspectDependencyGraph dependencyGraph) {
+        return computePackageOrder(rootPackage, selectedPackages, aspects);
+    }
 }
\ No newline at end of file
@@ -37,6 +37,7 @@ import java.util.List;
 
 import com.salesforce.bazel.sdk.aspect.AspectDependencyGraphFactory;
 import com.salesforce.bazel.sdk.aspect.AspectTargetInfos;
+import com.salesforce.bazel.sdk.aspect.IncrementalAspectDependencyGraph;
 import com.salesforce.bazel.sdk.graph.BazelDependencyGraph;
 import com.salesforce.bazel.sdk.logging.LogHelper;
 import com.salesforce.bazel.sdk.model.BazelPackageLocation;
@@ -81,17 +82,39 @@ public class ProjectOrderResolverImpl implements ProjectOrderResolver {
     @Override
     public Iterable<BazelPackageLocation> computePackageOrder(BazelPackageLocation rootPackage,
             List<BazelPackageLocation> selectedPackages, AspectTargetInfos aspects) {
+        return computePackageOrder(rootPackage, selectedPackages, aspects, null);
+    }
+
+    /**
+     * Orders the packages selected for import such that no package is imported before any of modules that it depends
+     * on, using the long lived dependency graph of the workspace. The passed aspects are applied to the graph first,
+     * which only costs the targets whose aspect data the graph has not seen yet. Without a graph, a graph of the entire
+     * workspace is built from the aspects.
+     *
+     * @return ordered list of modules - leaves nodes goes first, those which dependent on them next and so on up to the
+     *         root module
+     */
+    @Override
+    public Iterable<BazelPackageLocation> computePackageOrder(BazelPackageLocation rootPackage,
+            List<BazelPackageLocation> selectedPackages, AspectTargetInfos aspects,
+            IncrementalAspectDependencyGraph dependencyGraph) {
 
         if (aspects == null) {
             return selectedPackages;
         }
 
-        // first, generate the dependency graph for the entire workspace
         List<BazelPackageLocation> orderedModules = null;
         try {
-            BazelDependencyGraph workspaceDepGraph = AspectDependencyGraphFactory.build(aspects, false);
             boolean followExternalTransitives = false;
-            orderedModules = workspaceDepGraph.orderLabels(selectedPackages, followExternalTransitives);
+            if (dependencyGraph != null) {
+                dependencyGraph.update(aspects.getTargetInfos());
+                orderedModules = dependencyGraph
+                        .query(graph -> graph.orderLabels(selectedPackages, followExternalTransitives));
+            } else {
+                // generate the dependency graph for the entire workspace
+                BazelDependencyGraph workspaceDepGraph = AspectDependencyGraphFactory.build(aspects, false);
+                orderedModules = workspaceDepGraph.orderLabels(selectedPackages, followExternalTransitives);
+            }
 
             StringBuffer sb = new StringBuffer();
             sb.append("ImportOrderResolver order of modules: ");
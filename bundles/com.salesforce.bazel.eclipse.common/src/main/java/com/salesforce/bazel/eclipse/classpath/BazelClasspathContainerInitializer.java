@@ -61,6 +61,7 @@ import com.salesforce.bazel.sdk.logging.LogHelper;
 import com.salesforce.bazel.sdk.model.BazelWorkspace;
 import com.salesforce.bazel.sdk.project.BazelProject;
 import com.salesforce.bazel.sdk.project.BazelProjectManager;
+import com.salesforce.bazel.sdk.project.ProjectReferenceIndex;
 
 public class BazelClasspathContainerInitializer extends ClasspathContainerInitializer {
     private static final LogHelper LOG = LogHelper.log(BazelClasspathContainerInitializer.class);
@@ -151,7 +152,10 @@ public class BazelClasspathContainerInitializer extends ClasspathContainerInitia
         // get downstream projects of the given project
         JavaCoreHelper javaCoreHelper = ComponentContext.getInstance().getJavaCoreHelper();
         IJavaProject[] allImportedProjects = javaCoreHelper.getAllBazelJavaProjects(false);
-        Set<IProject> downstreams = EclipseProjectUtils.getDownstreamProjectsOf(project, allImportedProjects);
+        ProjectReferenceIndex referenceIndex =
+                ComponentContext.getInstance().getProjectManager().getProjectReferenceIndex();
+        Set<IProject> downstreams =
+                EclipseProjectUtils.getDownstreamProjectsOf(project, allImportedProjects, referenceIndex);
 
         // flush caches
         BazelWorkspace bzlWs = ComponentContext.getInstance().getBazelWorkspace();
@@ -2,9 +2,12 @@ package com.salesforce.bazel.eclipse.component;
 
 import java.io.File;
 
+import com.salesforce.bazel.eclipse.activator.Activator;
 import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
 import com.salesforce.bazel.sdk.logging.LogHelper;
 import com.salesforce.bazel.sdk.model.BazelWorkspace;
+import com.salesforce.bazel.sdk.workspace.BazelWorkspaceMetadataStrategy;
+import com.salesforce.bazel.sdk.workspace.PersistentBazelWorkspaceMetadataStrategy;
 
 public class EclipseBazelWorkspaceContext {
     private static final LogHelper LOG = LogHelper.log(EclipseBazelWorkspaceContext.class);
@@ -53,11 +56,50 @@ public class EclipseBazelWorkspaceContext {
                 return;
             }
         }
+        if ((bazelWorkspace != null) && !rootDirectory.equals(bazelWorkspace.getBazelWorkspaceRootDirectory())) {
+            // the runner of the previous workspace is replaced, stop its workspace lane
+            disposeWorkspaceCommandRunner();
+        }
+        bazelWorkspaceCommandRunner = null;
         bazelWorkspace =
                 new BazelWorkspace(workspaceName, rootDirectory, ComponentContext.getInstance().getOsStrategy());
         BazelWorkspaceCommandRunner commandRunner = getWorkspaceCommandRunner();
-        getBazelWorkspace().setBazelWorkspaceMetadataStrategy(commandRunner);
+        getBazelWorkspace().setBazelWorkspaceMetadataStrategy(createMetadataStrategy(commandRunner, rootDirectory));
         getBazelWorkspace().setBazelWorkspaceCommandRunner(commandRunner);
+        enablePersistentAspectCache(commandRunner, bazelWorkspace);
+    }
+
+    /**
+     * The workspace metadata (bazel info, rc options) is persisted in the plugin state location so that it survives
+     * restarts. Outside of a running OSGi environment (tests) the command runner is used directly.
+     */
+    private BazelWorkspaceMetadataStrategy createMetadataStrategy(BazelWorkspaceCommandRunner commandRunner,
+            File rootDirectory) {
+        Activator activator = Activator.getDefault();
+        if ((commandRunner == null) || (activator == null)) {
+            return commandRunner;
+        }
+        File stateLocation = activator.getStateLocation().toFile();
+        return new PersistentBazelWorkspaceMetadataStrategy(commandRunner, rootDirectory, stateLocation);
+    }
+
+    /**
+     * The aspect data is also persisted in the plugin state location, so that a restart does not run the aspect over
+     * the whole workspace again.
+     */
+    private void enablePersistentAspectCache(BazelWorkspaceCommandRunner commandRunner, BazelWorkspace workspace) {
+        Activator activator = Activator.getDefault();
+        if ((commandRunner == null) || (activator == null)
+                || (commandRunner.getBazelWorkspaceAspectHelper() == null)) {
+            return;
+        }
+        File outputBase = workspace.getBazelOutputBaseDirectory();
+        if (outputBase == null) {
+            LOG.warn("The output base of the Bazel workspace is unknown, aspect data will not be persisted.");
+            return;
+        }
+        File stateLocation = activator.getStateLocation().toFile();
+        commandRunner.getBazelWorkspaceAspectHelper().enablePersistentCache(stateLocation, outputBase);
     }
 
     /**
@@ -98,8 +140,15 @@ public class EclipseBazelWorkspaceContext {
      */
     public void resetBazelWorkspace() {
         // now forget about the workspace
+        disposeWorkspaceCommandRunner();
         bazelWorkspace = null;
         bazelWorkspaceCommandRunner = null;
     }
 
+    private void disposeWorkspaceCommandRunner() {
+        if ((bazelWorkspace != null) && bazelWorkspace.hasBazelWorkspaceRootDirectory()) {
+            ComponentContext.getInstance().getBazelCommandManager().disposeWorkspaceCommandRunner(bazelWorkspace);
+        }
+    }
+
 }
@@ -145,6 +145,8 @@ public abstract class AbstractBazelProjectManager extends BazelProjectManager {
     @Override
     public void setProjectReferences(BazelProject thisProject, List<BazelProject> updatedRefList) {
         EclipseProjectSettingsUtils.setProjectReferences(getResourceHelper(), thisProject, updatedRefList);
+        getProjectReferenceIndex().setReferences(thisProject.name,
+            updatedRefList.stream().map(ref -> ref.name).collect(Collectors.toList()));
     }
 
     protected abstract ResourceHelper getResourceHelper();
@@ -25,6 +25,8 @@ package com.salesforce.bazel.eclipse.project;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.util.Collection;
+import java.util.Map;
 
 import com.salesforce.bazel.sdk.command.BazelCommandManager;
 import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
@@ -53,7 +55,31 @@ public class EclipseProjectStructureInspector {
         BazelWorkspaceCommandRunner commandRunner = bazelCommandManager.getWorkspaceCommandRunner(bazelWorkspace);
 
         result = ProjectStructureStrategy.determineProjectStructure(bazelWorkspace, packageNode, commandRunner);
+        addPackageConventions(packageNode, result);
 
+        return result;
+    }
+
+    /**
+     * Computes the source code paths of many packages at once, which allows the strategies that run Bazel to analyze
+     * all of the packages with a single invocation.
+     *
+     * @return the structure of each package, packages whose structure could not be determined are not in the map
+     */
+    public static Map<BazelPackageLocation, ProjectStructure> computePackageSourceCodePaths(
+            Collection<BazelPackageLocation> packageNodes, BazelWorkspace bazelWorkspace,
+            BazelCommandManager bazelCommandManager) {
+        BazelWorkspaceCommandRunner commandRunner = bazelCommandManager.getWorkspaceCommandRunner(bazelWorkspace);
+
+        Map<BazelPackageLocation, ProjectStructure> results =
+                ProjectStructureStrategy.determineProjectStructures(bazelWorkspace, packageNodes, commandRunner);
+        for (Map.Entry<BazelPackageLocation, ProjectStructure> result : results.entrySet()) {
+            addPackageConventions(result.getKey(), result.getValue());
+        }
+        return results;
+    }
+
+    private static void addPackageConventions(BazelPackageLocation packageNode, ProjectStructure result) {
         if (result != null) {
             // we found some source paths
 
@@ -76,11 +102,9 @@ public class EclipseProjectStructureInspector {
             String packagePath = packageNode.getBazelPackageFSRelativePath();
             String labelPath = packagePath.replace(FSPathHelper.WINDOWS_BACKSLASH, BazelLabel.BAZEL_SLASH); // convert Windows style paths to Bazel label paths
             for (String target : BazelConstants.DEFAULT_PACKAGE_TARGETS) {
-                result.bazelTargets.add(new BazelLabel(labelPath, target));
+                result.bazelTargets.add(BazelLabel.valueOf(labelPath, target));
             }
         }
-
-        return result;
     }
 
     private static class ProtoFileFilter implements FilenameFilter {
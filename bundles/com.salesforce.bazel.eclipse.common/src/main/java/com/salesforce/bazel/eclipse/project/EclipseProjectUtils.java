@@ -33,8 +33,11 @@
  */
 package com.salesforce.bazel.eclipse.project;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.resources.IProject;
@@ -45,6 +48,7 @@ import org.eclipse.jdt.core.JavaModelException;
 
 import com.salesforce.bazel.eclipse.runtime.api.ResourceHelper;
 import com.salesforce.bazel.sdk.model.BazelPackageLocation;
+import com.salesforce.bazel.sdk.project.ProjectReferenceIndex;
 
 /**
  * Useful utils for Eclipse+Bazel projects
@@ -52,31 +56,36 @@ import com.salesforce.bazel.sdk.model.BazelPackageLocation;
 public class EclipseProjectUtils {
 
     public static Set<IProject> getDownstreamProjectsOf(IProject project, IJavaProject[] allImportedProjects) {
-        Set<IProject> downstreamProjects = new LinkedHashSet<>(); // cannot be a TreeSet because Project doesn't implement Comparable
-        collectDownstreamProjects(project, downstreamProjects, allImportedProjects);
-        return downstreamProjects;
+        return getDownstreamProjectsOf(project, allImportedProjects, new ProjectReferenceIndex());
     }
 
-    // determines all downstream projects, including transitives, of the specified "upstream" project, by looking at the
-    // specified "allImportedProjects", and adds them to the specified "downstreams" Set.
-    private static void collectDownstreamProjects(IProject upstream, Set<IProject> downstreams,
-            IJavaProject[] allImportedProjects) {
-        for (IJavaProject project : allImportedProjects) {
-            try {
-                for (String requiredProjectName : project.getRequiredProjectNames()) {
-                    String upstreamProjectName = upstream.getName();
-                    if (upstreamProjectName.equals(requiredProjectName)) {
-                        IProject downstream = project.getProject();
-                        if (!downstreams.contains(downstream)) {
-                            downstreams.add(downstream);
-                            collectDownstreamProjects(downstream, downstreams, allImportedProjects);
-                        }
-                    }
+    /**
+     * Determines all downstream projects, including transitives, of the specified "upstream" project among the
+     * specified "allImportedProjects", using the reference index of the project manager. Imported projects whose
+     * references have not been recorded in the index yet are added to it from their required projects, once.
+     */
+    public static Set<IProject> getDownstreamProjectsOf(IProject project, IJavaProject[] allImportedProjects,
+            ProjectReferenceIndex referenceIndex) {
+        Map<String, IProject> importedProjects = new HashMap<>();
+        for (IJavaProject importedProject : allImportedProjects) {
+            String importedProjectName = importedProject.getProject().getName();
+            importedProjects.put(importedProjectName, importedProject.getProject());
+            if (!referenceIndex.hasReferences(importedProjectName)) {
+                try {
+                    referenceIndex.setReferences(importedProjectName,
+                        Arrays.asList(importedProject.getRequiredProjectNames()));
+                } catch (JavaModelException ex) {
+                    throw new IllegalStateException(ex);
                 }
-            } catch (JavaModelException ex) {
-                throw new IllegalStateException(ex);
             }
         }
+
+        Set<IProject> downstreamProjects = new LinkedHashSet<>(); // cannot be a TreeSet because Project doesn't implement Comparable
+        for (String downstreamProjectName : referenceIndex.getDownstreamProjects(project.getName(),
+            importedProjects::containsKey)) {
+            downstreamProjects.add(importedProjects.get(downstreamProjectName));
+        }
+        return downstreamProjects;
     }
 
     /**
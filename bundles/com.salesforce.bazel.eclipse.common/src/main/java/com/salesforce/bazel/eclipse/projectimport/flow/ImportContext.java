@@ -25,6 +25,7 @@ package com.salesforce.bazel.eclipse.projectimport.flow;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -208,12 +209,43 @@ public class ImportContext {
         if (structure == null) {
             structure = EclipseProjectStructureInspector.computePackageSourceCodePaths(packageNode, bazelWorkspace,
                 bazelCommandManager);
-            ProjectSourceStructureCache.put(cacheKey, structure);
+            // a structure that could not be computed is not cached, so that it is computed again
+            if (structure != null) {
+                ProjectSourceStructureCache.put(cacheKey, structure);
+            }
         }
 
         return structure;
     }
 
+    /**
+     * Computes the structure of all of the passed packages that are not yet cached, with a single analysis across the
+     * packages instead of one per package. Subsequent calls to getProjectStructure() for these packages are served
+     * from the cache, except for the packages whose structure could not be computed.
+     */
+    public void computeProjectStructures(Collection<BazelPackageLocation> packageNodes, BazelWorkspace bazelWorkspace,
+            BazelCommandManager bazelCommandManager) {
+        List<BazelPackageLocation> uncachedPackageNodes = new ArrayList<>();
+        for (BazelPackageLocation packageNode : packageNodes) {
+            if (!ProjectSourceStructureCache.containsKey(packageNode.getBazelPackageFSRelativePath())) {
+                uncachedPackageNodes.add(packageNode);
+            }
+        }
+        if (uncachedPackageNodes.isEmpty()) {
+            return;
+        }
+
+        Map<BazelPackageLocation, ProjectStructure> structures = EclipseProjectStructureInspector
+                .computePackageSourceCodePaths(uncachedPackageNodes, bazelWorkspace, bazelCommandManager);
+        for (BazelPackageLocation packageNode : uncachedPackageNodes) {
+            // packages whose structure could not be computed are not cached, getProjectStructure() computes them again
+            ProjectStructure structure = structures.get(packageNode);
+            if (structure != null) {
+                ProjectSourceStructureCache.put(packageNode.getBazelPackageFSRelativePath(), structure);
+            }
+        }
+    }
+
     protected EclipseProjectCreator buildEclipseProjectCreator(File bazelWorkspaceRootDirectory,
             BazelProjectManager bazelProjectManager, ResourceHelper resourceHelper,
             BazelCommandManager bazelCommandManager) {
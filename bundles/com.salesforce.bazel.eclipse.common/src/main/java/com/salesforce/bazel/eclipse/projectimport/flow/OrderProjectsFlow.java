@@ -28,8 +28,13 @@ import java.util.Objects;
 
 import org.eclipse.core.runtime.SubMonitor;
 
+import com.salesforce.bazel.eclipse.component.ComponentContext;
 import com.salesforce.bazel.sdk.aspect.AspectTargetInfos;
+import com.salesforce.bazel.sdk.aspect.IncrementalAspectDependencyGraph;
+import com.salesforce.bazel.sdk.command.BazelCommandManager;
+import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
 import com.salesforce.bazel.sdk.model.BazelPackageLocation;
+import com.salesforce.bazel.sdk.model.BazelWorkspace;
 import com.salesforce.bazel.sdk.workspace.ProjectOrderResolver;
 
 /**
@@ -57,10 +62,25 @@ public class OrderProjectsFlow implements ImportFlow {
         List<BazelPackageLocation> selectedBazelPackages = ctx.getSelectedBazelPackages();
         AspectTargetInfos aspectTargetInfos = ctx.getAspectTargetInfos();
 
-        Iterable<BazelPackageLocation> postOrderedModules = projectOrderResolver
-                .computePackageOrder(bazelWorkspaceRootPackageInfo, selectedBazelPackages, aspectTargetInfos);
+        Iterable<BazelPackageLocation> postOrderedModules = projectOrderResolver.computePackageOrder(
+            bazelWorkspaceRootPackageInfo, selectedBazelPackages, aspectTargetInfos, getDependencyGraph());
 
         ctx.setOrderedModules(postOrderedModules);
     }
 
+    /**
+     * The long lived dependency graph of the workspace, so that the order is not computed from a graph of the entire
+     * workspace built just for this import.
+     */
+    private static IncrementalAspectDependencyGraph getDependencyGraph() {
+        ComponentContext componentContext = ComponentContext.getInstance();
+        BazelWorkspace bazelWorkspace = componentContext.getBazelWorkspace();
+        BazelCommandManager bazelCommandManager = componentContext.getBazelCommandManager();
+        if ((bazelWorkspace == null) || (bazelCommandManager == null)) {
+            return null;
+        }
+        BazelWorkspaceCommandRunner commandRunner = bazelCommandManager.getWorkspaceCommandRunner(bazelWorkspace);
+        return commandRunner == null ? null : commandRunner.getDependencyGraph();
+    }
+
 }
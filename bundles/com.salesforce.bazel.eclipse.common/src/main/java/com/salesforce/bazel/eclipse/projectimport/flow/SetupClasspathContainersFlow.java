@@ -23,6 +23,7 @@
  */
 package com.salesforce.bazel.eclipse.projectimport.flow;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -77,6 +78,17 @@ public class SetupClasspathContainersFlow extends AbstractImportFlowStep {
     public void run(ImportContext ctx, SubMonitor progressSubMonitor) throws CoreException {
         Path bazelWorkspaceRootDirectory = new Path(ctx.getBazelWorkspaceRootDirectory().getAbsolutePath());
         List<IProject> importedProjects = ctx.getImportedProjects();
+
+        // analyze the structure of all of the packages at once, the loop below is then served from the cache
+        List<BazelPackageLocation> packageLocations = new ArrayList<>();
+        for (IProject project : importedProjects) {
+            BazelPackageLocation packageLocation = ctx.getPackageLocationForProject(project);
+            if (!packageLocation.isWorkspaceRoot() || ctx.isExplicitImportRootProject()) {
+                packageLocations.add(packageLocation);
+            }
+        }
+        ctx.computeProjectStructures(packageLocations, getBazelWorkspace(), getCommandManager());
+
         for (IProject project : importedProjects) {
             BazelPackageLocation packageLocation = ctx.getPackageLocationForProject(project);
             
@@ -38,6 +38,7 @@ package com.salesforce.bazel.eclipse;
 import java.io.File;
 
 import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 
@@ -46,6 +47,8 @@ import com.salesforce.bazel.eclipse.component.EclipseBazelWorkspaceContext;
 import com.salesforce.bazel.eclipse.component.EclipseComponentContextInitializer;
 import com.salesforce.bazel.eclipse.component.IComponentContextInitializer;
 import com.salesforce.bazel.eclipse.logging.EclipseLoggerFacade;
+import com.salesforce.bazel.eclipse.project.BazelAspectWarmupJob;
+import com.salesforce.bazel.eclipse.project.BazelEditorActivityListener;
 import com.salesforce.bazel.eclipse.project.BazelPluginResourceChangeListener;
 import com.salesforce.bazel.eclipse.runtime.api.JavaCoreHelper;
 import com.salesforce.bazel.eclipse.runtime.api.ResourceHelper;
@@ -99,6 +102,10 @@ public class BazelPluginActivator extends AbstractUIPlugin {
 
         startInternal(new EclipseComponentContextInitializer(getBundle().getSymbolicName(), new EclipseConsole()),
             commandBuilder, consoleFactory, eclipseJavaCoreHelper);
+
+        // compute the aspects of the imported projects in the background, projects with open editors first
+        BazelEditorActivityListener.install();
+        BazelAspectWarmupJob.getInstance().warmupImportedProjects(BazelAspectWarmupJob.STARTUP_DELAY_MS);
     }
 
     /**
@@ -139,6 +146,7 @@ public class BazelPluginActivator extends AbstractUIPlugin {
 
     @Override
     public void stop(BundleContext context) throws Exception {
+        Job.getJobManager().cancel(BazelAspectWarmupJob.JOB_NAME);
         super.stop(context);
     }
 
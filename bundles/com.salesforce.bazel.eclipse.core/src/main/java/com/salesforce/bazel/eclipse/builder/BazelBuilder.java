@@ -62,6 +62,7 @@ import com.salesforce.bazel.eclipse.classpath.IClasspathContainerConstants;
 import com.salesforce.bazel.eclipse.component.ComponentContext;
 import com.salesforce.bazel.eclipse.component.EclipseBazelWorkspaceContext;
 import com.salesforce.bazel.eclipse.launch.BazelTestClasspathProvider;
+import com.salesforce.bazel.eclipse.project.BazelAspectWarmupJob;
 import com.salesforce.bazel.eclipse.project.EclipseProjectUtils;
 import com.salesforce.bazel.eclipse.projectimport.ProjectImporterFactory;
 import com.salesforce.bazel.eclipse.runtime.api.JavaCoreHelper;
@@ -74,9 +75,11 @@ import com.salesforce.bazel.sdk.logging.LogHelper;
 import com.salesforce.bazel.sdk.model.BazelLabel;
 import com.salesforce.bazel.sdk.model.BazelProblem;
 import com.salesforce.bazel.sdk.model.BazelWorkspace;
+import com.salesforce.bazel.sdk.project.BazelAspectWarmupService;
 import com.salesforce.bazel.sdk.project.BazelProject;
 import com.salesforce.bazel.sdk.project.BazelProjectManager;
 import com.salesforce.bazel.sdk.project.BazelProjectTargets;
+import com.salesforce.bazel.sdk.project.ProjectReferenceIndex;
 import com.salesforce.bazel.sdk.util.WorkProgressMonitor;
 
 /**
@@ -139,12 +142,21 @@ public class BazelBuilder extends IncrementalProjectBuilder {
                 IJavaProject[] allImportedProjects = javaCoreHelper.getAllBazelJavaProjects(true);
                 IProject rootWorkspaceProject = Arrays.stream(allImportedProjects)
                         .filter(p -> resourceHelper.isBazelRootProject(p.getProject())).findFirst().get().getProject();
+                ProjectReferenceIndex referenceIndex =
+                        ComponentContext.getInstance().getProjectManager().getProjectReferenceIndex();
                 Set<IProject> downstreamProjects =
-                        EclipseProjectUtils.getDownstreamProjectsOf(project, allImportedProjects);
+                        EclipseProjectUtils.getDownstreamProjectsOf(project, allImportedProjects, referenceIndex);
                 buildProjects(bazelWorkspaceCmdRunner, downstreamProjects, progressMonitor, rootWorkspaceProject,
                     monitor);
 
                 maybeUpdateClasspathContainer(project, javaCoreHelper);
+
+                // the user is working on these projects, recompute their aspects first if they were flushed
+                BazelAspectWarmupJob warmupJob = BazelAspectWarmupJob.getInstance();
+                warmupJob.prioritize(project, BazelAspectWarmupService.PRIORITY_RECENTLY_BUILT);
+                for (IProject downstreamProject : downstreamProjects) {
+                    warmupJob.prioritize(downstreamProject, BazelAspectWarmupService.PRIORITY_RECENTLY_BUILT);
+                }
             }
         } catch (BazelCommandLineToolConfigurationException e) {
             LOG.error("Bazel not found: {} ", e.getMessage());
@@ -184,7 +196,10 @@ public class BazelBuilder extends IncrementalProjectBuilder {
 
         if (bazelWorkspaceCmdRunner == null) {
             super.clean(monitor);
-        } else {
+        } else if (!ComponentContext.getInstance().getProjectManager().flushCaches(getProject().getName(),
+            bazelWorkspaceCmdRunner)) {
+            // the root project (or a project we don't know) resets the whole workspace, otherwise only the package of
+            // the project, and the packages that depend on it, are flushed
             bazelWorkspaceCmdRunner.flushAspectInfoCache();
 
             // TODO make a pref to enable a bazel clean, but in almost any circumstance 'bazel clean' is not correct
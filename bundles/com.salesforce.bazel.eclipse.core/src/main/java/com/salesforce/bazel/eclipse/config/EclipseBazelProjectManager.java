@@ -149,6 +149,8 @@ public class EclipseBazelProjectManager extends BazelProjectManager {
             updatedEclipseRefList[i] = (IProject) ref.getProjectImpl();
             i++;
         }
+        getProjectReferenceIndex().setReferences(thisProject.name,
+            updatedRefList.stream().map(ref -> ref.name).collect(Collectors.toList()));
 
         // setProjectDescription requires a lock and should cause a rebuild on the project so only do it if necessary
         if (!areDifferent(existingEclipseRefList, updatedEclipseRefList)) {
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.eclipse.project;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.IJavaProject;
+
+import com.salesforce.bazel.eclipse.component.ComponentContext;
+import com.salesforce.bazel.eclipse.component.EclipseBazelWorkspaceContext;
+import com.salesforce.bazel.eclipse.runtime.impl.EclipseWorkProgressMonitor;
+import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
+import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.project.BazelAspectWarmupService;
+import com.salesforce.bazel.sdk.project.BazelProject;
+import com.salesforce.bazel.sdk.project.BazelProjectManager;
+import com.salesforce.bazel.sdk.workspace.ProjectOrderResolverImpl;
+
+/**
+ * Background job that computes the aspect data of the imported projects before JDT asks for their classpath, see
+ * {@link BazelAspectWarmupService}. It is scheduled after startup, and again whenever the priority of a project is
+ * raised (an editor is opened for it, or it was built).
+ */
+public class BazelAspectWarmupJob extends Job {
+    static final LogHelper LOG = LogHelper.log(BazelAspectWarmupJob.class);
+
+    public static final String JOB_NAME = "Bazel Aspect Warm-up";
+
+    /**
+     * Delay before the warm-up starts after startup, so that it does not compete with the initialization of the
+     * workbench.
+     */
+    public static long STARTUP_DELAY_MS = 5000;
+
+    private static BazelAspectWarmupJob instance;
+
+    private BazelAspectWarmupService warmupService;
+    private BazelWorkspaceCommandRunner warmupCommandRunner;
+    private volatile boolean importedProjectsPending = false;
+
+    public static synchronized BazelAspectWarmupJob getInstance() {
+        if (instance == null) {
+            instance = new BazelAspectWarmupJob();
+        }
+        return instance;
+    }
+
+    private BazelAspectWarmupJob() {
+        super(JOB_NAME);
+        setSystem(true);
+        setPriority(Job.DECORATE);
+    }
+
+    /**
+     * Schedules the job after the passed delay, and adds all of the imported projects to the warm-up when it runs. The
+     * projects are looked up by the job, so the caller (e.g. the activator) does not wait for it.
+     */
+    public void warmupImportedProjects(long delayMS) {
+        importedProjectsPending = true;
+        schedule(delayMS);
+    }
+
+    /**
+     * Raises the warm-up priority of the project, see the PRIORITY constants of {@link BazelAspectWarmupService}.
+     */
+    public void prioritize(IProject project, int priority) {
+        BazelAspectWarmupService service = getWarmupService();
+        if ((service != null) && service.prioritize(project.getName(), priority)) {
+            schedule();
+        }
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        BazelAspectWarmupService service = getWarmupService();
+        if (service == null) {
+            return Status.OK_STATUS;
+        }
+        if (importedProjectsPending) {
+            importedProjectsPending = false;
+            service.enqueue(getImportedProjects());
+        }
+        EclipseWorkProgressMonitor progressMonitor = new EclipseWorkProgressMonitor(monitor);
+        progressMonitor.beginTask(JOB_NAME, service.getPendingCount());
+        try {
+            int warmedUp = service.run(progressMonitor);
+            LOG.info("Aspect warm-up computed the aspect data of {} projects.", warmedUp);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return Status.CANCEL_STATUS;
+        } finally {
+            progressMonitor.done();
+        }
+        return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+    }
+
+    @Override
+    protected void canceling() {
+        BazelAspectWarmupService service = warmupService;
+        if (service != null) {
+            service.cancel();
+        }
+    }
+
+    @Override
+    public boolean belongsTo(Object family) {
+        return JOB_NAME.equals(family);
+    }
+
+    /**
+     * The imported projects known by the project manager. The warm-up only reads the projects, a project that is not
+     * known yet is computed on demand instead.
+     */
+    private List<BazelProject> getImportedProjects() {
+        BazelProjectManager projectManager = ComponentContext.getInstance().getProjectManager();
+        List<BazelProject> projects = new ArrayList<>();
+        for (IJavaProject javaProject : ComponentContext.getInstance().getJavaCoreHelper()
+                .getAllBazelJavaProjects(false)) {
+            BazelProject bazelProject = projectManager.getProject(javaProject.getProject().getName());
+            if (bazelProject != null) {
+                projects.add(bazelProject);
+            } else {
+                LOG.debug("Project {} is not known yet, it is not warmed up.", javaProject.getProject().getName());
+            }
+        }
+        return projects;
+    }
+
+    /**
+     * The service is bound to the command runner of the workspace, it is replaced (and the old one disposed) if the
+     * workspace changes.
+     */
+    private synchronized BazelAspectWarmupService getWarmupService() {
+        BazelWorkspaceCommandRunner commandRunner =
+                EclipseBazelWorkspaceContext.getInstance().getWorkspaceCommandRunner();
+        if (commandRunner == null) {
+            return null;
+        }
+        if ((warmupService == null) || (warmupCommandRunner != commandRunner)) {
+            if (warmupService != null) {
+                warmupService.dispose();
+            }
+            warmupService = new BazelAspectWarmupService(ComponentContext.getInstance().getProjectManager(),
+                    commandRunner, new ProjectOrderResolverImpl());
+            warmupCommandRunner = commandRunner;
+        }
+        return warmupService;
+    }
+}
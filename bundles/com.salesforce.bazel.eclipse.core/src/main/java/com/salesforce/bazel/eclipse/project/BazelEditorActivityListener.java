@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.eclipse.project;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.ui.IEditorInput;
+import org.eclipse.ui.IEditorReference;
+import org.eclipse.ui.IPartListener2;
+import org.eclipse.ui.IWindowListener;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchPartReference;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.PlatformUI;
+
+import com.salesforce.bazel.sdk.logging.LogHelper;
+import com.salesforce.bazel.sdk.project.BazelAspectWarmupService;
+
+/**
+ * Raises the aspect warm-up priority of the projects that have open editors, see {@link BazelAspectWarmupJob}.
+ */
+public class BazelEditorActivityListener implements IPartListener2, IWindowListener {
+    static final LogHelper LOG = LogHelper.log(BazelEditorActivityListener.class);
+
+    /**
+     * Listens to the editors of all workbench windows, and prioritizes the projects of the editors that are already
+     * open (e.g. restored at startup). Does nothing if the workbench is not running.
+     */
+    public static void install() {
+        if (!PlatformUI.isWorkbenchRunning()) {
+            return;
+        }
+        IWorkbench workbench = PlatformUI.getWorkbench();
+        BazelEditorActivityListener listener = new BazelEditorActivityListener();
+        workbench.getDisplay().asyncExec(() -> {
+            workbench.addWindowListener(listener);
+            for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+                listener.windowOpened(window);
+            }
+        });
+    }
+
+    private static void prioritize(IEditorReference editorReference) {
+        try {
+            // does not restore the editor if it was not opened in this session
+            IEditorInput input = editorReference.getEditorInput();
+            IFile file = input == null ? null : input.getAdapter(IFile.class);
+            if (file != null) {
+                BazelAspectWarmupJob.getInstance().prioritize(file.getProject(),
+                    BazelAspectWarmupService.PRIORITY_OPEN_EDITOR);
+            }
+        } catch (PartInitException pie) {
+            LOG.debug("Could not read the input of editor {}", editorReference.getId());
+        }
+    }
+
+    // IWindowListener
+
+    @Override
+    public void windowOpened(IWorkbenchWindow window) {
+        window.getPartService().addPartListener(this);
+        for (IWorkbenchPage page : window.getPages()) {
+            for (IEditorReference editorReference : page.getEditorReferences()) {
+                prioritize(editorReference);
+            }
+        }
+    }
+
+    @Override
+    public void windowClosed(IWorkbenchWindow window) {
+        window.getPartService().removePartListener(this);
+    }
+
+    @Override
+    public void windowActivated(IWorkbenchWindow window) {}
+
+    @Override
+    public void windowDeactivated(IWorkbenchWindow window) {}
+
+    // IPartListener2
+
+    @Override
+    public void partOpened(IWorkbenchPartReference partRef) {
+        if (partRef instanceof IEditorReference) {
+            prioritize((IEditorReference) partRef);
+        }
+    }
+
+    @Override
+    public void partInputChanged(IWorkbenchPartReference partRef) {
+        partOpened(partRef);
+    }
+
+    @Override
+    public void partActivated(IWorkbenchPartReference partRef) {}
+
+    @Override
+    public void partBroughtToTop(IWorkbenchPartReference partRef) {}
+
+    @Override
+    public void partClosed(IWorkbenchPartReference partRef) {}
+
+    @Override
+    public void partDeactivated(IWorkbenchPartReference partRef) {}
+
+    @Override
+    public void partHidden(IWorkbenchPartReference partRef) {}
+
+    @Override
+    public void partVisible(IWorkbenchPartReference partRef) {}
+}
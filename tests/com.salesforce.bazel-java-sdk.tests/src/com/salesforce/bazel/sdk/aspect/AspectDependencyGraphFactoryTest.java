@@ -0,0 +1,68 @@
+package com.salesforce.bazel.sdk.aspect;
+
+import static com.salesforce.bazel.sdk.workspace.test.TestAspectTargetInfo.createInfo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.salesforce.bazel.sdk.graph.BazelDependencyGraph;
+
+public class AspectDependencyGraphFactoryTest {
+
+    @Test
+    public void testPackageEdges() {
+        AspectTargetInfos aspects = new AspectTargetInfos(createInfo("//app:app", "//app:helper", "//lib:lib"),
+                createInfo("//app:helper", "//lib:util", "@maven//:guava"), createInfo("//lib:lib", "//lib:util"));
+
+        BazelDependencyGraph graph = AspectDependencyGraphFactory.build(aspects, false);
+        assertEquals(Collections.singleton("//app"), graph.getDependsOnMap().keySet());
+        assertTrue(graph.isDependency("//app", "//lib"));
+        assertTrue(graph.isDependency("//app", "@maven//:guava"));
+
+        graph = AspectDependencyGraphFactory.build(aspects, true);
+        assertTrue(graph.isDependency("//app:app", "//lib:util"));
+        assertFalse(graph.isDependency("//lib:lib", "//app:helper"));
+    }
+
+    @Test
+    public void testParallelBuild() {
+        List<AspectTargetInfo> infos = new ArrayList<>();
+        for (int p = 0; p < 500; p++) {
+            for (int t = 0; t < 10; t++) {
+                List<String> deps = new ArrayList<>();
+                deps.add("//pkg" + p + ":t" + ((t + 1) % 10));
+                deps.add("//pkg" + ((p * 7) % 500) + ":t" + t);
+                deps.add("//pkg" + ((p + 1) % 500) + ":t0");
+                deps.add("@maven//:dep" + (t % 3));
+                infos.add(createInfo("//pkg" + p + ":t" + t, deps.toArray(new String[0])));
+            }
+        }
+        AspectTargetInfos aspects = new AspectTargetInfos(infos);
+
+        int threshold = AspectDependencyGraphFactory.PARALLEL_BUILD_THRESHOLD;
+        try {
+            for (boolean includeTarget : new boolean[] { false, true }) {
+                AspectDependencyGraphFactory.PARALLEL_BUILD_THRESHOLD = Integer.MAX_VALUE;
+                BazelDependencyGraph serialGraph = AspectDependencyGraphFactory.build(aspects, includeTarget);
+                AspectDependencyGraphFactory.PARALLEL_BUILD_THRESHOLD = 1;
+                BazelDependencyGraph parallelGraph = AspectDependencyGraphFactory.build(aspects, includeTarget);
+
+                // same edges, in the same order
+                assertEquals(new ArrayList<>(serialGraph.getDependsOnMap().keySet()),
+                    new ArrayList<>(parallelGraph.getDependsOnMap().keySet()));
+                assertEquals(serialGraph.getDependsOnMap(), parallelGraph.getDependsOnMap());
+                assertEquals(serialGraph.getUsedByMap(), parallelGraph.getUsedByMap());
+                assertEquals(new ArrayList<>(serialGraph.getRootLabels()),
+                    new ArrayList<>(parallelGraph.getRootLabels()));
+            }
+        } finally {
+            AspectDependencyGraphFactory.PARALLEL_BUILD_THRESHOLD = threshold;
+        }
+    }
+}
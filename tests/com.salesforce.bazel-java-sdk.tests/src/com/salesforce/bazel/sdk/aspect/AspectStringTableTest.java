@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.aspect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class AspectStringTableTest {
+
+    @Test
+    public void testIntern() {
+        AspectStringTable table = new AspectStringTable();
+        int id = table.intern("//a/b:c");
+        assertEquals(id, table.intern(new String("//a/b:c")));
+        assertEquals("//a/b:c", table.get(id));
+        assertEquals(1, table.size());
+
+        assertEquals(AspectStringTable.NO_ID, table.intern(null));
+        assertNull(table.get(AspectStringTable.NO_ID));
+        assertNull(table.canonicalize(null));
+    }
+
+    @Test
+    public void testGrowth() {
+        AspectStringTable table = new AspectStringTable();
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, table.intern("path" + i));
+        }
+        for (int i = 0; i < count; i++) {
+            assertEquals("path" + i, table.get(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentIntern() throws Exception {
+        AspectStringTable table = new AspectStringTable();
+        int count = 10000;
+        int threads = 4;
+        int[][] idsByThread = new int[threads][count];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int[] ids = idsByThread[t];
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < count; i++) {
+                        ids[i] = table.intern("path" + i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // every thread got the same id for a string, and the ids are dense
+        assertEquals(count, table.size());
+        for (int i = 0; i < count; i++) {
+            for (int t = 1; t < threads; t++) {
+                assertEquals(idsByThread[0][i], idsByThread[t][i]);
+            }
+            assertEquals("path" + i, table.get(idsByThread[0][i]));
+            assertTrue(idsByThread[0][i] < count);
+        }
+    }
+
+    @Test
+    public void testCompactList() {
+        AspectStringTable table = new AspectStringTable();
+        List<String> strings = table.compact(Arrays.asList("//a:a", "//b:b", "//a:a"));
+        assertEquals(Arrays.asList("//a:a", "//b:b", "//a:a"), strings);
+        assertSame(strings.get(0), strings.get(2));
+        assertTrue(table.compact(Collections.emptyList()).isEmpty());
+        assertTrue(table.compact(null).isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCompactListIsReadOnly() {
+        new AspectStringTable().compact(Arrays.asList("//a:a")).add("//b:b");
+    }
+
+    @Test
+    public void testFullTableKeepsPlainStrings() {
+        AspectStringTable table = new AspectStringTable(2);
+        assertEquals(0, table.intern("//a:a"));
+        assertEquals(1, table.intern("//b:b"));
+        assertEquals(AspectStringTable.NOT_INTERNED, table.intern("//c:c"));
+        assertEquals(2, table.size());
+
+        // strings that are already in the table are still shared
+        assertEquals(1, table.intern(new String("//b:b")));
+        String notInterned = new String("//c:c");
+        assertSame(notInterned, table.canonicalize(notInterned));
+        assertNull(table.internAll(Arrays.asList("//a:a", "//c:c")));
+        List<String> strings = table.compact(Arrays.asList("//a:a", "//c:c"));
+        assertEquals(Arrays.asList("//a:a", "//c:c"), strings);
+    }
+
+    @Test
+    public void testInfosShareStrings() {
+        // the dependency of one target is the label of another
+        AspectStringTable table = new AspectStringTable();
+        AspectTargetInfo dep = new AspectTargetInfo(table, new File(""), "some/path", "java_library",
+                new String("//a:dep"), Collections.emptyList(), Collections.emptyList());
+        AspectTargetInfo info = new AspectTargetInfo(table, new File(""), "some/path", "java_library", "//a:lib",
+                Arrays.asList(new String("//a:dep")), Arrays.asList("a/Lib.java"));
+
+        assertEquals(Arrays.asList("//a:dep"), info.getDeps());
+        assertEquals(Arrays.asList("a/Lib.java"), info.getSources());
+        assertSame(dep.getLabelPath(), info.getDeps().get(0));
+        assertSame(dep.getKindAsString(), info.getKindAsString());
+    }
+
+    @Test
+    public void testInfosWithoutTableKeepPlainStrings() {
+        String label = new String("//a:lib");
+        AspectTargetInfo info = new AspectTargetInfo(new File(""), "some/path", "java_library", label,
+                Arrays.asList("//a:dep"), Collections.emptyList());
+
+        assertSame(label, info.getLabelPath());
+        assertEquals(Arrays.asList("//a:dep"), info.getDeps());
+    }
+}
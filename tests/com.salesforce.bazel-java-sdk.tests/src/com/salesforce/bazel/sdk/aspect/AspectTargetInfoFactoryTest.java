@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.aspect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.aspect.jvm.JVMAspectOutputJarSet;
+import com.salesforce.bazel.sdk.aspect.jvm.JVMAspectTargetInfo;
+import com.salesforce.bazel.sdk.workspace.test.TestAspectFileCreator;
+
+public class AspectTargetInfoFactoryTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testParallelLoading() throws Exception {
+        File outputBaseDir = tmpFolder.newFolder();
+        int numberOfFiles = AspectTargetInfoFactory.PARALLEL_LOAD_THRESHOLD * 4;
+        List<File> aspectFiles = new ArrayList<>();
+        for (int i = 0; i < numberOfFiles; i++) {
+            String packagePath = "projects/libs/javalib" + i; // $SLASH_OK bazel path
+            aspectFiles.add(new File(TestAspectFileCreator.createJavaLibraryAspectFile(outputBaseDir, packagePath,
+                "javalib" + i, "javalib" + i, null, null, true, false)));
+        }
+
+        Map<String, AspectTargetInfo> infos = AspectTargetInfoFactory.loadAspectFiles(aspectFiles);
+
+        assertEquals(numberOfFiles, infos.size());
+        for (int i = 0; i < numberOfFiles; i++) {
+            String label = "//projects/libs/javalib" + i + ":javalib" + i; // $SLASH_OK bazel path
+            assertNotNull(infos.get(label));
+            assertEquals(aspectFiles.get(i), infos.get(label).getAspectDataFile());
+        }
+    }
+
+    @Test
+    public void testJarSets() throws Exception {
+        File outputBaseDir = tmpFolder.newFolder();
+        String packagePath = "projects/libs/javalib0"; // $SLASH_OK bazel path
+        File aspectFile = new File(TestAspectFileCreator.createJavaLibraryAspectFile(outputBaseDir, packagePath,
+            "javalib0", "javalib0", null, null, true, false));
+
+        JVMAspectTargetInfo info = (JVMAspectTargetInfo) AspectTargetInfoFactory.loadAspectFile(aspectFile);
+
+        // the jar sets are created on access from the ids of their paths
+        assertEquals(1, info.getJars().size());
+        JVMAspectOutputJarSet jarSet = info.getJars().get(0);
+        assertNotNull(jarSet.getJar());
+        assertEquals(jarSet, info.getJars().get(0));
+        assertEquals(jarSet.hashCode(), info.getJars().get(0).hashCode());
+        assertSame(jarSet.getJar(), info.getJars().get(0).getJar());
+    }
+
+    @Test
+    public void testReadLargeFile() throws Exception {
+        // large files are memory mapped
+        StringBuilder content = new StringBuilder();
+        while (content.length() < (1024 * 1024)) {
+            content.append("{\"café\": \"€\"}\n");
+        }
+        File file = tmpFolder.newFile("large.json");
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(content.toString(), AspectTargetInfoFactory.readAspectFile(file));
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.aspect;
+
+import static com.salesforce.bazel.sdk.workspace.test.TestAspectTargetInfo.createInfo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.salesforce.bazel.sdk.init.JvmRuleInit;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.model.BazelTargetKind;
+
+public class AspectTransitiveClosureEngineTest {
+
+    private final Map<BazelLabel, AspectTargetInfo> infos = new LinkedHashMap<>();
+
+    @Test
+    public void testDiamond() {
+        AspectTargetInfo a = add("//a:a", JvmRuleInit.KIND_JAVA_LIBRARY, "//b:b", "//c:c");
+        AspectTargetInfo b = add("//b:b", JvmRuleInit.KIND_JAVA_LIBRARY, "//d:d");
+        AspectTargetInfo c = add("//c:c", JvmRuleInit.KIND_JAVA_LIBRARY, "//d:d");
+        AspectTargetInfo d = add("//d:d", JvmRuleInit.KIND_JAVA_LIBRARY);
+        AspectTransitiveClosureEngine engine = new AspectTransitiveClosureEngine(infos);
+
+        assertClosure(engine.getTransitiveClosure(a), b, c, d);
+        assertClosure(engine.getTransitiveClosure(b), d);
+        assertClosure(engine.getTransitiveClosure(c), d);
+        assertClosure(engine.getTransitiveClosure(d));
+    }
+
+    @Test
+    public void testCycle() {
+        AspectTargetInfo a = add("//a:a", JvmRuleInit.KIND_JAVA_LIBRARY, "//b:b");
+        AspectTargetInfo b = add("//b:b", JvmRuleInit.KIND_JAVA_LIBRARY, "//c:c");
+        AspectTargetInfo c = add("//c:c", JvmRuleInit.KIND_JAVA_LIBRARY, "//a:a", "//d:d");
+        AspectTargetInfo d = add("//d:d", JvmRuleInit.KIND_JAVA_LIBRARY);
+        AspectTransitiveClosureEngine engine = new AspectTransitiveClosureEngine(infos);
+
+        // like the other targets, the members of a cycle are not part of their own closure
+        assertClosure(engine.getTransitiveClosure(a), b, c, d);
+        assertClosure(engine.getTransitiveClosure(b), a, c, d);
+        assertClosure(engine.getTransitiveClosure(c), a, b, d);
+    }
+
+    @Test
+    public void testTestsAndImportsIncludeSelf() {
+        AspectTargetInfo test = add("//a:test", JvmRuleInit.KIND_JAVA_TEST, "//a:import");
+        AspectTargetInfo imp = add("//a:import", JvmRuleInit.KIND_JAVA_IMPORT);
+        AspectTransitiveClosureEngine engine = new AspectTransitiveClosureEngine(infos);
+
+        assertClosure(engine.getTransitiveClosure(test), test, imp);
+        assertClosure(engine.getTransitiveClosure(imp), imp);
+    }
+
+    @Test
+    public void testMissingDepsAreExcluded() {
+        AspectTargetInfo a = add("//a:a", JvmRuleInit.KIND_JAVA_LIBRARY, "//missing:missing", "//b:b");
+        AspectTargetInfo b = add("//b:b", JvmRuleInit.KIND_JAVA_LIBRARY, "//missing:missing");
+        AspectTransitiveClosureEngine engine = new AspectTransitiveClosureEngine(infos);
+
+        assertClosure(engine.getTransitiveClosure(a), b);
+        assertClosure(engine.getTransitiveClosure(b));
+    }
+
+    @Test
+    public void testUnionOfClosures() {
+        AspectTargetInfo a = add("//a:a", JvmRuleInit.KIND_JAVA_LIBRARY, "//c:c");
+        AspectTargetInfo b = add("//a:b", JvmRuleInit.KIND_JAVA_LIBRARY, "//d:d");
+        AspectTargetInfo c = add("//c:c", JvmRuleInit.KIND_JAVA_LIBRARY);
+        AspectTargetInfo d = add("//d:d", JvmRuleInit.KIND_JAVA_LIBRARY);
+        add("//e:e", JvmRuleInit.KIND_JAVA_LIBRARY, "//d:d");
+        AspectTransitiveClosureEngine engine = new AspectTransitiveClosureEngine(infos);
+
+        // the roots are part of the union
+        assertClosure(engine.getTransitiveClosure(Arrays.asList(a, b)), a, b, c, d);
+    }
+
+    @Test
+    public void testAll() {
+        AspectTargetInfo a = add("//a:a", JvmRuleInit.KIND_JAVA_LIBRARY, "//b:b");
+        AspectTargetInfo b = add("//b:b", JvmRuleInit.KIND_JAVA_LIBRARY);
+        AspectTransitiveClosureEngine engine = new AspectTransitiveClosureEngine(infos);
+
+        Set<AspectTargetInfo> all = engine.getAll();
+        assertClosure(all, a, b);
+        assertFalse(all.contains(createInfo("//a:a", JvmRuleInit.KIND_JAVA_LIBRARY)));
+        try {
+            all.add(a);
+            assertTrue("the closures are unmodifiable", false);
+        } catch (UnsupportedOperationException expected) {}
+    }
+
+    // HELPERS
+
+    private AspectTargetInfo add(String label, BazelTargetKind kind, String... deps) {
+        AspectTargetInfo info = createInfo(label, kind, deps);
+        infos.put(new BazelLabel(label), info);
+        return info;
+    }
+
+    private static void assertClosure(Set<AspectTargetInfo> closure, AspectTargetInfo... expected) {
+        assertEquals(expected.length, closure.size());
+        assertEquals(new HashSet<>(Arrays.asList(expected)), new HashSet<>(closure));
+        for (AspectTargetInfo info : expected) {
+            assertTrue(closure.contains(info));
+        }
+    }
+}
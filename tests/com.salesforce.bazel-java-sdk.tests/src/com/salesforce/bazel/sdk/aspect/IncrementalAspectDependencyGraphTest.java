@@ -0,0 +1,122 @@
+package com.salesforce.bazel.sdk.aspect;
+
+import static com.salesforce.bazel.sdk.workspace.test.TestAspectTargetInfo.createInfo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.salesforce.bazel.sdk.graph.InMemoryPackageLocation;
+import com.salesforce.bazel.sdk.model.BazelPackageLocation;
+
+public class IncrementalAspectDependencyGraphTest {
+
+    @Test
+    public void testUpdate() {
+        IncrementalAspectDependencyGraph graph = new IncrementalAspectDependencyGraph(false);
+        List<Set<String>> notifications = new ArrayList<>();
+        graph.addListener(notifications::add);
+
+        AspectTargetInfo app = createInfo("//app:app", "//lib:lib", "//app:helper", "@maven//:guava");
+        AspectTargetInfo lib = createInfo("//lib:lib", "//base:base");
+        graph.update(Arrays.asList(app, lib));
+
+        assertEquals(1, notifications.size());
+        assertEquals(new HashSet<>(Arrays.asList("//app", "//lib")), notifications.get(0));
+        assertEquals(new HashSet<>(Arrays.asList("//lib", "@maven//:guava")), getDeps(graph, "//app"));
+        assertEquals(Collections.singleton("//base"), getDeps(graph, "//lib"));
+
+        // the same aspect data again changes nothing
+        graph.update(Arrays.asList(app, lib));
+        assertEquals(1, notifications.size());
+
+        // new aspect data for //lib:lib replaces its edges
+        graph.update(Collections.singletonList(createInfo("//lib:lib", "//core:core")));
+        assertEquals(2, notifications.size());
+        assertEquals(Collections.singleton("//lib"), notifications.get(1));
+        assertEquals(Collections.singleton("//core"), getDeps(graph, "//lib"));
+    }
+
+    @Test
+    public void testSharedEdges() {
+        IncrementalAspectDependencyGraph graph = new IncrementalAspectDependencyGraph(false);
+        graph.update(Arrays.asList(createInfo("//app:a", "//lib:lib"), createInfo("//app:b", "//lib:lib")));
+
+        // the edge //app => //lib is still contributed by //app:b
+        graph.remove(Collections.singleton("//app:a"));
+        assertEquals(Collections.singleton("//lib"), getDeps(graph, "//app"));
+
+        graph.remove(Collections.singleton("//app:b"));
+        assertNull(getDeps(graph, "//app"));
+    }
+
+    @Test
+    public void testRemovePackageAndClear() {
+        IncrementalAspectDependencyGraph graph = new IncrementalAspectDependencyGraph(false);
+        graph.update(Arrays.asList(createInfo("//app:app", "//lib:lib"), createInfo("//app:tests", "//test:util"),
+            createInfo("//lib:lib", "//base:base")));
+
+        graph.removePackage("//app");
+        assertNull(getDeps(graph, "//app"));
+        assertEquals(Collections.singleton("//base"), getDeps(graph, "//lib"));
+
+        List<Set<String>> notifications = new ArrayList<>();
+        graph.addListener(notifications::add);
+        graph.clear();
+        assertEquals(Collections.singletonList(Collections.singleton("//lib")), notifications);
+        assertTrue(graph.query(g -> g.getDependsOnMap().isEmpty()));
+    }
+
+    @Test
+    public void testOrderLabels() {
+        IncrementalAspectDependencyGraph graph = new IncrementalAspectDependencyGraph(false);
+        graph.update(Arrays.asList(createInfo("//app:app", "//lib:lib"), createInfo("//lib:lib", "//base:base")));
+
+        List<BazelPackageLocation> selected = new ArrayList<>();
+        selected.add(new TestPackageLocation("//app"));
+        selected.add(new TestPackageLocation("//base"));
+        List<BazelPackageLocation> ordered = graph.query(g -> g.orderLabels(selected, false));
+        assertEquals("//base", ordered.get(0).getBazelPackageName());
+        assertEquals("//app", ordered.get(1).getBazelPackageName());
+
+        // //lib no longer depends on //base
+        assertTrue(graph.query(g -> g.isDependency("//app", "//base")));
+        graph.update(Collections.singletonList(createInfo("//lib:lib")));
+        assertFalse(graph.query(g -> g.isDependency("//app", "//base")));
+    }
+
+    // HELPERS
+
+    private static Set<String> getDeps(IncrementalAspectDependencyGraph graph, String label) {
+        return graph.query(g -> {
+            Set<String> deps = g.getDependsOnMap().get(label);
+            return deps == null ? null : new HashSet<>(deps);
+        });
+    }
+
+    /**
+     * Package location named like the packages of the graph (InMemoryPackageLocation strips the // prefix)
+     */
+    private static class TestPackageLocation extends InMemoryPackageLocation {
+        private final String packageName;
+
+        TestPackageLocation(String packageName) {
+            super(packageName);
+            this.packageName = packageName;
+        }
+
+        @Override
+        public String getBazelPackageName() {
+            return packageName;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.aspect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.workspace.test.TestAspectFileCreator;
+
+public class LastGoodAspectTargetInfoCacheTest {
+    private static final BazelLabel LABEL0 =
+            BazelLabel.valueOf("//projects/libs/javalib0:javalib0"); // $SLASH_OK bazel path
+    private static final BazelLabel LABEL1 =
+            BazelLabel.valueOf("//projects/libs/javalib1:javalib1"); // $SLASH_OK bazel path
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private File spillDir;
+    private AspectTargetInfo info0;
+    private AspectTargetInfo info1;
+
+    @Before
+    public void setup() throws Exception {
+        spillDir = tmpFolder.newFolder();
+        File outputBaseDir = tmpFolder.newFolder();
+        info0 = createAspectTargetInfo(outputBaseDir, "javalib0");
+        info1 = createAspectTargetInfo(outputBaseDir, "javalib1");
+    }
+
+    @Test
+    public void testInMemory() {
+        LastGoodAspectTargetInfoCache cache = new LastGoodAspectTargetInfoCache(10, spillDir);
+        Set<AspectTargetInfo> infos = Collections.singleton(info0);
+        cache.put(LABEL0, infos);
+
+        assertSame(infos, cache.get(LABEL0));
+        assertNull(cache.get(LABEL1));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getWeight());
+        assertEquals(0, spillDir.list().length);
+    }
+
+    @Test
+    public void testEvictedEntryIsSpilledAndReloaded() throws Exception {
+        LastGoodAspectTargetInfoCache cache = new LastGoodAspectTargetInfoCache(2, spillDir);
+        cache.put(LABEL0, Collections.singleton(info0));
+        cache.put(LABEL1, new HashSet<>(Arrays.asList(info0, info1)));
+        cache.awaitSpills();
+
+        // the budget only fits the closure of javalib1
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getInMemorySize());
+        assertEquals(2, cache.getWeight());
+        assertEquals(1, spillDir.list().length);
+
+        // javalib0 is parsed again from its aspect file, and javalib1 is spilled in turn
+        Set<AspectTargetInfo> infos = cache.get(LABEL0);
+        assertNotNull(infos);
+        assertEquals(1, infos.size());
+        assertEquals(LABEL0.getLabelPath(), infos.iterator().next().getLabelPath());
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getInMemorySize());
+
+        infos = cache.get(LABEL1);
+        assertNotNull(infos);
+        assertEquals(2, infos.size());
+    }
+
+    @Test
+    public void testSpilledEntrySurvivesDeletedAspectFile() throws Exception {
+        LastGoodAspectTargetInfoCache cache = new LastGoodAspectTargetInfoCache(1, spillDir);
+        cache.put(LABEL0, Collections.singleton(info0));
+        cache.put(LABEL1, Collections.singleton(info1));
+        cache.awaitSpills();
+        info0.getAspectDataFile().delete();
+
+        // the spill file holds a copy of the aspect file
+        Set<AspectTargetInfo> infos = cache.get(LABEL0);
+        assertNotNull(infos);
+        assertEquals(LABEL0.getLabelPath(), infos.iterator().next().getLabelPath());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testSpilledEntryKeepsLastGoodContents() throws Exception {
+        LastGoodAspectTargetInfoCache cache = new LastGoodAspectTargetInfoCache(1, spillDir);
+        cache.put(LABEL0, Collections.singleton(info0));
+        cache.put(LABEL1, Collections.singleton(info1));
+        cache.awaitSpills();
+
+        // Bazel rewrote the aspect file while the package was broken
+        Files.write(info0.getAspectDataFile().toPath(), "{".getBytes(StandardCharsets.UTF_8));
+
+        Set<AspectTargetInfo> infos = cache.get(LABEL0);
+        assertNotNull(infos);
+        assertEquals(LABEL0.getLabelPath(), infos.iterator().next().getLabelPath());
+    }
+
+    @Test
+    public void testClosureSetsOfAnEngineShareTheirWeight() throws Exception {
+        Map<BazelLabel, AspectTargetInfo> infos = new HashMap<>();
+        infos.put(LABEL0, info0);
+        infos.put(LABEL1, info1);
+        AspectTransitiveClosureEngine engine = new AspectTransitiveClosureEngine(infos);
+
+        LastGoodAspectTargetInfoCache cache = new LastGoodAspectTargetInfoCache(100, spillDir);
+        cache.put(LABEL0, engine.getTransitiveClosure(Arrays.asList(info0, info1)));
+        cache.put(LABEL1, engine.getTransitiveClosure(Arrays.asList(info0, info1)));
+
+        // the 2 infos of the engine are weighted once, and each set adds the word of its bitset
+        assertEquals(4, cache.getWeight());
+
+        cache.clear();
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testPendingSpillIsReturned() throws Exception {
+        LastGoodAspectTargetInfoCache cache = new LastGoodAspectTargetInfoCache(1, spillDir);
+        Set<AspectTargetInfo> infos = Collections.singleton(info0);
+        cache.put(LABEL0, infos);
+        cache.put(LABEL1, Collections.singleton(info1));
+
+        // whether or not the spill file was written yet, the entry is found
+        Set<AspectTargetInfo> reloaded = cache.get(LABEL0);
+        assertNotNull(reloaded);
+        assertEquals(LABEL0.getLabelPath(), reloaded.iterator().next().getLabelPath());
+        cache.awaitSpills();
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testEntryWithoutAspectFileIsDropped() throws Exception {
+        LastGoodAspectTargetInfoCache cache = new LastGoodAspectTargetInfoCache(1, spillDir);
+        AspectTargetInfo info = new AspectTargetInfo(null, "some/path", "java_library", "//a:lib",
+                Collections.emptyList(), Collections.emptyList());
+        cache.put(LABEL0, Collections.singleton(info));
+        cache.put(LABEL1, Collections.singleton(info1));
+        cache.awaitSpills();
+
+        assertNull(cache.get(LABEL0));
+        assertEquals(1, cache.size());
+        assertEquals(0, spillDir.list().length);
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        LastGoodAspectTargetInfoCache cache = new LastGoodAspectTargetInfoCache(1, spillDir);
+        cache.put(LABEL0, Collections.singleton(info0));
+        cache.put(LABEL1, Collections.singleton(info1));
+        cache.clear();
+        cache.awaitSpills();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, spillDir.list().length);
+    }
+
+    // INTERNAL
+
+    private static AspectTargetInfo createAspectTargetInfo(File outputBaseDir, String name) {
+        String aspectFilePath = TestAspectFileCreator.createJavaLibraryAspectFile(outputBaseDir,
+            "projects/libs/" + name, name, name, null, null, true, false); // $SLASH_OK bazel path
+        return AspectTargetInfoFactory.loadAspectFile(new File(aspectFilePath));
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.aspect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.workspace.test.TestAspectFileCreator;
+
+public class PersistentAspectTargetInfoCacheTest {
+    private static final String PACKAGE_PATH = "projects/libs/javalib0"; // $SLASH_OK bazel path
+    private static final BazelLabel LABEL = new BazelLabel("//projects/libs/javalib0:javalib0"); // $SLASH_OK bazel path
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private File metadataDir;
+    private File workspaceDir;
+    private File aspectDir;
+    private File outputBaseDir;
+    private AspectTargetInfo aspectTargetInfo;
+    private final AspectStringTable stringTable = new AspectStringTable();
+
+    @Before
+    public void setup() throws Exception {
+        metadataDir = tmpFolder.newFolder();
+        workspaceDir = tmpFolder.newFolder();
+        aspectDir = tmpFolder.newFolder();
+        outputBaseDir = tmpFolder.newFolder();
+
+        File packageDir = new File(workspaceDir, PACKAGE_PATH);
+        packageDir.mkdirs();
+        writeFile(new File(packageDir, "BUILD"), "java_library(name = \"javalib0\")");
+        writeAspectVersion("1");
+
+        String aspectFilePath = TestAspectFileCreator.createJavaLibraryAspectFile(outputBaseDir, PACKAGE_PATH,
+            "javalib0", "javalib0", null, null, true, false);
+        aspectTargetInfo = AspectTargetInfoFactory.loadAspectFile(new File(aspectFilePath));
+    }
+
+    @Test
+    public void testWarmRestart() throws Exception {
+        persistEntry();
+
+        PersistentAspectTargetInfoCache cache = createCache(outputBaseDir);
+        Set<AspectTargetInfo> infos = cache.get(LABEL).get();
+        assertNotNull(infos);
+        assertEquals(1, infos.size());
+        assertEquals(LABEL.getLabelPath(), infos.iterator().next().getLabelPath());
+    }
+
+    @Test
+    public void testBuildFileChangeInvalidatesEntry() throws Exception {
+        persistEntry();
+        writeFile(new File(workspaceDir, PACKAGE_PATH + "/BUILD"), "java_library(name = \"javalib0\", deps = [])");
+
+        PersistentAspectTargetInfoCache cache = createCache(outputBaseDir);
+        assertNull(cache.get(LABEL).get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testAspectVersionChangeInvalidatesCache() throws Exception {
+        persistEntry();
+        writeAspectVersion("2");
+
+        assertNull(createCache(outputBaseDir).get(LABEL).get());
+    }
+
+    @Test
+    public void testOutputBaseChangeInvalidatesCache() throws Exception {
+        persistEntry();
+
+        assertNull(createCache(tmpFolder.newFolder()).get(LABEL).get());
+    }
+
+    @Test
+    public void testMissingAspectFileInvalidatesEntry() throws Exception {
+        persistEntry();
+        aspectTargetInfo.getAspectDataFile().delete();
+
+        assertNull(createCache(outputBaseDir).get(LABEL).get());
+    }
+
+    @Test
+    public void testSaveIsDeferred() throws Exception {
+        PersistentAspectTargetInfoCache cache = createCache(outputBaseDir);
+        cache.put(LABEL, Collections.singleton(aspectTargetInfo));
+        cache.save();
+        cache.save();
+        assertFalse(cache.getCacheFile().exists());
+
+        cache.flush();
+        assertTrue(cache.getCacheFile().exists());
+        assertNotNull(createCache(outputBaseDir).get(LABEL).get());
+    }
+
+    // INTERNAL
+
+    private void persistEntry() {
+        PersistentAspectTargetInfoCache cache = createCache(outputBaseDir);
+        cache.put(LABEL, Collections.singleton(aspectTargetInfo));
+        cache.flush();
+    }
+
+    private PersistentAspectTargetInfoCache createCache(File outputBase) {
+        return new PersistentAspectTargetInfoCache(metadataDir, workspaceDir, aspectDir, outputBase,
+                () -> stringTable);
+    }
+
+    private void writeAspectVersion(String version) throws Exception {
+        writeFile(new File(aspectDir, "bzljavasdk_aspect.bzl"), "BZLJAVASDK_ASPECT_VERSION = \"" + version + "\"\n");
+    }
+
+    private static void writeFile(File file, String content) throws Exception {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -2,6 +2,10 @@ package com.salesforce.bazel.sdk.bep.event;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
 
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
@@ -36,6 +40,12 @@ public class BEPTargetCompletedEventTest {
         assertFalse(event.isLastMessage());
         assertFalse(event.isProcessed());
         assertEquals("targetCompleted", event.getEventType());
+        assertEquals("//foo:foo", event.getLabel());
+        assertNull(event.getAspect());
+
+        assertEquals(Collections.singletonList("default"), event.getOutputGroupNames());
+        assertEquals(Collections.singletonList("2"), event.getOutputGroupFileSets("default"));
+        assertTrue(event.getOutputGroupFileSets("missing").isEmpty());
 
         BEPFileUri uri = event.getImportantOutput().get(0);
         assertEquals("foo/foo.jar", uri.getId());
@@ -0,0 +1,69 @@
+package com.salesforce.bazel.sdk.bep.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.bep.event.BEPEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPNamedSetEvent;
+import com.salesforce.bazel.sdk.bep.event.BEPTargetCompletedEvent;
+
+public class BEPFileFollowerTest {
+
+    private static final String namedSetEvent = "{\"id\":{\"namedSet\":{\"id\":\"0\"}},\"namedSetOfFiles\":{"
+            + "\"files\":[{\"name\":\"foo/foo.json\",\"uri\":\"file:///tmp/execroot/bazel-out/bin/foo/foo.json\"}]}}";
+
+    private static final String completedEvent = "{\"id\":{\"targetCompleted\":{\"label\":\"//foo:foo\","
+            + "\"aspect\":\"@myaspect//:aspect.bzl%myaspect\"}},\"completed\":{\"success\":true,\"outputGroup\":["
+            + "{\"name\":\"info\",\"fileSets\":[{\"id\":\"0\"}]}]}}";
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testFollowsAppendedEvents() throws Exception {
+        File bepFile = tmpFolder.newFile("bep.json");
+        List<BEPEvent> events = new ArrayList<>();
+        BEPFileFollower follower = new BEPFileFollower(bepFile, events::add);
+        assertEquals(0, follower.poll());
+
+        // Bazel is still writing the second event
+        int split = completedEvent.length() / 2;
+        append(bepFile, namedSetEvent + "\n" + completedEvent.substring(0, split));
+        assertEquals(1, follower.poll());
+        assertTrue(events.get(0) instanceof BEPNamedSetEvent);
+
+        append(bepFile, completedEvent.substring(split) + "\n");
+        assertEquals(1, follower.poll());
+        assertEquals("//foo:foo", ((BEPTargetCompletedEvent) events.get(1)).getLabel());
+        assertEquals(0, follower.poll());
+
+        // the collected events resolve the outputs without reading the file again
+        BEPOutputFileResolver resolver = new BEPOutputFileResolver(follower.getContents());
+        assertEquals(1, resolver.getOutputFiles(resolver.getCompletedTargets().get(0), "info").size());
+    }
+
+    @Test
+    public void testMissingFile() throws Exception {
+        BEPFileFollower follower = new BEPFileFollower(new File(tmpFolder.getRoot(), "missing.json"), event -> {});
+        assertEquals(0, follower.poll());
+        assertFalse(follower.getContents().hasLastEvent);
+    }
+
+    // HELPERS
+
+    private static void append(File file, String content) throws Exception {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,86 @@
+package com.salesforce.bazel.sdk.bep.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.salesforce.bazel.sdk.bep.BazelBuildEventTypeManager;
+import com.salesforce.bazel.sdk.bep.event.BEPFileUri;
+import com.salesforce.bazel.sdk.bep.event.BEPTargetCompletedEvent;
+
+public class BEPOutputFileResolverTest {
+
+    private static final String nestedSetEvent = "{\"id\":{\"namedSet\":{\"id\":\"0\"}},\"namedSetOfFiles\":{"
+            + "\"files\":[{\"name\":\"foo/dep.json\",\"uri\":\"file:///tmp/execroot/bazel-out/bin/foo/dep.json\"}]}}";
+
+    private static final String outerSetEvent = "{\"id\":{\"namedSet\":{\"id\":\"1\"}},\"namedSetOfFiles\":{"
+            + "\"files\":[{\"name\":\"foo/foo.json\",\"uri\":\"file:///tmp/execroot/bazel-out/bin/foo/foo.json\"}],"
+            + "\"fileSets\":[{\"id\":\"0\"}]}}";
+
+    private static final String aspectCompletedEvent = "{\"id\":{\"targetCompleted\":{\"label\":\"//foo:foo\","
+            + "\"aspect\":\"@myaspect//:aspect.bzl%myaspect\"}},\"completed\":{\"success\":true,\"outputGroup\":["
+            + "{\"name\":\"info\",\"fileSets\":[{\"id\":\"1\"}]},{\"name\":\"deps\",\"fileSets\":[{\"id\":\"0\"}]}]}}";
+
+    private static final String failedCompletedEvent = "{\"id\":{\"targetCompleted\":{\"label\":\"//bar:bar\","
+            + "\"aspect\":\"@myaspect//:aspect.bzl%myaspect\"}},\"completed\":{\"failureDetail\":{"
+            + "\"message\":\"analysis of target '//bar:bar' failed\"}}}";
+
+    @Test
+    public void testNestedSets() {
+        BEPOutputFileResolver resolver = createResolver(nestedSetEvent, outerSetEvent, aspectCompletedEvent);
+
+        assertEquals(1, resolver.getCompletedTargets().size());
+        BEPTargetCompletedEvent completed = resolver.getCompletedTargets().get(0);
+        assertEquals("//foo:foo", completed.getLabel());
+        assertEquals("@myaspect//:aspect.bzl%myaspect", completed.getAspect());
+
+        List<BEPFileUri> infoFiles = resolver.getOutputFiles(completed, "info");
+        assertEquals(2, infoFiles.size());
+        assertEquals("foo/foo.json", infoFiles.get(0).getId());
+        assertEquals("foo/dep.json", infoFiles.get(1).getId());
+
+        List<BEPFileUri> depsFiles = resolver.getOutputFiles(completed, "deps");
+        assertEquals(1, depsFiles.size());
+        assertEquals("foo/dep.json", depsFiles.get(0).getId());
+
+        assertTrue(resolver.getOutputFiles(completed, "missing").isEmpty());
+    }
+
+    @Test
+    public void testMissingSet() {
+        // the set referenced by the event is not in the file
+        BEPOutputFileResolver resolver = createResolver(nestedSetEvent, aspectCompletedEvent);
+
+        BEPTargetCompletedEvent completed = resolver.getCompletedTargets().get(0);
+        assertTrue(resolver.getOutputFiles(completed, "info").isEmpty());
+        assertEquals(1, resolver.getOutputFiles(completed, "deps").size());
+    }
+
+    @Test
+    public void testFailedTarget() {
+        BEPOutputFileResolver resolver = createResolver(failedCompletedEvent);
+
+        BEPTargetCompletedEvent completed = resolver.getCompletedTargets().get(0);
+        assertFalse(completed.isSuccess());
+        assertTrue(completed.isError());
+        assertEquals("//bar:bar", completed.getLabel());
+        assertEquals("analysis of target '//bar:bar' failed", completed.getFailureMessage());
+        assertTrue(completed.getOutputGroupNames().isEmpty());
+    }
+
+    // HELPERS
+
+    private static BEPOutputFileResolver createResolver(String... rawEvents) {
+        BEPFileContents contents = new BEPFileContents();
+        contents.events = new ArrayList<>();
+        for (int i = 0; i < rawEvents.length; i++) {
+            contents.events.add(BazelBuildEventTypeManager.parseEvent(rawEvents[i], i));
+        }
+        return new BEPOutputFileResolver(contents);
+    }
+}
@@ -0,0 +1,123 @@
+package com.salesforce.bazel.sdk.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class BazelCommandSchedulerTest {
+
+    @Test
+    public void testCoalescing() throws Exception {
+        BazelCommandScheduler scheduler = new BazelCommandScheduler("test");
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+
+        CompletableFuture<String> first = scheduler.submit("query a", () -> {
+            release.await();
+            executions.incrementAndGet();
+            return "result";
+        });
+        CompletableFuture<String> second = scheduler.submit("query a", () -> {
+            executions.incrementAndGet();
+            return "other";
+        });
+        assertSame(first, second);
+
+        release.countDown();
+        assertEquals("result", BazelCommandScheduler.await(second));
+        assertEquals(1, executions.get());
+        assertEquals(1, scheduler.getNumberCoalesced());
+
+        // once complete, the same key runs again
+        CompletableFuture<String> third = scheduler.submit("query a", () -> "again");
+        assertEquals("again", BazelCommandScheduler.await(third));
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testCacheReadDoesNotWaitForLane() throws Exception {
+        BazelCommandScheduler scheduler = new BazelCommandScheduler("test");
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> build = scheduler.submit("build //...", () -> {
+            release.await();
+            return "built";
+        });
+
+        CompletableFuture<String> read = scheduler.read("aspect //a:*", () -> "cached", () -> "loaded");
+        assertTrue(read.isDone());
+        assertEquals("cached", read.get());
+        assertFalse(build.isDone());
+        assertEquals(1, scheduler.getNumberCacheReads());
+
+        release.countDown();
+        assertEquals("built", BazelCommandScheduler.await(build));
+
+        // a cache miss goes to the lane
+        CompletableFuture<String> miss = scheduler.read("aspect //b:*", () -> null, () -> "loaded");
+        assertEquals("loaded", BazelCommandScheduler.await(miss));
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testAsyncCacheReadDoesNotWaitForLane() throws Exception {
+        BazelCommandScheduler scheduler = new BazelCommandScheduler("test");
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> build = scheduler.submit("build //...", () -> {
+            release.await();
+            return "built";
+        });
+
+        CompletableFuture<String> lookup = new CompletableFuture<>();
+        CompletableFuture<String> read = scheduler.readAsync("aspect //a:*", () -> lookup, () -> "loaded");
+        assertFalse(read.isDone());
+        lookup.complete("cached");
+        assertEquals("cached", read.get());
+        assertFalse(build.isDone());
+        assertEquals(1, scheduler.getNumberCacheReads());
+
+        // a cache miss goes to the lane, once the lookup completes
+        CompletableFuture<String> miss = scheduler.readAsync("aspect //b:*",
+            () -> CompletableFuture.completedFuture(null), () -> "loaded");
+        release.countDown();
+        assertEquals("loaded", BazelCommandScheduler.await(miss));
+        assertEquals("built", BazelCommandScheduler.await(build));
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testFailureUnwrapping() throws Exception {
+        BazelCommandScheduler scheduler = new BazelCommandScheduler("test");
+
+        CompletableFuture<String> failed = scheduler.submit("query bad", () -> {
+            throw new IOException("bad query");
+        });
+        try {
+            BazelCommandScheduler.await(failed);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            assertEquals("bad query", expected.getMessage());
+        }
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testReentrantSubmitRunsInline() throws Exception {
+        BazelCommandScheduler scheduler = new BazelCommandScheduler("test");
+
+        CompletableFuture<String> outer = scheduler.submit("outer",
+            () -> "outer+" + BazelCommandScheduler.await(scheduler.submit("inner", () -> "inner")));
+        assertEquals("outer+inner", BazelCommandScheduler.await(outer));
+        scheduler.shutdown();
+    }
+}
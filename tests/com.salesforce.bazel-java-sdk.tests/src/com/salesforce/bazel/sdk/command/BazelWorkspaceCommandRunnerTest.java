@@ -24,11 +24,15 @@
 package com.salesforce.bazel.sdk.command;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -126,4 +130,63 @@ public class BazelWorkspaceCommandRunnerTest {
         // run a clean, should not throw an exception
         workspaceRunner.runBazelClean(new MockWorkProgressMonitor());
     }
+
+    @Test
+    public void testWorkspaceRunner_infoIsScheduled() throws Exception {
+        File testDir = tmpFolder.newFolder();
+        File workspaceDir = new File(testDir, "bazelws-info");
+        workspaceDir.mkdirs();
+        File outputbaseDir = new File(testDir, "obase-info");
+        outputbaseDir.mkdirs();
+
+        TestOptions testOptions = new TestOptions().numberOfJavaPackages(1);
+        TestBazelWorkspaceDescriptor descriptor =
+                new TestBazelWorkspaceDescriptor(workspaceDir, outputbaseDir).testOptions(testOptions);
+        TestBazelWorkspaceFactory workspace = new TestBazelWorkspaceFactory(descriptor);
+        TestBazelCommandEnvironmentFactory env = new TestBazelCommandEnvironmentFactory();
+        workspace.build();
+        env.createTestEnvironment(workspace, testDir, testOptions);
+        BazelWorkspaceCommandRunner workspaceRunner = env.bazelWorkspaceCommandRunner;
+
+        // a build of the user is running
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> build = workspaceRunner.getBazelCommandScheduler().submit("build //...", () -> {
+            release.await();
+            return "built";
+        });
+        CompletableFuture<Map<String, String>> info =
+                CompletableFuture.supplyAsync(() -> workspaceRunner.computeBazelInfo());
+
+        // bazel info waits for the build instead of running concurrently with it
+        Thread.sleep(250);
+        assertFalse(info.isDone());
+
+        release.countDown();
+        assertEquals("built", BazelCommandScheduler.await(build));
+        assertTrue(info.get().containsKey("execution_root"));
+    }
+
+    @Test
+    public void testWorkspaceRunner_disposeStopsLane() throws Exception {
+        File testDir = tmpFolder.newFolder();
+        File workspaceDir = new File(testDir, "bazelws-dispose");
+        workspaceDir.mkdirs();
+        File outputbaseDir = new File(testDir, "obase-dispose");
+        outputbaseDir.mkdirs();
+
+        TestOptions testOptions = new TestOptions().numberOfJavaPackages(1);
+        TestBazelWorkspaceDescriptor descriptor =
+                new TestBazelWorkspaceDescriptor(workspaceDir, outputbaseDir).testOptions(testOptions);
+        TestBazelWorkspaceFactory workspace = new TestBazelWorkspaceFactory(descriptor);
+        TestBazelCommandEnvironmentFactory env = new TestBazelCommandEnvironmentFactory();
+        workspace.build();
+        env.createTestEnvironment(workspace, testDir, testOptions);
+        BazelWorkspaceCommandRunner workspaceRunner = env.bazelWorkspaceCommandRunner;
+
+        workspaceRunner.dispose();
+
+        // the lane no longer accepts work
+        CompletableFuture<String> rejected = workspaceRunner.getBazelCommandScheduler().submit("info", () -> "info");
+        assertTrue(rejected.isCompletedExceptionally());
+    }
 }
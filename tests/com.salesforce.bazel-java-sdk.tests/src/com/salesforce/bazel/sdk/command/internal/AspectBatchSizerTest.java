@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2022, Salesforce.com, Inc. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ * following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of Salesforce.com nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.bazel.sdk.command.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AspectBatchSizerTest {
+
+    @Test
+    public void testGrowsUntilModelIsKnown() {
+        AspectBatchSizer sizer = new AspectBatchSizer(25);
+        assertEquals(25, sizer.getBatchSize());
+
+        sizer.recordBatch(25, 10000);
+        assertEquals(50, sizer.getBatchSize());
+        assertEquals(-1, sizer.getOverheadMS(), 0);
+    }
+
+    @Test
+    public void testLargeOverheadGrowsBatches() {
+        // 10s overhead, 20ms per target
+        AspectBatchSizer sizer = new AspectBatchSizer(25);
+        sizer.recordBatch(25, 10500);
+        sizer.recordBatch(50, 11000);
+        assertEquals(10000, sizer.getOverheadMS(), 1);
+
+        // growth is capped per step, and overall
+        assertEquals(200, sizer.getBatchSize());
+        sizer.recordBatch(200, 14000);
+        assertEquals(800, sizer.getBatchSize());
+        sizer.recordBatch(800, 26000);
+        assertTrue(sizer.getBatchSize() <= AspectBatchSizer.MAX_BATCH_SIZE);
+    }
+
+    @Test
+    public void testSlowTargetsShrinkBatches() {
+        // 1s overhead, 2s per target
+        AspectBatchSizer sizer = new AspectBatchSizer(25);
+        sizer.recordBatch(25, 51000);
+        sizer.recordBatch(50, 101000);
+
+        assertEquals(AspectBatchSizer.MIN_BATCH_SIZE, sizer.getBatchSize());
+    }
+}
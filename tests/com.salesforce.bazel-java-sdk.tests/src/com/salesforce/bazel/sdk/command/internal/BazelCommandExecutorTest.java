@@ -68,6 +68,33 @@ public class BazelCommandExecutorTest {
         assertEquals("result line 2", result.get(1));
     }
 
+    @Test
+    public void testHappy_StdOutConsumer() throws Exception {
+        TestBazelCommandEnvironmentFactory env = createEnv("consumer");
+
+        List<String> emptyLines = new ArrayList<>();
+        List<String> outputLines = new ArrayList<>();
+        outputLines.add("result line 1");
+        outputLines.add("result line 2");
+        env.commandBuilder.addSimulatedOutput("testcommand1", outputLines, emptyLines);
+
+        List<String> args = new ArrayList<>();
+        args.add("fake"); // instead of passing a real command like build or test, pass a fake one since we are just testing invocation
+        args.add("//projects/libs/javalib0"); // $SLASH_OK bazel path
+
+        BazelCommandExecutor executor =
+                new BazelCommandExecutor(env.bazelExecutable.bazelExecutableFile, env.commandBuilder);
+        List<String> consumed = new ArrayList<>();
+        int exitCode = executor.runBazelAndConsumeOutputLines(
+            env.bazelWorkspaceCommandRunner.getBazelWorkspaceRootDirectory(), new MockWorkProgressMonitor(), args,
+            t -> t, consumed::add, 0);
+
+        assertEquals(0, exitCode);
+        assertEquals(2, consumed.size());
+        assertEquals("result line 1", consumed.get(0));
+        assertEquals("result line 2", consumed.get(1));
+    }
+
     @Test
     public void testHappy_StdErr() throws Exception {
         TestBazelCommandEnvironmentFactory env = createEnv("stderr");
@@ -0,0 +1,169 @@
+package com.salesforce.bazel.sdk.command.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.model.BazelLabel;
+
+public class BazelQueryResultCacheTest {
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private static final String QUERY_APPLE = "attr(test_class, com.foo.AppleTest$, //apple:*)";
+    private static final String QUERY_BANANA = "attr(test_class, com.foo.BananaTest$, //banana:*)";
+
+    @Test
+    public void testAlternatingQueriesHit() throws Exception {
+        BazelQueryResultCache cache = new BazelQueryResultCache();
+        File root = workspace("apple", "banana");
+        cache.put(root, QUERY_APPLE, Arrays.asList("//apple:AppleTest"));
+        cache.put(root, QUERY_BANANA, Arrays.asList("//banana:BananaTest"));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("//apple:AppleTest", cache.get(QUERY_APPLE).get(0));
+            assertEquals("//banana:BananaTest", cache.get(QUERY_BANANA).get(0));
+        }
+        assertEquals(6, cache.getNumberCacheHits());
+    }
+
+    @Test
+    public void testPutReturnsCachedList() throws Exception {
+        BazelQueryResultCache cache = new BazelQueryResultCache();
+        List<String> lines = new ArrayList<>(Arrays.asList("//apple:AppleTest"));
+        List<String> cached = cache.put(workspace("apple"), QUERY_APPLE, lines);
+        lines.add("//apple:AppleTest2");
+
+        assertSame(cached, cache.get(QUERY_APPLE));
+        assertEquals(1, cached.size());
+    }
+
+    @Test
+    public void testChangedBuildFileInvalidates() throws Exception {
+        BazelQueryResultCache cache = new BazelQueryResultCache();
+        File root = workspace("apple", "banana");
+        cache.put(root, QUERY_APPLE, Arrays.asList("//apple:AppleTest"));
+        cache.put(root, QUERY_BANANA, Arrays.asList("//banana:BananaTest"));
+
+        Files.write(new File(root, "apple/BUILD").toPath(),
+            "java_test(name = 'AppleTest2')\n".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(cache.get(QUERY_APPLE));
+        assertNotNull(cache.get(QUERY_BANANA));
+    }
+
+    @Test
+    public void testEmptyPackageOfQueryInvalidates() throws Exception {
+        BazelQueryResultCache cache = new BazelQueryResultCache();
+        File root = workspace("a", "b");
+        String query = "//a:* + //b:*";
+        cache.put(root, query, Arrays.asList("//a:a"));
+
+        // //b did not contribute to the result, but it is named by the query
+        cache.invalidate(new BazelLabel("//b"));
+
+        assertNull(cache.get(query));
+    }
+
+    @Test
+    public void testInvalidatePackage() throws Exception {
+        BazelQueryResultCache cache = new BazelQueryResultCache();
+        File root = workspace("apple", "banana");
+        cache.put(root, QUERY_APPLE, Arrays.asList("//apple:AppleTest"));
+        cache.put(root, QUERY_BANANA, Arrays.asList("//banana:BananaTest"));
+        cache.put(root, "tests(//...)", Arrays.asList("//apple:AppleTest"));
+        cache.put(root, "tests(//banana/...)", Arrays.asList("//banana:BananaTest"));
+
+        cache.invalidate(new BazelLabel("//apple:AppleTest"));
+
+        assertNull(cache.get(QUERY_APPLE));
+        assertNull(cache.get("tests(//...)"));
+        assertNotNull(cache.get(QUERY_BANANA));
+        assertNotNull(cache.get("tests(//banana/...)"));
+
+        cache.invalidate(new BazelLabel("//banana/peel"));
+
+        assertNotNull(cache.get(QUERY_BANANA));
+        assertNull(cache.get("tests(//banana/...)"));
+    }
+
+    @Test
+    public void testTransitiveQueries() {
+        assertFalse(BazelQueryResultCache.hasTransitiveDependencies(QUERY_APPLE));
+        assertFalse(BazelQueryResultCache.hasTransitiveDependencies("//a:* + //b:b"));
+        assertTrue(BazelQueryResultCache.hasTransitiveDependencies("tests(//apple:*)"));
+        assertTrue(BazelQueryResultCache.hasTransitiveDependencies("kind(rule, deps(//apple:apple))"));
+        assertTrue(BazelQueryResultCache.hasTransitiveDependencies("rdeps(//apple:*, //banana:banana)"));
+        assertTrue(BazelQueryResultCache.hasTransitiveDependencies("attr(test_class, Apple, //apple/...)"));
+        assertTrue(BazelQueryResultCache.hasTransitiveDependencies("//..."));
+    }
+
+    @Test
+    public void testChangedDependencyFileInvalidates() throws Exception {
+        BazelQueryResultCache cache = new BazelQueryResultCache();
+        File root = workspace("apple", "banana", "tools");
+        File bzlFile = new File(root, "tools/java.bzl");
+        Files.write(bzlFile.toPath(), "def java_macro(): pass\n".getBytes(StandardCharsets.UTF_8));
+        Map<File, String> buildFiles = new HashMap<>();
+        buildFiles.put(new File(root, "apple/BUILD"), "//apple:BUILD");
+        buildFiles.put(new File(root, "banana/BUILD"), "//banana:BUILD");
+        buildFiles.put(bzlFile, "//tools:java.bzl");
+        String query = "tests(//apple:*)";
+        cache.put(root, query, Arrays.asList("//apple:AppleTest"), buildFiles);
+        assertNotNull(cache.get(query));
+
+        // a package reached through the dependencies of the query is flushed
+        cache.invalidate(new BazelLabel("//banana"));
+        assertNull(cache.get(query));
+
+        // a .bzl file loaded by the BUILD files of the dependencies changes
+        cache.put(root, query, Arrays.asList("//apple:AppleTest"), buildFiles);
+        Files.write(bzlFile.toPath(), "def java_macro(name): pass\n".getBytes(StandardCharsets.UTF_8));
+        assertNull(cache.get(query));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        BazelQueryResultCache cache = new BazelQueryResultCache(2);
+        File root = workspace();
+        List<String> result = Collections.singletonList("//apple:AppleTest");
+        cache.put(root, "q1", result);
+        cache.put(root, "q2", result);
+        cache.get("q1");
+        cache.put(root, "q3", result);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("q1"));
+        assertNull(cache.get("q2"));
+    }
+
+    // INTERNAL
+
+    private File workspace(String... packageNames) throws Exception {
+        File root = tmpFolder.getRoot();
+        for (String packageName : packageNames) {
+            File packageDir = new File(root, packageName);
+            packageDir.mkdirs();
+            Files.write(new File(packageDir, "BUILD").toPath(),
+                "java_test(name = 'AppleTest')\n".getBytes(StandardCharsets.UTF_8));
+        }
+        return root;
+    }
+}
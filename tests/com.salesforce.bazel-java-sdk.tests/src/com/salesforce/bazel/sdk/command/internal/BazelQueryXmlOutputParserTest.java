@@ -0,0 +1,88 @@
+package com.salesforce.bazel.sdk.command.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.salesforce.bazel.sdk.command.internal.BazelQueryXmlOutputParser.QueryRule;
+import com.salesforce.bazel.sdk.model.BazelBuildFile;
+
+public class BazelQueryXmlOutputParserTest {
+
+    private static final String QUERY_OUTPUT = String.join("\n",
+        "<?xml version=\"1.1\" encoding=\"UTF-8\" standalone=\"no\"?>", "<query version=\"2\">",
+        "    <rule class=\"java_library\" location=\"/ws/apple-api/BUILD:1:13\" name=\"//apple-api:apple-api\">",
+        "        <string name=\"name\" value=\"apple-api\"/>", "        <list name=\"srcs\">",
+        "            <label value=\"//apple-api:src/main/java/demo/apple/api/Apple.java\"/>",
+        "            <label value=\"//apple-api:src/main/java/demo/apple/api/AppleOrchard.java\"/>", "        </list>",
+        "        <list name=\"resources\">",
+        "            <label value=\"//apple-api:src/main/resources/apple.properties\"/>", "        </list>",
+        "        <list name=\"deps\">", "            <label value=\"//fruit-api:fruit-api\"/>", "        </list>",
+        "        <rule-input name=\"//apple-api:src/main/java/demo/apple/api/Apple.java\"/>",
+        "        <rule-input name=\"//apple-api:src/main/java/demo/apple/api/AppleOrchard.java\"/>",
+        "        <rule-input name=\"//apple-api:src/main/resources/apple.properties\"/>",
+        "        <rule-input name=\"//fruit-api:fruit-api\"/>", "    </rule>",
+        "    <rule class=\"java_test\" location=\"/ws/apple-api/BUILD:9:10\" name=\"//apple-api:apple-api-test\">",
+        "        <list name=\"srcs\">",
+        "            <label value=\"//apple-api:src/test/java/demo/apple/api/AppleTest.java\"/>", "        </list>",
+        "        <label name=\"main_class\" value=\"//apple-api:apple-api\"/>",
+        "        <rule-input name=\"//apple-api:src/test/java/demo/apple/api/AppleTest.java\"/>",
+        "        <rule-input name=\"//apple-api:apple-api\"/>", "    </rule>",
+        "    <source-file location=\"/ws/apple-api/BUILD:1:1\" name=\"//apple-api:BUILD\"/>", "</query>");
+
+    @Test
+    public void testRules() throws Exception {
+        List<QueryRule> rules = parse(QUERY_OUTPUT);
+
+        assertEquals(2, rules.size());
+        QueryRule library = rules.get(0);
+        assertEquals("java_library", library.ruleClass);
+        assertEquals("//apple-api:apple-api", library.label);
+        assertEquals(2, library.getLabelAttribute("srcs").size());
+        assertEquals("//fruit-api:fruit-api", library.getLabelAttribute("deps").get(0));
+        assertEquals(4, library.ruleInputs.size());
+
+        QueryRule test = rules.get(1);
+        assertEquals("java_test", test.ruleClass);
+        assertEquals("//apple-api:apple-api", test.getLabelAttribute("main_class").get(0));
+        assertTrue(test.getLabelAttribute("deps").isEmpty());
+    }
+
+    @Test
+    public void testEmptyOutput() throws Exception {
+        assertTrue(parse("").isEmpty());
+    }
+
+    @Test
+    public void testPopulateBuildFile() throws Exception {
+        BazelBuildFile buildFile = new BazelBuildFile("//apple-api");
+        for (QueryRule rule : parse(QUERY_OUTPUT)) {
+            buildFile.addTarget(rule.ruleClass, rule.label, rule.getLabelAttribute("srcs"),
+                rule.getLabelAttribute("deps"));
+            buildFile.addRuleInputs(rule.ruleInputs);
+        }
+
+        assertEquals("java_test", buildFile.getRuleTypeForTarget("//apple-api:apple-api-test"));
+        assertEquals(2, buildFile.getSrcsForTarget("//apple-api:apple-api").size());
+        assertTrue(buildFile.getDepsForTarget("//apple-api:apple-api").contains("//fruit-api:fruit-api"));
+
+        // inputs from other packages and the rules of the package itself are not files of the package
+        assertEquals(4, buildFile.getInputFilePaths().size());
+        assertTrue(buildFile.getInputFilePaths().contains("src/main/resources/apple.properties"));
+    }
+
+    // INTERNAL
+
+    private List<QueryRule> parse(String output) throws Exception {
+        List<QueryRule> rules = new ArrayList<>();
+        new BazelQueryXmlOutputParser().parse(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)),
+            rules::add);
+        return rules;
+    }
+}
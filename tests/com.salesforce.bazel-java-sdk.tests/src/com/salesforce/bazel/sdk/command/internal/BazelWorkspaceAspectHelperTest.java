@@ -24,19 +24,31 @@
 package com.salesforce.bazel.sdk.command.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import com.salesforce.bazel.sdk.aspect.AspectStringTable;
 import com.salesforce.bazel.sdk.aspect.AspectTargetInfo;
 import com.salesforce.bazel.sdk.command.test.TestBazelCommandEnvironmentFactory;
 import com.salesforce.bazel.sdk.model.BazelLabel;
@@ -113,13 +125,13 @@ public class BazelWorkspaceAspectHelperTest {
                 aspectHelper.getAspectTargetInfos(targets, "testAspectLoading");
         // aspect infos returned for: guava, slf4j, javalib0, javalib0-test
         assertEquals(1, aspectMap.size());
-        assertEquals(0, aspectHelper.numberCacheHits);
+        assertEquals(0, aspectHelper.numberCacheHits.get());
 
         // ask for the same target again
         aspectMap = aspectHelper.getAspectTargetInfos(targets, "testAspectLoading");
         // aspect infos returned for: guava, slf4j, javalib0, javalib0-test
         assertEquals(1, aspectMap.size());
-        assertEquals(1, aspectHelper.numberCacheHits); // the entries all came from cache
+        assertEquals(1, aspectHelper.numberCacheHits.get()); // the entries all came from cache
     }
 
     @Test
@@ -134,17 +146,21 @@ public class BazelWorkspaceAspectHelperTest {
                 aspectHelper.getAspectTargetInfos(targets, "testAspectLoading");
         assertEquals(1, aspectMap.size());
         assertEquals(label, aspectMap.keySet().iterator().next());
-        assertEquals(0, aspectHelper.numberCacheHits);
+        assertEquals(0, aspectHelper.numberCacheHits.get());
 
         // ask for the same target again
         aspectMap = aspectHelper.getAspectTargetInfos(targets, "testAspectLoading");
         assertEquals(1, aspectMap.size());
         assertEquals(label, aspectMap.keySet().iterator().next());
-        assertEquals(1, aspectHelper.numberCacheHits); // the entries all came from cache
+        assertEquals(1, aspectHelper.numberCacheHits.get()); // the entries all came from cache
 
         // flush the cache (we do this when the user executes a 'clean' in Eclipse)
+        AspectStringTable stringTable = aspectHelper.getStringTable();
+        assertTrue(stringTable.size() > 0);
         aspectHelper.flushAspectInfoCache();
         assertEquals(0, aspectHelper.aspectInfoCache_current.size());
+        assertNotSame(stringTable, aspectHelper.getStringTable()); // the strings of the flushed infos are released
+        assertEquals(0, aspectHelper.getStringTable().size());
         // javalib0:javalib0, javalib0:javalib0-test, javalib0:*
         assertEquals(3, aspectHelper.aspectInfoCache_lastgood.size()); // last good is an emergency fallback, not flushed
 
@@ -152,19 +168,166 @@ public class BazelWorkspaceAspectHelperTest {
         aspectMap = aspectHelper.getAspectTargetInfos(targets, "testAspectLoading");
         assertEquals(1, aspectMap.size());
         assertEquals(label, aspectMap.keySet().iterator().next());
-        assertEquals(1, aspectHelper.numberCacheHits); // the entries all came from cache
+        assertEquals(1, aspectHelper.numberCacheHits.get()); // the entries all came from cache
+    }
+
+    @Test
+    public void testAspectCacheFlushForPackage() throws Exception {
+        TestBazelCommandEnvironmentFactory env = createEnv("flushpackage", 2);
+        BazelWorkspaceAspectProcessor aspectHelper = env.bazelWorkspaceCommandRunner.getBazelWorkspaceAspectHelper();
+        BazelLabel label0 = new BazelLabel("//projects/libs/javalib0:*"); // $SLASH_OK bazel path
+        BazelLabel label1 = new BazelLabel("//projects/libs/javalib1:*"); // $SLASH_OK bazel path
+        List<BazelLabel> targets = Arrays.asList(label0, label1);
+
+        aspectHelper.getAspectTargetInfos(Collections.singletonList(label0), "testAspectCacheFlushForPackage");
+        aspectHelper.getAspectTargetInfos(Collections.singletonList(label1), "testAspectCacheFlushForPackage");
+        // javalibN:javalibN, javalibN:javalibNTest, javalibN:*
+        assertEquals(6, aspectHelper.aspectInfoCache_current.size());
+
+        // flushing a package leaves the packages that do not depend on it alone
+        Set<BazelLabel> flushed =
+                aspectHelper.flushAspectInfoCacheForPackage(new BazelLabel("//projects/libs/javalib1")); // $SLASH_OK
+        assertEquals(3, flushed.size());
+        assertTrue(flushed.contains(label1));
+        assertEquals(3, aspectHelper.aspectInfoCache_current.size());
+
+        // only the flushed package runs the aspect again
+        Map<BazelLabel, Set<AspectTargetInfo>> aspectMap =
+                aspectHelper.getAspectTargetInfos(targets, "testAspectCacheFlushForPackage");
+        assertEquals(2, aspectMap.size());
+        assertEquals(1, aspectHelper.numberCacheHits.get());
+        assertEquals(6, aspectHelper.aspectInfoCache_current.size());
+
+        // flushing a package flushes the targets that depend on it
+        flushed = aspectHelper.flushAspectInfoCacheForPackage(new BazelLabel("@maven//:com_google_guava_guava"));
+        assertTrue(flushed.contains(label0));
+        assertTrue(flushed.contains(label1));
+        assertFalse(aspectHelper.aspectInfoCache_current.containsKey(label0));
+        assertFalse(aspectHelper.aspectInfoCache_current.containsKey(label1));
+    }
+
+    @Test
+    public void testPendingAspectDataIsShared() throws Exception {
+        TestBazelCommandEnvironmentFactory env = createEnv("pending");
+        BazelWorkspaceAspectProcessor aspectHelper = env.bazelWorkspaceCommandRunner.getBazelWorkspaceAspectHelper();
+        BazelLabel label = new BazelLabel("//projects/libs/javalib0:*"); // $SLASH_OK bazel path
+        List<BazelLabel> targets = Collections.singletonList(label);
+
+        // simulate another request that is computing the aspect data of the target
+        CompletableFuture<Set<AspectTargetInfo>> pending = new CompletableFuture<>();
+        aspectHelper.aspectInfoCache_inflight.put(label, pending);
+
+        CompletableFuture<Map<BazelLabel, Set<AspectTargetInfo>>> request = CompletableFuture.supplyAsync(() -> {
+            try {
+                return aspectHelper.getAspectTargetInfos(targets, "testPendingAspectDataIsShared");
+            } catch (Exception anyE) {
+                throw new CompletionException(anyE);
+            }
+        });
+        Thread.sleep(200);
+        assertFalse(request.isDone());
+
+        // the waiting request gets the pending result, and does not run the aspect itself
+        Set<AspectTargetInfo> infos = Collections.emptySet();
+        pending.complete(infos);
+        Map<BazelLabel, Set<AspectTargetInfo>> aspectMap = request.get(30, TimeUnit.SECONDS);
+        assertSame(infos, aspectMap.get(label));
+        assertEquals(0, aspectHelper.aspectInfoCache_current.size());
+    }
+
+    @Test
+    public void testPersistedAspectDataIsLoadedAsync() throws Exception {
+        TestBazelCommandEnvironmentFactory env = createEnv("persistent");
+        BazelWorkspaceAspectProcessor aspectHelper = env.bazelWorkspaceCommandRunner.getBazelWorkspaceAspectHelper();
+        BazelLabel label = new BazelLabel("//projects/libs/javalib0:*"); // $SLASH_OK bazel path
+        List<BazelLabel> targets = Collections.singletonList(label);
+
+        File aspectFile = new File(env.bazelAspectLocation.getAspectDirectory(), "bzljavasdk_aspect.bzl");
+        Files.write(aspectFile.toPath(), "BZLJAVASDK_ASPECT_VERSION = \"1\"\n".getBytes(StandardCharsets.UTF_8));
+        aspectHelper.enablePersistentCache(tmpFolder.newFolder(),
+            env.testWorkspace.workspaceDescriptor.outputBaseDirectory);
+        aspectHelper.getAspectTargetInfos(targets, "testPersistedAspectDataIsLoadedAsync");
+
+        // simulate a restart, the aspect data is now only persisted
+        aspectHelper.aspectInfoCache_current.clear();
+
+        // the synchronous lookup never reads the disk
+        assertNull(aspectHelper.getCachedAspectTargetInfos(targets));
+
+        // the async lookup loads the persisted data into the current cache
+        Map<BazelLabel, Set<AspectTargetInfo>> aspectMap =
+                aspectHelper.getCachedAspectTargetInfosAsync(targets).get(30, TimeUnit.SECONDS);
+        assertNotNull(aspectMap);
+        assertNotNull(aspectMap.get(label));
+        assertEquals(1, aspectHelper.numberCacheHits.get());
+        assertNotNull(aspectHelper.getCachedAspectTargetInfos(targets));
+    }
+
+    @Test
+    public void testAspectLoadingWithTargetPatternFile() throws Exception {
+        // --target_pattern_file is only used with Bazel 4.2 and later
+        TestBazelCommandEnvironmentFactory env = createEnv("patternfile", 1, "4.2.0");
+        BazelWorkspaceAspectProcessor aspectHelper = env.bazelWorkspaceCommandRunner.getBazelWorkspaceAspectHelper();
+        BazelLabel label = new BazelLabel("//projects/libs/javalib0:*"); // $SLASH_OK bazel path
+
+        // force the targets into a --target_pattern_file
+        int maxTargetArgsLength = BazelWorkspaceAspectProcessor.MAX_TARGET_ARGS_LENGTH;
+        BazelWorkspaceAspectProcessor.MAX_TARGET_ARGS_LENGTH = 0;
+        try {
+            List<BazelLabel> targets = Collections.singletonList(label);
+            Map<BazelLabel, Set<AspectTargetInfo>> aspectMap =
+                    aspectHelper.getAspectTargetInfos(targets, "testAspectLoadingWithTargetPatternFile");
+            assertEquals(1, aspectMap.size());
+            assertEquals(label, aspectMap.keySet().iterator().next());
+            // javalib0:javalib0, javalib0:javalib0-test, javalib0:*
+            assertEquals(3, aspectHelper.aspectInfoCache_current.size());
+        } finally {
+            BazelWorkspaceAspectProcessor.MAX_TARGET_ARGS_LENGTH = maxTargetArgsLength;
+        }
+    }
+
+    @Test
+    public void testAspectLoadingWithSplitTargetsOnOldBazel() throws Exception {
+        TestBazelCommandEnvironmentFactory env = createEnv("splittargets", 2, "4.1.0");
+        BazelWorkspaceAspectProcessor aspectHelper = env.bazelWorkspaceCommandRunner.getBazelWorkspaceAspectHelper();
+        BazelLabel label0 = new BazelLabel("//projects/libs/javalib0:*"); // $SLASH_OK bazel path
+        BazelLabel label1 = new BazelLabel("//projects/libs/javalib1:*"); // $SLASH_OK bazel path
+
+        // each target goes to its own invocation, since Bazel 4.1 has no --target_pattern_file
+        int maxTargetArgsLength = BazelWorkspaceAspectProcessor.MAX_TARGET_ARGS_LENGTH;
+        BazelWorkspaceAspectProcessor.MAX_TARGET_ARGS_LENGTH = 0;
+        try {
+            List<BazelLabel> targets = Arrays.asList(label0, label1);
+            Map<BazelLabel, Set<AspectTargetInfo>> aspectMap =
+                    aspectHelper.getAspectTargetInfos(targets, "testAspectLoadingWithSplitTargetsOnOldBazel");
+            assertEquals(2, aspectMap.size());
+            assertTrue(aspectMap.containsKey(label0));
+            assertTrue(aspectMap.containsKey(label1));
+        } finally {
+            BazelWorkspaceAspectProcessor.MAX_TARGET_ARGS_LENGTH = maxTargetArgsLength;
+        }
     }
 
     // INTERNAL
 
     private TestBazelCommandEnvironmentFactory createEnv(String testKey) throws Exception {
+        return createEnv(testKey, 1);
+    }
+
+    private TestBazelCommandEnvironmentFactory createEnv(String testKey, int numberOfJavaPackages) throws Exception {
+        return createEnv(testKey, numberOfJavaPackages, new TestOptions().bazelVersion);
+    }
+
+    private TestBazelCommandEnvironmentFactory createEnv(String testKey, int numberOfJavaPackages,
+            String bazelVersion) throws Exception {
         File testDir = tmpFolder.newFolder();
         File workspaceDir = new File(testDir, "bazelws-" + testKey);
         workspaceDir.mkdirs();
         File outputbaseDir = new File(testDir, "obase-" + testKey);
         outputbaseDir.mkdirs();
 
-        TestOptions testOptions = new TestOptions().numberOfJavaPackages(1);
+        TestOptions testOptions =
+                new TestOptions().numberOfJavaPackages(numberOfJavaPackages).bazelVersion(bazelVersion);
 
         TestBazelWorkspaceDescriptor descriptor =
                 new TestBazelWorkspaceDescriptor(workspaceDir, outputbaseDir).testOptions(testOptions);
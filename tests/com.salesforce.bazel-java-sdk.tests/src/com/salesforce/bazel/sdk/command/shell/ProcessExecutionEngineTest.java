@@ -0,0 +1,95 @@
+package com.salesforce.bazel.sdk.command.shell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.salesforce.bazel.sdk.command.test.MockWorkProgressMonitor;
+
+public class ProcessExecutionEngineTest {
+
+    @Before
+    public void setup() {
+        // the tests start sh processes
+        assumeFalse(System.getProperty("os.name").toLowerCase().contains("win"));
+    }
+
+    @Test
+    public void testExitCodeAndOutput() throws Exception {
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        Process process = new ProcessBuilder("sh", "-c", "echo hello; echo oops >&2; exit 3").start();
+
+        int exitCode = ProcessExecutionEngine.getDefault().execute(process, stdout, stderr, null, 0).get(30,
+            TimeUnit.SECONDS);
+
+        assertEquals(3, exitCode);
+        assertEquals("hello\n", new String(stdout.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals("oops\n", new String(stderr.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCanceledMonitorDestroysProcess() throws Exception {
+        MockWorkProgressMonitor monitor = new MockWorkProgressMonitor();
+        Process process = new ProcessBuilder("sh", "-c", "sleep 60").start();
+
+        CompletableFuture<Integer> result =
+                ProcessExecutionEngine.getDefault().execute(process, null, null, monitor, 0);
+        assertFalse(result.isDone());
+        monitor.setCanceled(true);
+
+        result.get(30, TimeUnit.SECONDS);
+        assertFalse(process.isAlive());
+    }
+
+    @Test
+    public void testTimeoutDestroysProcess() throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", "sleep 60").start();
+
+        long startTimeMS = System.currentTimeMillis();
+        ProcessExecutionEngine.getDefault().execute(process, null, null, null, 500).get(30, TimeUnit.SECONDS);
+
+        assertFalse(process.isAlive());
+        assertTrue((System.currentTimeMillis() - startTimeMS) < 30000);
+    }
+
+    @Test
+    public void testNoWritesAfterCompletionWhenOutputOutlivesProcess() throws Exception {
+        // the background subshell keeps stdout open after sh exits, and writes after the drain grace period
+        Process process = new ProcessBuilder("sh", "-c", "(sleep 7; echo late) & echo early").start();
+        StringBuilder writtenAfterCompletion = new StringBuilder();
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream() {
+            private boolean completed = false;
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                if (completed) {
+                    writtenAfterCompletion.append(new String(b, off, len, StandardCharsets.UTF_8));
+                }
+                super.write(b, off, len);
+            }
+
+            @Override
+            public synchronized void close() {
+                completed = true;
+            }
+        };
+
+        CompletableFuture<Integer> result = ProcessExecutionEngine.getDefault().execute(process, stdout, null, null, 0);
+        assertEquals(0, (int) result.get(30, TimeUnit.SECONDS));
+        stdout.close();
+        assertTrue(new String(stdout.toByteArray(), StandardCharsets.UTF_8).startsWith("early"));
+
+        Thread.sleep(4000);
+        assertEquals("", writtenAfterCompletion.toString());
+    }
+}
@@ -0,0 +1,97 @@
+package com.salesforce.bazel.sdk.command.shell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+public class SelectOutputStreamTest {
+
+    private static Function<String, String> ARTIFACT_SELECTOR = x -> x.startsWith(">>>") ? x.substring(3) : null;
+
+    @Test
+    public void testLinesSplitAcrossChunks() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SelectOutputStream stream = new SelectOutputStream(output, ARTIFACT_SELECTOR);
+
+        write(stream, "INFO: hello\n>>>a.json\nwor");
+        write(stream, "ld\n>>>b");
+        stream.write('.');
+        write(stream, "json\n");
+        stream.close();
+
+        assertEquals(2, stream.getLines().size());
+        assertEquals("a.json", stream.getLines().get(0));
+        assertEquals("b.json", stream.getLines().get(1));
+        assertEquals("INFO: hello\nworld\n", new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testMultiByteCharacters() throws Exception {
+        SelectOutputStream stream = new SelectOutputStream(null, x -> x);
+
+        // split the bytes of a multi-byte character across two writes
+        byte[] bytes = "café\n€\n".getBytes(StandardCharsets.UTF_8);
+        stream.write(bytes, 0, 4);
+        stream.write(bytes, 4, bytes.length - 4);
+        stream.close();
+
+        assertEquals("café", stream.getLines().get(0));
+        assertEquals("€", stream.getLines().get(1));
+    }
+
+    @Test
+    public void testConsumerAndBoundedRetention() throws Exception {
+        List<String> consumed = new ArrayList<>();
+        SelectOutputStream stream = new SelectOutputStream(null, ARTIFACT_SELECTOR, consumed::add, 2);
+
+        write(stream, ">>>a.json\nline1\nline2\n>>>b.json\n");
+        stream.close();
+
+        assertEquals(2, consumed.size());
+        assertEquals("b.json", consumed.get(1));
+        assertTrue(stream.getLines().isEmpty());
+
+        List<String> retained = stream.getRetainedLines();
+        assertEquals(2, retained.size());
+        assertEquals("line2", retained.get(0));
+        assertEquals(">>>b.json", retained.get(1));
+    }
+
+    @Test
+    public void testPassThroughWithoutSelector() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SelectOutputStream stream = new SelectOutputStream(output, null);
+
+        write(stream, "a\nb");
+        stream.close();
+
+        assertEquals("a\nb", new String(output.toByteArray(), StandardCharsets.UTF_8));
+        assertTrue(stream.getRetainedLines().isEmpty());
+    }
+
+    @Test
+    public void testPassThroughMixedWrites() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SelectOutputStream stream = new SelectOutputStream(output, null);
+
+        stream.write('a');
+        write(stream, "b\nc");
+        stream.write('\n');
+        write(stream, "d");
+        stream.close();
+
+        assertEquals("ab\nc\nd", new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static void write(SelectOutputStream stream, String text) throws Exception {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        stream.write(bytes, 0, bytes.length);
+    }
+}
@@ -1,10 +1,17 @@
 package com.salesforce.bazel.sdk.graph;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.Test;
@@ -169,4 +176,221 @@ public class InMemoryDependencyGraphTest {
         assertEquals("midA2", orderedLabels.get(1).getBazelPackageName());
         assertEquals("rootA", orderedLabels.get(2).getBazelPackageName());
     }
+
+    @Test
+    public void testCyclicPackages() {
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+
+        // //a/b:foo => //a/c:bar => //a/b:fooz is legal in Bazel, but is a cycle at the package level
+        graph.addDependency("rootA", "cycleA");
+        graph.addDependency("cycleA", "cycleB");
+        graph.addDependency("cycleB", "cycleC");
+        graph.addDependency("cycleC", "cycleA");
+        graph.addDependency("cycleB", "leafA");
+
+        List<BazelPackageLocation> selectedLabels = new ArrayList<>();
+        selectedLabels.add(new InMemoryPackageLocation("rootA"));
+        selectedLabels.add(new InMemoryPackageLocation("cycleC"));
+        selectedLabels.add(new InMemoryPackageLocation("leafA"));
+        selectedLabels.add(new InMemoryPackageLocation("cycleA"));
+        List<BazelPackageLocation> orderedLabels = graph.orderLabels(selectedLabels);
+
+        // the packages of the cycle are kept together in the passed order
+        assertEquals(4, orderedLabels.size());
+        assertEquals("leafA", orderedLabels.get(0).getBazelPackageName());
+        assertEquals("cycleC", orderedLabels.get(1).getBazelPackageName());
+        assertEquals("cycleA", orderedLabels.get(2).getBazelPackageName());
+        assertEquals("rootA", orderedLabels.get(3).getBazelPackageName());
+    }
+
+    @Test
+    public void testKeepsPassedOrder() {
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+        graph.addDependency("rootA", "leafA");
+        graph.addDependency("leafB", "leafC");
+
+        List<BazelPackageLocation> selectedLabels = new ArrayList<>();
+        selectedLabels.add(new InMemoryPackageLocation("rootA"));
+        selectedLabels.add(new InMemoryPackageLocation("leafB"));
+        selectedLabels.add(new InMemoryPackageLocation("leafA"));
+        List<BazelPackageLocation> orderedLabels = graph.orderLabels(selectedLabels);
+
+        // leafB and leafA do not depend on each other, so they keep the passed order
+        assertEquals(3, orderedLabels.size());
+        assertEquals("leafB", orderedLabels.get(0).getBazelPackageName());
+        assertEquals("leafA", orderedLabels.get(1).getBazelPackageName());
+        assertEquals("rootA", orderedLabels.get(2).getBazelPackageName());
+    }
+
+    @Test
+    public void testTransitiveThroughUnselected() {
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+
+        // target level edges are condensed to package level edges
+        graph.addDependency("a/root:root", "a/mid:mid");
+        graph.addDependency("a/mid:mid", "a/leaf:leaf");
+        graph.addDependency("a/mid:mid", "a/mid:helper");
+
+        List<BazelPackageLocation> selectedLabels = new ArrayList<>();
+        selectedLabels.add(new InMemoryPackageLocation("a/root"));
+        selectedLabels.add(new InMemoryPackageLocation("a/leaf"));
+        List<BazelPackageLocation> orderedLabels = graph.orderLabels(selectedLabels);
+
+        assertEquals(2, orderedLabels.size());
+        assertEquals("a/leaf", orderedLabels.get(0).getBazelPackageName());
+        assertEquals("a/root", orderedLabels.get(1).getBazelPackageName());
+    }
+
+    @Test
+    public void testLongChain() {
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+
+        // deep enough to overflow the stack of a recursive traversal
+        int length = 20000;
+        List<BazelPackageLocation> selectedLabels = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                graph.addDependency("pkg" + (i - 1), "pkg" + i);
+            }
+            selectedLabels.add(new InMemoryPackageLocation("pkg" + i));
+        }
+        List<BazelPackageLocation> orderedLabels = graph.orderLabels(selectedLabels);
+
+        assertEquals(length, orderedLabels.size());
+        for (int i = 0; i < length; i++) {
+            assertEquals("pkg" + (length - 1 - i), orderedLabels.get(i).getBazelPackageName());
+        }
+    }
+
+    @Test
+    public void testReachabilityIndex() {
+        String[][] edges = { { "rootA", "midA1" }, { "rootA", "midA2" }, { "midA1", "leafA1" }, { "midA2", "leafA1" },
+                { "midA2", "cycleA" }, { "cycleA", "cycleB" }, { "cycleB", "cycleA" }, { "cycleB", "leafA2" },
+                { "leafA2", "@maven//:spring" }, { "@maven//:spring", "@maven//:foo" }, { "rootB", "leafA2" },
+                { "@maven//:foo", "pluginA" } };
+        InMemoryDependencyGraph traversedGraph = new InMemoryDependencyGraph();
+        InMemoryDependencyGraph indexedGraph = new InMemoryDependencyGraph();
+        for (String[] edge : edges) {
+            traversedGraph.addDependency(edge[0], edge[1]);
+            indexedGraph.addDependency(edge[0], edge[1]);
+        }
+        indexedGraph.buildReachabilityIndex(true);
+        indexedGraph.buildReachabilityIndex(false);
+
+        Set<String> labels = new LinkedHashSet<>(traversedGraph.getDependsOnMap().keySet());
+        labels.addAll(traversedGraph.getUsedByMap().keySet());
+        labels.add("unknown");
+        for (String label : labels) {
+            for (String possibleDependency : labels) {
+                String pair = label + " => " + possibleDependency;
+                boolean isDep = traversedGraph.isDependency(label, possibleDependency);
+                assertTrue(pair, isDep == indexedGraph.isDependency(label, possibleDependency));
+                isDep = traversedGraph.isDependency(label, possibleDependency, null, false);
+                assertTrue(pair, isDep == indexedGraph.isDependency(label, possibleDependency, null, false));
+            }
+        }
+        assertTrue(indexedGraph.isDependency("rootA", "@maven//:foo"));
+        assertFalse(indexedGraph.isDependency("rootA", "@maven//:foo", null, false));
+        assertTrue(indexedGraph.isDependency("cycleA", "cycleA"));
+        assertFalse(indexedGraph.isDependency("leafA1", "leafA1"));
+        assertFalse(indexedGraph.isDependency("rootB", "rootA"));
+
+        // only the workspace labels are indexed, a workspace label can still be reached through an external one
+        assertTrue(indexedGraph.reachabilityIndex.covers("pluginA"));
+        assertFalse(indexedGraph.reachabilityIndex.covers("@maven//:foo"));
+        assertTrue(indexedGraph.isDependency("rootB", "pluginA"));
+        assertFalse(indexedGraph.isDependency("rootB", "pluginA", null, false));
+    }
+
+    @Test
+    public void testReachabilityIndexInvalidation() {
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+        graph.addDependency("rootA", "midA1");
+        graph.buildReachabilityIndex(true);
+        assertFalse(graph.isDependency("rootA", "leafA1"));
+
+        // the index is discarded, the graph is traversed again
+        graph.addDependency("midA1", "leafA1");
+        assertTrue(graph.isDependency("rootA", "leafA1"));
+
+        graph.buildReachabilityIndex(true);
+        assertTrue(graph.isDependency("rootA", "leafA1"));
+    }
+
+    @Test
+    public void testRemoveDependency() {
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+        graph.addDependency("rootA", "midA1");
+        graph.addDependency("midA1", "leafA1");
+        graph.buildReachabilityIndex(true);
+        assertTrue(graph.isDependency("rootA", "leafA1"));
+        assertEquals(Collections.singleton("leafA1"), graph.getLeafLabels());
+
+        graph.removeDependency("midA1", "leafA1");
+        assertFalse(graph.isDependency("rootA", "leafA1"));
+        assertNull(graph.getDependsOnMap().get("midA1"));
+        assertEquals(Collections.singleton("midA1"), graph.getLeafLabels());
+
+        // a removed edge can be added again, also before the pending edges are merged
+        graph.addDependency("midA1", "leafA1");
+        graph.removeDependency("midA1", "leafA1");
+        graph.addDependency("midA1", "leafA1");
+        assertTrue(graph.isDependency("rootA", "leafA1"));
+        assertEquals(Collections.singleton("leafA1"), graph.getLeafLabels());
+    }
+
+    @Test
+    public void testAddDependencies() {
+        String[] labels = { "rootA", "midA1", "leafA1", "rootB", "leafB" };
+        int[] sources = { 0, 1, 3, 0, 1 };
+        int[] deps = { 1, 2, 4, 1, 4 };
+
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+        graph.addDependency("leafB", "leafA1");
+        graph.addDependencies(labels, sources, deps, 4);
+
+        // the same graph as adding the dependencies one at a time
+        InMemoryDependencyGraph expected = new InMemoryDependencyGraph();
+        expected.addDependency("leafB", "leafA1");
+        for (int i = 0; i < 4; i++) {
+            expected.addDependency(labels[sources[i]], labels[deps[i]]);
+        }
+        assertEquals(new ArrayList<>(expected.getDependsOnMap().keySet()),
+            new ArrayList<>(graph.getDependsOnMap().keySet()));
+        assertEquals(expected.getDependsOnMap(), graph.getDependsOnMap());
+        assertEquals(expected.getUsedByMap(), graph.getUsedByMap());
+        assertEquals(new ArrayList<>(expected.getRootLabels()), new ArrayList<>(graph.getRootLabels()));
+        assertTrue(graph.isDependency("rootB", "leafA1"));
+        assertFalse(graph.getDependsOnMap().get("midA1").contains("leafB"));
+    }
+
+    @Test
+    public void testMapViews() {
+        InMemoryDependencyGraph graph = new InMemoryDependencyGraph();
+        graph.addDependency("rootB", "leafB");
+        graph.addDependency("rootA", "leafB");
+        graph.addDependency("rootA", "leafA");
+        graph.addDependency("rootA", "leafA");
+
+        Map<String, Set<String>> dependsOnMap = graph.getDependsOnMap();
+        assertEquals(2, dependsOnMap.size());
+        assertEquals(Arrays.asList("rootA", "rootB"), new ArrayList<>(dependsOnMap.keySet()));
+        Set<String> rootADeps = dependsOnMap.get("rootA");
+        assertEquals(2, rootADeps.size());
+        assertTrue(rootADeps.contains("leafA"));
+        assertTrue(rootADeps.contains("leafB"));
+        assertFalse(rootADeps.contains("rootB"));
+        assertNull(dependsOnMap.get("leafA"));
+        assertNull(dependsOnMap.get("unknown"));
+        assertEquals(new HashSet<>(Arrays.asList("rootA", "rootB")), graph.getUsedByMap().get("leafB"));
+
+        // the views reflect the edges added after a read
+        graph.addDependency("leafA", "leafC");
+        assertEquals(3, dependsOnMap.size());
+        assertTrue(dependsOnMap.get("leafA").contains("leafC"));
+        assertEquals(2, rootADeps.size());
+        assertEquals(Collections.singleton("leafA"), graph.getUsedByMap().get("leafC"));
+        assertEquals(new HashSet<>(Arrays.asList("leafB", "leafC")), graph.getLeafLabels());
+        assertEquals(new HashSet<>(Arrays.asList("rootB", "rootA")), graph.getRootLabels());
+    }
 }
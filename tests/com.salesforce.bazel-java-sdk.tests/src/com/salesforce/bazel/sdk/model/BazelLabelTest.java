@@ -36,6 +36,7 @@ package com.salesforce.bazel.sdk.model;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.HashSet;
@@ -171,6 +172,41 @@ public class BazelLabelTest {
         assertTrue(s.contains(new BazelLabel("@repo//a/b/c"))); // $SLASH_OK bazel path
     }
 
+    @Test
+    public void testInterning() {
+        BazelLabel label = BazelLabel.valueOf("//a/b/c:foo"); // $SLASH_OK bazel path
+
+        assertSame(label, BazelLabel.valueOf("//a/b/c:foo")); // $SLASH_OK bazel path
+        assertSame(label, BazelLabel.valueOf("a/b/c:foo")); // $SLASH_OK bazel path
+        assertSame(label, BazelLabel.valueOf("a/b/c", "foo")); // $SLASH_OK bazel path
+        assertSame(label, new BazelLabel("//a/b/c:foo").intern()); // $SLASH_OK bazel path
+        assertSame(label, BazelLabel.getById(label.getId()));
+        assertEquals(label, new BazelLabel("//a/b/c:foo")); // $SLASH_OK bazel path
+        assertEquals(new BazelLabel("//a/b/c:foo"), label); // $SLASH_OK bazel path
+
+        assertEquals("a/b/c", label.getPackagePath()); // $SLASH_OK bazel path
+        assertEquals("foo", label.getTargetName());
+        assertSame(BazelLabel.valueOf("//a/b/c"), label.getPackageLabel()); // $SLASH_OK bazel path
+    }
+
+    @Test
+    public void testInterningIds() {
+        BazelLabel label1 = BazelLabel.valueOf("//interning/ids:one"); // $SLASH_OK bazel path
+        BazelLabel label2 = BazelLabel.valueOf("@repo//interning/ids:one"); // $SLASH_OK bazel path
+
+        assertEquals(BazelLabel.NO_ID, new BazelLabel("//interning/ids:one").getId()); // $SLASH_OK bazel path
+        assertTrue(label1.getId() >= 0);
+        assertTrue(label2.getId() >= 0);
+        assertTrue(label1.getId() != label2.getId());
+        assertFalse(label1.equals(label2));
+        assertNull(BazelLabel.getById(Integer.MAX_VALUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLabel_interned() {
+        BazelLabel.valueOf("//blah:");
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testInvalidLabel_null() {
         new BazelLabel(null);
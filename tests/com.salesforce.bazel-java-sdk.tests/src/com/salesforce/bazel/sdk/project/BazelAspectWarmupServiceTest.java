@@ -0,0 +1,251 @@
+package com.salesforce.bazel.sdk.project;
+
+import static com.salesforce.bazel.sdk.workspace.test.TestAspectTargetInfo.createInfo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.salesforce.bazel.sdk.command.BazelCommandScheduler;
+import com.salesforce.bazel.sdk.command.internal.BazelWorkspaceAspectProcessor;
+import com.salesforce.bazel.sdk.command.test.MockWorkProgressMonitor;
+import com.salesforce.bazel.sdk.command.test.TestBazelCommandEnvironmentFactory;
+import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.model.BazelWorkspace;
+import com.salesforce.bazel.sdk.workspace.ProjectOrderResolverImpl;
+import com.salesforce.bazel.sdk.workspace.test.TestBazelWorkspaceDescriptor;
+import com.salesforce.bazel.sdk.workspace.test.TestBazelWorkspaceFactory;
+import com.salesforce.bazel.sdk.workspace.test.TestOptions;
+
+public class BazelAspectWarmupServiceTest {
+    private static final BazelLabel LABEL0 = BazelLabel.valueOf("//projects/libs/javalib0:*"); // $SLASH_OK bazel path
+    private static final BazelLabel LABEL1 = BazelLabel.valueOf("//projects/libs/javalib1:*"); // $SLASH_OK bazel path
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testWarmup() throws Exception {
+        TestBazelCommandEnvironmentFactory env = createEnv();
+        TestProjectManager projectManager = new TestProjectManager();
+        BazelAspectWarmupService warmup = createService(env, projectManager);
+        BazelWorkspaceAspectProcessor aspectProcessor = env.bazelWorkspaceCommandRunner.getBazelWorkspaceAspectHelper();
+
+        warmup.enqueue(projectManager.getAllProjects());
+        assertEquals(2, warmup.getPendingCount());
+        assertEquals(2, warmup.run(new MockWorkProgressMonitor()));
+
+        assertEquals(0, warmup.getPendingCount());
+        assertNotNull(aspectProcessor.getCachedAspectTargetInfos(Arrays.asList(LABEL0, LABEL1)));
+
+        // warm projects do not run the aspect again
+        warmup.prioritize("javalib0", BazelAspectWarmupService.PRIORITY_RECENTLY_BUILT);
+        assertEquals(0, warmup.run(new MockWorkProgressMonitor()));
+        assertEquals(2, warmup.getNumberWarmedUp());
+    }
+
+    @Test
+    public void testPrioritizedProjectFirst() throws Exception {
+        TestBazelCommandEnvironmentFactory env = createEnv();
+        TestProjectManager projectManager = new TestProjectManager();
+        BazelAspectWarmupService warmup = createService(env, projectManager);
+        BazelWorkspaceAspectProcessor aspectProcessor = env.bazelWorkspaceCommandRunner.getBazelWorkspaceAspectHelper();
+
+        int batchSize = BazelAspectWarmupService.WARMUP_BATCH_SIZE;
+        BazelAspectWarmupService.WARMUP_BATCH_SIZE = 1;
+        try {
+            warmup.enqueue(projectManager.getAllProjects());
+            assertTrue(warmup.prioritize("javalib1", BazelAspectWarmupService.PRIORITY_OPEN_EDITOR));
+            assertFalse(warmup.prioritize("unknown", BazelAspectWarmupService.PRIORITY_OPEN_EDITOR));
+
+            // cancels the warm-up after the first batch
+            MockWorkProgressMonitor progressMonitor = new MockWorkProgressMonitor() {
+                @Override
+                public void worked(int work) {
+                    setCanceled(true);
+                }
+            };
+            assertEquals(1, warmup.run(progressMonitor));
+        } finally {
+            BazelAspectWarmupService.WARMUP_BATCH_SIZE = batchSize;
+        }
+
+        assertNotNull(aspectProcessor.getCachedAspectTargetInfos(Collections.singletonList(LABEL1)));
+        assertNull(aspectProcessor.getCachedAspectTargetInfos(Collections.singletonList(LABEL0)));
+        assertEquals(1, warmup.getPendingCount());
+    }
+
+    @Test
+    public void testReorderedWhenDependenciesChange() throws Exception {
+        TestBazelCommandEnvironmentFactory env = createEnv();
+        TestProjectManager projectManager = new TestProjectManager();
+        BazelAspectWarmupService warmup = createService(env, projectManager);
+        BazelWorkspaceAspectProcessor aspectProcessor = env.bazelWorkspaceCommandRunner.getBazelWorkspaceAspectHelper();
+
+        int batchSize = BazelAspectWarmupService.WARMUP_BATCH_SIZE;
+        BazelAspectWarmupService.WARMUP_BATCH_SIZE = 1;
+        try {
+            // nothing is known about the dependencies yet, javalib0 is pending first
+            warmup.enqueue(projectManager.getAllProjects());
+
+            // javalib0 turns out to depend on javalib1
+            aspectProcessor.getDependencyGraph().update(Collections.singletonList(
+                createInfo("//projects/libs/javalib0:javalib0", "//projects/libs/javalib1:javalib1"))); // $SLASH_OK
+
+            // cancels the warm-up after the first batch
+            MockWorkProgressMonitor progressMonitor = new MockWorkProgressMonitor() {
+                @Override
+                public void worked(int work) {
+                    setCanceled(true);
+                }
+            };
+            assertEquals(1, warmup.run(progressMonitor));
+        } finally {
+            BazelAspectWarmupService.WARMUP_BATCH_SIZE = batchSize;
+        }
+
+        assertNotNull(aspectProcessor.getCachedAspectTargetInfos(Collections.singletonList(LABEL1)));
+        assertNull(aspectProcessor.getCachedAspectTargetInfos(Collections.singletonList(LABEL0)));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        TestBazelCommandEnvironmentFactory env = createEnv();
+        TestProjectManager projectManager = new TestProjectManager();
+        BazelAspectWarmupService warmup = createService(env, projectManager);
+
+        warmup.enqueue(projectManager.getAllProjects());
+        warmup.cancel();
+        assertEquals(0, warmup.run(new MockWorkProgressMonitor()));
+        assertEquals(2, warmup.getPendingCount());
+    }
+
+    @Test
+    public void testDispose() throws Exception {
+        TestBazelCommandEnvironmentFactory env = createEnv();
+        TestProjectManager projectManager = new TestProjectManager();
+        BazelAspectWarmupService warmup = createService(env, projectManager);
+
+        warmup.enqueue(projectManager.getAllProjects());
+        warmup.dispose();
+        assertEquals(0, warmup.getPendingCount());
+        assertEquals(0, warmup.run(new MockWorkProgressMonitor()));
+    }
+
+    @Test
+    public void testYieldsToPendingRequests() throws Exception {
+        TestBazelCommandEnvironmentFactory env = createEnv();
+        TestProjectManager projectManager = new TestProjectManager();
+        BazelAspectWarmupService warmup = createService(env, projectManager);
+        BazelCommandScheduler scheduler = env.bazelWorkspaceCommandRunner.getBazelCommandScheduler();
+        warmup.enqueue(projectManager.getAllProjects());
+
+        // a build of the user is running
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> build = scheduler.submit("build //...", () -> {
+            release.await();
+            return "built";
+        });
+        CompletableFuture<Integer> warmedUp = CompletableFuture.supplyAsync(() -> {
+            try {
+                return warmup.run(new MockWorkProgressMonitor());
+            } catch (InterruptedException ie) {
+                throw new IllegalStateException(ie);
+            }
+        });
+        Thread.sleep(2 * BazelAspectWarmupService.YIELD_WAIT_MS);
+        assertFalse(warmedUp.isDone());
+        assertEquals(2, warmup.getPendingCount());
+
+        release.countDown();
+        assertEquals("built", BazelCommandScheduler.await(build));
+        assertEquals(2, warmedUp.get().intValue());
+    }
+
+    // HELPERS
+
+    private BazelAspectWarmupService createService(TestBazelCommandEnvironmentFactory env,
+            TestProjectManager projectManager) {
+        return new BazelAspectWarmupService(projectManager, env.bazelWorkspaceCommandRunner,
+                new ProjectOrderResolverImpl());
+    }
+
+    private TestBazelCommandEnvironmentFactory createEnv() throws Exception {
+        File testDir = tmpFolder.newFolder();
+        File workspaceDir = new File(testDir, "bazelws");
+        workspaceDir.mkdirs();
+        File outputbaseDir = new File(testDir, "obase");
+        outputbaseDir.mkdirs();
+
+        TestOptions testOptions = new TestOptions().numberOfJavaPackages(2);
+        TestBazelWorkspaceDescriptor descriptor =
+                new TestBazelWorkspaceDescriptor(workspaceDir, outputbaseDir).testOptions(testOptions);
+        TestBazelWorkspaceFactory workspace = new TestBazelWorkspaceFactory(descriptor);
+        TestBazelCommandEnvironmentFactory env = new TestBazelCommandEnvironmentFactory();
+
+        workspace.build();
+        env.createTestEnvironment(workspace, testDir, testOptions);
+        return env;
+    }
+
+    /**
+     * A project per java package of the test workspace, each configured with the wildcard target of its package.
+     */
+    private static class TestProjectManager extends BazelProjectManager {
+        TestProjectManager() {
+            addProject(new BazelProject("javalib0"));
+            addProject(new BazelProject("javalib1"));
+        }
+
+        @Override
+        public String getBazelLabelForProject(BazelProject bazelProject) {
+            return "//projects/libs/" + bazelProject.name; // $SLASH_OK bazel path
+        }
+
+        @Override
+        public BazelProjectTargets getConfiguredBazelTargets(BazelProject bazelProject,
+                boolean addWildcardIfNoTargets) {
+            String packageLabel = getBazelLabelForProject(bazelProject);
+            BazelProjectTargets targets = new BazelProjectTargets(bazelProject, packageLabel);
+            targets.activateWildcardTarget(BazelLabel.BAZEL_WILDCARD_ALLTARGETS_STAR);
+            return targets;
+        }
+
+        @Override
+        public BazelProject getOwningProjectForSourcePath(BazelWorkspace bazelWorkspace, String sourcePath) {
+            return null;
+        }
+
+        @Override
+        public void setProjectReferences(BazelProject thisProject, List<BazelProject> updatedRefList) {}
+
+        @Override
+        public Map<BazelLabel, BazelProject> getBazelLabelToProjectMap(Collection<BazelProject> bazelProjects) {
+            return new HashMap<>();
+        }
+
+        @Override
+        public List<String> getBazelBuildFlagsForProject(BazelProject bazelProject) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void addSettingsToProject(BazelProject bazelProject, String bazelWorkspaceRoot,
+                String bazelProjectPackage, List<BazelLabel> bazelTargets, List<String> bazelBuildFlags) {}
+    }
+}
@@ -1,5 +1,6 @@
 package com.salesforce.bazel.sdk.project;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -7,6 +8,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -17,6 +19,7 @@ import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
 import com.salesforce.bazel.sdk.graph.InMemoryPackageLocation;
 import com.salesforce.bazel.sdk.init.JvmRuleInit;
 import com.salesforce.bazel.sdk.model.BazelLabel;
+import com.salesforce.bazel.sdk.model.BazelPackageLocation;
 import com.salesforce.bazel.sdk.model.BazelWorkspace;
 import com.salesforce.bazel.sdk.path.FSPathHelper;
 import com.salesforce.bazel.sdk.path.FSTree;
@@ -122,6 +125,32 @@ public class BazelQueryProjectStructureStrategyTest {
         assertContains(structure.testResourceDirFSPaths, "projects/libs/apple/source/test/resources");
     }
 
+    @Test
+    public void testBatchAnalysis() {
+        TestBazelQueryProjectStructureStrategy strategy = new TestBazelQueryProjectStructureStrategy();
+        addSourcePathForTest(strategy, "src/main/java");
+        addSimQueryResult(strategy, "src/main/java/com/salesforce/fruit/Fruit.java");
+
+        List<BazelPackageLocation> packageLocations = new ArrayList<>();
+        packageLocations.add(new InMemoryPackageLocation(FSPathHelper.osSeps("projects/libs/apple")));
+        packageLocations.add(new InMemoryPackageLocation(FSPathHelper.osSeps("projects/libs/banana")));
+        Map<BazelPackageLocation, ProjectStructure> structures =
+                strategy.doStructureAnalysis(bazelWorkspace, packageLocations, nullCommandRunner);
+
+        // a single query is issued for all of the packages
+        assertEquals(1, strategy.prefetchedPackageLabels.size());
+        assertEquals(2, strategy.prefetchedPackageLabels.get(0).size());
+        assertEquals("//projects/libs/apple:*", strategy.prefetchedPackageLabels.get(0).get(0).getLabelPath());
+        assertEquals("//projects/libs/banana:*", strategy.prefetchedPackageLabels.get(0).get(1).getLabelPath());
+
+        // and the results are partitioned per package
+        assertEquals(2, structures.size());
+        assertContains(structures.get(packageLocations.get(0)).mainSourceDirFSPaths,
+            "projects/libs/apple/src/main/java");
+        assertContains(structures.get(packageLocations.get(1)).mainSourceDirFSPaths,
+            "projects/libs/banana/src/main/java");
+    }
+
     // INTERNALS
 
     private void addSourcePathForTest(TestBazelQueryProjectStructureStrategy strategy, String unixPath) {
@@ -155,6 +184,13 @@ public class BazelQueryProjectStructureStrategyTest {
         public List<String> sourcePathsForThisTest = new ArrayList<>();
         public List<String> mainResourcePathsForThisTest = new ArrayList<>();
         public List<String> testResourcePathsForThisTest = new ArrayList<>();
+        public List<List<BazelLabel>> prefetchedPackageLabels = new ArrayList<>();
+
+        @Override
+        protected void prefetchBazelQueryForSourceFiles(List<BazelLabel> packageLabels,
+                BazelWorkspaceCommandRunner commandRunner) {
+            prefetchedPackageLabels.add(packageLabels);
+        }
 
         /**
          * Let the test set the expected Bazel query results, without running Bazel query.
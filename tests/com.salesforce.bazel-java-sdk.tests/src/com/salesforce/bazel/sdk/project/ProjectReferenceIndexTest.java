@@ -0,0 +1,61 @@
+package com.salesforce.bazel.sdk.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import org.junit.Test;
+
+public class ProjectReferenceIndexTest {
+
+    @Test
+    public void testDownstreamProjects() {
+        // A -> (B, C)
+        // B -> C
+        // C -> D
+        ProjectReferenceIndex index = new ProjectReferenceIndex();
+        index.setReferences("A", Arrays.asList("B", "C"));
+        index.setReferences("B", Arrays.asList("C"));
+        index.setReferences("C", Arrays.asList("D"));
+        index.setReferences("unrelated", Arrays.asList("Z"));
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("C", "A", "B")), index.getDownstreamProjects("D"));
+        assertEquals(Collections.singleton("A"), index.getDownstreamProjects("B"));
+        assertTrue(index.getDownstreamProjects("A").isEmpty());
+        assertTrue(index.hasReferences("C"));
+        assertFalse(index.hasReferences("D"));
+    }
+
+    @Test
+    public void testUpdatedReferences() {
+        ProjectReferenceIndex index = new ProjectReferenceIndex();
+        index.setReferences("A", Arrays.asList("B"));
+        index.setReferences("B", Arrays.asList("C"));
+
+        // A no longer depends on B
+        index.setReferences("A", Arrays.asList("C"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("B", "A")), index.getDownstreamProjects("C"));
+        assertTrue(index.getDownstreamProjects("B").isEmpty());
+
+        index.removeProject("B");
+        assertFalse(index.hasReferences("B"));
+        assertEquals(Collections.singleton("A"), index.getDownstreamProjects("C"));
+    }
+
+    @Test
+    public void testFilterAndCycles() {
+        ProjectReferenceIndex index = new ProjectReferenceIndex();
+        index.setReferences("A", Arrays.asList("B"));
+        index.setReferences("B", Arrays.asList("C"));
+        index.setReferences("C", Arrays.asList("A"));
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("B", "A", "C")), index.getDownstreamProjects("C"));
+
+        // B no longer exists, the walk does not go through it
+        assertTrue(index.getDownstreamProjects("C", name -> !name.equals("B")).isEmpty());
+    }
+}
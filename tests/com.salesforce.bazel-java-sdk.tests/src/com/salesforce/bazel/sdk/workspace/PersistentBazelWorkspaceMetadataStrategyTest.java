@@ -0,0 +1,89 @@
+package com.salesforce.bazel.sdk.workspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import com.salesforce.bazel.sdk.command.BazelWorkspaceCommandRunner;
+
+public class PersistentBazelWorkspaceMetadataStrategyTest {
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    @Test
+    public void testSnapshotReusedAcrossInstances() throws Exception {
+        File workspaceRoot = tmpDir.newFolder("ws");
+        File metadataDir = tmpDir.newFolder("metadata");
+        File outputBase = tmpDir.newFolder("outputbase");
+        Files.write(new File(workspaceRoot, "WORKSPACE").toPath(), "".getBytes(StandardCharsets.UTF_8));
+
+        BazelWorkspaceCommandRunner runner = mockRunner(outputBase);
+
+        PersistentBazelWorkspaceMetadataStrategy strategy =
+                new PersistentBazelWorkspaceMetadataStrategy(runner, workspaceRoot, metadataDir);
+        assertEquals(outputBase.getCanonicalFile(), strategy.computeBazelWorkspaceOutputBase());
+        assertEquals(new File(outputBase, "execroot/ws").getCanonicalFile(), strategy.computeBazelWorkspaceExecRoot());
+        assertTrue(strategy.getSnapshotFile().exists());
+        Mockito.verify(runner, Mockito.times(1)).computeBazelInfo();
+
+        // simulate a restart, the snapshot on disk is used and bazel is not invoked
+        PersistentBazelWorkspaceMetadataStrategy restarted =
+                new PersistentBazelWorkspaceMetadataStrategy(runner, workspaceRoot, metadataDir);
+        assertEquals(outputBase.getCanonicalFile(), restarted.computeBazelWorkspaceOutputBase());
+        Mockito.verify(runner, Mockito.times(1)).computeBazelInfo();
+    }
+
+    @Test
+    public void testSnapshotInvalidatedByBazelrcChange() throws Exception {
+        File workspaceRoot = tmpDir.newFolder("ws");
+        File metadataDir = tmpDir.newFolder("metadata");
+        File outputBase = tmpDir.newFolder("outputbase");
+        File bazelrc = new File(workspaceRoot, ".bazelrc");
+        Files.write(bazelrc.toPath(), "build --stamp\n".getBytes(StandardCharsets.UTF_8));
+
+        BazelWorkspaceCommandRunner runner = mockRunner(outputBase);
+
+        PersistentBazelWorkspaceMetadataStrategy strategy =
+                new PersistentBazelWorkspaceMetadataStrategy(runner, workspaceRoot, metadataDir);
+        String fingerprint = strategy.computeFingerprint();
+        strategy.computeBazelWorkspaceBin();
+
+        Files.write(bazelrc.toPath(), "build --nostamp\n".getBytes(StandardCharsets.UTF_8));
+        PersistentBazelWorkspaceMetadataStrategy restarted =
+                new PersistentBazelWorkspaceMetadataStrategy(runner, workspaceRoot, metadataDir);
+        assertNotEquals(fingerprint, restarted.computeFingerprint());
+        restarted.computeBazelWorkspaceBin();
+        Mockito.verify(runner, Mockito.times(2)).computeBazelInfo();
+    }
+
+    @Test
+    public void testParseBazelInfoLines() {
+        Map<String, String> info = BazelWorkspaceCommandRunner.parseBazelInfoLines(
+            Arrays.asList("bazel-bin: /tmp/out/bin", "output_base: /tmp/out\r", "not an info line"));
+        assertEquals(2, info.size());
+        assertEquals("/tmp/out/bin", info.get("bazel-bin"));
+        assertEquals("/tmp/out", info.get("output_base"));
+    }
+
+    private BazelWorkspaceCommandRunner mockRunner(File outputBase) {
+        BazelWorkspaceCommandRunner runner = Mockito.mock(BazelWorkspaceCommandRunner.class);
+        Map<String, String> info = BazelWorkspaceCommandRunner.parseBazelInfoLines(
+            Arrays.asList("output_base: " + outputBase.getAbsolutePath(),
+                "execution_root: " + new File(outputBase, "execroot/ws").getAbsolutePath(),
+                "bazel-bin: " + new File(outputBase, "execroot/ws/bazel-out/bin").getAbsolutePath()));
+        Mockito.when(runner.computeBazelInfo()).thenReturn(info);
+        return runner;
+    }
+}
@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -14,6 +15,7 @@ import org.eclipse.jdt.core.IJavaProject;
 import org.junit.Test;
 
 import com.salesforce.bazel.eclipse.project.EclipseProjectUtils;
+import com.salesforce.bazel.sdk.project.ProjectReferenceIndex;
 
 public class EclipseClasspathUtilTest {
 
@@ -38,6 +40,27 @@ public class EclipseClasspathUtilTest {
         assertTrue(downstreams.contains(C.getProject()));
     }
 
+    @Test
+    public void testGetDownstreamProjectsOfWithIndex() throws Exception {
+        // the index knows that C -> D, the references of A and B are read from the projects
+        IJavaProject A = getMockedProject("A", new String[] { "B" });
+        IJavaProject B = getMockedProject("B", new String[] { "C" });
+        IJavaProject C = getMockedProject("C", new String[] {});
+        IJavaProject D = getMockedProject("D", new String[] {});
+        ProjectReferenceIndex referenceIndex = new ProjectReferenceIndex();
+        referenceIndex.setReferences("C", Arrays.asList("D"));
+        referenceIndex.setReferences("deleted", Arrays.asList("D"));
+
+        Set<IProject> downstreams = EclipseProjectUtils.getDownstreamProjectsOf(D.getProject(),
+            new IJavaProject[] { A, B, C, D }, referenceIndex);
+
+        assertEquals(3, downstreams.size());
+        assertTrue(downstreams.contains(A.getProject()));
+        assertTrue(downstreams.contains(B.getProject()));
+        assertTrue(downstreams.contains(C.getProject()));
+        assertTrue(referenceIndex.hasReferences("A"));
+    }
+
     // production breaks if the impl is a TreeSet, so we test for that explicitly here
     // (IProject's impl doesn't implement Comparable)
     @Test